@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Level-of-detail index of a series of samples sorted by x. Level k stores, for every bucket of 2^k consecutive samples, the samples with
+ * the minimum and the maximum values of the bucket, so a series can be drawn with a bounded number of points while keeping its peaks.
+ * <p>
+ * The index is updated incrementally with the samples that streamed in since the last update. It covers a contiguous run of samples and
+ * is rebuilt when it is updated with samples that do not overlap or extend it.
+ */
+final class DownsamplingPyramid {
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * The min/max samples of the buckets of one level.
+   */
+  private static final class Level {
+    @NotNull long[] myMinX = new long[INITIAL_CAPACITY];
+    @NotNull long[] myMinValues = new long[INITIAL_CAPACITY];
+    @NotNull long[] myMaxX = new long[INITIAL_CAPACITY];
+    @NotNull long[] myMaxValues = new long[INITIAL_CAPACITY];
+
+    void set(int bucket, long x, long value) {
+      if (bucket == myMinX.length) {
+        int capacity = bucket * 2;
+        myMinX = Arrays.copyOf(myMinX, capacity);
+        myMinValues = Arrays.copyOf(myMinValues, capacity);
+        myMaxX = Arrays.copyOf(myMaxX, capacity);
+        myMaxValues = Arrays.copyOf(myMaxValues, capacity);
+      }
+      myMinX[bucket] = myMaxX[bucket] = x;
+      myMinValues[bucket] = myMaxValues[bucket] = value;
+    }
+
+    void update(int bucket, long x, long value) {
+      if (value < myMinValues[bucket]) {
+        myMinX[bucket] = x;
+        myMinValues[bucket] = value;
+      }
+      if (value > myMaxValues[bucket]) {
+        myMaxX[bucket] = x;
+        myMaxValues[bucket] = value;
+      }
+    }
+  }
+
+  /**
+   * All the samples, which are level 0 of the pyramid.
+   */
+  @NotNull private final SeriesDataBuffer mySamples = new SeriesDataBuffer(INITIAL_CAPACITY);
+  /**
+   * Levels 1 and up, level k being at index k - 1.
+   */
+  @NotNull private final List<Level> myLevels = new ArrayList<>();
+
+  int size() {
+    return mySamples.size();
+  }
+
+  /**
+   * Updates the index with the given samples, sorted by x, which are usually the result of the latest query of the series.
+   */
+  void update(@NotNull SeriesDataBuffer data) {
+    if (data.isEmpty()) {
+      return;
+    }
+
+    int size = mySamples.size();
+    if (size == 0 || data.getX(0) < mySamples.getX(0) || data.getX(0) > mySamples.getX(size - 1)) {
+      clear();
+      for (int i = 0; i < data.size(); i++) {
+        add(data.getX(i), data.getValue(i));
+      }
+      return;
+    }
+
+    // Only the samples after the last indexed one are new. There are usually only a few of them, at the end of the data.
+    long lastX = mySamples.getX(size - 1);
+    int first = data.size();
+    while (first > 0 && data.getX(first - 1) > lastX) {
+      first--;
+    }
+    for (int i = first; i < data.size(); i++) {
+      add(data.getX(i), data.getValue(i));
+    }
+  }
+
+  private void add(long x, long value) {
+    int index = mySamples.size();
+    mySamples.add(x, value);
+    for (int k = 1; k <= myLevels.size(); k++) {
+      Level level = myLevels.get(k - 1);
+      int bucket = index >> k;
+      if ((index & ((1 << k) - 1)) == 0) {
+        level.set(bucket, x, value);
+      }
+      else {
+        level.update(bucket, x, value);
+      }
+    }
+
+    // Add the next level once its first bucket is complete.
+    int bucketSize = 1 << (myLevels.size() + 1);
+    if (index + 1 == bucketSize) {
+      Level level = new Level();
+      level.set(0, mySamples.getX(0), mySamples.getValue(0));
+      for (int i = 1; i < bucketSize; i++) {
+        level.update(0, mySamples.getX(i), mySamples.getValue(i));
+      }
+      myLevels.add(level);
+    }
+  }
+
+  void clear() {
+    mySamples.clear();
+    myLevels.clear();
+  }
+
+  /**
+   * Replaces the content of {@code result} with at most {@code maxPoints} samples representing the indexed samples in [xMin, xMax],
+   * plus the samples just outside of the range. The level of the pyramid is the most detailed one that fits in {@code maxPoints}, and
+   * both the minimum and the maximum of each of its buckets are kept.
+   */
+  void getDataForRange(long xMin, long xMax, int maxPoints, @NotNull SeriesDataBuffer result) {
+    result.clear();
+    int size = mySamples.size();
+    if (size == 0) {
+      return;
+    }
+    int from = Math.max(0, findLastIndexAtOrBefore(xMin - 1));
+    int to = Math.min(size - 1, findLastIndexAtOrBefore(xMax) + 1);
+    if (to < from) {
+      return;
+    }
+
+    int k = 0;
+    // Each bucket contributes up to 2 points.
+    while (k < myLevels.size() && ((to >> k) - (from >> k) + 1) * 2 > maxPoints) {
+      k++;
+    }
+
+    if (k == 0) {
+      for (int i = from; i <= to; i++) {
+        result.add(mySamples.getX(i), mySamples.getValue(i));
+      }
+      return;
+    }
+
+    Level level = myLevels.get(k - 1);
+    for (int bucket = from >> k; bucket <= to >> k; bucket++) {
+      long minX = level.myMinX[bucket];
+      long maxX = level.myMaxX[bucket];
+      if (minX < maxX) {
+        result.add(minX, level.myMinValues[bucket]);
+        result.add(maxX, level.myMaxValues[bucket]);
+      }
+      else if (minX > maxX) {
+        result.add(maxX, level.myMaxValues[bucket]);
+        result.add(minX, level.myMinValues[bucket]);
+      }
+      else {
+        result.add(minX, level.myMinValues[bucket]);
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the last sample with an x not greater than the given one, or -1 if there is no such sample.
+   */
+  private int findLastIndexAtOrBefore(long x) {
+    int low = 0;
+    int high = mySamples.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (mySamples.getX(mid) <= x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+}
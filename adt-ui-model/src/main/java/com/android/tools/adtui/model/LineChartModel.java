@@ -47,13 +47,13 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
       Range range = ranged.getYRange();
       double yMax = -Double.MAX_VALUE;
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
-      if (seriesList.isEmpty()) {
+      SeriesDataBuffer seriesBuffer = ranged.getSeriesBuffer();
+      if (seriesBuffer.isEmpty()) {
         continue;
       }
 
-      for (SeriesData<Long> series : seriesList) {
-        double value = series.value;
+      for (int i = 0; i < seriesBuffer.size(); i++) {
+        double value = seriesBuffer.getValue(i);
         if (yMax < value) {
           yMax = value;
         }
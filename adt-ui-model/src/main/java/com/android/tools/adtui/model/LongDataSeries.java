@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} of long values that can write its data into a reusable {@link SeriesDataBuffer} instead of allocating a
+ * {@link SeriesData} per sample. Components that query their data on every frame, like the line charts of the profilers, use
+ * {@link RangedContinuousSeries#getSeriesBuffer()} which takes advantage of this interface when the series implements it.
+ */
+public interface LongDataSeries extends DataSeries<Long> {
+  /**
+   * Replaces the content of {@code buffer} with the data of this series in the given range.
+   */
+  void getDataForRange(@NotNull Range range, @NotNull SeriesDataBuffer buffer);
+
+  @Override
+  default List<SeriesData<Long>> getDataForRange(Range range) {
+    SeriesDataBuffer buffer = new SeriesDataBuffer();
+    getDataForRange(range, buffer);
+    return buffer.toSeriesDataList();
+  }
+}
@@ -30,6 +30,12 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
   @NotNull
   private final Range myYRange;
 
+  @NotNull private final SeriesDataBuffer myBuffer = new SeriesDataBuffer();
+  @NotNull private Range myLastBufferedRange = new Range();
+
+  @NotNull private final DownsamplingPyramid myPyramid = new DownsamplingPyramid();
+  @NotNull private final SeriesDataBuffer myDownsampledBuffer = new SeriesDataBuffer();
+
   /**
    * Creates a RangedContinuousSeries with the {@link DataSeries} object scoped by the default and intersecting {@link Range} objects.
    */
@@ -47,6 +53,45 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
     this(name, xRange, yRange, series, new Range(-Double.MAX_VALUE, Double.MAX_VALUE));
   }
 
+  /**
+   * Same as {@link #getSeries()}, but writes the data into a buffer owned by this series. If the underlying series is a
+   * {@link LongDataSeries}, no object is allocated per sample. The returned buffer is refilled by the next call and must not be modified.
+   */
+  @NotNull
+  public SeriesDataBuffer getSeriesBuffer() {
+    Range queryRange = getIntersection();
+    if (queryRange.getMax() != Long.MAX_VALUE && queryRange.getMax() != Double.MAX_VALUE && myLastBufferedRange.isSameAs(queryRange)) {
+      return myBuffer;
+    }
+
+    if (mySeries instanceof LongDataSeries) {
+      ((LongDataSeries)mySeries).getDataForRange(queryRange, myBuffer);
+    }
+    else {
+      myBuffer.clear();
+      myBuffer.addAll(getSeriesForRange(queryRange));
+    }
+    myLastBufferedRange = queryRange;
+    return myBuffer;
+  }
+
+  /**
+   * Same as {@link #getSeriesBuffer()}, but returns at most about {@code maxPoints} samples. Larger series are downsampled with a
+   * level-of-detail index that keeps the minimum and maximum values of the samples it merges, so peaks remain visible. The index is
+   * updated incrementally as new data streams in. The returned buffer is refilled by the next call and must not be modified.
+   */
+  @NotNull
+  public SeriesDataBuffer getDownsampledSeriesBuffer(int maxPoints) {
+    SeriesDataBuffer data = getSeriesBuffer();
+    if (data.size() <= maxPoints) {
+      return data;
+    }
+
+    myPyramid.update(data);
+    myPyramid.getDataForRange(data.getX(0), data.getX(data.size() - 1), maxPoints, myDownsampledBuffer);
+    return myDownsampledBuffer;
+  }
+
   @NotNull
   public Range getYRange() {
     return myYRange;
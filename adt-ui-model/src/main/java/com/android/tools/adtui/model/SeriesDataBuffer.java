@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A growable buffer of (x, value) samples stored in primitive columns. Unlike a list of {@link SeriesData}, it can be refilled on every
+ * frame without allocating an object per sample.
+ */
+public final class SeriesDataBuffer {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  @NotNull private long[] myX;
+  @NotNull private long[] myValues;
+  private int mySize;
+
+  public SeriesDataBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public SeriesDataBuffer(int initialCapacity) {
+    myX = new long[initialCapacity];
+    myValues = new long[initialCapacity];
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  public long getX(int index) {
+    assert index < mySize;
+    return myX[index];
+  }
+
+  public long getValue(int index) {
+    assert index < mySize;
+    return myValues[index];
+  }
+
+  public void set(int index, long x, long value) {
+    assert index < mySize;
+    myX[index] = x;
+    myValues[index] = value;
+  }
+
+  public void setValue(int index, long value) {
+    assert index < mySize;
+    myValues[index] = value;
+  }
+
+  public void add(long x, long value) {
+    if (mySize == myX.length) {
+      int capacity = Math.max(DEFAULT_CAPACITY, mySize * 2);
+      myX = Arrays.copyOf(myX, capacity);
+      myValues = Arrays.copyOf(myValues, capacity);
+    }
+    myX[mySize] = x;
+    myValues[mySize] = value;
+    mySize++;
+  }
+
+  public void addAll(@NotNull List<SeriesData<Long>> data) {
+    for (SeriesData<Long> sample : data) {
+      add(sample.x, sample.value);
+    }
+  }
+
+  /**
+   * Drops the samples at and after the given index. Used by in-place reductions of the buffer.
+   */
+  public void truncate(int size) {
+    assert size <= mySize;
+    mySize = size;
+  }
+
+  public void clear() {
+    mySize = 0;
+  }
+
+  /**
+   * Replaces the content of this buffer with a copy of the content of {@code other}.
+   */
+  public void copyFrom(@NotNull SeriesDataBuffer other) {
+    if (myX.length < other.mySize) {
+      myX = new long[other.mySize];
+      myValues = new long[other.mySize];
+    }
+    System.arraycopy(other.myX, 0, myX, 0, other.mySize);
+    System.arraycopy(other.myValues, 0, myValues, 0, other.mySize);
+    mySize = other.mySize;
+  }
+
+  /**
+   * Returns a new list of boxed samples, for callers of the {@link SeriesData} based APIs.
+   */
+  @NotNull
+  public List<SeriesData<Long>> toSeriesDataList() {
+    List<SeriesData<Long>> data = new ArrayList<>(mySize);
+    for (int i = 0; i < mySize; i++) {
+      data.add(new SeriesData<>(myX[i], myValues[i]));
+    }
+    return data;
+  }
+}
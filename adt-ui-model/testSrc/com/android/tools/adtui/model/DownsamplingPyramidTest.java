@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class DownsamplingPyramidTest {
+  @Test
+  public void smallRangesAreNotDownsampled() {
+    DownsamplingPyramid pyramid = new DownsamplingPyramid();
+    pyramid.update(createData(0, 100));
+
+    SeriesDataBuffer result = new SeriesDataBuffer();
+    pyramid.getDataForRange(10, 20, 100, result);
+    // The samples just outside of the range are included, so lines reach the edges of the range.
+    assertThat(result.size()).isEqualTo(13);
+    assertThat(result.getX(0)).isEqualTo(9L);
+    assertThat(result.getX(12)).isEqualTo(21L);
+    assertThat(result.getValue(12)).isEqualTo(getValue(21));
+  }
+
+  @Test
+  public void downsamplingKeepsPeaks() {
+    SeriesDataBuffer data = createData(0, 1000);
+    data.set(500, 500, 1000);
+    data.set(700, 700, -1000);
+    DownsamplingPyramid pyramid = new DownsamplingPyramid();
+    pyramid.update(data);
+
+    SeriesDataBuffer result = new SeriesDataBuffer();
+    pyramid.getDataForRange(0, 999, 100, result);
+    assertThat(result.size()).isAtMost(100);
+    boolean hasMax = false;
+    boolean hasMin = false;
+    for (int i = 0; i < result.size(); i++) {
+      if (i > 0) {
+        assertThat(result.getX(i)).isGreaterThan(result.getX(i - 1));
+      }
+      hasMax |= result.getX(i) == 500 && result.getValue(i) == 1000;
+      hasMin |= result.getX(i) == 700 && result.getValue(i) == -1000;
+    }
+    assertThat(hasMax).isTrue();
+    assertThat(hasMin).isTrue();
+  }
+
+  @Test
+  public void incrementalUpdatesMatchFullBuild() {
+    DownsamplingPyramid incremental = new DownsamplingPyramid();
+    // Simulate a streaming query window which covers all the data received so far, plus some overlap.
+    for (int end = 10; end <= 1000; end += 7) {
+      incremental.update(createData(Math.max(0, end - 50), end));
+    }
+    incremental.update(createData(0, 1000));
+    DownsamplingPyramid full = new DownsamplingPyramid();
+    full.update(createData(0, 1000));
+    assertThat(incremental.size()).isEqualTo(1000);
+
+    SeriesDataBuffer expected = new SeriesDataBuffer();
+    SeriesDataBuffer actual = new SeriesDataBuffer();
+    for (int maxPoints : new int[]{10, 64, 300, 2000}) {
+      full.getDataForRange(100, 900, maxPoints, expected);
+      incremental.getDataForRange(100, 900, maxPoints, actual);
+      assertThat(actual.toSeriesDataList()).isEqualTo(expected.toSeriesDataList());
+    }
+  }
+
+  @Test
+  public void updateWithDisjointDataRebuilds() {
+    DownsamplingPyramid pyramid = new DownsamplingPyramid();
+    pyramid.update(createData(0, 100));
+    pyramid.update(createData(500, 600));
+    assertThat(pyramid.size()).isEqualTo(100);
+
+    SeriesDataBuffer result = new SeriesDataBuffer();
+    pyramid.getDataForRange(0, 1000, 1000, result);
+    assertThat(result.getX(0)).isEqualTo(500L);
+  }
+
+  @NotNull
+  private static SeriesDataBuffer createData(int from, int to) {
+    SeriesDataBuffer data = new SeriesDataBuffer();
+    for (int x = from; x < to; x++) {
+      data.add(x, getValue(x));
+    }
+    return data;
+  }
+
+  private static long getValue(long x) {
+    return (x * 31) % 17;
+  }
+}
@@ -67,4 +67,51 @@ public class RangedSeriesTest {
     }
     assertThat(rangedSeries.getSeries()).hasSize(100);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGetSeriesBuffer() {
+    Range queryRange = new Range(0, 100);
+    int[] queryCount = new int[1];
+    LongDataSeries testSeries = (range, buffer) -> {
+      queryCount[0]++;
+      buffer.clear();
+      for (long x = (long)range.getMin(); x < range.getMax(); x++) {
+        buffer.add(x, x * 2);
+      }
+    };
+    RangedContinuousSeries rangedSeries = new RangedContinuousSeries("test", queryRange, new Range(0, 200), testSeries);
+
+    SeriesDataBuffer buffer = rangedSeries.getSeriesBuffer();
+    assertThat(buffer.size()).isEqualTo(100);
+    assertThat(buffer.getX(10)).isEqualTo(10L);
+    assertThat(buffer.getValue(10)).isEqualTo(20L);
+
+    // The buffer is reused and not refilled while the query range does not change.
+    assertThat(rangedSeries.getSeriesBuffer()).isSameAs(buffer);
+    assertThat(queryCount[0]).isEqualTo(1);
+
+    queryRange.setMin(50);
+    assertThat(rangedSeries.getSeriesBuffer()).isSameAs(buffer);
+    assertThat(buffer.size()).isEqualTo(50);
+    assertThat(queryCount[0]).isEqualTo(2);
+
+    // The boxed API is still available.
+    assertThat(rangedSeries.getSeries()).hasSize(50);
+    assertThat(rangedSeries.getSeries().get(0).value).isEqualTo(100L);
+  }
+
+  @Test
+  public void testGetSeriesBufferOfLegacySeries() {
+    Range queryRange = new Range(0, 100);
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    for (int i = 0; i < 50; i++) {
+      testSeries.add(i, (long)i * 3);
+    }
+    RangedContinuousSeries rangedSeries = new RangedContinuousSeries("test", queryRange, new Range(0, 200), testSeries);
+
+    SeriesDataBuffer buffer = rangedSeries.getSeriesBuffer();
+    assertThat(buffer.size()).isEqualTo(50);
+    assertThat(buffer.getX(49)).isEqualTo(49L);
+    assertThat(buffer.getValue(49)).isEqualTo(147L);
+  }
+}
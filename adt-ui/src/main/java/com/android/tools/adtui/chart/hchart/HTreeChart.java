@@ -45,6 +45,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
@@ -190,7 +191,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
    * @param selectedNode the new selected node, or null if no node is being selected.
    */
   public void setSelectedNode(@Nullable N selectedNode) {
-    if (selectedNode != mySelectedNode) {
+    if (!Objects.equals(selectedNode, mySelectedNode)) {
       myDataUpdated = true;
       mySelectedNode = selectedNode;
     }
@@ -285,7 +286,8 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
         drawingArea.y,
         Math.min(drawingArea.x + drawingArea.width, dim.width - myNodeXPaddingPx) - Math.max(0, drawingArea.x),
         drawingArea.height);
-      myRenderer.render(g, node, drawingArea, clampedDrawingArea, node == myFocusedNode, mySelectedNode != null && node != mySelectedNode);
+      myRenderer.render(g, node, drawingArea, clampedDrawingArea, Objects.equals(node, myFocusedNode),
+                        mySelectedNode != null && !node.equals(mySelectedNode));
     }
 
     g.dispose();
@@ -421,7 +423,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
       @Override
       public void mouseMoved(MouseEvent e) {
         N node = getNodeAt(e.getPoint());
-        if (node != myFocusedNode) {
+        if (!Objects.equals(node, myFocusedNode)) {
           myDataUpdated = true;
           myFocusedNode = node;
           eventSourceRepaint(e);
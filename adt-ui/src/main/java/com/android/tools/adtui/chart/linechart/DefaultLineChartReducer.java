@@ -16,6 +16,7 @@
 package com.android.tools.adtui.chart.linechart;
 
 import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.SeriesDataBuffer;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.geom.Path2D;
@@ -66,6 +67,34 @@ class DefaultLineChartReducer implements LineChartReducer {
     return reduced;
   }
 
+  /**
+   * Same reduction as {@link #reduceData(List, LineConfig)}, done in place.
+   */
+  @Override
+  public void reduceData(@NotNull SeriesDataBuffer data, @NotNull LineConfig config) {
+    if (config.getDataBucketInterval() > 0) {
+      return;
+    }
+
+    int reducedSize = 0;
+    for (int i = 0; i < data.size(); i++) {
+      long value = data.getValue(i);
+      while (reducedSize >= 2) {
+        long preLast = data.getValue(reducedSize - 2);
+        long last = data.getValue(reducedSize - 1);
+
+        if (preLast == last && (config.isStepped() || last == value)) {
+          reducedSize--;
+        } else {
+          break;
+        }
+      }
+      // The reduced samples are never ahead of the one being read, so they can be written in place.
+      data.set(reducedSize++, data.getX(i), value);
+    }
+    data.truncate(reducedSize);
+  }
+
   /**
   * The basic idea behind this algorithm is to reduce number of points to available pixels.
   * For every pixel it draws 4 points: the first point, the last point,
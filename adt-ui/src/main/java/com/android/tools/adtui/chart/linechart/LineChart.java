@@ -22,7 +22,7 @@ import static java.awt.BasicStroke.JOIN_MITER;
 import com.android.tools.adtui.AnimatedComponent;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.RangedContinuousSeries;
-import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.SeriesDataBuffer;
 import com.google.common.annotations.VisibleForTesting;
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -40,7 +40,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 
 public class LineChart extends AnimatedComponent {
@@ -62,6 +61,12 @@ public class LineChart extends AnimatedComponent {
    */
   private static final double BUCKET_BAR_PERCENTAGE = 0.7;
 
+  /**
+   * Maximum number of points drawn per horizontal pixel. Series with more samples in the visible range are downsampled, keeping the
+   * minimum and maximum of each pixel.
+   */
+  private static final int MAX_POINTS_PER_PIXEL = 2;
+
   @NotNull final LineChartModel myModel;
 
   /**
@@ -107,6 +112,11 @@ public class LineChart extends AnimatedComponent {
 
   private boolean myRedraw;
 
+  /**
+   * The width the lines were last computed for. The lines are downsampled for a given width, so they need to be recomputed on resize.
+   */
+  private int myRedrawWidth;
+
   /**
    * If true, extends the last available data point of each series all the way to the right to fill any remaining gap.
    */
@@ -124,6 +134,12 @@ public class LineChart extends AnimatedComponent {
 
   private Map<LineConfig, DashInfo> myDashInfoCache = new HashMap<>();
 
+  /**
+   * Buffers reused across redraws, so that drawing the lines does not allocate per sample.
+   */
+  @NotNull private final SeriesDataBuffer myLineBuffer = new SeriesDataBuffer();
+  @NotNull private final SeriesDataBuffer myStackedBuffer = new SeriesDataBuffer();
+
   @VisibleForTesting
   public LineChart(@NotNull LineChartModel model, @NotNull LineChartReducer reducer) {
     myLinePaths = new ArrayList<>();
@@ -179,9 +195,9 @@ public class LineChart extends AnimatedComponent {
   private void redraw(@NotNull Dimension dim) {
     long duration = System.nanoTime();
 
-    // Store the last stacked series to use them to increment the Y values
+    // Store the last stacked series in myStackedBuffer to use them to increment the Y values
     // of the current stacked series.
-    List<SeriesData<Long>> lastStackedSeries = null;
+    boolean hasStackedSeries = false;
 
     Deque<Path2D> orderedPaths = new ArrayDeque<>(myLinesConfig.size());
     Deque<RangedContinuousSeries> orderedSeries = new ArrayDeque<>(myLinesConfig.size());
@@ -193,11 +209,19 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      SeriesDataBuffer seriesBuffer;
+      if (config.isStacked() || config.getDataBucketInterval() > 0) {
+        // Stacked series are added sample by sample and each bar needs its own sample, so they are not downsampled.
+        seriesBuffer = ranged.getSeriesBuffer();
+      }
+      else {
+        seriesBuffer = ranged.getDownsampledSeriesBuffer(Math.max(1, dim.width) * MAX_POINTS_PER_PIXEL);
+      }
       if (config.isStacked()) {
-        if (lastStackedSeries == null) {
-          // Create a new list of SeriesData to prevent modifying the backing data series, which could be cached.
-          lastStackedSeries = seriesList.stream().map(data -> new SeriesData<>(data.x, data.value)).collect(Collectors.toList());
+        if (!hasStackedSeries) {
+          // Copy the data to prevent modifying the buffer of the series, which could be cached.
+          myStackedBuffer.copyFrom(seriesBuffer);
+          hasStackedSeries = true;
         }
         else {
           // If the current series is stacked, increment its value by the value of the last stacked
@@ -205,11 +229,11 @@ public class LineChart extends AnimatedComponent {
           // points than the last stacked series (meaning that the last one was populated in a
           // prior iteration). In this case, ignore the new points (i.e. we take only the intersection
           // across all series).
-          for (int i = 0; i < seriesList.size() && i < lastStackedSeries.size(); ++i) {
+          for (int i = 0; i < seriesBuffer.size() && i < myStackedBuffer.size(); ++i) {
             // An assumption is made here that the x values across series are aligned.
-            lastStackedSeries.get(i).value += seriesList.get(i).value;
+            myStackedBuffer.setValue(i, myStackedBuffer.getValue(i) + seriesBuffer.getValue(i));
           }
-          seriesList = lastStackedSeries;
+          seriesBuffer = myStackedBuffer;
         }
       }
 
@@ -223,19 +247,20 @@ public class LineChart extends AnimatedComponent {
       double firstXd = 0f;
       // Actual value of first point
       double firstX = 0;
-      seriesList = myReducer.reduceData(seriesList, config);
+      // Reduce a copy, as the reducer works in place.
+      myLineBuffer.copyFrom(seriesBuffer);
+      myReducer.reduceData(myLineBuffer, config);
       double xBucketInterval = config.getDataBucketInterval() / xLength;
       double xBucketBarWidth = xBucketInterval * BUCKET_BAR_PERCENTAGE;
       // If we are a stepped chart or bar chart, we don't need to worry about start and end points' Y value.
       boolean optimizeYZooming = !config.isStepped() && xBucketInterval == 0;
-      for (int i = 0; i < seriesList.size(); i++) {
-        SeriesData<Long> data = seriesList.get(i);
-        SeriesData<Long> dataNext = seriesList.get(i + 1 == seriesList.size() ? i : i + 1);
-        SeriesData<Long> dataPrev = seriesList.get(i - 1 < 0 ? i : i - 1);
+      for (int i = 0; i < myLineBuffer.size(); i++) {
+        int next = i + 1 == myLineBuffer.size() ? i : i + 1;
+        int prev = i - 1 < 0 ? i : i - 1;
         // TODO: refactor to allow different types (e.g. double)
-        double xd = (data.x - xMin) / xLength;
+        double xd = (myLineBuffer.getX(i) - xMin) / xLength;
         // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
-        double yd = 1 - (data.value - yMin) / yLength;
+        double yd = 1 - (myLineBuffer.getValue(i) - yMin) / yLength;
 
         // This change significantly speeds up drawing when zoomed into the chart. Without this change a line could extend
         // a few thousand pixels off the screen in both directions. The fill/draw function would then spend a lot of time
@@ -252,14 +277,14 @@ public class LineChart extends AnimatedComponent {
 
         double originalXd = xd;
         if (xd < 0) {
-          double xdNext = (dataNext.x - xMin) / xLength;
+          double xdNext = (myLineBuffer.getX(next) - xMin) / xLength;
           // If our next point is also offscreen then ignore this point and continue.
           if (xdNext < 0) {
             continue;
           }
 
           //Get the Y offset of our next point.
-          double ydNext = 1 - (dataNext.value - yMin) / yLength;
+          double ydNext = 1 - (myLineBuffer.getValue(next) - yMin) / yLength;
 
           // If we are a dash line we get the closest normalized point to are graph otherwise we just set our point to 0.
           double newPosition = 0;
@@ -275,13 +300,13 @@ public class LineChart extends AnimatedComponent {
           xd = newPosition;
         }
         else if (xd > 1) {
-          double xdPrev = (dataPrev.x - xMin) / xLength;
+          double xdPrev = (myLineBuffer.getX(prev) - xMin) / xLength;
           if (xdPrev > 1) {
             break;
           }
           if (optimizeYZooming) {
             double ratio = (1 - xdPrev) / (xd - xdPrev);
-            double ydPrev = 1 - (dataPrev.value - yMin) / yLength;
+            double ydPrev = 1 - (myLineBuffer.getValue(prev) - yMin) / yLength;
             yd = (1 - ratio) * ydPrev + (ratio * yd);
           }
           xd = 1;
@@ -289,7 +314,7 @@ public class LineChart extends AnimatedComponent {
 
         if (path.getCurrentPoint() == null) {
           firstXd = xd;
-          firstX = data.x;
+          firstX = myLineBuffer.getX(i);
           // If for bucket data, because the previous ending x value is next data point's starting
           // x value, i.e. (xd + interval, 1), move the path start point to (xd, 1).
           // Otherwise, move the path start point to (xd, yd).
@@ -386,8 +411,9 @@ public class LineChart extends AnimatedComponent {
       myLastCount = now;
     }
     myDraws++;
-    if (myRedraw) {
+    if (myRedraw || myRedrawWidth != dim.width) {
       myRedraw = false;
+      myRedrawWidth = dim.width;
       redraw(dim);
       myRedraws++;
     }
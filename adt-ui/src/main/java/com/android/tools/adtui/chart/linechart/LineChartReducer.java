@@ -16,6 +16,7 @@
 package com.android.tools.adtui.chart.linechart;
 
 import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.SeriesDataBuffer;
 
 import java.awt.geom.Path2D;
 import java.util.List;
@@ -31,6 +32,16 @@ public interface LineChartReducer {
    */
   List<SeriesData<Long>> reduceData(List<SeriesData<Long>> data, LineConfig config);
 
+  /**
+   * Same as {@link #reduceData(List, LineConfig)}, but reduces the data of the given buffer in place.
+   * The default implementation goes through the {@link SeriesData} based method, implementations should override it to avoid allocations.
+   */
+  default void reduceData(SeriesDataBuffer data, LineConfig config) {
+    List<SeriesData<Long>> reduced = reduceData(data.toSeriesDataList(), config);
+    data.clear();
+    data.addAll(reduced);
+  }
+
   /**
    * Reduces the given path in a pixel level, i.e when dimensions are available.
    * The result shouldn't affect the looking of the line when it's drawn.
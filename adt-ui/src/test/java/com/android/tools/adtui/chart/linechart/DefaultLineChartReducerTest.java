@@ -16,6 +16,7 @@
 package com.android.tools.adtui.chart.linechart;
 
 import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.SeriesDataBuffer;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
@@ -66,6 +67,25 @@ public class DefaultLineChartReducerTest {
     assertSeriesEquals(expected, result);
   }
 
+  @Test
+  public void reduceDataBuffer() {
+    SeriesDataBuffer data = new SeriesDataBuffer();
+    long[] values = {10, 10, 13, 13, 13, 13, 5, 5};
+    for (int i = 0; i < values.length; i++) {
+      data.add(i, values[i]);
+    }
+    myReducer.reduceData(data, myConfig);
+
+    List<SeriesData<Long>> expected = new ImmutableList.Builder<SeriesData<Long>>()
+      .add(new SeriesData<>(0, 10L))
+      .add(new SeriesData<>(1, 10L))
+      .add(new SeriesData<>(2, 13L))
+      .add(new SeriesData<>(5, 13L))
+      .add(new SeriesData<>(6, 5L))
+      .add(new SeriesData<>(7, 5L)).build();
+    assertSeriesEquals(expected, data.toSeriesDataList());
+  }
+
   @Test
   public void reduceDataForSteppedLine() {
     List<SeriesData<Long>> data = new ImmutableList.Builder<SeriesData<Long>>()
@@ -173,6 +173,11 @@ public final class StudioFlags {
     PROFILER, "custom.event.visualization", "Enable Profiler Custom Event Visualization",
     "When enabled, profiler will track and display events defined through developer APIs",
     false);
+
+  public static final Flag<Boolean> PROFILER_IN_MEMORY_EVENT_STORE = Flag.create(
+    PROFILER, "in.memory.event.store", "Keep profiler events in memory",
+    "Store the events of the unified pipeline parsed in memory, spilling the oldest ones to disk, instead of in the SQLite database.",
+    false);
   //endregion
 
   //region ML Kit
@@ -358,6 +363,11 @@ public final class StudioFlags {
     "When running or debugging an Android process, output the logcat output of the process in the console window.",
     true);
 
+  public static final Flag<Boolean> RUNDEBUG_LOGCAT_BINARY_FORMAT_ENABLED = Flag.create(
+    RUNDEBUG, "logcat.binary.format.enabled", "Read logcat in binary format",
+    "On Android N or newer, read the binary output of 'logcat -B' instead of parsing the text output of 'logcat -v long'.",
+    false);
+
   public static final Flag<Boolean> RUNDEBUG_ANDROID_BUILD_BUNDLE_ENABLED = Flag.create(
     RUNDEBUG, "android.bundle.build.enabled", "Enable the Build Bundle action",
     "If enabled, the \"Build Bundle(s)\" menu item is enabled. " +
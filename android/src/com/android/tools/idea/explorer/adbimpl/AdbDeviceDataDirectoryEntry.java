@@ -250,10 +250,13 @@ public class AdbDeviceDataDirectoryEntry extends AdbDeviceForwardingFileEntry {
       //
       // We do this directly instead of doing it as a fallback to attempting a regular push
       // because of https://code.google.com/p/android/issues/detail?id=241157.
-      return myDevice.getAdbFileTransfer().uploadFileViaTempLocation(localPath,
-                                                                     AdbPathUtil.resolve(getFullPath(), fileName),
-                                                                     progress,
-                                                                     myPackageName);
+      String remotePath = AdbPathUtil.resolve(getFullPath(), fileName);
+      ListenableFuture<Void> futureUpload =
+        myDevice.getAdbFileTransfer().uploadFileViaTempLocation(localPath, remotePath, progress, myPackageName);
+      return myDevice.getTaskExecutor().transform(futureUpload, aVoid -> {
+        myDevice.getAdbFileListing().invalidate(getFullPath());
+        return aVoid;
+      });
     }
   }
 }
\ No newline at end of file
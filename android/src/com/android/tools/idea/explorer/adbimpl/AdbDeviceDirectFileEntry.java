@@ -64,23 +64,23 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
   @Override
   public ListenableFuture<Void> delete() {
     if (isDirectory()) {
-      return myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs);
+      return invalidateListing(myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs));
     }
     else {
-      return myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs);
+      return invalidateListing(myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs));
     }
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewFile(@NotNull String fileName) {
-    return myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs);
+    return invalidateListing(myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs));
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewDirectory(@NotNull String directoryName) {
-    return myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs);
+    return invalidateListing(myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs));
   }
 
   @NotNull
@@ -125,7 +125,7 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
 
     ListenableFuture<Boolean> futureShouldCreateRemote = myDevice.getTaskExecutor().executeAsync(this::isDeviceSuAndNotRoot);
 
-    return myDevice.getTaskExecutor().transformAsync(futureShouldCreateRemote, shouldCreateRemote -> {
+    return invalidateListing(myDevice.getTaskExecutor().transformAsync(futureShouldCreateRemote, shouldCreateRemote -> {
       assert shouldCreateRemote != null;
       if (shouldCreateRemote) {
         ListenableFuture<Void> futureTouchFile = myDevice.getAdbFileOperations().touchFileAsDefaultUser(remotePath);
@@ -142,6 +142,17 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
         // Regular upload if root or su not supported (i.e. user devices)
         return myDevice.getAdbFileTransfer().uploadFile(localPath, remotePath, progress);
       }
+    }));
+  }
+
+  /**
+   * Drops the cached listings of this entry once the given operation modifying it completes successfully.
+   */
+  @NotNull
+  private ListenableFuture<Void> invalidateListing(@NotNull ListenableFuture<Void> futureOperation) {
+    return myDevice.getTaskExecutor().transform(futureOperation, aVoid -> {
+      myDevice.getAdbFileListing().invalidate(getFullPath());
+      return aVoid;
     });
   }
 
@@ -20,33 +20,74 @@ import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.android.tools.idea.concurrency.FutureCallbackExecutor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static com.android.ddmlib.FileListingService.FILE_SEPARATOR;
 import static com.android.ddmlib.FileListingService.LS_LD_PATTERN;
 import static com.android.ddmlib.FileListingService.LS_L_PATTERN;
 
+/**
+ * Lists the entries of the file system of a device with shell commands.
+ *
+ * <p>To limit the number of shell commands, which are slow on devices connected over USB:
+ * <ul>
+ *   <li>Listing a directory with "run-as", i.e. a directory of an application, also lists its subdirectories up to
+ *   {@link #PREFETCH_DEPTH} levels below it in the same shell command. The listings of the subdirectories are kept until they are
+ *   requested, for at most {@link #CACHE_EXPIRATION_SECONDS} seconds.</li>
+ *   <li>Determining if a symbolic link targets a directory resolves all the symbolic links of the last listing of its parent
+ *   directory in one shell command. The results are kept until the parent directory is listed again.</li>
+ * </ul>
+ * The cached listings of a directory tree are dropped by {@link #invalidate(String)} when the tree is modified.
+ */
 public class AdbFileListing {
   @NotNull public static final Logger LOGGER = Logger.getInstance(AdbFileListing.class);
   @NotNull private static final Pattern BACKSLASH = Pattern.compile("\\", Pattern.LITERAL);
+  @NotNull private static final String DIRECTORY_LINE_MARKER = "DIR-DIR-DIR-DIR ";
+  @NotNull private static final String ERROR_LINE_MARKER = "ERR-ERR-ERR-ERR";
+  private static final int PREFETCH_DEPTH = 2;
+  private static final long CACHE_EXPIRATION_SECONDS = 60;
+  /** Maximum length of the paths of the symbolic links resolved by a single shell command */
+  private static final int MAX_LINK_PATHS_LENGTH = 1024;
 
   @NotNull private final IDevice myDevice;
   @NotNull private AdbDeviceCapabilities myDeviceCapabilities;
   @NotNull private final FutureCallbackExecutor myExecutor;
   @NotNull private final AdbFileListingEntry myRoot;
 
+  /** Listings of subdirectories fetched along with an ancestor directory and not requested yet, keyed by "run-as" package and path */
+  @NotNull private final Cache<Pair<String, String>, List<AdbFileListingEntry>> myPrefetchedChildren =
+    CacheBuilder.newBuilder().expireAfterWrite(CACHE_EXPIRATION_SECONDS, TimeUnit.SECONDS).build();
+  /** Whether symbolic links target a directory, keyed by "run-as" package and path */
+  @NotNull private final Cache<Pair<String, String>, Boolean> myDirectoryLinks =
+    CacheBuilder.newBuilder().expireAfterWrite(CACHE_EXPIRATION_SECONDS, TimeUnit.SECONDS).build();
+  /** Symbolic links of the last listing of directories that have not been resolved yet, keyed by "run-as" package and directory path */
+  @NotNull private final Map<Pair<String, String>, List<AdbFileListingEntry>> myUnresolvedLinks = new ConcurrentHashMap<>();
+
   public AdbFileListing(@NotNull IDevice device, @NotNull AdbDeviceCapabilities deviceCapabilities, @NotNull Executor taskExecutor) {
     myDevice = device;
     myDeviceCapabilities = deviceCapabilities;
@@ -68,24 +109,140 @@ public class AdbFileListing {
   public ListenableFuture<List<AdbFileListingEntry>> getChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
                                                                       @Nullable String runAs) {
     return myExecutor.executeAsync(() -> {
-      // Run "ls -l" command and process matching output lines
-      String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(parentEntry.getFullPath()).build(); //$NON-NLS-1$
-
-      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
-      boolean escaping = myDeviceCapabilities.hasEscapingLs();
-
-      List<AdbFileListingEntry> entries = commandResult.getOutput()
-        .stream()
-        .map(line -> processLsOutputLine(line, escaping, parentEntry))
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-      if (entries.isEmpty() && commandResult.isError()) {
-        commandResult.throwIfError();
+      String path = parentEntry.getFullPath();
+      Pair<String, String> key = Pair.create(runAs, path);
+      List<AdbFileListingEntry> entries = myPrefetchedChildren.getIfPresent(key);
+      if (entries != null) {
+        // A prefetched listing is only used once, so that listing a directory again gets its current content
+        myPrefetchedChildren.invalidate(key);
+      }
+      else if (runAs != null) {
+        entries = listDirectoryTree(path, runAs);
+      }
+      else {
+        entries = listDirectory(path, null);
       }
+
+      recordUnresolvedLinks(path, runAs, entries);
       return entries;
     });
   }
 
+  /**
+   * Drops the cached listings and symbolic link resolutions of the given path and of all the paths below it.
+   * Must be called when the directory tree at {@code path} is modified.
+   */
+  public void invalidate(@NotNull String path) {
+    String prefix = path.endsWith(FILE_SEPARATOR) ? path : path + FILE_SEPARATOR;
+    Predicate<Pair<String, String>> isInTree = key -> key.getSecond().equals(path) || key.getSecond().startsWith(prefix);
+    myPrefetchedChildren.asMap().keySet().removeIf(isInTree);
+    myDirectoryLinks.asMap().keySet().removeIf(isInTree);
+    myUnresolvedLinks.keySet().removeIf(isInTree);
+  }
+
+  @NotNull
+  private List<AdbFileListingEntry> listDirectory(@NotNull String path, @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, AdbShellCommandException {
+    // Run "ls -l" command and process matching output lines
+    String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(path).build(); //$NON-NLS-1$
+
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+    boolean escaping = myDeviceCapabilities.hasEscapingLs();
+
+    List<AdbFileListingEntry> entries = processLsOutputLines(commandResult.getOutput(), escaping, path);
+    if (entries.isEmpty() && commandResult.isError()) {
+      commandResult.throwIfError();
+    }
+    return entries;
+  }
+
+  /**
+   * Lists the given directory and its subdirectories up to {@link #PREFETCH_DEPTH} levels below it with a single shell command.
+   * The listings of the subdirectories are cached, and the listing of the directory is returned.
+   */
+  @NotNull
+  private List<AdbFileListingEntry> listDirectoryTree(@NotNull String path, @NotNull String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, AdbShellCommandException {
+    // Run "ls -l" on the directory and on the subdirectories matching "*/", "*/*/", etc. Each listing is preceded by a line
+    // containing the directory marker and the path of the directory, and followed by the error marker if the "ls" command fails.
+    AdbShellCommandBuilder commandBuilder = getCommand(runAs, "for d in"); //$NON-NLS-1$
+    String pattern = "";
+    for (int depth = 0; depth <= PREFETCH_DEPTH; depth++) {
+      commandBuilder.withText(" ").withDirectoryEscapedPath(path).withText(pattern);
+      pattern += "*" + FILE_SEPARATOR;
+    }
+    String command = commandBuilder
+      .withText("; do echo \"" + DIRECTORY_LINE_MARKER + "$d\"; ls -l \"$d\" || echo " + ERROR_LINE_MARKER + "; done") //$NON-NLS-1$
+      .build();
+
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommandNoErrorCheck(myDevice, command);
+    boolean escaping = myDeviceCapabilities.hasEscapingLs();
+
+    // Split the output in the lines of each directory
+    List<String> otherLines = new ArrayList<>();
+    Map<String, List<String>> directoryLines = new LinkedHashMap<>();
+    List<String> currentLines = otherLines;
+    for (String line : commandResult.getOutput()) {
+      line = StringUtil.trimEnd(line, "\r");
+      if (line.startsWith(DIRECTORY_LINE_MARKER)) {
+        currentLines = new ArrayList<>();
+        directoryLines.put(getDirectoryPath(line.substring(DIRECTORY_LINE_MARKER.length())), currentLines);
+      }
+      else {
+        currentLines.add(line);
+      }
+    }
+
+    // The output has no directory marker if the command did not run, e.g. because "run-as" failed
+    List<String> lines = directoryLines.remove(path);
+    boolean isError = lines == null || lines.remove(ERROR_LINE_MARKER);
+    if (lines == null) {
+      lines = otherLines;
+    }
+    List<AdbFileListingEntry> entries = processLsOutputLines(lines, escaping, path);
+    if (entries.isEmpty() && isError) {
+      new AdbShellCommandResult(command, lines, true).throwIfError();
+    }
+
+    directoryLines.forEach((directoryPath, subdirectoryLines) -> {
+      // Subdirectories that can not be listed are not cached, so that the error is reported when they are listed
+      if (!subdirectoryLines.contains(ERROR_LINE_MARKER)) {
+        myPrefetchedChildren.put(Pair.create(runAs, directoryPath), processLsOutputLines(subdirectoryLines, escaping, directoryPath));
+      }
+    });
+    return entries;
+  }
+
+  @NotNull
+  private static List<AdbFileListingEntry> processLsOutputLines(@NotNull List<String> lines, boolean escaping, @NotNull String parentPath) {
+    return lines
+      .stream()
+      .map(line -> processLsOutputLine(line, escaping, parentPath))
+      .filter(Objects::nonNull)
+      .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static String getDirectoryPath(@NotNull String path) {
+    return path.length() > 1 ? StringUtil.trimEnd(path, FILE_SEPARATOR) : path;
+  }
+
+  private void recordUnresolvedLinks(@NotNull String path, @Nullable String runAs, @NotNull List<AdbFileListingEntry> entries) {
+    List<AdbFileListingEntry> links = entries
+      .stream()
+      .filter(AdbFileListingEntry::isSymbolicLink)
+      .collect(Collectors.toList());
+
+    // The targets of the links may have changed since the previous listing
+    links.forEach(link -> myDirectoryLinks.invalidate(Pair.create(runAs, link.getFullPath())));
+    if (links.isEmpty()) {
+      myUnresolvedLinks.remove(Pair.create(runAs, path));
+    }
+    else {
+      myUnresolvedLinks.put(Pair.create(runAs, path), links);
+    }
+  }
+
   /**
    * Determine if a symlink entry points to a directory. This is a best effort process,
    * as the target of the symlink might not be accessible, in which case the future value
@@ -104,34 +261,87 @@ public class AdbFileListing {
       return Futures.immediateFuture(false);
     }
 
+    Pair<String, String> key = Pair.create(runAs, entry.getFullPath());
+    Boolean isDirectory = myDirectoryLinks.getIfPresent(key);
+    if (isDirectory != null) {
+      return Futures.immediateFuture(isDirectory);
+    }
+
     return myExecutor.executeAsync(() -> {
-      // We simply need to determine whether the referent is a directory or not.
-      // We do this by running `ls -ld ${link}/`.  If the referent exists and is a
-      // directory, we'll see the normal directory listing.  Otherwise, we'll see an
-      // error of some sort.
-      String command = getCommand(runAs, "ls -l -d ").withDirectoryEscapedPath(entry.getFullPath()).build();
-      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommandNoErrorCheck(myDevice, command);
+      // Resolve the link along with the other links of the last listing of its parent directory
+      List<AdbFileListingEntry> links = myUnresolvedLinks.remove(Pair.create(runAs, AdbPathUtil.getParentPath(entry.getFullPath())));
+      if (links != null) {
+        resolveDirectoryLinks(links, runAs);
+      }
 
-      // Look for at least one line matching the expected output
-      int lineCount = 0;
-      for (String line : commandResult.getOutput()) {
-        Matcher m = LS_LD_PATTERN.matcher(line);
-        if (m.matches()) {
-          if (lineCount > 0) {
-            // It is odd to have more than one line matching "ls -l -d"
-            LOGGER.warn(String.format("Unexpected additional output line matching result of ld -l -d: %s", line));
-          }
-          lineCount++;
+      Boolean result = myDirectoryLinks.getIfPresent(key);
+      if (result == null) {
+        result = isDirectoryLinkImpl(entry, runAs);
+        myDirectoryLinks.put(key, result);
+      }
+      return result;
+    });
+  }
+
+  private boolean isDirectoryLinkImpl(@NotNull AdbFileListingEntry entry, @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    // We simply need to determine whether the referent is a directory or not.
+    // We do this by running `ls -ld ${link}/`.  If the referent exists and is a
+    // directory, we'll see the normal directory listing.  Otherwise, we'll see an
+    // error of some sort.
+    String command = getCommand(runAs, "ls -l -d ").withDirectoryEscapedPath(entry.getFullPath()).build();
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommandNoErrorCheck(myDevice, command);
+
+    // Look for at least one line matching the expected output
+    int lineCount = 0;
+    for (String line : commandResult.getOutput()) {
+      Matcher m = LS_LD_PATTERN.matcher(line);
+      if (m.matches()) {
+        if (lineCount > 0) {
+          // It is odd to have more than one line matching "ls -l -d"
+          LOGGER.warn(String.format("Unexpected additional output line matching result of ld -l -d: %s", line));
         }
+        lineCount++;
       }
+    }
 
-      // All done
-      return lineCount > 0;
-    });
+    // All done
+    return lineCount > 0;
+  }
+
+  /**
+   * Determines which of the given symbolic links target a directory, with as few shell commands as possible.
+   */
+  private void resolveDirectoryLinks(@NotNull List<AdbFileListingEntry> links, @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    int start = 0;
+    while (start < links.size()) {
+      // Print the paths, with a trailing "/", of the links whose referent exists and is a directory
+      AdbShellCommandBuilder commandBuilder = getCommand(runAs, "for f in"); //$NON-NLS-1$
+      int end = start;
+      int pathsLength = 0;
+      do {
+        String path = links.get(end).getFullPath();
+        commandBuilder.withText(" ").withDirectoryEscapedPath(path);
+        pathsLength += path.length() + 1;
+        end++;
+      }
+      while (end < links.size() && pathsLength < MAX_LINK_PATHS_LENGTH);
+      String command = commandBuilder.withText("; do test -d \"$f\" && echo \"$f\"; done").build(); //$NON-NLS-1$
+
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommandNoErrorCheck(myDevice, command);
+      Set<String> directoryPaths = new HashSet<>();
+      commandResult.getOutput().forEach(line -> directoryPaths.add(StringUtil.trimEnd(line, "\r")));
+
+      for (AdbFileListingEntry link : links.subList(start, end)) {
+        myDirectoryLinks.put(Pair.create(runAs, link.getFullPath()), directoryPaths.contains(link.getFullPath() + FILE_SEPARATOR));
+      }
+      start = end;
+    }
   }
 
   @Nullable
-  private static AdbFileListingEntry processLsOutputLine(@NotNull String line, boolean escaping, @NotNull AdbFileListingEntry parentEntry) {
+  private static AdbFileListingEntry processLsOutputLine(@NotNull String line, boolean escaping, @NotNull String parentPath) {
     // no need to handle empty lines.
     if (line.isEmpty()) {
       return null;
@@ -197,7 +407,7 @@ public class AdbFileListing {
       info = "-> " + info; //$NON-NLS-1$;
     }
 
-    String path = AdbPathUtil.resolve(parentEntry.getFullPath(), name);
+    String path = AdbPathUtil.resolve(parentPath, name);
 
     // Create entry and add it to result
     return new AdbFileListingEntry(path,
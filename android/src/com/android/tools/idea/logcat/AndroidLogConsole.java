@@ -24,6 +24,7 @@ import com.android.tools.idea.ddms.actions.TerminateVMAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyConfigureLogcatHeaderAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyRestartAction;
 import com.intellij.diagnostic.logging.LogConsoleBase;
+import com.intellij.diagnostic.logging.LogFilter;
 import com.intellij.diagnostic.logging.LogFormatter;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.ui.ConsoleView;
@@ -109,6 +110,20 @@ public final class AndroidLogConsole extends LogConsoleBase {
     super.addMessage(line);
   }
 
+  /**
+   * Replays the messages of the device which pass the new filters, looked up by {@link AndroidLogcatView#refilter()} off the EDT, instead
+   * of filtering the whole text of the console again on the EDT.
+   */
+  @Override
+  public void onTextFilterChange() {
+    myView.refilter();
+  }
+
+  @Override
+  public void onFilterStateChange(LogFilter filter) {
+    myView.refilter();
+  }
+
   /**
    * Clear the current logs and replay all old messages. This is useful to do if the display
    * format of the logs have changed, for example.
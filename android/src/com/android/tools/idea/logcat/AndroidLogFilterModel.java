@@ -176,7 +176,7 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   public abstract String getSelectedLogLevelName();
 
   @Nullable
-  private LogFilter getSelectedLogLevelFilter() {
+  private AndroidLogLevelFilter getSelectedLogLevelFilter() {
     final String filterName = getSelectedLogLevelName();
     if (filterName != null) {
       for (AndroidLogLevelFilter logFilter : myLogLevelFilters) {
@@ -188,6 +188,28 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
     return null;
   }
 
+  /**
+   * Returns a query selecting the messages of the backlog of a device which may pass the filters, so that only those are replayed when
+   * the filters change. The messages replayed still go through {@link #processLine(String)}.
+   */
+  @NotNull
+  LogcatQuery createBacklogQuery() {
+    LogcatQuery.Builder builder = new LogcatQuery.Builder();
+
+    AndroidLogLevelFilter logLevelFilter = getSelectedLogLevelFilter();
+    if (logLevelFilter != null) {
+      builder.setMinLogLevel(logLevelFilter.myLogLevel);
+    }
+    builder.addLinePattern(myCustomPattern);
+
+    AndroidLogcatFilter configuredFilter = myConfiguredFilter;
+    if (configuredFilter != null) {
+      configuredFilter.configureQuery(builder);
+      builder.setFilter(configuredFilter);
+    }
+    return builder.build();
+  }
+
   @Override
   public boolean isFilterSelected(LogFilter filter) {
     return filter == getSelectedLogLevelFilter();
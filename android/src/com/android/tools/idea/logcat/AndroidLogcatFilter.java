@@ -33,4 +33,11 @@ public interface AndroidLogcatFilter {
    * Returns {@code true} if the current logcat message should be accepted, {@code false} otherwise.
    */
   boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel);
+
+  /**
+   * Describes the messages accepted by this filter to the given builder, so they can be looked up in the indexes of the backlog of a
+   * device. The filter is still applied to the messages found, so it may describe only part of what it accepts, or nothing.
+   */
+  default void configureQuery(@NotNull LogcatQuery.Builder builder) {
+  }
 }
@@ -18,6 +18,7 @@ package com.android.tools.idea.logcat;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
 import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatLongEpochMessageParser;
 import com.android.ddmlib.logcat.LogCatMessage;
@@ -29,6 +30,9 @@ import org.jetbrains.android.util.AndroidOutputReceiver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -37,7 +41,8 @@ import java.util.regex.Pattern;
  * logcat console.
  *
  * <p>This class expects the logcat format to be 'logcat -v long' (which prints out a header and then
- * 1+ lines of log text below, for each log message).
+ * 1+ lines of log text below, for each log message). The binary output of 'logcat -B' can be received with
+ * {@link #newBinaryOutputReceiver()}.
  */
 public final class AndroidLogcatReceiver extends AndroidOutputReceiver implements Disposable {
   /**
@@ -66,6 +71,18 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
   private int myDelayedNewlineCount;
 
   @Nullable private LogCatHeader myActiveHeader;
+  /**
+   * The headers of the messages received as binary in the same millisecond as the last one, in the order they were received.
+   */
+  private final List<LogCatHeader> myLastMillisecondHeaders = new ArrayList<>();
+  /**
+   * The header of the last message received as binary, while the messages received as text have not caught up with it.
+   */
+  @Nullable private LogCatHeader myResumeAfter;
+  /**
+   * The number of messages with the source of {@link #myResumeAfter} in its millisecond that are still to be dropped.
+   */
+  private int myResumeAfterCount;
   private int myLineIndex;
   private volatile boolean myCanceled;
 
@@ -77,6 +94,128 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
     myLogcatListener = listener;
   }
 
+  /**
+   * Returns a receiver which decodes the binary output of 'logcat -B' and processes the decoded messages like the ones received as text.
+   */
+  @NotNull
+  BinaryOutputReceiver newBinaryOutputReceiver() {
+    return new BinaryOutputReceiver();
+  }
+
+  /**
+   * Receives the binary output of 'logcat -B'. The receiver cancels itself when the output can not be decoded, for example because the
+   * shell merged an error message written as text in it (see {@link #hasFailed()}), as there is no way to find the start of the next
+   * entry.
+   */
+  final class BinaryOutputReceiver implements IShellOutputReceiver {
+    private final LogcatBinaryDecoder myDecoder = new LogcatBinaryDecoder(myDevice);
+    private volatile boolean myFailed;
+
+    @Override
+    public void addOutput(byte[] data, int offset, int length) {
+      if (isCancelled()) {
+        return;
+      }
+      try {
+        myDecoder.decode(data, offset, length, AndroidLogcatReceiver.this::processEntry);
+      }
+      catch (IllegalStateException exception) {
+        myFailed = true;
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return myCanceled || myFailed;
+    }
+
+    /**
+     * Returns true if the output could not be decoded. The messages received after the last decoded one should then be read as text,
+     * see {@link #resumeAfterLastMessage()}.
+     */
+    boolean hasFailed() {
+      return myFailed;
+    }
+  }
+
+  /**
+   * Drops the messages received as text up to the last message received, so that the messages already received as binary are not
+   * received twice when the device is read as text after a {@link BinaryOutputReceiver} failed.
+   * <p>
+   * The text output has a millisecond precision, so the last message is found among the messages of its millisecond by its pid, tid and
+   * tag. The messages of that millisecond that come after it are new.
+   */
+  void resumeAfterLastMessage() {
+    myResumeAfter = myActiveHeader;
+    myResumeAfterCount = 0;
+    if (myResumeAfter != null) {
+      for (LogCatHeader header : myLastMillisecondHeaders) {
+        if (isSameSource(header, myResumeAfter)) {
+          myResumeAfterCount++;
+        }
+      }
+    }
+    myLastMillisecondHeaders.clear();
+    myActiveHeader = null;
+  }
+
+  /**
+   * Returns true if the message read as text with the given header was already received as binary, see {@link #resumeAfterLastMessage()}.
+   */
+  private boolean isAlreadyReceived(@NotNull LogCatHeader header) {
+    assert myResumeAfter != null;
+    Instant timestamp = header.getTimestampInstant();
+    Instant lastTimestamp = myResumeAfter.getTimestampInstant();
+    if (timestamp == null || lastTimestamp == null) {
+      return false;
+    }
+    long millis = timestamp.toEpochMilli();
+    long lastMillis = lastTimestamp.toEpochMilli();
+    if (millis != lastMillis) {
+      return millis < lastMillis;
+    }
+    if (myResumeAfterCount > 0 && isSameSource(header, myResumeAfter)) {
+      myResumeAfterCount--;
+      return true;
+    }
+    // The other messages of the millisecond were received before the last one
+    return myResumeAfterCount > 0;
+  }
+
+  private static boolean isSameSource(@NotNull LogCatHeader header, @NotNull LogCatHeader other) {
+    return header.getPid() == other.getPid() && header.getTid() == other.getTid() && header.getTag().equals(other.getTag());
+  }
+
+  private static boolean isSameMillisecond(@NotNull LogCatHeader header, @NotNull LogCatHeader other) {
+    Instant timestamp = header.getTimestampInstant();
+    Instant otherTimestamp = other.getTimestampInstant();
+    return timestamp != null && otherTimestamp != null && timestamp.toEpochMilli() == otherTimestamp.toEpochMilli();
+  }
+
+  private void processEntry(@NotNull LogCatHeader header, @NotNull List<String> lines) {
+    if (!myLastMillisecondHeaders.isEmpty() && !isSameMillisecond(myLastMillisecondHeaders.get(0), header)) {
+      myLastMillisecondHeaders.clear();
+    }
+    myLastMillisecondHeaders.add(header);
+    myStackTraceExpander.reset();
+    myActiveHeader = header;
+    myLineIndex = 0;
+    for (String line : lines) {
+      if (line.isEmpty()) {
+        // Like the user newlines of the text output, which do not go through the stack trace expander
+        notifyLine(header, line);
+        continue;
+      }
+      for (String processedLine : myStackTraceExpander.process(line)) {
+        notifyLine(header, processedLine);
+      }
+    }
+  }
+
   @Override
   public void processNewLine(@NotNull String line) {
     // Really, the user's log should never put any system characters in it ever - that will cause
@@ -103,6 +242,15 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
       header = myLongParser.processLogHeader(line, myDevice);
     }
 
+    if (header != null && myResumeAfter != null) {
+      if (isAlreadyReceived(header)) {
+        // Drop the header and the lines of the message
+        myActiveHeader = null;
+        return;
+      }
+      myResumeAfter = null;
+    }
+
     if (header != null) {
       myStackTraceExpander.reset();
       myActiveHeader = header;
@@ -19,13 +19,14 @@ import com.android.ddmlib.*;
 import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.sdklib.AndroidVersion;
 import com.android.tools.idea.IdeInfo;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.run.LoggingReceiver;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.intellij.execution.impl.ConsoleBuffer;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
@@ -45,10 +46,12 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * {@link AndroidLogcatService} is the class that manages logs in all connected devices and emulators.
@@ -57,30 +60,15 @@ import java.util.concurrent.TimeUnit;
  */
 @ThreadSafe
 public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceChangeListener, Disposable {
+  /**
+   * Serial numbers of the devices whose 'logcat -B' output could not be decoded.
+   */
+  private static final Set<String> ourBinaryFormatFailedDevices = ConcurrentHashMap.newKeySet();
+
   private static Logger getLog() {
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   private static class ListenerConnector implements LogcatListener {
     @GuardedBy("myListenerLock")
     @Nullable private LogcatListener myListener; // Initially not null, set to null when disconnected.
@@ -89,6 +77,8 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     // The two locks bellow should never be held simultaneously or for a prolonged period of time.
     @NotNull private final Object myListenerLock = new Object();
     @NotNull private final Object myBacklogLock = new Object();
+    // Held while processing the backlog, around the two locks above, so a new message waits for the backlog replayed by another thread.
+    @NotNull private final Object myProcessBacklogLock = new Object();
 
     ListenerConnector(@NotNull LogcatListener listener, @NotNull Collection<LogCatMessage> messageBacklog) {
       myListener = listener;
@@ -129,9 +119,11 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     }
 
     void processBacklog() {
-      LogCatMessage message;
-      while ((message = getMessageFromBacklog()) != null) {
-        dispatchMessage(message);
+      synchronized (myProcessBacklogLock) {
+        LogCatMessage message;
+        while ((message = getMessageFromBacklog()) != null) {
+          dispatchMessage(message);
+        }
       }
     }
 
@@ -238,8 +230,19 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     });
   }
 
-  private static void executeLogcat(@NotNull IShellEnabledDevice device, @NotNull AndroidLogcatReceiver receiver) {
+  private static void executeLogcat(@NotNull IDevice device, @NotNull AndroidLogcatReceiver receiver) {
     try {
+      if (supportsBinaryFormat(device)) {
+        AndroidLogcatReceiver.BinaryOutputReceiver binaryReceiver = receiver.newBinaryOutputReceiver();
+        device.executeShellCommand("logcat -B", binaryReceiver, 0, TimeUnit.MILLISECONDS);
+        if (!binaryReceiver.hasFailed()) {
+          return;
+        }
+
+        getLog().warn("Unable to decode the binary logcat output of " + device.getSerialNumber() + ", reading it as text");
+        ourBinaryFormatFailedDevices.add(device.getSerialNumber());
+        receiver.resumeAfterLastMessage();
+      }
       execute(device, supportsEpochFormatModifier(device) ? "logcat -v long -v epoch" : "logcat -v long", receiver, Duration.ZERO);
     }
     catch (Throwable throwable) {
@@ -250,6 +253,17 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     }
   }
 
+  /**
+   * The binary output can only be read from devices running Android N or newer, where adbd no longer runs shell commands in a
+   * pseudo-terminal which would translate the newline bytes. Devices whose binary output could not be decoded are read as text for the
+   * rest of the session.
+   */
+  private static boolean supportsBinaryFormat(@NotNull IDevice device) {
+    return StudioFlags.RUNDEBUG_LOGCAT_BINARY_FORMAT_ENABLED.get() &&
+           device.getVersion().isGreaterOrEqualThan(AndroidVersion.VersionCodes.N) &&
+           !ourBinaryFormatFailedDevices.contains(device.getSerialNumber());
+  }
+
   private static boolean supportsEpochFormatModifier(@NotNull IShellEnabledDevice device)
       throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
     LogcatHelpReceiver receiver = new LogcatHelpReceiver();
@@ -365,9 +379,34 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    * to a UI thread. For example, don't directly invoke a runnable on the UI thread per line, but consider batching many log lines first.
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
+    addListener(device, listener, addOldLogs ? LogcatBuffer::getMessages : buffer -> ImmutableList.of());
+  }
+
+  /**
+   * Add a listener which receives each line, unfiltered, that comes from the specified device, after the log messages of the process
+   * with the given pid received so far. Listeners only interested in the logs of one process should prefer this method to
+   * {@link #addListener(IDevice, LogcatListener, boolean)}, as the messages of the other processes are not replayed.
+   */
+  public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, int backlogPid) {
+    addListener(device, listener, buffer -> buffer.getMessages(backlogPid));
+  }
+
+  /**
+   * Add a listener which receives each line, unfiltered, that comes from the specified device, after the log messages received so far
+   * which may match the given query. The messages are looked up through the indexes of the backlog of the device, and replayed on the
+   * calling thread before this method returns, so it should not be called on the EDT.
+   */
+  public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, @NotNull LogcatQuery backlogQuery) {
+    addListener(device, listener, buffer -> buffer.getMessages(backlogQuery)).processBacklog();
+  }
+
+  @NotNull
+  private ListenerConnector addListener(@NotNull IDevice device,
+                                        @NotNull LogcatListener listener,
+                                        @NotNull Function<LogcatBuffer, List<LogCatMessage>> getBacklog) {
     synchronized (myLock) {
-      List<LogCatMessage> oldMessages =
-          addOldLogs && myLogBuffers.containsKey(device) ? myLogBuffers.get(device).getMessages() : ImmutableList.of();
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      List<LogCatMessage> oldMessages = buffer != null ? getBacklog.apply(buffer) : ImmutableList.of();
 
       ListenerConnector listenerConnector = new ListenerConnector(listener, oldMessages);
       myDeviceToListenerMultimap.put(device, listenerConnector);
@@ -381,6 +420,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         assert executor != null;
         executor.execute(() -> listenerConnector.processBacklog());
       }
+      return listenerConnector;
     }
   }
 
@@ -391,29 +431,47 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     addListener(device, listener, false);
   }
 
-  public void removeListener(@NotNull IDevice device, @NotNull LogcatListener listener) {
+  /**
+   * Replays to a listener the messages received so far which may match the given query, for example after the filters of a view changed.
+   * The listener stops receiving messages, {@code reset} is run, and the listener then receives the messages of the backlog matching the
+   * query followed by the new ones, like with {@link #addListener(IDevice, LogcatListener, LogcatQuery)}. Unlike removing the listener and
+   * adding it again, this keeps the backlog of the device when the listener is its only one. Does nothing if the listener was not added.
+   */
+  public void restartListener(@NotNull IDevice device,
+                              @NotNull LogcatListener listener,
+                              @NotNull LogcatQuery backlogQuery,
+                              @NotNull Runnable reset) {
     synchronized (myLock) {
-      Collection<ListenerConnector> connectors = myDeviceToListenerMultimap.get(device);
-
-      if (connectors.isEmpty()) {
+      if (!disconnectListener(device, listener)) {
         return;
       }
+    }
 
-      for (Iterator<ListenerConnector> iter = connectors.iterator(); iter.hasNext();) {
-        ListenerConnector connector = iter.next();
-        if (connector.isConnectedTo(listener)) {
-          connector.disconnectListener();
-          iter.remove();
-          break;
-        }
-      }
+    reset.run();
+    addListener(device, listener, backlogQuery);
+  }
 
-      if (connectors.isEmpty()) {
+  public void removeListener(@NotNull IDevice device, @NotNull LogcatListener listener) {
+    synchronized (myLock) {
+      if (disconnectListener(device, listener) && myDeviceToListenerMultimap.get(device).isEmpty()) {
         stopReceiving(device);
       }
     }
   }
 
+  @GuardedBy("myLock")
+  private boolean disconnectListener(@NotNull IDevice device, @NotNull LogcatListener listener) {
+    for (Iterator<ListenerConnector> iter = myDeviceToListenerMultimap.get(device).iterator(); iter.hasNext(); ) {
+      ListenerConnector connector = iter.next();
+      if (connector.isConnectedTo(listener)) {
+        connector.disconnectListener();
+        iter.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public void deviceConnected(@NotNull IDevice device) {
     if (device.isOnline()) {
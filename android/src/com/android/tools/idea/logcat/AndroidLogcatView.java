@@ -25,6 +25,7 @@ import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.ui.ColoredListCellRenderer;
 import com.intellij.ui.IdeBorderFactory;
 import com.intellij.ui.SideBorder;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.annotations.NotNull;
@@ -37,6 +38,8 @@ import java.awt.event.ItemListener;
 import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
 /**
@@ -63,6 +66,15 @@ public class AndroidLogcatView {
   private final AndroidLogFilterModel myLogFilterModel;
 
   private volatile IDevice myDevice;
+
+  /**
+   * Connects {@link #myLogcatReceiver} to the devices and replays their messages, off the EDT and in order.
+   */
+  private final ExecutorService myListenerExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Logcat View", 1);
+  /** The device {@link #myLogcatReceiver} is connected to, only used by {@link #myListenerExecutor}. */
+  @Nullable private IDevice myConnectedDevice;
+  private final AtomicBoolean myRefilterQueued = new AtomicBoolean();
+
   private DefaultComboBoxModel<AndroidLogcatFilter> myFilterComboBoxModel;
   private ActionToolbar myToolbar;
   private JPanel myPanel;
@@ -78,10 +90,8 @@ public class AndroidLogcatView {
         return;
       }
       if (forceReconnect) {
-        if (myDevice != null) {
-          AndroidLogcatService.getInstance().removeListener(myDevice, myLogcatReceiver);
-        }
         myDevice = null;
+        myListenerExecutor.execute(this::disconnectReceiver);
       }
       updateLogConsole();
     });
@@ -153,11 +163,7 @@ public class AndroidLogcatView {
     myLogConsole = new AndroidLogConsole(project, myLogFilterModel, formatter, this);
     myLogcatReceiver = new ViewListener(formatter, this);
 
-    Disposer.register(parentDisposable, () -> {
-      if (myDevice != null) {
-        AndroidLogcatService.getInstance().removeListener(myDevice, myLogcatReceiver);
-      }
-    });
+    Disposer.register(parentDisposable, () -> myListenerExecutor.execute(this::disconnectReceiver));
 
     DeviceContext.DeviceSelectionListener deviceSelectionListener =
       new DeviceContext.DeviceSelectionListener() {
@@ -294,20 +300,64 @@ public class AndroidLogcatView {
   private void updateLogConsole() {
     IDevice device = getSelectedDevice();
     if (myDevice != device) {
-      AndroidLogcatService androidLogcatService = AndroidLogcatService.getInstance();
-      if (myDevice != null) {
-        androidLogcatService.removeListener(myDevice, myLogcatReceiver);
+      myDevice = device;
+      myListenerExecutor.execute(() -> connectReceiver(device));
+    }
+  }
+
+  /**
+   * Replaces the messages of the console by the ones received so far which pass the filters. They are looked up through the indexes of
+   * the backlog of the device, off the EDT, instead of parsing the whole text of the console again.
+   */
+  void refilter() {
+    if (myRefilterQueued.getAndSet(true)) {
+      return;
+    }
+
+    myListenerExecutor.execute(() -> {
+      myRefilterQueued.set(false);
+      if (myConnectedDevice == null || Disposer.isDisposed(myLogConsole)) {
+        return;
+      }
+      AndroidLogcatService.getInstance()
+        .restartListener(myConnectedDevice, myLogcatReceiver, myLogFilterModel.createBacklogQuery(), this::clearLogConsole);
+    });
+  }
+
+  private void connectReceiver(@Nullable IDevice device) {
+    disconnectReceiver();
+    if (Disposer.isDisposed(myLogConsole)) {
+      return;
+    }
+
+    clearLogConsole();
+    if (device != null) {
+      AndroidLogcatService.getInstance().addListener(device, myLogcatReceiver, myLogFilterModel.createBacklogQuery());
+      myConnectedDevice = device;
+    }
+  }
+
+  private void disconnectReceiver() {
+    if (myConnectedDevice != null) {
+      AndroidLogcatService.getInstance().removeListener(myConnectedDevice, myLogcatReceiver);
+      myConnectedDevice = null;
+    }
+  }
+
+  /**
+   * Clears the console on the EDT, where it is updated, and waits for it so the backlog is only replayed once the console is empty.
+   */
+  private void clearLogConsole() {
+    UIUtil.invokeAndWaitIfNeeded((Runnable)() -> {
+      if (Disposer.isDisposed(myLogConsole)) {
+        return;
       }
       // We check for null, because myLogConsole.clear() depends on myLogConsole.getConsole() not being null
       if (myLogConsole.getConsole() != null) {
         myLogConsole.clear();
       }
-
-      myDevice = device;
-
       myLogFilterModel.processingStarted();
-      androidLogcatService.addListener(myDevice, myLogcatReceiver, true);
-    }
+    });
   }
 
   @Nullable
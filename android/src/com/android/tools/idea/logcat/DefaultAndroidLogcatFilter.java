@@ -123,6 +123,24 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
     return true;
   }
 
+  @Override
+  public void configureQuery(@NotNull LogcatQuery.Builder builder) {
+    if (myLogLevel != null) {
+      builder.setMinLogLevel(myLogLevel);
+    }
+    builder.setTagPattern(myTagPattern);
+    builder.addMessagePattern(myMessagePattern);
+
+    // A pid which is not a number matches no message, which the filter itself takes care of
+    if (myPid != null && !myPid.isEmpty()) {
+      try {
+        builder.setPid(Integer.parseInt(myPid));
+      }
+      catch (NumberFormatException ignored) {
+      }
+    }
+  }
+
   @Override
   @NotNull
   public String getName() {
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decodes the binary output of 'logcat -B', a sequence of logger_entry structures, each followed by its payload: the priority byte,
+ * the null-terminated tag and the null-terminated message.
+ * <p>
+ * The entries are decoded in place from the chunks received from adb. Only an entry split between two chunks is copied to a reusable
+ * buffer. The headers are decoded without building any intermediate string, and the tags, which repeat a lot, are cached.
+ * <p>
+ * This class is not thread safe.
+ */
+final class LogcatBinaryDecoder {
+  interface EntryConsumer {
+    /**
+     * Called for each decoded entry. The message is split in lines, without the leading and trailing empty lines.
+     * The list of lines is reused and must not be kept.
+     */
+    void onEntry(@NotNull LogCatHeader header, @NotNull List<String> lines);
+  }
+
+  /** Size of the header of version 1 entries, which have no header size field. */
+  private static final int V1_HEADER_SIZE = 20;
+  private static final int MAX_HEADER_SIZE = 128;
+  /** Number of bytes needed to compute the size of an entry: the payload length and the header size. */
+  private static final int ENTRY_SIZE_BYTES = 4;
+  private static final int TAG_CACHE_SIZE = 256;
+
+  private static final LogLevel[] ourLevelsByPriority = new LogLevel[LogLevel.ASSERT.getPriority() + 1];
+
+  static {
+    for (LogLevel level : LogLevel.values()) {
+      ourLevelsByPriority[level.getPriority()] = level;
+    }
+  }
+
+  @NotNull private final IDevice myDevice;
+
+  /** The beginning of an entry split between two chunks. */
+  @NotNull private byte[] myPending = new byte[V1_HEADER_SIZE + 4 * 1024];
+  private int myPendingLength;
+
+  @NotNull private final String[] myTags = new String[TAG_CACHE_SIZE];
+  @NotNull private final byte[][] myTagBytes = new byte[TAG_CACHE_SIZE][];
+
+  @NotNull private final List<String> myLines = new ArrayList<>();
+
+  LogcatBinaryDecoder(@NotNull IDevice device) {
+    myDevice = device;
+  }
+
+  /**
+   * Decodes the complete entries of the given chunk of output, keeping the incomplete last one for the next call.
+   *
+   * @throws IllegalStateException if the output is not in the binary logcat format
+   */
+  void decode(@NotNull byte[] data, int offset, int length, @NotNull EntryConsumer consumer) {
+    int end = offset + length;
+
+    while (myPendingLength > 0 && offset < end) {
+      int entrySize = myPendingLength >= ENTRY_SIZE_BYTES ? getEntrySize(myPending, 0) : ENTRY_SIZE_BYTES;
+      int count = Math.min(entrySize - myPendingLength, end - offset);
+      appendPending(data, offset, count);
+      offset += count;
+
+      if (myPendingLength == entrySize && entrySize > ENTRY_SIZE_BYTES) {
+        decodeEntry(myPending, 0, consumer);
+        myPendingLength = 0;
+      }
+    }
+
+    while (end - offset >= ENTRY_SIZE_BYTES) {
+      int entrySize = getEntrySize(data, offset);
+      if (end - offset < entrySize) {
+        break;
+      }
+      decodeEntry(data, offset, consumer);
+      offset += entrySize;
+    }
+
+    if (offset < end) {
+      appendPending(data, offset, end - offset);
+    }
+  }
+
+  private void appendPending(@NotNull byte[] data, int offset, int length) {
+    if (myPendingLength + length > myPending.length) {
+      myPending = Arrays.copyOf(myPending, Math.max(myPending.length * 2, myPendingLength + length));
+    }
+    System.arraycopy(data, offset, myPending, myPendingLength, length);
+    myPendingLength += length;
+  }
+
+  private static int getEntrySize(@NotNull byte[] data, int offset) {
+    return getHeaderSize(data, offset) + getUnsignedShort(data, offset);
+  }
+
+  private static int getHeaderSize(@NotNull byte[] data, int offset) {
+    int headerSize = getUnsignedShort(data, offset + 2);
+    if (headerSize == 0) {
+      return V1_HEADER_SIZE;
+    }
+    if (headerSize < V1_HEADER_SIZE || headerSize > MAX_HEADER_SIZE) {
+      throw new IllegalStateException("Invalid logcat entry header size: " + headerSize);
+    }
+    return headerSize;
+  }
+
+  private void decodeEntry(@NotNull byte[] data, int offset, @NotNull EntryConsumer consumer) {
+    int payloadStart = offset + getHeaderSize(data, offset);
+    int payloadEnd = payloadStart + getUnsignedShort(data, offset);
+    if (payloadStart == payloadEnd) {
+      return;
+    }
+
+    int pid = getInt(data, offset + 4);
+    int tid = getInt(data, offset + 8);
+    Instant timestamp = Instant.ofEpochSecond(getInt(data, offset + 12) & 0xFFFFFFFFL, getInt(data, offset + 16));
+    LogLevel level = getLevel(data[payloadStart]);
+
+    int tagEnd = indexOf(data, (byte)0, payloadStart + 1, payloadEnd);
+    String tag = getTag(data, payloadStart + 1, tagEnd);
+    int messageEnd = indexOf(data, (byte)0, Math.min(tagEnd + 1, payloadEnd), payloadEnd);
+
+    String appName = myDevice.getClientName(pid);
+    LogCatHeader header = new LogCatHeader(level, pid, tid, appName != null ? appName : "?", tag, timestamp);
+
+    myLines.clear();
+    splitLines(data, Math.min(tagEnd + 1, messageEnd), messageEnd);
+    if (!myLines.isEmpty()) {
+      consumer.onEntry(header, myLines);
+    }
+  }
+
+  private void splitLines(@NotNull byte[] data, int start, int end) {
+    int emptyLineCount = 0;
+    while (start < end) {
+      int lineEnd = indexOf(data, (byte)'\n', start, end);
+      int textEnd = lineEnd > start && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+
+      if (textEnd == start) {
+        emptyLineCount++;
+      }
+      else {
+        // Empty lines are only kept between non-empty ones
+        if (!myLines.isEmpty()) {
+          for (int i = 0; i < emptyLineCount; i++) {
+            myLines.add("");
+          }
+        }
+        emptyLineCount = 0;
+        myLines.add(new String(data, start, textEnd - start, StandardCharsets.UTF_8));
+      }
+      start = lineEnd + 1;
+    }
+  }
+
+  @NotNull
+  private String getTag(@NotNull byte[] data, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + data[i];
+    }
+    int slot = hash & (TAG_CACHE_SIZE - 1);
+
+    byte[] cachedBytes = myTagBytes[slot];
+    if (cachedBytes != null && rangeEquals(cachedBytes, data, start, end)) {
+      return myTags[slot];
+    }
+
+    String tag = new String(data, start, end - start, StandardCharsets.UTF_8);
+    myTagBytes[slot] = Arrays.copyOfRange(data, start, end);
+    myTags[slot] = tag;
+    return tag;
+  }
+
+  @NotNull
+  private static LogLevel getLevel(byte priority) {
+    if (priority < LogLevel.VERBOSE.getPriority()) {
+      return LogLevel.VERBOSE;
+    }
+    if (priority >= ourLevelsByPriority.length) {
+      return LogLevel.ASSERT;
+    }
+    return ourLevelsByPriority[priority];
+  }
+
+  private static boolean rangeEquals(@NotNull byte[] bytes, @NotNull byte[] data, int start, int end) {
+    if (bytes.length != end - start) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] != data[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the first occurrence of the given byte in the given range, or the end of the range if there is none.
+   */
+  private static int indexOf(@NotNull byte[] data, byte value, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (data[i] == value) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  private static int getUnsignedShort(@NotNull byte[] data, int offset) {
+    return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+  }
+
+  private static int getInt(@NotNull byte[] data, int offset) {
+    return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+  }
+}
@@ -0,0 +1,620 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.execution.impl.ConsoleBuffer;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TObjectIntHashMap;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Backlog of the logcat messages of a device, bounded by the number of characters of the messages like the console.
+ * <p>
+ * The lines of the messages are kept in a ring buffer of columns instead of {@link LogCatMessage} objects: the text, the pid, the tid,
+ * the timestamp, the level and the interned tag and application name of each line, the lines of a multi-line message being flagged as
+ * continuations of the first one. Each line gets a consecutive id, and the ids of the first lines of the messages are indexed by pid, tag
+ * and level. The trigrams of the texts of each block of {@link #BLOCK_SIZE} consecutive slots are also hashed to a bit set, a bloom filter
+ * which rules out most of the blocks when looking for a literal. {@link #getMessages(LogcatQuery)} uses them to only look at the messages
+ * which may match a query, and only creates the {@link LogCatMessage} objects of the messages it returns.
+ * <p>
+ * This class is not thread safe.
+ */
+final class LogcatBuffer {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Number of consecutive slots sharing a trigram filter. The capacity is a power of two, so it is a multiple of this. */
+  private static final int BLOCK_SIZE = 64;
+  /** Size in bits of the trigram filter of a block, sized to stay sparse for blocks of lines of a hundred characters. */
+  private static final int FILTER_BITS_LOG2 = 13;
+  private static final int FILTER_LONGS = (1 << FILTER_BITS_LOG2) / Long.SIZE;
+
+  private static final int LEVEL_MASK = 0x07;
+  private static final byte CONTINUATION = 0x08;
+  private static final LogLevel[] ourLevels = LogLevel.values();
+
+  /** Timestamp of the headers which only have a {@link LogCatTimestamp}, kept in {@link #myLegacyTimestamps}. */
+  private static final long NO_INSTANT = Long.MIN_VALUE;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  /** Number of interned strings above which the ones of the evicted messages are dropped when the indexes are compacted. */
+  private static final int MAX_STRING_COUNT = 4096;
+
+  @NotNull private final IntSupplier myMaxCharCount;
+
+  @NotNull private String[] myTexts = new String[INITIAL_CAPACITY];
+  @NotNull private int[] myPids = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myTids = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myTagIds = new int[INITIAL_CAPACITY];
+  @NotNull private int[] myAppNameIds = new int[INITIAL_CAPACITY];
+  /** Nanoseconds since the epoch, or {@link #NO_INSTANT}. */
+  @NotNull private long[] myInstants = new long[INITIAL_CAPACITY];
+  /** Only allocated for the devices too old to print the timestamps since the epoch. */
+  @Nullable private LogCatTimestamp[] myLegacyTimestamps;
+  /** Ordinal of the level and {@link #CONTINUATION}. */
+  @NotNull private byte[] myFlags = new byte[INITIAL_CAPACITY];
+  @NotNull private long[] myTrigramFilters = new long[INITIAL_CAPACITY / BLOCK_SIZE * FILTER_LONGS];
+
+  /** The slot of the oldest line. */
+  private int myStart;
+  private int mySize;
+  private long myCharCount;
+  /** The id of the oldest line. The line with id {@code myFirstId + i} is at slot {@code (myStart + i) % capacity}. */
+  private int myFirstId;
+
+  /** The header of the last line, the next line is a continuation of the same message if it has the same header instance. */
+  @Nullable private LogCatHeader myLastHeader;
+
+  @NotNull private final List<String> myStrings = new ArrayList<>();
+  @NotNull private final TObjectIntHashMap<String> myStringIds = new TObjectIntHashMap<>();
+
+  @NotNull private final IdIndex myIdsByPid = new IdIndex();
+  @NotNull private final IdIndex myIdsByTag = new IdIndex();
+  @NotNull private final IdIndex myIdsByLevel = new IdIndex();
+  private int myEvictedSinceCompaction;
+
+  LogcatBuffer() {
+    this(() -> ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : Integer.MAX_VALUE);
+  }
+
+  @VisibleForTesting
+  LogcatBuffer(@NotNull IntSupplier maxCharCount) {
+    myMaxCharCount = maxCharCount;
+  }
+
+  void addMessage(@NotNull LogCatMessage message) {
+    if (myFirstId + mySize == Integer.MAX_VALUE) {
+      renumber();
+    }
+    if (mySize == myTexts.length) {
+      grow();
+    }
+
+    int id = myFirstId + mySize;
+    int slot = getSlot(id);
+    if (slot % BLOCK_SIZE == 0) {
+      resetTrigramFilter(slot);
+    }
+
+    LogCatHeader header = message.getHeader();
+    boolean continuation = header == myLastHeader && mySize > 0;
+    myLastHeader = header;
+
+    String text = message.getMessage();
+    int tagId = intern(header.getTag());
+    int level = header.getLogLevel().ordinal();
+    myTexts[slot] = text;
+    myPids[slot] = header.getPid();
+    myTids[slot] = header.getTid();
+    myTagIds[slot] = tagId;
+    myAppNameIds[slot] = intern(header.getAppName());
+    myFlags[slot] = (byte)(continuation ? level | CONTINUATION : level);
+    setTimestamp(slot, header);
+    addTrigrams(slot, text);
+    mySize++;
+    myCharCount += text.length();
+
+    if (!continuation) {
+      myIdsByPid.add(header.getPid(), id);
+      myIdsByTag.add(tagId, id);
+      myIdsByLevel.add(level, id);
+    }
+
+    int maxCharCount = myMaxCharCount.getAsInt();
+    while (myCharCount > maxCharCount && mySize > 0) {
+      removeFirst();
+    }
+  }
+
+  private int getSlot(int id) {
+    return (myStart + id - myFirstId) & (myTexts.length - 1);
+  }
+
+  private int intern(@NotNull String string) {
+    int id = myStringIds.get(string);
+    // TObjectIntHashMap returns 0 for a missing key
+    if (id == 0 && !myStringIds.containsKey(string)) {
+      id = myStrings.size();
+      myStrings.add(string);
+      myStringIds.put(string, id);
+    }
+    return id;
+  }
+
+  private void setTimestamp(int slot, @NotNull LogCatHeader header) {
+    Instant instant = header.getTimestampInstant();
+    if (instant != null) {
+      myInstants[slot] = instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+      return;
+    }
+
+    myInstants[slot] = NO_INSTANT;
+    if (myLegacyTimestamps == null) {
+      myLegacyTimestamps = new LogCatTimestamp[myTexts.length];
+    }
+    //noinspection deprecation
+    myLegacyTimestamps[slot] = header.getTimestamp();
+  }
+
+  private void removeFirst() {
+    myCharCount -= myTexts[myStart].length();
+    myTexts[myStart] = null;
+    if (myLegacyTimestamps != null) {
+      myLegacyTimestamps[myStart] = null;
+    }
+    myStart = (myStart + 1) & (myTexts.length - 1);
+    mySize--;
+    myFirstId++;
+
+    // Compact the indexes once they hold as many evicted ids as live ones, so their size stays proportional to the size of the buffer.
+    if (++myEvictedSinceCompaction > Math.max(mySize, INITIAL_CAPACITY)) {
+      compactIndexes();
+    }
+  }
+
+  private void grow() {
+    int capacity = myTexts.length * 2;
+    String[] texts = new String[capacity];
+    int[] pids = new int[capacity];
+    int[] tids = new int[capacity];
+    int[] tagIds = new int[capacity];
+    int[] appNameIds = new int[capacity];
+    long[] instants = new long[capacity];
+    LogCatTimestamp[] legacyTimestamps = myLegacyTimestamps != null ? new LogCatTimestamp[capacity] : null;
+    byte[] flags = new byte[capacity];
+    for (int i = 0; i < mySize; i++) {
+      int slot = (myStart + i) & (myTexts.length - 1);
+      texts[i] = myTexts[slot];
+      pids[i] = myPids[slot];
+      tids[i] = myTids[slot];
+      tagIds[i] = myTagIds[slot];
+      appNameIds[i] = myAppNameIds[slot];
+      instants[i] = myInstants[slot];
+      if (legacyTimestamps != null) {
+        legacyTimestamps[i] = myLegacyTimestamps[slot];
+      }
+      flags[i] = myFlags[slot];
+    }
+    myTexts = texts;
+    myPids = pids;
+    myTids = tids;
+    myTagIds = tagIds;
+    myAppNameIds = appNameIds;
+    myInstants = instants;
+    myLegacyTimestamps = legacyTimestamps;
+    myFlags = flags;
+    myStart = 0;
+
+    myTrigramFilters = new long[capacity / BLOCK_SIZE * FILTER_LONGS];
+    for (int slot = 0; slot < mySize; slot++) {
+      addTrigrams(slot, myTexts[slot]);
+    }
+  }
+
+  /**
+   * Clears the trigram filter of the block starting at the given slot before a line is written to it. The lines still live in the rest of
+   * the block, the oldest ones when the buffer is about to be full, are hashed again.
+   */
+  private void resetTrigramFilter(int blockStart) {
+    Arrays.fill(myTrigramFilters, blockStart / BLOCK_SIZE * FILTER_LONGS, (blockStart / BLOCK_SIZE + 1) * FILTER_LONGS, 0);
+    for (int slot = blockStart + 1; slot < blockStart + BLOCK_SIZE; slot++) {
+      if (((slot - myStart) & (myTexts.length - 1)) < mySize) {
+        addTrigrams(slot, myTexts[slot]);
+      }
+    }
+  }
+
+  private void addTrigrams(int slot, @NotNull String text) {
+    int filter = slot / BLOCK_SIZE * FILTER_LONGS;
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      int bit = getTrigramBit(text, i);
+      myTrigramFilters[filter + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  private boolean mayContain(int slot, @NotNull String literal) {
+    int filter = slot / BLOCK_SIZE * FILTER_LONGS;
+    for (int i = 0; i + 3 <= literal.length(); i++) {
+      int bit = getTrigramBit(literal, i);
+      if ((myTrigramFilters[filter + (bit >>> 6)] & 1L << bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hashes the case folded trigram at the given index to a bit of a trigram filter.
+   */
+  private static int getTrigramBit(@NotNull String text, int index) {
+    int hash = fold(text.charAt(index));
+    hash = 31 * hash + fold(text.charAt(index + 1));
+    hash = 31 * hash + fold(text.charAt(index + 2));
+    return (hash * 0x9E3779B9) >>> (Integer.SIZE - FILTER_BITS_LOG2);
+  }
+
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  private void compactIndexes() {
+    myIdsByPid.compact();
+    myIdsByTag.compact();
+    myIdsByLevel.compact();
+    if (myStrings.size() > MAX_STRING_COUNT) {
+      compactStrings();
+    }
+    myEvictedSinceCompaction = 0;
+  }
+
+  /**
+   * Drops the interned tags and application names which are no longer used by any line.
+   */
+  private void compactStrings() {
+    List<String> strings = new ArrayList<>(myStrings);
+    myStrings.clear();
+    myStringIds.clear();
+
+    for (int i = 0; i < mySize; i++) {
+      int slot = (myStart + i) & (myTexts.length - 1);
+      myTagIds[slot] = intern(strings.get(myTagIds[slot]));
+      myAppNameIds[slot] = intern(strings.get(myAppNameIds[slot]));
+    }
+    myIdsByTag.remap(oldTagId -> myStringIds.get(strings.get(oldTagId)));
+  }
+
+  /**
+   * Gives ids starting from 0 to the lines. Only needed after 2^31 lines.
+   */
+  private void renumber() {
+    myIdsByPid.renumber();
+    myIdsByTag.renumber();
+    myIdsByLevel.renumber();
+    myFirstId = 0;
+  }
+
+  private boolean isContinuation(int id) {
+    return (myFlags[getSlot(id)] & CONTINUATION) != 0;
+  }
+
+  /**
+   * Returns all the messages, oldest first.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages() {
+    return getMessages(new LogcatQuery.Builder().build());
+  }
+
+  /**
+   * Returns the messages of the given process, oldest first.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages(int pid) {
+    return getMessages(new LogcatQuery.Builder().setPid(pid).build());
+  }
+
+  /**
+   * Returns the messages which may match the given query, oldest first. The lines of a multi-line message share the same header.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages(@NotNull LogcatQuery query) {
+    List<LogCatMessage> messages = new ArrayList<>();
+    int end = myFirstId + mySize;
+
+    // The first lines of the buffer may be the last lines of a message whose first line was evicted, which are not indexed
+    int firstIndexedId = myFirstId;
+    while (firstIndexedId < end && isContinuation(firstIndexedId)) {
+      firstIndexedId++;
+    }
+    if (firstIndexedId > myFirstId && matches(query, myFirstId, firstIndexedId)) {
+      addMessages(myFirstId, firstIndexedId, messages);
+    }
+
+    TIntArrayList candidates = getCandidates(query);
+    if (candidates == null) {
+      for (int id = firstIndexedId; id < end; ) {
+        int messageEnd = getMessageEnd(id, end);
+        if (matches(query, id, messageEnd)) {
+          addMessages(id, messageEnd, messages);
+        }
+        id = messageEnd;
+      }
+      return messages;
+    }
+
+    for (int i = findFirstLiveIndex(candidates); i < candidates.size(); i++) {
+      int id = candidates.getQuick(i);
+      int messageEnd = getMessageEnd(id, end);
+      if (matches(query, id, messageEnd)) {
+        addMessages(id, messageEnd, messages);
+      }
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the ids of the first lines of the messages which may match the query, from the smallest of the indexes it can use, or null if
+   * it can not use any. The list may start with evicted ids.
+   */
+  @Nullable
+  private TIntArrayList getCandidates(@NotNull LogcatQuery query) {
+    TIntArrayList candidates = null;
+
+    Integer pid = query.getPid();
+    if (pid != null) {
+      candidates = myIdsByPid.get(pid);
+      if (candidates == null) {
+        return new TIntArrayList();
+      }
+    }
+
+    LogLevel minLogLevel = query.getMinLogLevel();
+    if (minLogLevel.ordinal() > 0) {
+      candidates = smallest(candidates, myIdsByLevel.union(key -> key >= minLogLevel.ordinal()));
+    }
+
+    Pattern tagPattern = query.getTagPattern();
+    if (tagPattern != null) {
+      candidates = smallest(candidates, myIdsByTag.union(tagId -> tagPattern.matcher(getFilterTag(tagId)).find()));
+    }
+    return candidates;
+  }
+
+  @NotNull
+  private static TIntArrayList smallest(@Nullable TIntArrayList ids1, @NotNull TIntArrayList ids2) {
+    return ids1 == null || ids2.size() < ids1.size() ? ids2 : ids1;
+  }
+
+  /**
+   * Returns the tag as the filters see it in the formatted lines, where its spaces are replaced by non-breaking ones.
+   */
+  @NotNull
+  private String getFilterTag(int tagId) {
+    return myStrings.get(tagId).replace(' ', '\u00A0');
+  }
+
+  private int getMessageEnd(int id, int end) {
+    int messageEnd = id + 1;
+    while (messageEnd < end && isContinuation(messageEnd)) {
+      messageEnd++;
+    }
+    return messageEnd;
+  }
+
+  /**
+   * Returns true if the message made of the lines with the given ids may match the query.
+   */
+  private boolean matches(@NotNull LogcatQuery query, int firstId, int endId) {
+    int slot = getSlot(firstId);
+    LogLevel level = ourLevels[myFlags[slot] & LEVEL_MASK];
+    if (level.getPriority() < query.getMinLogLevel().getPriority()) {
+      return false;
+    }
+
+    Integer pid = query.getPid();
+    if (pid != null && myPids[slot] != pid) {
+      return false;
+    }
+
+    String tag = getFilterTag(myTagIds[slot]);
+    Pattern tagPattern = query.getTagPattern();
+    if (tagPattern != null && !tagPattern.matcher(tag).find()) {
+      return false;
+    }
+
+    for (String literal : query.getMessageLiterals()) {
+      if (!anyLineContains(firstId, endId, literal)) {
+        return false;
+      }
+    }
+
+    String appName = myStrings.get(myAppNameIds[slot]);
+    for (String literal : query.getLineLiterals()) {
+      if (!containsIgnoreCase(tag, literal) && !containsIgnoreCase(appName, literal) && !anyLineContains(firstId, endId, literal)) {
+        return false;
+      }
+    }
+
+    AndroidLogcatFilter filter = query.getFilter();
+    if (filter == null) {
+      return true;
+    }
+    for (int id = firstId; id < endId; id++) {
+      if (filter.isApplicable(myTexts[getSlot(id)], tag, appName, myPids[slot], level)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean anyLineContains(int firstId, int endId, @NotNull String literal) {
+    for (int id = firstId; id < endId; id++) {
+      int slot = getSlot(id);
+      if (mayContain(slot, literal) && containsIgnoreCase(myTexts[slot], literal)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsIgnoreCase(@NotNull String text, @NotNull String literal) {
+    for (int i = 0; i + literal.length() <= text.length(); i++) {
+      if (text.regionMatches(true, i, literal, 0, literal.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds the lines with the given ids, which share one header as the lines of a message received from the device.
+   */
+  private void addMessages(int firstId, int endId, @NotNull List<LogCatMessage> messages) {
+    LogCatHeader header = createHeader(getSlot(firstId));
+    for (int id = firstId; id < endId; id++) {
+      messages.add(new LogCatMessage(header, myTexts[getSlot(id)]));
+    }
+  }
+
+  @NotNull
+  private LogCatHeader createHeader(int slot) {
+    LogLevel level = ourLevels[myFlags[slot] & LEVEL_MASK];
+    String appName = myStrings.get(myAppNameIds[slot]);
+    String tag = myStrings.get(myTagIds[slot]);
+
+    long instant = myInstants[slot];
+    if (instant != NO_INSTANT) {
+      Instant timestamp = Instant.ofEpochSecond(Math.floorDiv(instant, NANOS_PER_SECOND), Math.floorMod(instant, NANOS_PER_SECOND));
+      return new LogCatHeader(level, myPids[slot], myTids[slot], appName, tag, timestamp);
+    }
+
+    assert myLegacyTimestamps != null;
+    //noinspection deprecation
+    return new LogCatHeader(level, myPids[slot], myTids[slot], appName, tag, myLegacyTimestamps[slot]);
+  }
+
+  /**
+   * Returns the index of the first id of a line which has not been evicted.
+   */
+  private int findFirstLiveIndex(@NotNull TIntArrayList ids) {
+    int index = ids.binarySearch(myFirstId);
+    // The id of the oldest line is in the list if it is indexed, otherwise binarySearch returns the insertion point.
+    return index >= 0 ? index : -index - 1;
+  }
+
+  /**
+   * Ids of the first lines of the messages by key, oldest first. The ids of evicted lines are removed lazily.
+   */
+  private final class IdIndex {
+    @NotNull private TIntObjectHashMap<TIntArrayList> myIdsByKey = new TIntObjectHashMap<>();
+
+    void add(int key, int id) {
+      TIntArrayList ids = myIdsByKey.get(key);
+      if (ids == null) {
+        ids = new TIntArrayList();
+        myIdsByKey.put(key, ids);
+      }
+      ids.add(id);
+    }
+
+    @Nullable
+    TIntArrayList get(int key) {
+      return myIdsByKey.get(key);
+    }
+
+    /**
+     * Returns the live ids of the keys accepted by the given predicate, in order.
+     */
+    @NotNull
+    TIntArrayList union(@NotNull IntPredicate isSelected) {
+      List<TIntArrayList> lists = new ArrayList<>();
+      int size = 0;
+      for (int key : myIdsByKey.keys()) {
+        if (isSelected.test(key)) {
+          TIntArrayList ids = myIdsByKey.get(key);
+          lists.add(ids);
+          size += ids.size();
+        }
+      }
+      if (lists.size() == 1) {
+        return lists.get(0);
+      }
+
+      int[] union = new int[size];
+      int unionSize = 0;
+      for (TIntArrayList ids : lists) {
+        for (int i = findFirstLiveIndex(ids); i < ids.size(); i++) {
+          union[unionSize++] = ids.getQuick(i);
+        }
+      }
+      Arrays.sort(union, 0, unionSize);
+      TIntArrayList ids = new TIntArrayList(unionSize);
+      ids.add(union, 0, unionSize);
+      return ids;
+    }
+
+    void compact() {
+      int[] emptyKeys = Arrays.stream(myIdsByKey.keys()).filter(key -> {
+        TIntArrayList ids = myIdsByKey.get(key);
+        int evicted = findFirstLiveIndex(ids);
+        if (evicted > 0) {
+          ids.remove(0, evicted);
+        }
+        return ids.isEmpty();
+      }).toArray();
+      for (int key : emptyKeys) {
+        myIdsByKey.remove(key);
+      }
+    }
+
+    /**
+     * Replaces the keys, after the interned strings they refer to got new ids. The index must be compacted.
+     */
+    void remap(@NotNull IntUnaryOperator newKey) {
+      TIntObjectHashMap<TIntArrayList> idsByKey = new TIntObjectHashMap<>();
+      myIdsByKey.forEachEntry((key, ids) -> {
+        idsByKey.put(newKey.applyAsInt(key), ids);
+        return true;
+      });
+      myIdsByKey = idsByKey;
+    }
+
+    void renumber() {
+      myIdsByKey.forEachValue(ids -> {
+        int evicted = findFirstLiveIndex(ids);
+        ids.remove(0, evicted);
+        for (int i = 0; i < ids.size(); i++) {
+          ids.setQuick(i, ids.getQuick(i) - myFirstId);
+        }
+        return true;
+      });
+    }
+  }
+}
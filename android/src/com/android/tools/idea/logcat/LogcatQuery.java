@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.google.common.collect.ImmutableList;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Selects the messages of the backlog of a device which may pass the filters of a logcat view, so they can be looked up through the
+ * indexes of the backlog instead of formatting and matching every message.
+ * <p>
+ * A query selects a superset of the messages accepted by the filters it was built from: the selected messages still go through the
+ * filters once replayed, so the parts of a filter which can not be expressed as a query are simply left out.
+ */
+public final class LogcatQuery {
+  @Nullable private final Integer myPid;
+  @NotNull private final LogLevel myMinLogLevel;
+  @Nullable private final Pattern myTagPattern;
+  @NotNull private final ImmutableList<String> myMessageLiterals;
+  @NotNull private final ImmutableList<String> myLineLiterals;
+  @Nullable private final AndroidLogcatFilter myFilter;
+
+  public static final class Builder {
+    @Nullable private Integer myPid;
+    @NotNull private LogLevel myMinLogLevel = LogLevel.VERBOSE;
+    @Nullable private Pattern myTagPattern;
+    @NotNull private final ImmutableList.Builder<String> myMessageLiterals = ImmutableList.builder();
+    @NotNull private final ImmutableList.Builder<String> myLineLiterals = ImmutableList.builder();
+    @Nullable private AndroidLogcatFilter myFilter;
+
+    public Builder setPid(int pid) {
+      myPid = pid;
+      return this;
+    }
+
+    /**
+     * Only selects the messages of the given level or above. The highest of the levels given to a builder is kept.
+     */
+    public Builder setMinLogLevel(@NotNull LogLevel logLevel) {
+      if (logLevel.getPriority() > myMinLogLevel.getPriority()) {
+        myMinLogLevel = logLevel;
+      }
+      return this;
+    }
+
+    public Builder setTagPattern(@Nullable Pattern tagPattern) {
+      myTagPattern = tagPattern;
+      return this;
+    }
+
+    /**
+     * Only selects the messages with a line matching the given pattern. Only literal patterns, like the ones of the filters which are not
+     * regular expressions, can be looked up, the others are ignored.
+     */
+    public Builder addMessagePattern(@Nullable Pattern messagePattern) {
+      String literal = getLiteral(messagePattern);
+      if (literal != null) {
+        myMessageLiterals.add(literal);
+      }
+      return this;
+    }
+
+    /**
+     * Only selects the messages with a formatted line matching the given pattern, like the pattern of the search bar. The formatted line
+     * also holds the timestamp, the pid and tid, the level letter and the continuation prefix, so the pattern is only used when it can
+     * only match the message, the tag or the application name: when it is a literal of at least two characters, longer than the level
+     * letter, without any of the characters of the other fields of the header or of the separators between the fields.
+     */
+    Builder addLinePattern(@Nullable Pattern linePattern) {
+      String literal = getLiteral(linePattern);
+      if (literal != null && literal.length() > 1 && literal.chars().noneMatch(LogcatQuery::isHeaderCharacter)) {
+        myLineLiterals.add(literal);
+      }
+      return this;
+    }
+
+    /**
+     * Only selects the messages with a line accepted by the given filter.
+     */
+    Builder setFilter(@Nullable AndroidLogcatFilter filter) {
+      myFilter = filter;
+      return this;
+    }
+
+    @NotNull
+    public LogcatQuery build() {
+      return new LogcatQuery(myPid, myMinLogLevel, myTagPattern, myMessageLiterals.build(), myLineLiterals.build(), myFilter);
+    }
+  }
+
+  private LogcatQuery(@Nullable Integer pid,
+                      @NotNull LogLevel minLogLevel,
+                      @Nullable Pattern tagPattern,
+                      @NotNull ImmutableList<String> messageLiterals,
+                      @NotNull ImmutableList<String> lineLiterals,
+                      @Nullable AndroidLogcatFilter filter) {
+    myPid = pid;
+    myMinLogLevel = minLogLevel;
+    myTagPattern = tagPattern;
+    myMessageLiterals = messageLiterals;
+    myLineLiterals = lineLiterals;
+    myFilter = filter;
+  }
+
+  @Nullable
+  Integer getPid() {
+    return myPid;
+  }
+
+  @NotNull
+  LogLevel getMinLogLevel() {
+    return myMinLogLevel;
+  }
+
+  @Nullable
+  Pattern getTagPattern() {
+    return myTagPattern;
+  }
+
+  /**
+   * Returns the strings which must each be found, ignoring case, in a line of the selected messages.
+   */
+  @NotNull
+  ImmutableList<String> getMessageLiterals() {
+    return myMessageLiterals;
+  }
+
+  /**
+   * Returns the strings which must each be found, ignoring case, in a line, the tag or the application name of the selected
+   * messages.
+   */
+  @NotNull
+  ImmutableList<String> getLineLiterals() {
+    return myLineLiterals;
+  }
+
+  @Nullable
+  AndroidLogcatFilter getFilter() {
+    return myFilter;
+  }
+
+  /**
+   * Returns the text matched by the given pattern if it is a literal, as created by {@link RegexFilterComponent#pattern} for
+   * the filters which are not regular expressions.
+   */
+  @Nullable
+  private static String getLiteral(@Nullable Pattern pattern) {
+    if (pattern == null) {
+      return null;
+    }
+
+    String literal;
+    if ((pattern.flags() & Pattern.LITERAL) != 0) {
+      literal = pattern.pattern();
+    }
+    else {
+      String regex = pattern.pattern();
+      if (!regex.startsWith("\\Q") || !regex.endsWith("\\E") || regex.indexOf("\\E") != regex.length() - 2) {
+        return null;
+      }
+      literal = regex.substring(2, regex.length() - 2);
+    }
+    return literal.isEmpty() ? null : literal;
+  }
+
+  /**
+   * Returns true for the characters of the fields of the header of a formatted line which are not indexed, the timestamp, the pid and
+   * tid and the continuation prefix, and of the separators between the fields, see {@link AndroidLogcatFormatter}.
+   */
+  private static boolean isHeaderCharacter(int c) {
+    return Character.isDigit(c) || Character.isWhitespace(c) || Character.isSpaceChar(c) ||
+           c == ':' || c == '/' || c == '-' || c == '.' || c == '+';
+  }
+}
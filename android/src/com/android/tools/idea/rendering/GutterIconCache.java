@@ -15,40 +15,53 @@
  */
 package com.android.tools.idea.rendering;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.android.ide.common.rendering.api.RenderResources;
-import com.google.common.collect.Maps;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import icons.AndroidIcons;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import javax.swing.*;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
-import java.util.Map;
-
+/**
+ * Thread safe cache of the icons displayed in the editor gutter for drawable and mipmap references. The cache holds up to
+ * {@link #MAX_CACHED_ICONS} icons, evicting the least recently used ones.
+ */
 public class GutterIconCache {
   private static final Logger LOG = Logger.getInstance(GutterIconCache.class);
   private static final Icon NONE = AndroidIcons.Android; // placeholder
 
   @VisibleForTesting static final int MAX_WIDTH = JBUI.scale(16);
   @VisibleForTesting static final int MAX_HEIGHT = JBUI.scale(16);
+  @VisibleForTesting static final int MAX_CACHED_ICONS = 1000;
 
   private static final GutterIconCache ourInstance = new GutterIconCache();
 
-  private Map<String, Icon> myThumbnailCache = Maps.newHashMap();
-
   /**
-   * Stores timestamps for the last modification time of image files using the
-   * path as a key.
+   * Cached icons and the modification stamps of their image files at the time of caching, using the path as a key.
    */
-  private Map<String, Long> myModificationStampCache = Maps.newHashMap();
-  private boolean myRetina;
+  private final Cache<String, CachedIcon> myThumbnailCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ICONS).build();
+  /**
+   * Paths of the icons being created in the background.
+   */
+  private final Set<String> myPendingPaths = ConcurrentHashMap.newKeySet();
+  private final Executor myIconExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("GutterIconCache", 2);
+  private volatile boolean myRetina;
 
   public GutterIconCache() {
   }
@@ -60,38 +73,100 @@ public class GutterIconCache {
 
   @VisibleForTesting
   boolean isIconUpToDate(@NotNull VirtualFile file) {
-    String path = file.getPath();
-    if (myModificationStampCache.containsKey(path)) {
-      // Entry is valid if image resource has not been modified since the entry was cached
-      return myModificationStampCache.get(path) == file.getModificationStamp() && !FileDocumentManager.getInstance().isFileModified(file);
-    }
+    return isUpToDate(myThumbnailCache.getIfPresent(file.getPath()), file);
+  }
 
-    return false;
+  private static boolean isUpToDate(@Nullable CachedIcon cachedIcon, @NotNull VirtualFile file) {
+    // Entry is valid if image resource has not been modified since the entry was cached
+    return cachedIcon != null &&
+           cachedIcon.myModificationStamp == file.getModificationStamp() &&
+           !FileDocumentManager.getInstance().isFileModified(file);
   }
 
-  @Nullable
-  public Icon getIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+  private void checkRetina() {
     boolean isRetina = UIUtil.isRetina();
     if (myRetina != isRetina) {
       myRetina = isRetina;
-      myThumbnailCache.clear();
+      myThumbnailCache.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the icon for the given image file, creating it if it is not cached or if the file has changed since it was cached.
+   */
+  @Nullable
+  public Icon getIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    checkRetina();
+    CachedIcon cachedIcon = myThumbnailCache.getIfPresent(file.getPath());
+    if (!isUpToDate(cachedIcon, file)) {
+      cachedIcon = createIcon(file, resolver, facet);
     }
+    return cachedIcon.getIcon();
+  }
+
+  /**
+   * Returns the icon for the given image file if it is cached and up to date. Otherwise, the icon is created on a background thread
+   * and the editor gutters are repainted once it is ready. Until then, the previously cached icon for the file is returned, if any.
+   */
+  @Nullable
+  public Icon getIconNonBlocking(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    checkRetina();
     String path = file.getPath();
-    Icon myIcon = myThumbnailCache.get(path);
-    if (myIcon == null || !isIconUpToDate(file)) {
-      myIcon = GutterIconFactory.createIcon(file, resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+    CachedIcon cachedIcon = myThumbnailCache.getIfPresent(path);
+    if (!isUpToDate(cachedIcon, file) && myPendingPaths.add(path)) {
+      myIconExecutor.execute(() -> {
+        try {
+          if (!facet.isDisposed() && file.isValid()) {
+            createIcon(file, resolver, facet);
+            ApplicationManager.getApplication().invokeLater(GutterIconCache::repaintGutters);
+          }
+        }
+        catch (Throwable t) {
+          LOG.warn("Failed to create the gutter icon for " + path, t);
+        }
+        finally {
+          myPendingPaths.remove(path);
+        }
+      });
+    }
+    return cachedIcon != null ? cachedIcon.getIcon() : null;
+  }
 
-      if (myIcon == null) {
-        myIcon = NONE;
+  @NotNull
+  private CachedIcon createIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    // Record timestamp of image resource before creating the icon, so changes made while creating it are not missed
+    long modificationStamp = file.getModificationStamp();
+    Icon icon = GutterIconFactory.createIcon(file, resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+    CachedIcon cachedIcon = new CachedIcon(icon != null ? icon : NONE, modificationStamp);
+    myThumbnailCache.put(file.getPath(), cachedIcon);
+    return cachedIcon;
+  }
+
+  private static void repaintGutters() {
+    for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+      if (editor instanceof EditorEx && !editor.isDisposed()) {
+        ((EditorEx)editor).getGutterComponentEx().repaint();
       }
+    }
+  }
 
-      myThumbnailCache.put(path, myIcon);
+  @VisibleForTesting
+  long size() {
+    return myThumbnailCache.size();
+  }
+
+  private static final class CachedIcon {
+    @NotNull private final Icon myIcon;
+    private final long myModificationStamp;
 
-      // Record timestamp of image resource at the time of caching
-      myModificationStampCache.put(path, file.getModificationStamp());
+    private CachedIcon(@NotNull Icon icon, long modificationStamp) {
+      myIcon = icon;
+      myModificationStamp = modificationStamp;
     }
 
-    return myIcon != NONE ? myIcon : null;
+    @Nullable
+    Icon getIcon() {
+      return myIcon != NONE ? myIcon : null;
+    }
   }
-
 }
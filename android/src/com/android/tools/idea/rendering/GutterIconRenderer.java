@@ -57,7 +57,7 @@ public class GutterIconRenderer extends com.intellij.openapi.editor.markup.Gutte
   @Override
   @NotNull
   public Icon getIcon() {
-    Icon icon = GutterIconCache.getInstance().getIcon(myFile, myResourceResolver, myFacet);
+    Icon icon = GutterIconCache.getInstance().getIconNonBlocking(myFile, myResourceResolver, myFacet);
     return icon == null ? EmptyIcon.ICON_0 : icon;
   }
 
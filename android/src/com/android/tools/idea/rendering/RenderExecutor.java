@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Single threaded executor for render actions. Layoutlib is not thread safe, so all the actions run on the same thread, but the queued
+ * actions are run by {@link RenderService.RenderingPriority} first, and in submission order within the same priority.
+ * <p>
+ * Low priority actions age while queued so they are not starved by a steady stream of high priority ones: a low priority action runs
+ * before the high priority actions submitted more than {@link #LOW_PRIORITY_MAX_DELAY_NS} after it.
+ * <p>
+ * The executor keeps track of the time the actions spend in the queue and running, see {@link #getStats}.
+ */
+final class RenderExecutor extends ThreadPoolExecutor {
+  private static final Logger LOG = Logger.getInstance(RenderExecutor.class);
+
+  private static final long LOW_PRIORITY_MAX_DELAY_NS = TimeUnit.SECONDS.toNanos(2);
+
+  private final AtomicLong mySequence = new AtomicLong();
+  private final long myLowPriorityMaxDelayNs;
+  @NotNull private final Stats[] myStats;
+
+  RenderExecutor(@NotNull ThreadFactory threadFactory) {
+    this(threadFactory, LOW_PRIORITY_MAX_DELAY_NS);
+  }
+
+  @VisibleForTesting
+  RenderExecutor(@NotNull ThreadFactory threadFactory, long lowPriorityMaxDelayNs) {
+    super(1, 1, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), threadFactory);
+    myLowPriorityMaxDelayNs = lowPriorityMaxDelayNs;
+    RenderService.RenderingPriority[] priorities = RenderService.RenderingPriority.values();
+    myStats = new Stats[priorities.length];
+    for (int i = 0; i < priorities.length; i++) {
+      myStats[i] = new Stats();
+    }
+  }
+
+  @Override
+  public void execute(@NotNull Runnable command) {
+    execute(command, RenderService.RenderingPriority.HIGH);
+  }
+
+  /**
+   * Queues the given action with the given priority.
+   */
+  public void execute(@NotNull Runnable command, @NotNull RenderService.RenderingPriority priority) {
+    if (command instanceof PrioritizedAction) {
+      super.execute(command);
+      return;
+    }
+    long delayNs = priority == RenderService.RenderingPriority.LOW ? myLowPriorityMaxDelayNs : 0;
+    super.execute(new PrioritizedAction(command, priority, delayNs, mySequence.getAndIncrement()));
+  }
+
+  @Override
+  protected void beforeExecute(Thread thread, Runnable runnable) {
+    super.beforeExecute(thread, runnable);
+    if (runnable instanceof PrioritizedAction) {
+      ((PrioritizedAction)runnable).myStartTimeNs = System.nanoTime();
+    }
+  }
+
+  @Override
+  protected void afterExecute(Runnable runnable, Throwable throwable) {
+    super.afterExecute(runnable, throwable);
+    if (runnable instanceof PrioritizedAction) {
+      PrioritizedAction action = (PrioritizedAction)runnable;
+      long queueTimeNs = action.myStartTimeNs - action.mySubmitTimeNs;
+      long runTimeNs = System.nanoTime() - action.myStartTimeNs;
+      myStats[action.myPriority.ordinal()].record(queueTimeNs, runTimeNs);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("%s priority render action queued for %d ms, ran for %d ms", action.myPriority,
+                                TimeUnit.NANOSECONDS.toMillis(queueTimeNs), TimeUnit.NANOSECONDS.toMillis(runTimeNs)));
+      }
+    }
+  }
+
+  /**
+   * Returns the statistics of the actions of the given priority run so far.
+   */
+  @NotNull
+  Stats getStats(@NotNull RenderService.RenderingPriority priority) {
+    return myStats[priority.ordinal()];
+  }
+
+  /**
+   * Aggregated queue and run times of the render actions of one priority.
+   */
+  static final class Stats {
+    private final AtomicLong myActionCount = new AtomicLong();
+    private final AtomicLong myTotalQueueTimeNs = new AtomicLong();
+    private final AtomicLong myTotalRunTimeNs = new AtomicLong();
+
+    private void record(long queueTimeNs, long runTimeNs) {
+      myActionCount.incrementAndGet();
+      myTotalQueueTimeNs.addAndGet(queueTimeNs);
+      myTotalRunTimeNs.addAndGet(runTimeNs);
+    }
+
+    long getActionCount() {
+      return myActionCount.get();
+    }
+
+    long getTotalQueueTimeNs() {
+      return myTotalQueueTimeNs.get();
+    }
+
+    long getTotalRunTimeNs() {
+      return myTotalRunTimeNs.get();
+    }
+  }
+
+  private static final class PrioritizedAction implements Runnable, Comparable<PrioritizedAction> {
+    @NotNull private final Runnable myRunnable;
+    @NotNull private final RenderService.RenderingPriority myPriority;
+    private final long mySequence;
+    private final long mySubmitTimeNs = System.nanoTime();
+    // The actions run by increasing deadline, which is later for lower priorities.
+    private final long myDeadlineNs;
+    // Only accessed from the render thread.
+    private long myStartTimeNs;
+
+    private PrioritizedAction(@NotNull Runnable runnable, @NotNull RenderService.RenderingPriority priority, long delayNs, long sequence) {
+      myRunnable = runnable;
+      myPriority = priority;
+      mySequence = sequence;
+      myDeadlineNs = mySubmitTimeNs + delayNs;
+    }
+
+    @Override
+    public void run() {
+      myRunnable.run();
+    }
+
+    @Override
+    public int compareTo(@NotNull PrioritizedAction other) {
+      // Compares the difference of the deadlines since nanoTime values may overflow.
+      long delta = myDeadlineNs - other.myDeadlineNs;
+      if (delta != 0) {
+        return delta < 0 ? -1 : 1;
+      }
+      int result = myPriority.compareTo(other.myPriority);
+      return result != 0 ? result : Long.compare(mySequence, other.mySequence);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.State;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.res.ResourceRepositoryManager;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.xml.XmlAttribute;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import java.awt.image.BufferedImage;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.uipreview.ModuleClassLoaderManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of rendered layout images keyed by the inputs of the render: the structure of the layout file, the {@link Configuration},
+ * the resource repository generation and the version of the project classes loaded for the module. The cached images can be
+ * displayed while a layout that was recently rendered is being rendered again, for example when the layout is reopened.
+ * <p>
+ * The cache is bounded by the total size of the images it holds.
+ */
+public final class RenderImageCache {
+  private static final long DEFAULT_MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+  @NotNull private final Cache<HashCode, BufferedImage> myImages;
+
+  RenderImageCache() {
+    this(DEFAULT_MAX_CACHED_BYTES);
+  }
+
+  @VisibleForTesting
+  RenderImageCache(long maxCachedBytes) {
+    myImages = CacheBuilder.newBuilder()
+      // A single segment, so that a large image can use the whole budget
+      .concurrencyLevel(1)
+      .maximumWeight(maxCachedBytes)
+      .<HashCode, BufferedImage>weigher((key, value) -> value.getWidth() * value.getHeight() * 4)
+      .softValues()
+      .build();
+  }
+
+  /**
+   * Returns the key identifying the render of the given layout file with the given configuration, or null if the file can not be
+   * rendered or the project classes of the module have changed since they were loaded. Must be called from a read action.
+   *
+   * @param renderOptions options of the caller that affect the rendered image and are not part of the configuration
+   */
+  @Nullable
+  public static HashCode computeKey(@NotNull AndroidFacet facet,
+                                    @NotNull XmlFile file,
+                                    @NotNull Configuration configuration,
+                                    @NotNull String renderOptions) {
+    XmlTag rootTag = file.getRootTag();
+    VirtualFile virtualFile = file.getVirtualFile();
+    if (rootTag == null || virtualFile == null) {
+      return null;
+    }
+    // The images of custom views are stale once their classes are rebuilt, even before a render loads them again
+    Long classesStamp = ModuleClassLoaderManager.get().getProjectClassesStamp(facet.getModule());
+    if (classesStamp == null) {
+      return null;
+    }
+
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    putString(hasher, virtualFile.getPath());
+    hasher.putBytes(computeLayoutHash(rootTag).asBytes());
+
+    putString(hasher, configuration.getFullConfig().getQualifierString());
+    putString(hasher, configuration.getTheme());
+    Device device = configuration.getDevice();
+    putString(hasher, device != null ? device.getId() : null);
+    State state = configuration.getDeviceState();
+    putString(hasher, state != null ? state.getName() : null);
+    IAndroidTarget target = configuration.getTarget();
+    putString(hasher, target != null ? target.hashString() : null);
+    putString(hasher, configuration.getActivity());
+    hasher.putFloat(configuration.getFontScale());
+
+    hasher.putLong(ResourceRepositoryManager.getAppResources(facet).getModificationCount());
+    hasher.putLong(classesStamp);
+    putString(hasher, renderOptions);
+    return hasher.hash();
+  }
+
+  /**
+   * Returns the hash of the structure of the layout with the given root tag. Whitespace and comments are ignored.
+   */
+  @VisibleForTesting
+  @NotNull
+  static HashCode computeLayoutHash(@NotNull XmlTag rootTag) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    putTag(hasher, rootTag);
+    return hasher.hash();
+  }
+
+  private static void putTag(@NotNull Hasher hasher, @NotNull XmlTag tag) {
+    putString(hasher, tag.getName());
+    XmlAttribute[] attributes = tag.getAttributes();
+    hasher.putInt(attributes.length);
+    for (XmlAttribute attribute : attributes) {
+      putString(hasher, attribute.getName());
+      putString(hasher, attribute.getValue());
+    }
+    XmlTag[] subTags = tag.getSubTags();
+    hasher.putInt(subTags.length);
+    if (subTags.length == 0) {
+      putString(hasher, tag.getValue().getTrimmedText());
+    }
+    for (XmlTag subTag : subTags) {
+      putTag(hasher, subTag);
+    }
+  }
+
+  private static void putString(@NotNull Hasher hasher, @Nullable String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    }
+    else {
+      hasher.putInt(value.length()).putUnencodedChars(value);
+    }
+  }
+
+  /**
+   * Returns the image rendered for the given key, or null if it is not in the cache. The returned image must not be modified.
+   */
+  @Nullable
+  public BufferedImage get(@NotNull HashCode key) {
+    return myImages.getIfPresent(key);
+  }
+
+  /**
+   * Stores the image rendered for the given key. The image must not be modified after this call.
+   */
+  public void put(@NotNull HashCode key, @NotNull BufferedImage image) {
+    myImages.put(key, image);
+  }
+
+  @VisibleForTesting
+  long size() {
+    return myImages.size();
+  }
+
+  void clear() {
+    myImages.invalidateAll();
+  }
+}
@@ -17,12 +17,14 @@ package com.android.tools.idea.rendering;
 
 import com.android.ide.common.rendering.api.*;
 import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.rendering.imagepool.ImagePoolFactory;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.psi.PsiFile;
+import java.awt.image.BufferedImage;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.jetbrains.annotations.NotNull;
@@ -126,6 +128,29 @@ public class RenderResult {
       ImmutableMap.of());
   }
 
+  /**
+   * Creates a {@link RenderResult} that only contains the given image, to be displayed while the actual render is in progress.
+   * The result does not contain any view information.
+   *
+   * @param file the PSI file the render result corresponds to
+   * @param module the module of the file
+   * @param image a previously rendered image of the file
+   */
+  @NotNull
+  public static RenderResult createPlaceholder(@NotNull PsiFile file, @NotNull Module module, @NotNull BufferedImage image) {
+    return new RenderResult(
+      file,
+      module,
+      new RenderLogger(null, module),
+      null,
+      Result.Status.SUCCESS.createResult(),
+      ImmutableList.of(),
+      ImmutableList.of(),
+      ImagePoolFactory.getNonPooledPool().copyOf(image),
+      ImmutableMap.of(),
+      ImmutableMap.of());
+  }
+
   /**
    * Creates a new blank {@link RenderResult}
    *
@@ -53,10 +53,7 @@ import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -75,6 +72,17 @@ import org.jetbrains.annotations.TestOnly;
  * The {@link RenderService} provides rendering and layout information for Android layouts. This is a wrapper around the layout library.
  */
 public class RenderService implements Disposable {
+  /**
+   * Priority of the render actions. All render actions run on the same thread since Layoutlib is not thread safe, so the priority
+   * only decides which of the queued actions run first.
+   */
+  public enum RenderingPriority {
+    /** Actions whose results are visible to the user, e.g. renders of a showing design surface. This is the default. */
+    HIGH,
+    /** Actions whose results are not immediately visible to the user, e.g. renders of a hidden design surface. */
+    LOW
+  }
+
   /** Number of ms that we will wait for the rendering thread to return before timing out */
   private static final long DEFAULT_RENDER_THREAD_TIMEOUT_MS = Long.getLong("layoutlib.thread.timeout",
                                                                             TimeUnit.SECONDS.toMillis(
@@ -84,7 +92,7 @@ public class RenderService implements Disposable {
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
   private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
-  private static ExecutorService ourRenderingExecutor;
+  private static RenderExecutor ourRenderingExecutor;
   private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
 
   /**
@@ -103,16 +111,13 @@ public class RenderService implements Disposable {
   private final Project myProject;
 
   private static void innerInitializeRenderExecutor() {
-    ourRenderingExecutor = new ThreadPoolExecutor(1, 1,
-                             0, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
-                             (Runnable r) -> {
-                               Thread renderingThread = new Thread(null, r, "Layoutlib Render Thread");
-                               renderingThread.setDaemon(true);
-                               ourRenderingThread.set(renderingThread);
-
-                               return renderingThread;
-                             });
+    ourRenderingExecutor = new RenderExecutor((Runnable r) -> {
+                             Thread renderingThread = new Thread(null, r, "Layoutlib Render Thread");
+                             renderingThread.setDaemon(true);
+                             ourRenderingThread.set(renderingThread);
+
+                             return renderingThread;
+                           });
   }
 
   @TestOnly
@@ -155,6 +160,7 @@ public class RenderService implements Disposable {
   private final Object myCredential = new Object();
 
   private final ImagePool myImagePool = ImagePoolFactory.createImagePool();
+  private final RenderImageCache myImageCache = new RenderImageCache();
 
   /**
    * @return the {@linkplain RenderService} for the given facet.
@@ -226,6 +232,7 @@ public class RenderService implements Disposable {
   public void dispose() {
     myProject.putUserData(KEY, null);
     myImagePool.dispose();
+    myImageCache.clear();
   }
 
   @Nullable
@@ -314,7 +321,26 @@ public class RenderService implements Disposable {
    */
   @NotNull
   public static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable) {
-    return CompletableFuture.supplyAsync(callable, ourRenderingExecutor);
+    return runAsyncRenderAction(callable, RenderingPriority.HIGH);
+  }
+
+  /**
+   * Runs an action that requires the rendering lock with the given priority. Queued actions with a higher priority run before the ones
+   * with a lower priority, actions with the same priority run in the order they were submitted.
+   * <p/>
+   * This method will run the passed action asynchronously and return a {@link CompletableFuture}
+   */
+  @NotNull
+  public static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable, @NotNull RenderingPriority priority) {
+    return CompletableFuture.supplyAsync(callable, command -> ourRenderingExecutor.execute(command, priority));
+  }
+
+  /**
+   * Returns the number of render actions of the given priority run so far, and the total time they spent queued and running.
+   */
+  @NotNull
+  static RenderExecutor.Stats getRenderActionStats(@NotNull RenderingPriority priority) {
+    return ourRenderingExecutor.getStats(priority);
   }
 
   /**
@@ -398,6 +424,14 @@ public class RenderService implements Disposable {
     return myImagePool;
   }
 
+  /**
+   * Returns the {@link RenderImageCache} with the images recently rendered in this project.
+   */
+  @NotNull
+  public RenderImageCache getRenderImageCache() {
+    return myImageCache;
+  }
+
   /** This is the View.MeasureSpec mode shift */
   private static final int MEASURE_SPEC_MODE_SHIFT = 30;
 
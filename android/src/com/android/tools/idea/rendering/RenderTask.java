@@ -89,6 +89,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -159,6 +160,7 @@ public class RenderTask {
   private boolean myShowWithToolsAttributes = true;
   private AssetRepositoryImpl myAssetRepository;
   private long myTimeout;
+  @NotNull private volatile RenderService.RenderingPriority myPriority = RenderService.RenderingPriority.HIGH;
   @NotNull private final Locale myLocale;
   @NotNull private final Object myCredential;
   private boolean myProvideCookiesForIncludedViews = false;
@@ -393,20 +395,30 @@ public class RenderTask {
         // We do not care about these exceptions since we are disposing the task anyway
         LOG.debug(e);
       }
+      catch (TimeoutException e) {
+        // Low priority actions of this task may still be queued behind the renders of the showing surfaces. They run before the
+        // cleanup below, which is also a low priority action.
+        LOG.debug("Disposing RenderTask before its render actions completed", e);
+      }
       myLayoutlibCallback.setLogger(IRenderLogger.NULL_LOGGER);
-      if (myRenderSession != null) {
-        try {
-          RenderService.runAsyncRenderAction(myRenderSession::dispose);
-          myRenderSession = null;
-        }
-        catch (Exception ignored) {
+      // The cleanup runs as a single low priority render action, so it runs after all the actions queued before it, including the
+      // ones of this task that are still queued, and still disposes the session before clearing the statics.
+      RenderService.runAsyncRenderAction(() -> {
+        if (myRenderSession != null) {
+          try {
+            myRenderSession.dispose();
+            myRenderSession = null;
+          }
+          catch (Exception ignored) {
+          }
         }
-      }
-      myImageFactoryDelegate = null;
-      myAssetRepository = null;
+        myImageFactoryDelegate = null;
+        myAssetRepository = null;
 
-      clearCompose();
-      clearCallbacks();
+        clearCompose();
+        clearCallbacks();
+        return null;
+      }, RenderService.RenderingPriority.LOW);
 
       return null;
     });
@@ -469,6 +481,18 @@ public class RenderTask {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions queued by this task from now on, see {@link RenderService.RenderingPriority}.
+   *
+   * @return this (such that chains of setters can be stringed together)
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderService.RenderingPriority priority) {
+    myPriority = priority;
+    return this;
+  }
+
   /**
    * Sets the transparent background to be used.
    *
@@ -776,7 +800,7 @@ public class RenderTask {
     }
 
     synchronized (myRunningFutures) {
-      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable, myPriority);
       myRunningFutures.add(newFuture);
       newFuture
         .whenCompleteAsync((result, ex) -> {
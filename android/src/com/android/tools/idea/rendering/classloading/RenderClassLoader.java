@@ -62,6 +62,9 @@ public abstract class RenderClassLoader extends ClassLoader {
   private static final Function<ClassVisitor, ClassVisitor> DEFAULT_TRANSFORMS = visitor ->
     new ViewMethodWrapperTransform(new VersionClassTransform(visitor, getCurrentClassVersion(), 0));
 
+  /** Classes rewritten with {@link #DEFAULT_TRANSFORMS}, shared by all render class loaders. */
+  private static final RewrittenClassCache ourRewrittenClassCache = new RewrittenClassCache(DEFAULT_TRANSFORMS);
+
   private final Object myJarClassLoaderLock = new Object();
   @GuardedBy("myJarClassLoaderLock")
   private Supplier<UrlClassLoader> myJarClassLoader = Suppliers.memoize(() -> createJarClassLoader(getExternalJars()));
@@ -109,7 +112,7 @@ public abstract class RenderClassLoader extends ClassLoader {
       if (!isValidClassFile(data)) {
         throw new ClassFormatError(name);
       }
-      byte[] rewritten = ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+      byte[] rewritten = ourRewrittenClassCache.rewriteClass(data);
       return defineClassAndPackage(name, rewritten, 0, rewritten.length);
     }
     catch (IOException | ClassNotFoundException e) {
@@ -142,7 +145,7 @@ public abstract class RenderClassLoader extends ClassLoader {
       throw new ClassFormatError(fqcn);
     }
 
-    byte[] rewritten = ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+    byte[] rewritten = ourRewrittenClassCache.rewriteClass(data);
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("Defining class '%s' from disk file", anonymizeClassName(fqcn)));
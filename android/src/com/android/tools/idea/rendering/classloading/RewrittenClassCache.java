@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+
+/**
+ * Cache of rewritten class files keyed by the hash of the original class file contents. A single instance is shared by all
+ * {@link RenderClassLoader}s using the same transformations, so that a class loader created after a build, or for another module
+ * depending on the same libraries, only has to rewrite the classes whose contents have changed.
+ * <p>
+ * The cache is bounded by the total size of the rewritten class files it holds.
+ */
+final class RewrittenClassCache {
+  private static final long DEFAULT_MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+  @NotNull private final Function<ClassVisitor, ClassVisitor> myTransformations;
+  @NotNull private final Cache<HashCode, byte[]> myRewrittenClasses;
+
+  RewrittenClassCache(@NotNull Function<ClassVisitor, ClassVisitor> transformations) {
+    this(transformations, DEFAULT_MAX_CACHED_BYTES);
+  }
+
+  @VisibleForTesting
+  RewrittenClassCache(@NotNull Function<ClassVisitor, ClassVisitor> transformations, long maxCachedBytes) {
+    myTransformations = transformations;
+    myRewrittenClasses = CacheBuilder.newBuilder()
+      .maximumWeight(maxCachedBytes)
+      .<HashCode, byte[]>weigher((key, value) -> value.length)
+      .build();
+  }
+
+  /**
+   * Returns the given class rewritten with the transformations of this cache. The returned array must not be modified.
+   */
+  @NotNull
+  byte[] rewriteClass(@NotNull byte[] classData) {
+    HashCode key = Hashing.sha256().hashBytes(classData);
+    byte[] rewritten = myRewrittenClasses.getIfPresent(key);
+    if (rewritten == null) {
+      // Two threads may rewrite the same class concurrently, which is harmless since the result is the same.
+      rewritten = ClassConverter.rewriteClass(classData, myTransformations);
+      myRewrittenClasses.put(key, rewritten);
+    }
+    return rewritten;
+  }
+
+  @VisibleForTesting
+  long size() {
+    return myRewrittenClasses.size();
+  }
+
+  @VisibleForTesting
+  void clear() {
+    myRewrittenClasses.invalidateAll();
+  }
+}
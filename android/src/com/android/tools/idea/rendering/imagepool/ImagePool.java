@@ -110,6 +110,11 @@ public interface ImagePool {
      * Returns the number of times we had an image that was returned to this bucket.
      */
     long imageWasReturned();
+
+    /**
+     * Returns the number of times an image was dropped from this bucket to keep the pool within its memory budget.
+     */
+    long imageWasEvicted();
   }
 
   interface Stats {
@@ -117,6 +122,11 @@ public interface ImagePool {
 
     long totalBytesInUse();
 
+    /**
+     * Returns the maximum number of bytes that the pool keeps for images that are not in use.
+     */
+    long maxBytesPooled();
+
     BucketStats[] getBucketStats();
   }
 
@@ -53,7 +53,8 @@ public final class ImagePoolFactory {
   }
 
   /**
-   * Creates a new {@link ImagePool} with the default settings
+   * Creates a new {@link ImagePool} with the default settings. The images waiting to be reused can take up to 1/8 of the maximum heap
+   * size.
    */
   @NotNull
   public static ImagePool createImagePool() {
@@ -64,7 +65,7 @@ public final class ImagePoolFactory {
       }
 
       return 50_000_000 / (w * h);
-    });
+    }, Runtime.getRuntime().maxMemory() / 8);
   }
 
   /**
@@ -68,6 +68,11 @@ class ImagePoolImpl implements ImagePool {
 
   private final LongAdder myTotalAllocatedBytes = new LongAdder();
   private final LongAdder myTotalInUseBytes = new LongAdder();
+  /**
+   * Number of bytes used by the images held in the buckets, waiting to be reused.
+   */
+  private final AtomicLong myPooledBytes = new AtomicLong();
+  private final long myMaxPooledBytes;
 
   private final Stats myStats = new Stats() {
     @Override
@@ -80,10 +85,17 @@ class ImagePoolImpl implements ImagePool {
       return myTotalInUseBytes.sum();
     }
 
+    @Override
+    public long maxBytesPooled() {
+      return myMaxPooledBytes;
+    }
+
     @Override
     public BucketStats[] getBucketStats() {
-      return myBucketStats.values().stream()
-        .toArray(BucketStats[]::new);
+      synchronized (myPool) {
+        return myBucketStats.values().stream()
+          .toArray(BucketStats[]::new);
+      }
     }
   };
 
@@ -100,12 +112,26 @@ class ImagePoolImpl implements ImagePool {
    *                           type. If the returned size is 0, no pooling will be done for that bucket size.
    */
   ImagePoolImpl(@NotNull int[] bucketSizes, @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy) {
+    this(bucketSizes, bucketSizingPolicy, Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructs a new {@link ImagePoolImpl} with a custom queue sizing policy and a memory budget for the images waiting to be reused.
+   * When the images returned to the pool exceed the budget, images are dropped from the least recently used buckets first.
+   *
+   * @param maxPooledBytes Maximum number of bytes used by the images that are not in use. Images in use do not count towards the budget.
+   * @see #ImagePoolImpl(int[], BiFunction)
+   */
+  ImagePoolImpl(@NotNull int[] bucketSizes,
+                @NotNull BiFunction<Integer, Integer, Function<Integer, Integer>> bucketSizingPolicy,
+                long maxPooledBytes) {
     if (LOG.isDebugEnabled()) {
-      LOG.debug("New ImagePool " + Arrays.toString(bucketSizes));
+      LOG.debug("New ImagePool " + Arrays.toString(bucketSizes) + " maxPooledBytes=" + maxPooledBytes);
     }
     myBucketSizes = bucketSizes;
     Arrays.sort(myBucketSizes);
     myBucketSizingPolicy = bucketSizingPolicy;
+    myMaxPooledBytes = maxPooledBytes;
   }
 
   private boolean isDisposed = false;
@@ -165,19 +191,84 @@ class ImagePoolImpl implements ImagePool {
 
     int finalWidthBucket = widthBucket;
     int finalHeightBucket = heightBucket;
-    return myPool.computeIfAbsent(poolKey, (k) -> {
-      int size = myBucketSizingPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
+    synchronized (myPool) {
+      return myPool.computeIfAbsent(poolKey, (k) -> {
+        int size = myBucketSizingPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
 
-      if (size == 0) {
-        // For size 0, do not allocate extra memory for a new EvictingQueue.
-        return NULL_BUCKET;
-      }
+        if (size == 0) {
+          // For size 0, do not allocate extra memory for a new EvictingQueue.
+          return NULL_BUCKET;
+        }
 
-      Bucket newBucket = new Bucket(finalWidthBucket, finalHeightBucket, size);
-      myBucketStats.put(newBucket, new BucketStatsImpl(newBucket));
+        Bucket newBucket = new Bucket(finalWidthBucket, finalHeightBucket, size);
+        myBucketStats.put(newBucket, new BucketStatsImpl(newBucket));
 
-      return newBucket;
-    });
+        return newBucket;
+      });
+    }
+  }
+
+  @Nullable
+  private BucketStatsImpl getBucketStats(@NotNull Bucket bucket) {
+    synchronized (myPool) {
+      return myBucketStats.get(bucket);
+    }
+  }
+
+  /**
+   * Removes the next image from the given bucket and updates the pooled bytes accordingly.
+   *
+   * @return the image, or null if it was collected while in the pool
+   * @throws NoSuchElementException if the bucket is empty
+   */
+  @Nullable
+  private BufferedImage removeFromBucket(@NotNull Bucket bucket) {
+    PooledImageReference imageRef = bucket.remove();
+    myPooledBytes.addAndGet(-imageRef.mySizeBytes);
+    // The reference is only read once, so the image can't be collected between the accounting and its use.
+    BufferedImage image = imageRef.get();
+    if (image == null) {
+      myTotalAllocatedBytes.add(-imageRef.mySizeBytes);
+    }
+    return image;
+  }
+
+  /**
+   * Drops images from the least recently used buckets until the pooled images fit in the memory budget.
+   */
+  private void trimToBudget() {
+    while (myPooledBytes.get() > myMaxPooledBytes) {
+      Bucket bucket = null;
+      BucketStatsImpl bucketStats = null;
+      synchronized (myPool) {
+        for (BucketStatsImpl stats : myBucketStats.values()) {
+          if (!stats.myBucket.isEmpty() && (bucketStats == null || stats.getLastAccessTimeMs() < bucketStats.getLastAccessTimeMs())) {
+            bucket = stats.myBucket;
+            bucketStats = stats;
+          }
+        }
+      }
+      if (bucket == null) {
+        return;
+      }
+
+      PooledImageReference imageRef;
+      try {
+        imageRef = bucket.remove();
+      }
+      catch (NoSuchElementException e) {
+        // The image was reused concurrently, check the budget again.
+        continue;
+      }
+      // The evicted image is dropped whether or not it has already been collected, so its recorded size is released exactly once.
+      myPooledBytes.addAndGet(-imageRef.mySizeBytes);
+      myTotalAllocatedBytes.add(-imageRef.mySizeBytes);
+      bucketStats.imageEvicted();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("Evicted image from bucket (%dx%d) pooledBytes=%d\n", bucket.myMinWidth, bucket.myMinHeight,
+                                myPooledBytes.get()));
+      }
+    }
   }
 
   @VisibleForTesting
@@ -187,18 +278,17 @@ class ImagePoolImpl implements ImagePool {
 
     // To avoid creating a large number of EvictingQueues, we distribute the images in buckets and use that
     Bucket bucket = getTypeBucket(w, h, type);
-    BucketStatsImpl bucketStats = myBucketStats.get(bucket);
+    BucketStatsImpl bucketStats = getBucketStats(bucket);
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("create(%dx%d-%d) in bucket (%dx%d) hasStats=%b\n", w, h, type, bucket.myMinWidth, bucket.myMinHeight,
                               bucketStats != null));
     }
 
     BufferedImage image;
-    SoftReference<BufferedImage> imageRef;
     try {
-      imageRef = bucket.remove();
-      while ((image = imageRef.get()) == null) {
-        imageRef = bucket.remove();
+      image = removeFromBucket(bucket);
+      while (image == null) {
+        image = removeFromBucket(bucket);
       }
 
       long totalSize = image.getWidth() * image.getHeight();
@@ -252,7 +342,8 @@ class ImagePoolImpl implements ImagePool {
       public void finalizeReferent() {
         // This method might be called twice if the user has manually called the free() method. The second call will have no effect.
         if (myReferences.remove(this)) {
-          boolean accepted = bucket.offer(new SoftReference<>(imagePointer));
+          long estimatedSize = imagePointer.getWidth() * imagePointer.getHeight() * 4;
+          boolean accepted = bucket.offer(new PooledImageReference(imagePointer, estimatedSize));
           if (bucketStats != null) {
             if (accepted) {
               bucketStats.returnedImageAccepted();
@@ -267,12 +358,13 @@ class ImagePoolImpl implements ImagePool {
                                     w, h, type, bucket.myMinWidth, bucket.myMinHeight));
           }
 
-          long estimatedSize = imagePointer.getWidth() * imagePointer.getHeight() * 4;
           if (!accepted) {
             myTotalAllocatedBytes.add(-estimatedSize);
           }
           else {
             myTotalInUseBytes.add(-estimatedSize);
+            myPooledBytes.addAndGet(estimatedSize);
+            trimToBudget();
           }
           if (freedCallback != null) {
             freedCallback.accept(imagePointer);
@@ -293,6 +385,7 @@ class ImagePoolImpl implements ImagePool {
     private final AtomicLong myBucketHit = new AtomicLong(0);
     private final AtomicLong myBucketFull = new AtomicLong(0);
     private final AtomicLong myBucketHadSpace = new AtomicLong(0);
+    private final AtomicLong myBucketEvicted = new AtomicLong(0);
 
     BucketStatsImpl(@NotNull Bucket bucket) {
       myBucket = bucket;
@@ -338,6 +431,11 @@ class ImagePoolImpl implements ImagePool {
       return myBucketHadSpace.get();
     }
 
+    @Override
+    public long imageWasEvicted() {
+      return myBucketEvicted.get();
+    }
+
     public void bucketHit() {
       myLastAccessMs.set(System.currentTimeMillis());
       myBucketHit.incrementAndGet();
@@ -355,10 +453,27 @@ class ImagePoolImpl implements ImagePool {
     public void returnedImageRejected() {
       myBucketFull.incrementAndGet();
     }
+
+    public void imageEvicted() {
+      myBucketEvicted.incrementAndGet();
+    }
   }
 
-  private static class Bucket extends ForwardingQueue<SoftReference<BufferedImage>> {
-    private final Queue<SoftReference<BufferedImage>> myDelegate;
+  /**
+   * {@link SoftReference} to a pooled image that remembers the image size so the pool accounting is still correct after the image has
+   * been collected.
+   */
+  private static final class PooledImageReference extends SoftReference<BufferedImage> {
+    private final long mySizeBytes;
+
+    PooledImageReference(@NotNull BufferedImage image, long sizeBytes) {
+      super(image);
+      mySizeBytes = sizeBytes;
+    }
+  }
+
+  private static class Bucket extends ForwardingQueue<PooledImageReference> {
+    private final Queue<PooledImageReference> myDelegate;
     private final int myMinWidth;
     private final int myMinHeight;
     private final int myMaxSize;
@@ -373,11 +488,11 @@ class ImagePoolImpl implements ImagePool {
       myMaxSize = maxSize;
       myDelegate = maxSize == 0 ?
                    EvictingQueue.create(0)
-                                : new ArrayBlockingQueue<SoftReference<BufferedImage>>(maxSize);
+                                : new ArrayBlockingQueue<PooledImageReference>(maxSize);
     }
 
     @Override
-    protected Queue<SoftReference<BufferedImage>> delegate() {
+    protected Queue<PooledImageReference> delegate() {
       return myDelegate;
     }
 
@@ -426,7 +541,9 @@ class ImagePoolImpl implements ImagePool {
     isDisposed = true;
     myFinalizableReferenceQueue.close();
     myReferences.clear();
-    myPool.clear();
+    synchronized (myPool) {
+      myPool.clear();
+    }
   }
 
   public static class ImageImpl implements ImagePool.Image {
@@ -24,6 +24,7 @@ import com.android.resources.ResourceType;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -37,6 +38,8 @@ import org.jetbrains.annotations.Nullable;
  *   <li>May compute cells in the table on-demand.
  *   <li>May change in the background, if underlying files or other sources of data have changed.
  *       Because of that access should be synchronized on the {@code ITEM_MAP_LOCK} object.
+ *   <li>May publish immutable snapshots of its cells, see {@link #getSnapshot(ResourceNamespace, ResourceType)}.
+ *       Reads served from a snapshot don't take the {@code ITEM_MAP_LOCK} lock.
  * </ul>
  */
 public abstract class AbstractResourceRepositoryWithLocking extends AbstractResourceRepository {
@@ -55,6 +58,19 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   protected abstract ListMultimap<String, ResourceItem> getMap(
       @NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType);
 
+  /**
+   * Returns an immutable snapshot of the resources of the given namespace and type that can be read without holding
+   * {@link #ITEM_MAP_LOCK}, or null if the repository has to be read under the lock. The default implementation returns null.
+   *
+   * <p>Implementations are responsible for not returning a snapshot that is older than the last change to the resources
+   * of the namespace and type.
+   */
+  @Nullable
+  protected ImmutableListMultimap<String, ResourceItem> getSnapshot(
+      @NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return null;
+  }
+
   @SuppressWarnings("InstanceGuardedByStatic")
   @GuardedBy("ITEM_MAP_LOCK")
   @Override
@@ -70,6 +86,10 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                          @NotNull ResourceType resourceType,
                                          @NotNull String resourceName) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshot(namespace, resourceType);
+    if (snapshot != null) {
+      return snapshot.get(resourceName);
+    }
     synchronized (ITEM_MAP_LOCK) {
       return super.getResources(namespace, resourceType, resourceName);
     }
@@ -80,6 +100,16 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                          @NotNull ResourceType resourceType,
                                          @NotNull Predicate<ResourceItem> filter) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshot(namespace, resourceType);
+    if (snapshot != null) {
+      List<ResourceItem> result = new ArrayList<>();
+      for (ResourceItem item : snapshot.values()) {
+        if (filter.test(item)) {
+          result.add(item);
+        }
+      }
+      return result;
+    }
     synchronized (ITEM_MAP_LOCK) {
       return super.getResources(namespace, resourceType, filter);
     }
@@ -88,6 +118,10 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   @Override
   @NotNull
   public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshot(namespace, resourceType);
+    if (snapshot != null) {
+      return snapshot;
+    }
     synchronized (ITEM_MAP_LOCK) {
       return super.getResources(namespace, resourceType);
     }
@@ -96,6 +130,10 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   @Override
   @NotNull
   public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshot(namespace, resourceType);
+    if (snapshot != null) {
+      return snapshot.keySet();
+    }
     synchronized (ITEM_MAP_LOCK) {
       ListMultimap<String, ResourceItem> map = getMap(namespace, resourceType);
       return map == null ? ImmutableSet.of() : ImmutableSet.copyOf(map.keySet());
@@ -104,6 +142,10 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshot(namespace, resourceType);
+    if (snapshot != null) {
+      return snapshot.containsKey(resourceName);
+    }
     synchronized (ITEM_MAP_LOCK) {
       return super.hasResources(namespace, resourceType, resourceName);
     }
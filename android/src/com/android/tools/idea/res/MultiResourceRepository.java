@@ -55,6 +55,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
 import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.annotations.NotNull;
@@ -67,6 +70,9 @@ import org.jetbrains.annotations.Nullable;
  * replace/hide any subsequent definitions of the same resource.
  *
  * <p>In the resource repository hierarchy, MultiResourceRepository is an internal node, never a leaf.
+ *
+ * <p>The merged resources are published as immutable snapshots per namespace and resource type, so that reads don't contend on
+ * {@code ITEM_MAP_LOCK}. Only the first read after a child repository invalidates a namespace and type merges it under the lock.
  */
 @SuppressWarnings("InstanceGuardedByStatic") // TODO: The whole locking scheme for resource repositories needs to be reworked.
 public abstract class MultiResourceRepository extends LocalResourceRepository implements Disposable {
@@ -98,6 +104,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @GuardedBy("ITEM_MAP_LOCK")
   private final ResourceTable myCachedMaps = new ResourceTable();
 
+  /**
+   * Immutable snapshots of the merged resources keyed by namespace and indexed by {@link ResourceType#ordinal()}. They are read
+   * without holding {@code ITEM_MAP_LOCK}, but published and dropped only while holding it, in the same critical sections that
+   * update {@link #myCachedMaps}. Because of that a snapshot is never older than the last invalidation of its namespace and type.
+   */
+  private final ConcurrentMap<ResourceNamespace, AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>>> mySnapshots =
+      new ConcurrentHashMap<>();
+
   /** Names of resources from local leaf repositories. */
   @GuardedBy("ITEM_MAP_LOCK")
   private final Table<SingleNamespaceResourceRepository, ResourceType, Set<String>> myResourceNames =
@@ -149,6 +163,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         myModificationCounts[i++] = child.getModificationCount();
       }
       myCachedMaps.clear();
+      mySnapshots.clear();
 
       invalidateParentCaches();
     }
@@ -357,6 +372,27 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     return map;
   }
 
+  @Override
+  @NotNull
+  protected ImmutableListMultimap<String, ResourceItem> getSnapshot(@NotNull ResourceNamespace namespace,
+                                                                    @NotNull ResourceType type) {
+    AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>> snapshots = mySnapshots.get(namespace);
+    ImmutableListMultimap<String, ResourceItem> snapshot = snapshots == null ? null : snapshots.get(type.ordinal());
+    if (snapshot != null) {
+      return snapshot;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      snapshots = mySnapshots.computeIfAbsent(namespace, ns -> new AtomicReferenceArray<>(ResourceType.values().length));
+      snapshot = snapshots.get(type.ordinal());
+      if (snapshot == null) {
+        snapshot = ImmutableListMultimap.copyOf(getMap(namespace, type));
+        snapshots.set(type.ordinal(), snapshot);
+      }
+      return snapshot;
+    }
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @NotNull
   private static ListMultimap<String, ResourceItem> getResourcesUnderLock(@NotNull SingleNamespaceResourceRepository repository,
@@ -372,6 +408,12 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>> snapshots = mySnapshots.get(namespace);
+    ImmutableListMultimap<String, ResourceItem> snapshot = snapshots == null ? null : snapshots.get(type.ordinal());
+    if (snapshot != null) {
+      return !snapshot.isEmpty();
+    }
+
     synchronized (ITEM_MAP_LOCK) {
       if (myChildren.size() == 1) {
         return myChildren.get(0).hasResources(namespace, type);
@@ -413,6 +455,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @GuardedBy("ITEM_MAP_LOCK")
   public void invalidateCache() {
     myCachedMaps.clear();
+    mySnapshots.clear();
     myResourceNames.clear();
     myUnreconciledResources.clear();
     setModificationCount(ourModificationCounter.incrementAndGet());
@@ -433,6 +476,13 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     // In such a case we don't need to do anything.
     ImmutableList<SingleNamespaceResourceRepository> leafs = myLeafsByNamespace.get(namespace);
     if (leafs != null && leafs.contains(repository)) {
+      AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>> snapshots = mySnapshots.get(namespace);
+      if (snapshots != null) {
+        for (ResourceType type : types) {
+          snapshots.set(type.ordinal(), null);
+        }
+      }
+
       // Update myUnreconciledResources only if myCachedMaps is used for this namespace.
       if (leafs.size() != 1) {
         for (ResourceType type : types) {
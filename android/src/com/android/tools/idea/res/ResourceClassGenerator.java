@@ -27,6 +27,7 @@ import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ModificationTracker;
 import gnu.trove.TIntArrayList;
 import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.android.util.AndroidResourceUtil;
@@ -39,7 +40,6 @@ import org.jetbrains.org.objectweb.asm.Type;
 import java.util.*;
 
 import static com.android.tools.idea.LogAnonymizerUtil.anonymizeClassName;
-import static com.android.tools.idea.LogAnonymizerUtil.isPublicClass;
 import static org.jetbrains.org.objectweb.asm.Opcodes.*;
 
 /**
@@ -79,6 +79,12 @@ public final class ResourceClassGenerator {
   private Map<ResourceType, TObjectIntHashMap<String>> myCache;
   /** For int[] in styleables. The ints in styleables are stored in {@link #myCache}. */
   private Map<String, TIntArrayList> myStyleableCache;
+  /**
+   * Generated class files by class name. The class files are shared by all the class loaders asking for the same R class, and are
+   * valid for {@link #myModificationCount} of the repository.
+   */
+  private final Map<String, byte[]> myGeneratedClasses = new HashMap<>();
+  private long myModificationCount;
   @NotNull private final ResourceRepository myResources;
   @NotNull private final NumericIdProvider myIdProvider;
   @NotNull private final ResourceNamespace myNamespace;
@@ -89,6 +95,7 @@ public final class ResourceClassGenerator {
     myIdProvider = idProvider;
     myResources = resources;
     myNamespace = namespace;
+    myModificationCount = getModificationCount();
   }
 
   /**
@@ -102,10 +109,84 @@ public final class ResourceClassGenerator {
   }
 
   /**
+   * Returns the class file of the given R class. The returned array must not be modified.
+   *
    * @param fqcn Fully qualified class name (as accepted by ClassLoader, or as returned by Class.getName())
    */
   @Nullable
-  public byte[] generate(String fqcn) {
+  public synchronized byte[] generate(String fqcn) {
+    long modificationCount = getModificationCount();
+    if (modificationCount != myModificationCount) {
+      myModificationCount = modificationCount;
+      updateCaches();
+    }
+
+    byte[] data = myGeneratedClasses.get(fqcn);
+    if (data == null) {
+      data = generateClass(fqcn);
+      if (data != null) {
+        myGeneratedClasses.put(fqcn, data);
+      }
+    }
+    else if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("generate(%s) from cache", anonymizeClassName(fqcn)));
+    }
+    return data;
+  }
+
+  private long getModificationCount() {
+    // Repositories that are not modification trackers, like the ones of AARs, do not change.
+    return myResources instanceof ModificationTracker ? ((ModificationTracker)myResources).getModificationCount() : 0;
+  }
+
+  /**
+   * Recomputes the cached values after the resources have changed, and drops the generated classes of the resource types whose values
+   * have changed. The classes of the other types are kept, so a change of a few resources does not regenerate all the R classes.
+   */
+  private void updateCaches() {
+    Set<ResourceType> changedTypes = EnumSet.noneOf(ResourceType.class);
+    if (myCache != null) {
+      for (Map.Entry<ResourceType, TObjectIntHashMap<String>> entry : myCache.entrySet()) {
+        ResourceType type = entry.getKey();
+        if (type == ResourceType.STYLEABLE) {
+          continue;
+        }
+        TObjectIntHashMap<String> values = computeValuesForType(type);
+        if (!values.equals(entry.getValue())) {
+          entry.setValue(values);
+          changedTypes.add(type);
+        }
+      }
+      if (myStyleableCache != null) {
+        TObjectIntHashMap<String> indexFields = new TObjectIntHashMap<>();
+        Map<String, TIntArrayList> arrays = new HashMap<>();
+        computeStyleables(indexFields, arrays);
+        if (!indexFields.equals(myCache.get(ResourceType.STYLEABLE)) || !arrays.equals(myStyleableCache)) {
+          myCache.put(ResourceType.STYLEABLE, indexFields);
+          myStyleableCache = arrays;
+          changedTypes.add(ResourceType.STYLEABLE);
+        }
+      }
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("Resources changed, regenerating classes for %s", changedTypes));
+    }
+    // The default R class lists the resource types, so it is always regenerated.
+    myGeneratedClasses.keySet().removeIf(fqcn -> {
+      ResourceType type = getInnerClassType(fqcn);
+      return type == null || changedTypes.contains(type);
+    });
+  }
+
+  @Nullable
+  private static ResourceType getInnerClassType(@NotNull String fqcn) {
+    int index = fqcn.lastIndexOf('$');
+    return index == -1 ? null : ResourceType.fromClassName(fqcn.substring(index + 1));
+  }
+
+  @Nullable
+  private byte[] generateClass(String fqcn) {
     String className = fqcn.replace('.', '/');
 
     if (LOG.isDebugEnabled()) {
@@ -131,26 +212,22 @@ public final class ResourceClassGenerator {
       }
       if (type == ResourceType.STYLEABLE) {
         if (myStyleableCache == null) {
-          myCache.put(ResourceType.STYLEABLE, new TObjectIntHashMap<>());
+          TObjectIntHashMap<String> indexFields = new TObjectIntHashMap<>();
           myStyleableCache = Maps.newHashMap();
-          generateStyleable(cw, className);
-        }
-        else {
-          TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
-          assert indexFieldsCache != null;
-          generateFields(cw, indexFieldsCache);
-          generateIntArraysFromCache(cw, className);
+          computeStyleables(indexFields, myStyleableCache);
+          myCache.put(ResourceType.STYLEABLE, indexFields);
         }
+        TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
+        assert indexFieldsCache != null;
+        generateFields(cw, indexFieldsCache);
+        generateIntArraysFromCache(cw, className);
       } else {
         TObjectIntHashMap<String> typeCache = myCache.get(type);
         if (typeCache == null) {
-          typeCache = new TObjectIntHashMap<>();
+          typeCache = computeValuesForType(type);
           myCache.put(type, typeCache);
-          generateValuesForType(cw, type, typeCache);
-        }
-        else {
-          generateFields(cw, typeCache);
         }
+        generateFields(cw, typeCache);
       }
     } else {
       // Default R class.
@@ -166,14 +243,18 @@ public final class ResourceClassGenerator {
     return cw.toByteArray();
   }
 
-  private void generateValuesForType(@NotNull ClassWriter cw, @NotNull ResourceType resType, @NotNull TObjectIntHashMap<String> cache) {
+  /**
+   * Returns the field values of the R class of the given type, indexed by field name.
+   */
+  @NotNull
+  private TObjectIntHashMap<String> computeValuesForType(@NotNull ResourceType resType) {
     Collection<String> resourceNames = myResources.getResourceNames(myNamespace, resType);
+    TObjectIntHashMap<String> values = new TObjectIntHashMap<>(resourceNames.size());
     for (String name : resourceNames) {
       int initialValue = myIdProvider.getOrGenerateId(new ResourceReference(myNamespace, resType, name));
-      name = AndroidResourceUtil.getFieldNameByResourceName(name);
-      generateField(cw, name, initialValue);
-      cache.put(name, initialValue);
+      values.put(AndroidResourceUtil.getFieldNameByResourceName(name), initialValue);
     }
+    return values;
   }
 
   /**
@@ -188,17 +269,17 @@ public final class ResourceClassGenerator {
     return Lists.transform(dv.getAllAttributes(), ResourceValue::asReference);
   }
 
-  private void generateStyleable(@NotNull ClassWriter cw, String className) {
-    if (LOG.isDebugEnabled()) {
-      LOG.debug(String.format("generateStyleable(%s)", anonymizeClassName(className)));
+  /**
+   * Computes the fields of the styleable R class: the attribute indices, stored in {@code indexFields}, and the attribute ids of
+   * each styleable, stored in {@code arrays}.
+   */
+  private void computeStyleables(@NotNull TObjectIntHashMap<String> indexFields, @NotNull Map<String, TIntArrayList> arrays) {
+    boolean debug = LOG.isDebugEnabled();
+    if (debug) {
+      LOG.debug("computeStyleables()");
     }
-    boolean debug = LOG.isDebugEnabled() && isPublicClass(className);
 
-    TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
     Collection<String> styleableNames = myResources.getResourceNames(myNamespace, ResourceType.STYLEABLE);
-    List<MergedStyleable> mergedStyleables = new ArrayList<>(styleableNames.size());
-
-    // Generate all declarations - both int[] and int for the indices into the array.
     for (String styleableName : styleableNames) {
       List<ResourceItem> items = myResources.getResources(myNamespace, ResourceType.STYLEABLE, styleableName);
       if (items.isEmpty()) {
@@ -208,10 +289,6 @@ public final class ResourceClassGenerator {
         continue;
       }
       String fieldName = AndroidResourceUtil.getFieldNameByResourceName(styleableName);
-      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, fieldName, "[I", null, null);
-      if (debug) {
-        LOG.debug("  Defined styleable " + fieldName);
-      }
 
       // Merge all the styleables with the same name, to compute the sum of all attrs defined in them.
       LinkedHashSet<ResourceReference> mergedAttributes = new LinkedHashSet<>();
@@ -219,35 +296,14 @@ public final class ResourceClassGenerator {
         mergedAttributes.addAll(getStyleableAttributes(item));
       }
 
-      mergedStyleables.add(new MergedStyleable(styleableName, mergedAttributes));
-
       int idx = 0;
+      TIntArrayList values = new TIntArrayList(mergedAttributes.size());
       for (ResourceReference attr : mergedAttributes) {
-        String styleableEntryName = getResourceName(fieldName, attr);
-        int fieldValue = idx++;
-        cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, styleableEntryName, "I", null, fieldValue);
-        indexFieldsCache.put(styleableEntryName, fieldValue);
-        if (debug) {
-          LOG.debug("  Defined styleable " + styleableEntryName);
-        }
-      }
-    }
-
-    // Generate class initializer block to initialize the arrays declared above.
-    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-    mv.visitCode();
-    for (MergedStyleable mergedStyleable : mergedStyleables) {
-      String fieldName = AndroidResourceUtil.getFieldNameByResourceName(mergedStyleable.name);
-      TIntArrayList values = new TIntArrayList();
-      for (ResourceReference attr : mergedStyleable.attrs) {
+        indexFields.put(getResourceName(fieldName, attr), idx++);
         values.add(myIdProvider.getOrGenerateId(attr));
       }
-      myStyleableCache.put(fieldName, values);
-      generateArrayInitialization(mv, className, fieldName, values);
+      arrays.put(fieldName, values);
     }
-    mv.visitInsn(RETURN);
-    mv.visitMaxs(4, 0);
-    mv.visitEnd();
   }
 
   private static void generateFields(@NotNull final ClassWriter cw, @NotNull TObjectIntHashMap<String> values) {
@@ -350,14 +406,4 @@ public final class ResourceClassGenerator {
       }
     }
   }
-
-  private static final class MergedStyleable {
-    @NotNull final String name;
-    @NotNull final LinkedHashSet<ResourceReference> attrs;
-
-    private MergedStyleable(@NotNull String name, @NotNull LinkedHashSet<ResourceReference> attrs) {
-      this.name = name;
-      this.attrs = attrs;
-    }
-  }
 }
@@ -119,8 +119,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -164,7 +166,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * Increment when making changes that may affect content of repository cache files.
    * Used together with CachingData.codeVersion. Important for developer builds.
    */
-  static final String CACHE_FILE_FORMAT_VERSION = "2";
+  static final String CACHE_FILE_FORMAT_VERSION = "3";
   private static final byte[] CACHE_FILE_HEADER = "Resource cache".getBytes(UTF_8);
   /**
    * Maximum fraction of resources out of date in the cache for the cache to be considered fresh.
@@ -488,6 +490,18 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
   private boolean scanValueFileAsPsi(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> result,
                                      @NotNull PsiFile file, @NotNull FolderConfiguration folderConfiguration) {
+    return scanValueFileAsPsi(result, file, folderConfiguration, Collections.emptyMap());
+  }
+
+  /**
+   * Creates the resource items of a value file, reusing the items from {@code reusableItems} whose tags are still present in the file
+   * with the same resource type and name. Reused items are removed from {@code reusableItems} and are not added to {@code result}.
+   *
+   * @return true if the file contains any resource items
+   */
+  private boolean scanValueFileAsPsi(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> result,
+                                     @NotNull PsiFile file, @NotNull FolderConfiguration folderConfiguration,
+                                     @NotNull Map<XmlTag, PsiResourceItem> reusableItems) {
     boolean added = false;
     FileType fileType = file.getFileType();
     if (fileType == StdFileTypes.XML) {
@@ -508,9 +522,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
           String name = tag.getAttributeValue(ATTR_NAME);
           ResourceType type = getResourceTypeForResourceTag(tag);
           if (type != null && isValidValueResourceName(name)) {
-            PsiResourceItem item = PsiResourceItem.forXmlTag(name, type, this, tag, false);
-            addToResult(result, item);
-            items.add(item);
+            items.add(createOrReuseItem(result, name, type, tag, reusableItems));
             added = true;
 
             if (type == ResourceType.STYLEABLE) {
@@ -523,9 +535,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       // Only add attr nodes for elements that specify a format or have flag/enum children; otherwise
                       // it's just a reference to an existing attr.
                       && (child.getAttribute(ATTR_FORMAT) != null || child.getSubTags().length > 0)) {
-                    PsiResourceItem attrItem = PsiResourceItem.forXmlTag(attrName, ResourceType.ATTR, this, child, false);
-                    items.add(attrItem);
-                    addToResult(result, attrItem);
+                    items.add(createOrReuseItem(result, attrName, ResourceType.ATTR, child, reusableItems));
                   }
                 }
               }
@@ -541,6 +551,22 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     return added;
   }
 
+  @NotNull
+  private PsiResourceItem createOrReuseItem(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> result,
+                                            @NotNull String name, @NotNull ResourceType type, @NotNull XmlTag tag,
+                                            @NotNull Map<XmlTag, PsiResourceItem> reusableItems) {
+    PsiResourceItem item = reusableItems.get(tag);
+    if (item != null && item.getType() == type && item.getName().equals(name)) {
+      reusableItems.remove(tag);
+      // The tag may have been edited, so the value has to be parsed again when requested.
+      item.recomputeValue();
+      return item;
+    }
+    item = PsiResourceItem.forXmlTag(name, type, this, tag, false);
+    addToResult(result, item);
+    return item;
+  }
+
   @Contract(value = "null -> false")
   private static boolean isValidValueResourceName(@Nullable String name) {
     return !StringUtil.isEmpty(name) && ValueResourceNameValidator.getErrorText(name, null) == null;
@@ -713,33 +739,49 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       //noinspection AssignmentToStaticFieldFromInstanceMethod
       ourFullRescans++;
 
-      // First delete out the previous items.
+      // The items of the previous version of the file that are still backed by the same tags are kept, so only the added and
+      // removed items have to be updated in this repository and only their resource types invalidated in the parent repositories.
       ResourceItemSource<? extends ResourceItem> source = this.mySources.remove(file.getVirtualFile());
-      boolean removed = false;
-      if (source != null) {
-        removed = removeItemsFromSource(source);
-      }
-
       file = ensureValid(file);
-      boolean added = false;
+      FolderConfiguration folderConfiguration = null;
       if (file != null) {
-        // Add items for this file.
         PsiDirectory parent = file.getParent();
         assert parent != null; // Since we have a folder type.
         PsiDirectory fileParent = psiFile.getParent();
         if (fileParent != null) {
-          FolderConfiguration folderConfiguration = FolderConfiguration.getConfigForFolder(fileParent.getName());
-          if (folderConfiguration != null) {
-            added = scanValueFileAsPsi(result, file, folderConfiguration);
+          folderConfiguration = FolderConfiguration.getConfigForFolder(fileParent.getName());
+        }
+      }
+
+      List<ResourceItem> removedItems = new ArrayList<>();
+      Map<XmlTag, PsiResourceItem> reusableItems = new IdentityHashMap<>();
+      if (source != null) {
+        boolean canReuseItems = folderConfiguration != null && folderConfiguration.equals(source.getFolderConfiguration());
+        for (ResourceItem item : source) {
+          XmlTag tag = canReuseItems && item instanceof PsiResourceItem ? ((PsiResourceItem)item).getTag() : null;
+          if (tag == null || reusableItems.putIfAbsent(tag, (PsiResourceItem)item) != null) {
+            removedItems.add(item);
           }
         }
       }
 
+      // Add items for this file.
+      boolean added = file != null && folderConfiguration != null &&
+                      scanValueFileAsPsi(result, file, folderConfiguration, reusableItems);
+      removedItems.addAll(reusableItems.values());
+      boolean removed = removeItems(removedItems);
+
       if (added || removed) {
-        // TODO: Consider doing a deeper diff of the changes to the resource items
-        //       to determine if the removed and added items actually differ.
+        commitToRepository(result);
         setModificationCount(ourModificationCounter.incrementAndGet());
-        invalidateParentCaches(this, ResourceType.values());
+        Set<ResourceType> changedTypes = EnumSet.noneOf(ResourceType.class);
+        changedTypes.addAll(result.keySet());
+        for (ResourceItem item : removedItems) {
+          changedTypes.add(item.getType());
+        }
+        if (!changedTypes.isEmpty()) {
+          invalidateParentCaches(this, changedTypes.toArray(new ResourceType[0]));
+        }
       }
     } else if (isValidResourceFileName(file.getName(), folderType)) {
       ResourceItemSource<? extends ResourceItem> source = mySources.get(file.getVirtualFile());
@@ -803,6 +845,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
           }
 
           // Identities may have changed even if the ids are the same, so update maps.
+          commitToRepository(result);
           setModificationCount(ourModificationCounter.incrementAndGet());
           invalidateParentCaches(this, ResourceType.ID);
         }
@@ -834,13 +877,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
               scanFileResourceFileAsPsi(result, folderType, folderConfiguration, type, idGeneratingFile, file);
             }
           }
+          // The new items have to be in the repository before the parents are invalidated, otherwise the parents may cache
+          // a merged view without them.
+          commitToRepository(result);
           setModificationCount(ourModificationCounter.incrementAndGet());
           invalidateParentCaches();
         }
       }
     }
-
-    commitToRepository(result);
   }
 
   private void scan(@NotNull VirtualFile file) {
@@ -908,10 +952,19 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * @return true if any resource items were removed from the repository
    */
   private boolean removeItemsFromSource(@NotNull ResourceItemSource<? extends ResourceItem> source) {
+    return removeItems(source);
+  }
+
+  /**
+   * Removes the given resource items from the repository.
+   *
+   * @return true if any resource items were removed from the repository
+   */
+  private boolean removeItems(@NotNull Iterable<? extends ResourceItem> itemsToRemove) {
     boolean changed = false;
 
     synchronized (ITEM_MAP_LOCK) {
-      for (ResourceItem item : source) {
+      for (ResourceItem item : itemsToRemove) {
         ListMultimap<String, ResourceItem> map = myResourceTable.get(item.getType());
         List<ResourceItem> items = map.get(item.getName());
         for (Iterator<ResourceItem> iter = items.iterator(); iter.hasNext(); ) {
@@ -1998,6 +2051,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         if (!stream.validateContents(fileHeader)) {
           return; // Cache file header doesn't match.
         }
+        stream.enableStringTable();
         ResourceSerializationUtil.readResourcesFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null, myRepository,
                                                           item -> addResourceItem(item, myRepository));
       }
@@ -68,7 +68,7 @@ public class AndroidLogcatOutputCapture implements AutoCloseable {
     LOG.info(String.format("startCapture(\"%s\")", device.getName()));
     AndroidLogcatService.LogcatListener logListener = new MyLogcatListener(applicationId, pid, device, myTextEmitter);
 
-    AndroidLogcatService.getInstance().addListener(device, logListener, true);
+    AndroidLogcatService.getInstance().addListener(device, logListener, pid);
 
     // Remember the listener for later cleanup
     AndroidLogcatService.LogcatListener previousListener;
@@ -215,7 +215,7 @@ public class ConnectJavaDebuggerTask extends ConnectDebuggerTask {
     LogcatListener logListener = new MyLogcatListener(client, debugProcessHandler);
 
     Logger.getInstance(ConnectJavaDebuggerTask.class).info(String.format("captureLogcatOutput(\"%s\")", device.getName()));
-    AndroidLogcatService.getInstance().addListener(device, logListener, true);
+    AndroidLogcatService.getInstance().addListener(device, logListener, client.getClientData().getPid());
 
     // Remove listener when process is terminated
     debugProcessHandler.addProcessListener(new ProcessAdapter() {
@@ -35,6 +35,7 @@ import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import org.jetbrains.android.dom.manifest.AndroidManifestUtils;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -49,11 +50,15 @@ import org.jetbrains.annotations.Nullable;
  */
 public final class ModuleClassLoader extends RenderClassLoader {
   private static final Logger LOG = Logger.getInstance(ModuleClassLoader.class);
+  private static final AtomicLong ourStampCounter = new AtomicLong();
 
   /** The base module to use as a render context; the class loader will consult the module dependencies and library dependencies
    * of this class as well to find classes */
   private final WeakReference<Module> myModuleReference;
 
+  /** Number identifying this class loader, and so the version of the project classes it loads. Unique within an IDE session. */
+  private final long myStamp = ourStampCounter.incrementAndGet();
+
   /** Map from fully qualified class name to the corresponding .class file for each class loaded by this class loader */
   private Map<String, VirtualFile> myClassFiles;
   /** Map from fully qualified class name to the corresponding last modified info for each class loaded by this class loader */
@@ -409,6 +414,10 @@ public final class ModuleClassLoader extends RenderClassLoader {
     return areDependenciesUpToDate();
   }
 
+  long getStamp() {
+    return myStamp;
+  }
+
   public boolean isClassLoaded(@NotNull String className) {
     return findLoadedClass(className) != null;
   }
@@ -66,6 +66,16 @@ class ModuleClassLoaderManager {
     }
   }
 
+  /**
+   * Returns a stamp identifying the version of the project classes that renders of the given module use. The stamp is 0 if no class
+   * loader is cached for the module, and null if the classes of the cached class loader have changed since they were loaded, since the
+   * next render will load them again.
+   */
+  fun getProjectClassesStamp(module: Module): Long? {
+    val moduleClassLoader = cacheLock.read { cache[module] } ?: return 0L
+    return if (moduleClassLoader.isUpToDate) moduleClassLoader.stamp else null
+  }
+
   fun clearCache() = cacheLock.write {
     cache.clear();
   }
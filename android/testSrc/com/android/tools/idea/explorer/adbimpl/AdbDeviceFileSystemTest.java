@@ -301,6 +301,35 @@ public class AdbDeviceFileSystemTest {
     assertThat(appFiles.stream().anyMatch(x -> Objects.equals(x.getName(), "base.apk"))).isTrue();
   }
 
+  @Test
+  public void test_FileSystem_GetEntries_Returns_PrefetchedAppSubdirectories() throws Exception {
+    // Prepare
+    assert myFileSystem != null;
+    assert myMockDevice != null;
+    TestDevices.addNexus7Api23Commands(myMockDevice.getShellCommands());
+    DeviceFileEntry dataEntry = waitForFuture(myFileSystem.getEntry("/data/app"));
+    DeviceFileEntry app = waitForFuture(dataEntry.getEntries()).stream()
+      .filter(entry -> entry.getName().equals("com.example.rpaquay.myapplication-2"))
+      .findFirst()
+      .orElse(null);
+    assertThat(app).isNotNull();
+    List<DeviceFileEntry> appFiles = waitForFuture(app.getEntries());
+    DeviceFileEntry oat = appFiles.stream().filter(entry -> entry.getName().equals("oat")).findFirst().orElse(null);
+    assertThat(oat).isNotNull();
+
+    // Act
+    // Note: The mock device has no command listing these directories, they come from the listing of the app directory
+    List<DeviceFileEntry> oatFiles = waitForFuture(oat.getEntries());
+    DeviceFileEntry arm = oatFiles.stream().filter(entry -> entry.getName().equals("arm")).findFirst().orElse(null);
+    assertThat(arm).isNotNull();
+    List<DeviceFileEntry> armFiles = waitForFuture(arm.getEntries());
+
+    // Assert
+    assertThat(oatFiles.size()).isEqualTo(1);
+    assertThat(armFiles.size()).isEqualTo(1);
+    assertThat(armFiles.get(0).getName()).isEqualTo("base.odex");
+  }
+
   @Test
   public void test_FileSystem_GetEntry_Returns_DataDataDirectory() throws Exception {
     // Prepare
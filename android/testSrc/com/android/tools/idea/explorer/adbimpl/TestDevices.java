@@ -242,6 +242,8 @@ public class TestDevices {
     commands.add("ls -l -d /sdcard/", "drwxrwx--x root     sdcard_rw          2014-02-10 17:16\r\n");
     commands.add("ls -l -d /tombstones/", "/tombstones/: Permission denied\r\n");
     commands.add("ls -l -d /vendor/", "drwxr-xr-x root     shell             2013-06-15 12:54\r\n");
+    commands.add("for f in /charger/ /d/ /etc/ /sdcard/ /tombstones/ /vendor/; do test -d \"$f\" && echo \"$f\"; done",
+                 "/d/\r\n/etc/\r\n/sdcard/\r\n/vendor/\r\n");
 
     addCommand(commands, "ls -l /system/", "drwxr-xr-x root     root              2016-05-17 12:04 app\n\n" +
                                            "drwxr-xr-x root     shell             2016-08-26 12:00 bin\n\n" +
@@ -506,22 +508,33 @@ public class TestDevices {
                "package:/data/app/com.hp.android.printservice-1/base.apk=com.hp.android.printservice\n" +
                "package:/data/app/com.google.android.inputmethod.latin-1/base.apk=com.google.android.inputmethod.latin\n");
 
-    addCommand(commands,
-               "run-as com.example.rpaquay.myapplication sh -c 'ls -l /data/app/com.example.rpaquay.myapplication-2/'",
-               "-rw-r--r-- system   system     468458 2017-06-12 11:21 base.apk\n" +
-               "drwxr-xr-x system   system            2017-06-12 11:21 lib\n" +
-               "drwxrwx--x system   install           2017-06-12 11:21 oat\n" +
-               "-rw-r--r-- system   system    1351085 2017-06-12 11:21 split_lib_dependencies_apk.apk\n" +
-               "-rw-r--r-- system   system       3332 2017-06-12 11:21 split_lib_slice_0_apk.apk\n" +
-               "-rw-r--r-- system   system       3088 2017-06-12 11:21 split_lib_slice_1_apk.apk\n" +
-               "-rw-r--r-- system   system      26485 2017-06-12 11:21 split_lib_slice_2_apk.apk\n" +
-               "-rw-r--r-- system   system       3262 2017-06-12 11:21 split_lib_slice_3_apk.apk\n" +
-               "-rw-r--r-- system   system       3088 2017-06-12 11:21 split_lib_slice_4_apk.apk\n" +
-               "-rw-r--r-- system   system       3091 2017-06-12 11:21 split_lib_slice_5_apk.apk\n" +
-               "-rw-r--r-- system   system       3090 2017-06-12 11:21 split_lib_slice_6_apk.apk\n" +
-               "-rw-r--r-- system   system       3254 2017-06-12 11:21 split_lib_slice_7_apk.apk\n" +
-               "-rw-r--r-- system   system      44095 2017-06-12 11:21 split_lib_slice_8_apk.apk\n" +
-               "-rw-r--r-- system   system       6289 2017-06-12 11:21 split_lib_slice_9_apk.apk\n");
+    commands.add("run-as com.example.rpaquay.myapplication sh -c 'for d in " +
+                 "/data/app/com.example.rpaquay.myapplication-2/ " +
+                 "/data/app/com.example.rpaquay.myapplication-2/*/ " +
+                 "/data/app/com.example.rpaquay.myapplication-2/*/*/; " +
+                 "do echo \"DIR-DIR-DIR-DIR $d\"; ls -l \"$d\" || echo ERR-ERR-ERR-ERR; done'",
+                 "DIR-DIR-DIR-DIR /data/app/com.example.rpaquay.myapplication-2/\n" +
+                 "-rw-r--r-- system   system     468458 2017-06-12 11:21 base.apk\n" +
+                 "drwxr-xr-x system   system            2017-06-12 11:21 lib\n" +
+                 "drwxrwx--x system   install           2017-06-12 11:21 oat\n" +
+                 "-rw-r--r-- system   system    1351085 2017-06-12 11:21 split_lib_dependencies_apk.apk\n" +
+                 "-rw-r--r-- system   system       3332 2017-06-12 11:21 split_lib_slice_0_apk.apk\n" +
+                 "-rw-r--r-- system   system       3088 2017-06-12 11:21 split_lib_slice_1_apk.apk\n" +
+                 "-rw-r--r-- system   system      26485 2017-06-12 11:21 split_lib_slice_2_apk.apk\n" +
+                 "-rw-r--r-- system   system       3262 2017-06-12 11:21 split_lib_slice_3_apk.apk\n" +
+                 "-rw-r--r-- system   system       3088 2017-06-12 11:21 split_lib_slice_4_apk.apk\n" +
+                 "-rw-r--r-- system   system       3091 2017-06-12 11:21 split_lib_slice_5_apk.apk\n" +
+                 "-rw-r--r-- system   system       3090 2017-06-12 11:21 split_lib_slice_6_apk.apk\n" +
+                 "-rw-r--r-- system   system       3254 2017-06-12 11:21 split_lib_slice_7_apk.apk\n" +
+                 "-rw-r--r-- system   system      44095 2017-06-12 11:21 split_lib_slice_8_apk.apk\n" +
+                 "-rw-r--r-- system   system       6289 2017-06-12 11:21 split_lib_slice_9_apk.apk\n" +
+                 "DIR-DIR-DIR-DIR /data/app/com.example.rpaquay.myapplication-2/lib/\n" +
+                 "drwxr-xr-x system   system            2017-06-12 11:21 arm\n" +
+                 "DIR-DIR-DIR-DIR /data/app/com.example.rpaquay.myapplication-2/oat/\n" +
+                 "drwxrwx--x system   install           2017-06-12 11:21 arm\n" +
+                 "DIR-DIR-DIR-DIR /data/app/com.example.rpaquay.myapplication-2/lib/arm/\n" +
+                 "DIR-DIR-DIR-DIR /data/app/com.example.rpaquay.myapplication-2/oat/arm/\n" +
+                 "-rw-r--r-- system   u0_a150     76520 2017-06-12 11:21 base.odex\n");
 
     addCommand(commands, "mkdir /sdcard/foo-dir", "");
     addFailedCommand(commands, "mkdir /foo-dir", "mkdir: '/foo-dir': Read-only file system\n");
@@ -598,6 +611,8 @@ public class TestDevices {
     shellCommands.add("su 0 sh -c 'ls -l -d /tombstones/'", "ls: /tombstones/: No such file or directory\n");
     shellCommands.add("su 0 sh -c 'ls -l -d /system/'", "drwxr-xr-x 16 root root 4096 1969-12-31 16:00 /system/\n");
     shellCommands.add("su 0 sh -c 'ls -l -d /vendor/'", "drwxr-xr-x 3 root shell 4096 2016-11-14 14:01 /vendor/\n");
+    shellCommands.add("su 0 sh -c 'for f in /charger/ /d/ /etc/ /sdcard/ /vendor/; do test -d \"$f\" && echo \"$f\"; done'",
+                      "/d/\n/etc/\n/sdcard/\n/vendor/\n");
     addCommand(shellCommands, "touch /data/local/tmp/device-explorer/.__temp_touch_test_file__.tmp", "");
     addCommand(shellCommands, "rm /data/local/tmp/device-explorer/.__temp_touch_test_file__.tmp", "");
     addFailedCommand(shellCommands, "touch /system/build.prop", "touch: '/system/build.prop': Read-only file system\n");
@@ -17,10 +17,17 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
 import org.easymock.EasyMock;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
 import static com.google.common.truth.Truth.assertThat;
 
 public class AndroidLogcatReceiverTest {
@@ -212,4 +219,113 @@ public class AndroidLogcatReceiverTest {
 
     assertThat(myLogcatListener.toString()).isEqualTo(expected);
   }
+
+  @Test
+  public void binaryOutputReceiverDecodesEntriesSplitBetweenChunks() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    // Version 1 entries have no header size
+    output.write(createBinaryEntry(0, 1493, 1595, 1534635551439L, 5, "EDMNativeHelper", "EDMNativeHelperService is published"));
+    output.write(createBinaryEntry(28, 99, 99, 1516739696789L, 2, "UnknownClient", "\n\n1: {\r\n\n}\n\n"));
+    output.write(createBinaryEntry(28, 11698, 11811, 1534643988771L, 6, "AndroidRuntime",
+                                   "java.lang.RuntimeException: Bad response\n" +
+                                   "       at com.android.chattylogger.MainActivity$1.run(MainActivity.java:64)"));
+    output.write(createBinaryEntry(28, 99, 99, 1516739696790L, 3, "UnknownClient", ""));
+    byte[] bytes = output.toByteArray();
+
+    IShellOutputReceiver receiver = myReceiver.newBinaryOutputReceiver();
+    for (int offset = 0; offset < bytes.length; offset += 7) {
+      receiver.addOutput(bytes, offset, Math.min(7, bytes.length - offset));
+    }
+
+    String expected = "2018-08-18 16:39:11.439 1493-1595/dummy.client.name W/EDMNativeHelper: EDMNativeHelperService is published\n" +
+                      "2018-01-23 12:34:56.789 99-99/? V/UnknownClient: 1: {\n" +
+                      "+ \n" +
+                      "+ }\n" +
+                      "2018-08-18 18:59:48.771 11698-11811/com.android.chattylogger E/AndroidRuntime: " +
+                      "java.lang.RuntimeException: Bad response\n" +
+                      "+     at com.android.chattylogger.MainActivity$1.run(MainActivity.java:64)\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+  }
+
+  @Test
+  public void binaryOutputReceiverRejectsText() {
+    byte[] bytes = "logcat: unknown option -- B\n".getBytes(StandardCharsets.UTF_8);
+    AndroidLogcatReceiver.BinaryOutputReceiver receiver = myReceiver.newBinaryOutputReceiver();
+    receiver.addOutput(bytes, 0, bytes.length);
+
+    assertThat(receiver.hasFailed()).isTrue();
+    assertThat(receiver.isCancelled()).isTrue();
+    assertThat(myLogcatListener.toString()).isEqualTo("");
+  }
+
+  @Test
+  public void textOutputResumesAfterLastBinaryMessage() {
+    byte[] entry = createBinaryEntry(28, 99, 99, 1516739696790L, 2, "UnknownClient", "binary message");
+    byte[] text = "stderr text\n".getBytes(StandardCharsets.UTF_8);
+    AndroidLogcatReceiver.BinaryOutputReceiver receiver = myReceiver.newBinaryOutputReceiver();
+    receiver.addOutput(entry, 0, entry.length);
+    receiver.addOutput(text, 0, text.length);
+    assertThat(receiver.hasFailed()).isTrue();
+
+    myReceiver.resumeAfterLastMessage();
+    myReceiver.processNewLine("[ 1516739696.789 99:99 V/UnknownClient     ]");
+    myReceiver.processNewLine("older message");
+    myReceiver.processNewLine("[ 1516739696.790 99:99 V/UnknownClient     ]");
+    myReceiver.processNewLine("binary message");
+    myReceiver.processNewLine("[ 1516739696.791 99:99 V/UnknownClient     ]");
+    myReceiver.processNewLine("newer message");
+
+    String expected = "2018-01-23 12:34:56.790 99-99/? V/UnknownClient: binary message\n" +
+                      "2018-01-23 12:34:56.791 99-99/? V/UnknownClient: newer message\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+  }
+
+  @Test
+  public void textOutputKeepsNewMessagesInTheMillisecondOfLastBinaryMessage() {
+    byte[] first = createBinaryEntry(28, 99, 99, 1516739696790L, 2, "UnknownClient", "first message");
+    byte[] second = createBinaryEntry(28, 100, 100, 1516739696790L, 2, "OtherClient", "second message");
+    byte[] text = "stderr text\n".getBytes(StandardCharsets.UTF_8);
+    AndroidLogcatReceiver.BinaryOutputReceiver receiver = myReceiver.newBinaryOutputReceiver();
+    receiver.addOutput(first, 0, first.length);
+    receiver.addOutput(second, 0, second.length);
+    receiver.addOutput(text, 0, text.length);
+    assertThat(receiver.hasFailed()).isTrue();
+
+    myReceiver.resumeAfterLastMessage();
+    myReceiver.processNewLine("[ 1516739696.790 99:99 V/UnknownClient     ]");
+    myReceiver.processNewLine("first message");
+    myReceiver.processNewLine("[ 1516739696.790 100:100 V/OtherClient     ]");
+    myReceiver.processNewLine("second message");
+    myReceiver.processNewLine("[ 1516739696.790 99:99 V/UnknownClient     ]");
+    myReceiver.processNewLine("third message");
+    myReceiver.processNewLine("[ 1516739696.790 100:100 V/OtherClient     ]");
+    myReceiver.processNewLine("fourth message");
+
+    String expected = "2018-01-23 12:34:56.790 99-99/? V/UnknownClient: first message\n" +
+                      "2018-01-23 12:34:56.790 100-100/? V/OtherClient: second message\n" +
+                      "2018-01-23 12:34:56.790 99-99/? V/UnknownClient: third message\n" +
+                      "2018-01-23 12:34:56.790 100-100/? V/OtherClient: fourth message\n";
+    assertThat(myLogcatListener.toString()).isEqualTo(expected);
+  }
+
+  /**
+   * Returns a logger_entry structure, as written by 'logcat -B', followed by its payload.
+   */
+  @NotNull
+  private static byte[] createBinaryEntry(int headerSize, int pid, int tid, long timestampMillis, int priority, @NotNull String tag,
+                                          @NotNull String message) {
+    byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
+    byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    int payloadLength = 1 + tagBytes.length + 1 + messageBytes.length + 1;
+    ByteBuffer buffer = ByteBuffer.allocate((headerSize == 0 ? 20 : headerSize) + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putShort((short)payloadLength)
+      .putShort((short)headerSize)
+      .putInt(pid)
+      .putInt(tid)
+      .putInt((int)(timestampMillis / 1000))
+      .putInt((int)(timestampMillis % 1000 * 1_000_000));
+    buffer.position(buffer.capacity() - payloadLength);
+    buffer.put((byte)priority).put(tagBytes).put((byte)0).put(messageBytes).put((byte)0);
+    return buffer.array();
+  }
 }
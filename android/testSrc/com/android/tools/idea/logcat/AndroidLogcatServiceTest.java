@@ -18,6 +18,7 @@ package com.android.tools.idea.logcat;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.MultiLineReceiver;
 import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.sdklib.AndroidVersion;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import org.jetbrains.annotations.NotNull;
@@ -26,8 +27,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -82,6 +88,8 @@ public class AndroidLogcatServiceTest {
 
   @Before
   public void setUp() throws Exception {
+    // The text output is only parsed for devices older than N
+    when(mockDevice.getVersion()).thenReturn(new AndroidVersion(AndroidVersion.VersionCodes.M, null));
     stubExecuteLogcatHelp();
     stubExecuteLogcatVLongVEpoch();
 
@@ -272,4 +280,24 @@ public class AndroidLogcatServiceTest {
 
     myLogcatListener.assertCleared();
   }
+
+  @Test
+  public void restartListenerReplaysMatchingBacklog() throws Exception {
+    List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    AndroidLogcatService.LogcatListener listener = new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLineReceived(@NotNull LogCatMessage line) {
+        messages.add(line.getMessage());
+      }
+    };
+
+    when(mockDevice.isOnline()).thenReturn(true);
+    myLogcatService.addListener(mockDevice, listener, true);
+    myExecuteShellCommandLatch.await();
+    assertEquals(Arrays.asList("First Line1", "First Line2", "First Line3", "Second Line1"), messages);
+
+    LogcatQuery query = new LogcatQuery.Builder().setTagPattern(Pattern.compile("Second")).build();
+    myLogcatService.restartListener(mockDevice, listener, query, messages::clear);
+    assertEquals(Collections.singletonList("Second Line1"), messages);
+  }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LogcatBufferTest {
+  private static final LogCatHeader HEADER_1 =
+    new LogCatHeader(LogLevel.INFO, 1, 1, "com.example.first", "First", Instant.ofEpochSecond(1534635551));
+  private static final LogCatHeader HEADER_2 =
+    new LogCatHeader(LogLevel.INFO, 2, 2, "com.example.second", "Second", Instant.ofEpochSecond(1534635551));
+
+  @Test
+  public void messagesAreEvictedByCharacterCount() {
+    LogcatBuffer buffer = new LogcatBuffer(() -> 10);
+    buffer.addMessage(new LogCatMessage(HEADER_1, "1234"));
+    buffer.addMessage(new LogCatMessage(HEADER_2, "5678"));
+    buffer.addMessage(new LogCatMessage(HEADER_1, "90"));
+    assertEquals(Arrays.asList("1234", "5678", "90"), texts(buffer.getMessages()));
+
+    buffer.addMessage(new LogCatMessage(HEADER_2, "ab"));
+    assertEquals(Arrays.asList("5678", "90", "ab"), texts(buffer.getMessages()));
+    assertEquals("Second", buffer.getMessages().get(0).getHeader().getTag());
+  }
+
+  @Test
+  public void getMessagesOfProcess() {
+    LogcatBuffer buffer = new LogcatBuffer(() -> Integer.MAX_VALUE);
+    buffer.addMessage(new LogCatMessage(HEADER_1, "First Line1"));
+    buffer.addMessage(new LogCatMessage(HEADER_2, "Second Line1"));
+    buffer.addMessage(new LogCatMessage(HEADER_1, "First Line2"));
+
+    assertEquals(Arrays.asList("First Line1", "First Line2"), texts(buffer.getMessages(1)));
+    assertEquals(Arrays.asList("Second Line1"), texts(buffer.getMessages(2)));
+    assertEquals(Arrays.asList(), texts(buffer.getMessages(3)));
+  }
+
+  @Test
+  public void getMessagesOfProcessAfterEviction() {
+    LogcatBuffer buffer = new LogcatBuffer(() -> 1000);
+    for (int i = 0; i < 10000; i++) {
+      buffer.addMessage(new LogCatMessage(i % 3 == 0 ? HEADER_1 : HEADER_2, String.format("%04d", i)));
+    }
+
+    // 1000 characters hold the last 250 messages.
+    List<String> expected = buffer.getMessages().stream()
+      .filter(message -> message.getHeader().getPid() == 1)
+      .map(LogCatMessage::getMessage)
+      .collect(Collectors.toList());
+    assertEquals(250, buffer.getMessages().size());
+    assertEquals("9750", buffer.getMessages().get(0).getMessage());
+    assertEquals(expected, texts(buffer.getMessages(1)));
+    assertEquals(250 - expected.size(), buffer.getMessages(2).size());
+  }
+
+  @Test
+  public void linesOfMessageShareHeader() {
+    LogCatHeader header = new LogCatHeader(LogLevel.ERROR, 3, 4, "com.example.third", "Third", Instant.ofEpochSecond(1534635551, 123));
+    LogcatBuffer buffer = new LogcatBuffer(() -> Integer.MAX_VALUE);
+    buffer.addMessage(new LogCatMessage(header, "Exception"));
+    buffer.addMessage(new LogCatMessage(header, "  at Foo"));
+    buffer.addMessage(new LogCatMessage(HEADER_1, "First Line1"));
+
+    List<LogCatMessage> messages = buffer.getMessages();
+    assertSame(messages.get(0).getHeader(), messages.get(1).getHeader());
+    assertNotSame(messages.get(1).getHeader(), messages.get(2).getHeader());
+
+    LogCatHeader copy = messages.get(0).getHeader();
+    assertEquals(LogLevel.ERROR, copy.getLogLevel());
+    assertEquals(3, copy.getPid());
+    assertEquals(4, copy.getTid());
+    assertEquals("com.example.third", copy.getAppName());
+    assertEquals("Third", copy.getTag());
+    assertEquals(Instant.ofEpochSecond(1534635551, 123), copy.getTimestampInstant());
+  }
+
+  @Test
+  public void messageWithEvictedFirstLineIsKept() {
+    LogCatHeader header = new LogCatHeader(LogLevel.ERROR, 3, 3, "com.example.third", "Third", Instant.ofEpochSecond(1534635551));
+    LogcatBuffer buffer = new LogcatBuffer(() -> 10);
+    buffer.addMessage(new LogCatMessage(header, "1234"));
+    buffer.addMessage(new LogCatMessage(header, "5678"));
+    buffer.addMessage(new LogCatMessage(HEADER_1, "90"));
+    buffer.addMessage(new LogCatMessage(HEADER_2, "ab"));
+
+    assertEquals(Arrays.asList("5678", "90", "ab"), texts(buffer.getMessages()));
+    assertEquals(Arrays.asList("5678"), texts(buffer.getMessages(new LogcatQuery.Builder().setMinLogLevel(LogLevel.ERROR).build())));
+    assertEquals(Arrays.asList("5678"), texts(buffer.getMessages(3)));
+  }
+
+  @Test
+  public void getMessagesMatchingQuery() {
+    LogCatHeader error = new LogCatHeader(LogLevel.ERROR, 1, 1, "com.example.first", "First", Instant.ofEpochSecond(1534635551));
+    LogcatBuffer buffer = new LogcatBuffer(() -> Integer.MAX_VALUE);
+    buffer.addMessage(new LogCatMessage(HEADER_1, "Starting"));
+    buffer.addMessage(new LogCatMessage(error, "Crash"));
+    buffer.addMessage(new LogCatMessage(error, "  at com.example.Needle"));
+    buffer.addMessage(new LogCatMessage(HEADER_2, "Needle in the second"));
+
+    assertEquals(Arrays.asList("Crash", "  at com.example.Needle"),
+                 texts(buffer.getMessages(new LogcatQuery.Builder().setMinLogLevel(LogLevel.WARN).build())));
+    assertEquals(Arrays.asList("Needle in the second"),
+                 texts(buffer.getMessages(new LogcatQuery.Builder().setTagPattern(Pattern.compile("^Sec")).build())));
+    assertEquals(Arrays.asList("Crash", "  at com.example.Needle", "Needle in the second"),
+                 texts(buffer.getMessages(new LogcatQuery.Builder().addMessagePattern(literal("needle")).build())));
+    assertEquals(Arrays.asList("Crash", "  at com.example.Needle"),
+                 texts(buffer.getMessages(new LogcatQuery.Builder().setPid(1).addMessagePattern(literal("needle")).build())));
+
+    // The line pattern also matches the tag and the application name, and regular expressions are left to the filters
+    assertEquals(Arrays.asList("Needle in the second"),
+                 texts(buffer.getMessages(new LogcatQuery.Builder().addLinePattern(literal("second")).build())));
+    assertEquals(4, buffer.getMessages(new LogcatQuery.Builder().addLinePattern(Pattern.compile("Sec.nd")).build()).size());
+
+    // Literals which may match the timestamp, the pid and tid, the level letter or the continuation prefix are left to the filters
+    for (String headerLiteral : Arrays.asList("D", "e", "-", ".", "+", ":", "07", "E/First")) {
+      assertEquals(headerLiteral, 4, buffer.getMessages(new LogcatQuery.Builder().addLinePattern(literal(headerLiteral)).build()).size());
+    }
+  }
+
+  @Test
+  public void literalsAreFoundAfterTheBufferWrapsAround() {
+    LogcatBuffer buffer = new LogcatBuffer(() -> 20_000);
+    for (int i = 0; i < 10_000; i++) {
+      buffer.addMessage(new LogCatMessage(i % 2 == 0 ? HEADER_1 : HEADER_2, String.format("%04d%s", i, i % 97 == 0 ? " needle" : "")));
+    }
+
+    List<String> expected = texts(buffer.getMessages()).stream().filter(text -> text.contains("needle")).collect(Collectors.toList());
+    assertEquals(expected, texts(buffer.getMessages(new LogcatQuery.Builder().addMessagePattern(literal("NEEDLE")).build())));
+  }
+
+  @NotNull
+  private static Pattern literal(@NotNull String text) {
+    return Pattern.compile(Pattern.quote(text), Pattern.CASE_INSENSITIVE);
+  }
+
+  @NotNull
+  private static List<String> texts(@NotNull List<LogCatMessage> messages) {
+    return messages.stream().map(LogCatMessage::getMessage).collect(Collectors.toList());
+  }
+}
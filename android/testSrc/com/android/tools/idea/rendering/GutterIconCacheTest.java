@@ -99,4 +99,18 @@ public class GutterIconCacheTest extends AndroidTestCase {
     // Modifying the image should have invalidated the cache entry.
     assertThat(GutterIconCache.getInstance().isIconUpToDate(mySampleSvgFile)).isFalse();
   }
+
+  public void testGetIconNonBlocking() throws Exception {
+    GutterIconCache cache = new GutterIconCache();
+
+    // The icon is created in the background, nothing is returned until it is ready.
+    assertThat(cache.getIconNonBlocking(mySampleSvgFile, null, myFacet)).isNull();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!cache.isIconUpToDate(mySampleSvgFile) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(cache.isIconUpToDate(mySampleSvgFile)).isTrue();
+    assertThat(cache.getIconNonBlocking(mySampleSvgFile, null, myFacet)).isSameAs(cache.getIcon(mySampleSvgFile, null, myFacet));
+    assertThat(cache.size()).isEqualTo(1);
+  }
 }
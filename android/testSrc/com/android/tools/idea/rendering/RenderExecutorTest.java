@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.idea.rendering.RenderService.RenderingPriority;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class RenderExecutorTest {
+  private final RenderExecutor myExecutor = new RenderExecutor(r -> new Thread(r, "Test Render Thread"));
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void actionsRunByPriorityThenInSubmissionOrder() throws Exception {
+    CountDownLatch blocker = new CountDownLatch(1);
+    List<String> executed = new CopyOnWriteArrayList<>();
+    // Keep the render thread busy so the following actions are queued.
+    myExecutor.execute(() -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignored) {
+      }
+    });
+    myExecutor.execute(() -> executed.add("low1"), RenderingPriority.LOW);
+    myExecutor.execute(() -> executed.add("high1"), RenderingPriority.HIGH);
+    myExecutor.execute(() -> executed.add("low2"), RenderingPriority.LOW);
+    myExecutor.execute(() -> executed.add("high2"));
+    blocker.countDown();
+
+    myExecutor.submit(() -> {}, null);
+    myExecutor.shutdown();
+    assertThat(myExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(executed).containsExactly("high1", "high2", "low1", "low2").inOrder();
+    assertThat(myExecutor.getStats(RenderingPriority.HIGH).getActionCount()).isEqualTo(4L);
+    assertThat(myExecutor.getStats(RenderingPriority.LOW).getActionCount()).isEqualTo(2L);
+    assertThat(myExecutor.getStats(RenderingPriority.LOW).getTotalQueueTimeNs()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void lowPriorityActionsRunAfterTheMaxDelay() throws Exception {
+    RenderExecutor executor = new RenderExecutor(r -> new Thread(r, "Test Render Thread"), TimeUnit.MILLISECONDS.toNanos(10));
+    try {
+      CountDownLatch blocker = new CountDownLatch(1);
+      List<String> executed = new CopyOnWriteArrayList<>();
+      executor.execute(() -> {
+        try {
+          blocker.await();
+        }
+        catch (InterruptedException ignored) {
+        }
+      });
+      executor.execute(() -> executed.add("low"), RenderingPriority.LOW);
+      executor.execute(() -> executed.add("high1"));
+      Thread.sleep(20);
+      // Submitted after the max delay of the queued low priority action.
+      executor.execute(() -> executed.add("high2"));
+      blocker.countDown();
+
+      executor.shutdown();
+      assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+      assertThat(executed).containsExactly("high1", "low", "high2").inOrder();
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+}
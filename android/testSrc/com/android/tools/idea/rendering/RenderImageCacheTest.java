@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.configurations.ConfigurationManager;
+import com.google.common.hash.HashCode;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import java.awt.image.BufferedImage;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.android.uipreview.ModuleClassLoaderManager;
+
+public class RenderImageCacheTest extends AndroidTestCase {
+  private static final String LAYOUT =
+    "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+    "    android:layout_width=\"match_parent\"\n" +
+    "    android:layout_height=\"match_parent\">\n" +
+    "  <!-- Comment -->\n" +
+    "  <TextView\n" +
+    "      android:layout_width=\"wrap_content\"\n" +
+    "      android:layout_height=\"wrap_content\"\n" +
+    "      android:text=\"Hello\" />\n" +
+    "</LinearLayout>";
+
+  public void testComputeKey() {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    Configuration configuration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(file.getVirtualFile());
+
+    HashCode key = RenderImageCache.computeKey(myFacet, file, configuration, "");
+    assertNotNull(key);
+    assertEquals(key, RenderImageCache.computeKey(myFacet, file, configuration, ""));
+    assertFalse(key.equals(RenderImageCache.computeKey(myFacet, file, configuration, "transparent")));
+
+    XmlTag textView = file.getRootTag().getSubTags()[0];
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> textView.setAttribute("android:text", "World"));
+    HashCode editedKey = RenderImageCache.computeKey(myFacet, file, configuration, "");
+    assertFalse(key.equals(editedKey));
+
+    configuration.setTheme("@android:style/Theme.Material");
+    assertFalse(editedKey.equals(RenderImageCache.computeKey(myFacet, file, configuration, "")));
+  }
+
+  public void testComputeKeyChangesWithProjectClassLoader() {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    Configuration configuration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(file.getVirtualFile());
+    ModuleClassLoaderManager.get().clearCache(myModule);
+
+    HashCode key = RenderImageCache.computeKey(myFacet, file, configuration, "");
+    assertNotNull(key);
+    ModuleClassLoaderManager.get().get(null, myModule);
+    HashCode loadedKey = RenderImageCache.computeKey(myFacet, file, configuration, "");
+    assertNotNull(loadedKey);
+    assertFalse(key.equals(loadedKey));
+    assertEquals(loadedKey, RenderImageCache.computeKey(myFacet, file, configuration, ""));
+
+    ModuleClassLoaderManager.get().clearCache(myModule);
+    ModuleClassLoaderManager.get().get(null, myModule);
+    assertFalse(loadedKey.equals(RenderImageCache.computeKey(myFacet, file, configuration, "")));
+    ModuleClassLoaderManager.get().clearCache(myModule);
+  }
+
+  public void testLayoutHashIgnoresFormatting() {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    XmlFile formattedFile = (XmlFile)myFixture.addFileToProject(
+      "res/layout/formatted.xml", LAYOUT.replace("\n    ", " ").replace("  <!-- Comment -->\n", ""));
+    XmlFile editedFile = (XmlFile)myFixture.addFileToProject("res/layout/edited.xml", LAYOUT.replace("Hello", "World"));
+
+    HashCode hash = RenderImageCache.computeLayoutHash(file.getRootTag());
+    assertEquals(hash, RenderImageCache.computeLayoutHash(formattedFile.getRootTag()));
+    assertFalse(hash.equals(RenderImageCache.computeLayoutHash(editedFile.getRootTag())));
+  }
+
+  public void testComputeKeyWithoutRootTag() {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/empty.xml", "");
+    Configuration configuration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(file.getVirtualFile());
+
+    assertNull(RenderImageCache.computeKey(myFacet, file, configuration, ""));
+  }
+
+  public void testCacheIsBoundedBySize() {
+    RenderImageCache cache = new RenderImageCache(100 * 100 * 4);
+    HashCode key1 = HashCode.fromInt(1);
+    HashCode key2 = HashCode.fromInt(2);
+    //noinspection UndesirableClassUsage
+    BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+    cache.put(key1, image);
+    assertSame(image, cache.get(key1));
+    assertNull(cache.get(key2));
+
+    //noinspection UndesirableClassUsage
+    cache.put(key2, new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+    assertEquals(1, cache.size());
+    assertNull(cache.get(key1));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.junit.Test;
+
+public class RewrittenClassCacheTest {
+  private final AtomicInteger myTransformCount = new AtomicInteger();
+  private final Function<ClassVisitor, ClassVisitor> myTransformations = visitor -> {
+    myTransformCount.incrementAndGet();
+    return visitor;
+  };
+
+  @Test
+  public void identicalContentsAreRewrittenOnce() throws IOException {
+    RewrittenClassCache cache = new RewrittenClassCache(myTransformations);
+    byte[] data = getClassData(RewrittenClassCacheTest.class);
+
+    byte[] rewritten = cache.rewriteClass(data);
+    // A copy of the same contents, as read by another class loader.
+    assertSame(rewritten, cache.rewriteClass(data.clone()));
+    assertEquals(1, myTransformCount.get());
+    assertArrayEquals(ClassConverter.rewriteClass(data, visitor -> visitor), rewritten);
+
+    cache.rewriteClass(getClassData(RewrittenClassCache.class));
+    assertEquals(2, myTransformCount.get());
+    assertEquals(2, cache.size());
+
+    cache.clear();
+    cache.rewriteClass(data);
+    assertEquals(3, myTransformCount.get());
+  }
+
+  @Test
+  public void cacheIsBoundedBySize() throws IOException {
+    byte[] data = getClassData(RewrittenClassCacheTest.class);
+    RewrittenClassCache cache = new RewrittenClassCache(myTransformations, data.length / 2);
+
+    cache.rewriteClass(data);
+    cache.rewriteClass(data);
+    assertEquals(0, cache.size());
+    assertEquals(2, myTransformCount.get());
+  }
+
+  @NotNull
+  private static byte[] getClassData(@NotNull Class<?> clazz) throws IOException {
+    try (InputStream stream = clazz.getResourceAsStream(clazz.getSimpleName() + ".class")) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+}
@@ -153,6 +153,39 @@ public class ImagePoolImplTest {
     gc();
   }
 
+  @Test
+  public void testMemoryBudget() {
+    // Budget for a single image of the 50x50 bucket
+    ImagePoolImpl pool = new ImagePoolImpl(new int[]{50, 500}, (w, h) -> (type) -> 10, 50 * 50 * 4);
+    try {
+      ImagePoolImpl.ImageImpl image1 = pool.create(49, 49, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image2 = pool.create(49, 49, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image3 = pool.create(100, 100, BufferedImage.TYPE_INT_ARGB, null);
+      BufferedImage internalPtr2 = image2.myBuffer;
+      BufferedImage internalPtr3 = image3.myBuffer;
+
+      image1.dispose();
+      image2.dispose();
+      // Only one image fits in the budget
+      assertEquals(internalPtr2, pool.create(49, 49, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+      assertNotEquals(internalPtr2, pool.create(49, 49, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+
+      // The image of the 500x500 bucket does not fit in the budget on its own
+      image3.dispose();
+      assertNotEquals(internalPtr3, pool.create(100, 100, BufferedImage.TYPE_INT_ARGB, null).myBuffer);
+
+      long evicted = 0;
+      for (ImagePool.BucketStats stats : pool.getStats().getBucketStats()) {
+        evicted += stats.imageWasEvicted();
+      }
+      assertEquals(2, evicted);
+      assertEquals(50 * 50 * 4, pool.getStats().maxBytesPooled());
+    }
+    finally {
+      pool.dispose();
+    }
+  }
+
   @Test
   public void testDefaultPooling() throws InterruptedException {
     // Small images won't be pooled
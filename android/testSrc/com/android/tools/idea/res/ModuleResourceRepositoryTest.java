@@ -26,6 +26,7 @@ import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
 import com.android.tools.lint.detector.api.Lint;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -387,6 +388,35 @@ public class ModuleResourceRepositoryTest extends AndroidTestCase {
     assertHasExactResourceTypes(resources, typesWithoutRes3);
   }
 
+  public void testSnapshotsUntilInvalidated() {
+    VirtualFile layout = myFixture.copyFileToProject(LAYOUT, "res/layout/layout1.xml");
+    VirtualFile res1 = layout.getParent().getParent();
+    VirtualFile res2 = myFixture.copyFileToProject(VALUES_OVERLAY1, "res2/values/values.xml").getParent().getParent();
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res1, res2), RES_AUTO, null);
+
+    // Reads are served from the same immutable snapshot until something changes.
+    assertSame(resources.getResources(RES_AUTO, ResourceType.STRING), resources.getResources(RES_AUTO, ResourceType.STRING));
+    ListMultimap<String, ResourceItem> layouts = resources.getResources(RES_AUTO, ResourceType.LAYOUT);
+    assertThat(layouts.keySet()).containsExactly("layout1");
+
+    WriteCommandAction.runWriteCommandAction(null, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          layout.rename(this, "layout2.xml");
+        }
+        catch (IOException e) {
+          fail(e.toString());
+        }
+      }
+    });
+
+    assertThat(layouts.keySet()).containsExactly("layout1");
+    assertThat(resources.getResources(RES_AUTO, ResourceType.LAYOUT).keySet()).containsExactly("layout2");
+    assertThat(resources.getResourceNames(RES_AUTO, ResourceType.LAYOUT)).containsExactly("layout2");
+    assertFalse(resources.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout1"));
+  }
+
   /**
    * This tests that even if we initialize ResourceFolderRepository with VirtualFiles and the test code is careful to only work with
    * VirtualFiles, we still get the PsiListener events.
@@ -20,6 +20,7 @@ import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
 import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.rendering.api.ResourceReference;
 import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceMergerItem;
 import com.android.ide.common.resources.ResourceRepositoryFixture;
 import com.android.ide.common.resources.ResourceVisitor;
 import com.android.ide.common.resources.SingleNamespaceResourceRepository;
@@ -27,6 +28,7 @@ import com.android.ide.common.resources.TestResourceRepository;
 import com.android.resources.ResourceType;
 import com.android.tools.idea.projectsystem.FilenameConstants;
 import com.android.tools.idea.resources.aar.AarSourceResourceRepository;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -443,6 +445,42 @@ public class ResourceClassGeneratorTest extends AndroidTestCase {
     styleableTestWithAars(generator);
   }
 
+  public void testGeneratedClassesAreCached() throws Exception {
+    TestLocalResourceRepository resources = new TestLocalResourceRepository(RES_AUTO);
+    resources.addResources(RES_AUTO, ResourceType.ID, createItems(ResourceType.ID, "id1"));
+    resources.addResources(RES_AUTO, ResourceType.STRING, createItems(ResourceType.STRING, "string1"));
+    ResourceClassGenerator generator = ResourceClassGenerator.create(ResourceIdManager.get(myModule), resources, RES_AUTO);
+
+    byte[] rClass = generator.generate("my.test.pkg.R");
+    byte[] idClass = generator.generate("my.test.pkg.R$id");
+    byte[] stringClass = generator.generate("my.test.pkg.R$string");
+    assertNotNull(idClass);
+    assertSame(rClass, generator.generate("my.test.pkg.R"));
+    assertSame(idClass, generator.generate("my.test.pkg.R$id"));
+    assertSame(stringClass, generator.generate("my.test.pkg.R$string"));
+
+    // Only the classes of the changed resource types are regenerated.
+    resources.addResources(RES_AUTO, ResourceType.ID, createItems(ResourceType.ID, "id1", "id2"));
+    resources.setModificationCount(resources.getModificationCount() + 1);
+    assertNotSame(rClass, generator.generate("my.test.pkg.R"));
+    assertNotSame(idClass, generator.generate("my.test.pkg.R$id"));
+    assertSame(stringClass, generator.generate("my.test.pkg.R$string"));
+
+    Class<?> clz = generateClass(generator, "my.test.pkg.R$id");
+    assertNotNull(clz);
+    assertNotNull(clz.getField("id1"));
+    assertNotNull(clz.getField("id2"));
+  }
+
+  @NotNull
+  private static ListMultimap<String, ResourceItem> createItems(@NotNull ResourceType type, @NotNull String... names) {
+    ListMultimap<String, ResourceItem> items = ArrayListMultimap.create();
+    for (String name : names) {
+      items.put(name, new ResourceMergerItem(name, RES_AUTO, type, null, null, null));
+    }
+    return items;
+  }
+
   private static void styleableTestWithAars(ResourceClassGenerator generator) throws Exception {
     Class<?> clz = generateClass(generator, "pkg.R$styleable");
     assertNotNull(clz);
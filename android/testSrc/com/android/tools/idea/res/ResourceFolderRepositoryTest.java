@@ -1599,6 +1599,41 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     });
   }
 
+  public void testRescanKeepsUnchangedValues() {
+    VirtualFile file1 = myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
+    PsiFile psiFile1 = PsiManager.getInstance(getProject()).findFile(file1);
+    assertNotNull(psiFile1);
+
+    ResourceFolderRepository resources = createRegisteredRepository();
+    assertNotNull(resources);
+    // Switch the file to PSI first.
+    resources.scheduleScan(psiFile1, ResourceFolderType.VALUES);
+    UIUtil.dispatchAllInvocationEvents();
+
+    ResourceItem appName = resources.getResources(RES_AUTO, ResourceType.STRING, "app_name").get(0);
+    ResourceItem darkTheme = resources.getResources(RES_AUTO, ResourceType.STYLE, "DarkTheme").get(0);
+    assertThat(appName).isInstanceOf(PsiResourceItem.class);
+
+    long generation = resources.getModificationCount();
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(psiFile1);
+    assertNotNull(document);
+    int offset = document.getText().indexOf("    <item type");
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      document.insertString(offset, "<string name=\"new_string\">New String</string>");
+      documentManager.commitDocument(document);
+    });
+    resources.scheduleScan(psiFile1, ResourceFolderType.VALUES);
+    UIUtil.dispatchAllInvocationEvents();
+
+    assertTrue(generation < resources.getModificationCount());
+    assertTrue(resources.hasResources(RES_AUTO, ResourceType.STRING, "new_string"));
+    // Items of unchanged tags are kept.
+    assertThat(resources.getResources(RES_AUTO, ResourceType.STRING, "app_name")).containsExactly(appName);
+    assertThat(resources.getResources(RES_AUTO, ResourceType.STYLE, "DarkTheme")).containsExactly(darkTheme);
+    assertEquals("Animations Demo", appName.getResourceValue().getValue());
+  }
+
   public void testRemoveValue() {
     resetCounters();
 
@@ -48,6 +48,7 @@ import com.android.tools.idea.common.type.DesignerEditorFileType;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.rendering.RenderImageCache;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderResult;
 import com.android.tools.idea.rendering.RenderService;
@@ -71,12 +72,14 @@ import com.android.tools.idea.uibuilder.type.MenuFileType;
 import com.android.tools.idea.util.ListenerCollection;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
 import com.google.wireless.android.sdk.stats.LayoutEditorRenderResult;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.xml.XmlTag;
@@ -88,6 +91,9 @@ import com.intellij.util.ui.UIUtil;
 import com.intellij.util.ui.update.MergingUpdateQueue;
 import com.intellij.util.ui.update.Update;
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.awt.image.BufferedImage;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -108,6 +114,7 @@ import java.util.stream.Collectors;
 import javax.annotation.concurrent.GuardedBy;
 import javax.swing.*;
 import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.uipreview.ModuleClassLoaderManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
@@ -140,6 +147,8 @@ public class LayoutlibSceneManager extends SceneManager {
   // since RenderTask is able to handle those safely.
   private final Object myRenderingTaskLock = new Object();
   private ResourceNotificationManager.ResourceVersion myRenderedVersion;
+  // Version of the project classes used by the last successful inflate, or null if they had already changed
+  @Nullable private volatile Long myInflatedClassesStamp;
   // Protects all read/write accesses to the myRenderResult reference
   private final ReentrantReadWriteLock myRenderResultLock = new ReentrantReadWriteLock();
   @GuardedBy("myRenderResultLock")
@@ -183,6 +192,16 @@ public class LayoutlibSceneManager extends SceneManager {
    */
   private final AtomicBoolean myForceInflate = new AtomicBoolean(false);
 
+  /**
+   * Whether the design surface is showing. Updated on the EDT, so the priority of the renders can be decided from any thread.
+   */
+  private volatile boolean myIsSurfaceShowing = true;
+  private final HierarchyListener mySurfaceShowingListener = event -> {
+    if ((event.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+      myIsSurfaceShowing = event.getComponent().isShowing();
+    }
+  };
+
   protected static LayoutEditorRenderResult.Trigger getTriggerFromChangeType(@Nullable NlModel.ChangeType changeType) {
     if (changeType == null) {
       return null;
@@ -222,6 +241,8 @@ public class LayoutlibSceneManager extends SceneManager {
     updateTrackingConfiguration();
 
     getDesignSurface().getSelectionModel().addListener(mySelectionChangeListener);
+    getDesignSurface().addHierarchyListener(mySurfaceShowingListener);
+    UIUtil.invokeLaterIfNeeded(() -> myIsSurfaceShowing = getDesignSurface().isShowing());
 
     Scene scene = getScene();
 
@@ -297,6 +318,7 @@ public class LayoutlibSceneManager extends SceneManager {
     if (myAreListenersRegistered) {
       NlModel model = getModel();
       getDesignSurface().getSelectionModel().removeListener(mySelectionChangeListener);
+      getDesignSurface().removeHierarchyListener(mySurfaceShowingListener);
       model.getConfiguration().removeListener(myConfigurationChangeListener);
       model.removeListener(myModelChangeListener);
       model.removeListener(myModelChangeListener);
@@ -317,16 +339,20 @@ public class LayoutlibSceneManager extends SceneManager {
         myRenderTask = null;
       }
     }
+    RenderResult result;
     myRenderResultLock.writeLock().lock();
     try {
-      if (myRenderResult != null) {
-        myRenderResult.dispose();
-      }
+      result = myRenderResult;
       myRenderResult = null;
     }
     finally {
       myRenderResultLock.writeLock().unlock();
     }
+    if (result != null) {
+      // The image is cached outside of the render result lock since it needs a read action
+      cacheRenderedImage(result);
+      result.dispose();
+    }
   }
 
   private void stopProgressIndicator() {
@@ -835,6 +861,10 @@ public class LayoutlibSceneManager extends SceneManager {
     myRenderedVersion = resourceNotificationManager.getCurrentVersion(facet, getModel().getFile(), configuration);
 
     RenderService renderService = RenderService.getInstance(getModel().getProject());
+    if (getRenderResult() == null) {
+      showCachedRenderedImage(renderService.getRenderImageCache());
+    }
+
     RenderLogger logger = renderService.createLogger(facet);
     RenderService.RenderTaskBuilder renderTaskBuilder = renderService.taskBuilder(facet, configuration)
       .withPsiFile(getModel().getFile())
@@ -844,6 +874,7 @@ public class LayoutlibSceneManager extends SceneManager {
         if (newTask != null) {
           newTask.getLayoutlibCallback()
             .setAdaptiveIconMaskPath(getDesignSurface().getAdaptiveIconShape().getPathDescription());
+          newTask.setPriority(getRenderingPriority());
           return newTask.inflate().whenComplete((result, exception) -> {
             if (exception != null) {
               Logger.getInstance(LayoutlibSceneManager.class).warn(exception);
@@ -860,6 +891,7 @@ public class LayoutlibSceneManager extends SceneManager {
                 }
                 myRenderTask = newTask;
               }
+              myInflatedClassesStamp = ModuleClassLoaderManager.get().getProjectClassesStamp(facet.getModule());
             }
           })
             .thenApply(result -> {
@@ -907,6 +939,78 @@ public class LayoutlibSceneManager extends SceneManager {
       });
   }
 
+  /**
+   * Returns the key of the current render inputs in the {@link RenderImageCache}, or null if the model can not be rendered.
+   */
+  @Nullable
+  private HashCode computeRenderImageCacheKey() {
+    NlModel model = getModel();
+    RenderSettings settings = myRenderSettingsProvider.get();
+    NlDesignSurface surface = getDesignSurface();
+    String renderOptions = settings.getQuality() + "," + settings.getShowDecorations() + "," + useShrinkRendering + "," +
+                           useTransparentRendering + "," + surface.getPreviewWithToolsAttributes() + "," +
+                           surface.getAdaptiveIconShape().getPathDescription();
+    return ApplicationManager.getApplication().runReadAction(
+      (Computable<HashCode>)() -> RenderImageCache.computeKey(model.getFacet(), model.getFile(), model.getConfiguration(), renderOptions));
+  }
+
+  /**
+   * If nothing has been rendered yet, displays the image cached for the current render inputs while the layout is being rendered.
+   */
+  private void showCachedRenderedImage(@NotNull RenderImageCache cache) {
+    HashCode key = computeRenderImageCacheKey();
+    BufferedImage image = key != null ? cache.get(key) : null;
+    if (image == null) {
+      return;
+    }
+
+    myRenderResultLock.writeLock().lock();
+    try {
+      if (myRenderResult != null) {
+        return;
+      }
+      myRenderResult = RenderResult.createPlaceholder(getModel().getFile(), getModel().getFacet().getModule(), image);
+    }
+    finally {
+      myRenderResultLock.writeLock().unlock();
+    }
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (!Disposer.isDisposed(this)) {
+        getDesignSurface().repaint();
+      }
+    });
+  }
+
+  /**
+   * Stores the image of the given result in the {@link RenderImageCache} so it can be displayed immediately if the same layout is
+   * opened again. The image is only stored if neither the model nor the project classes have changed since it was inflated.
+   */
+  private void cacheRenderedImage(@NotNull RenderResult result) {
+    NlModel model = getModel();
+    Project project = model.getProject();
+    if (project.isDisposed() || model.getFacet().isDisposed() || !result.getRenderResult().isSuccess() || !result.hasImage()) {
+      return;
+    }
+    ResourceNotificationManager.ResourceVersion currentVersion = ApplicationManager.getApplication().runReadAction(
+      (Computable<ResourceNotificationManager.ResourceVersion>)() -> ResourceNotificationManager.getInstance(project)
+        .getCurrentVersion(model.getFacet(), model.getFile(), model.getConfiguration()));
+    if (!currentVersion.equals(myRenderedVersion)) {
+      return;
+    }
+    Long classesStamp = ModuleClassLoaderManager.get().getProjectClassesStamp(model.getFacet().getModule());
+    if (classesStamp == null || !classesStamp.equals(myInflatedClassesStamp)) {
+      return;
+    }
+    HashCode key = computeRenderImageCacheKey();
+    if (key == null) {
+      return;
+    }
+    BufferedImage image = result.getRenderedImage().getCopy();
+    if (image != null) {
+      RenderService.getInstance(project).getRenderImageCache().put(key, image);
+    }
+  }
+
   @GuardedBy("myRenderResultLock")
   private void updateCachedRenderResult(RenderResult result) {
     if (myRenderResult != null && myRenderResult != result) {
@@ -1091,6 +1195,7 @@ public class LayoutlibSceneManager extends SceneManager {
           if (elapsedFrameTimeMs != -1) {
             myRenderTask.setElapsedFrameTimeNanos(TimeUnit.MILLISECONDS.toNanos(elapsedFrameTimeMs));
           }
+          myRenderTask.setPriority(getRenderingPriority());
           return myRenderTask.render().thenApply(result -> {
             // When the layout was inflated in this same call, we do not have to update the hierarchy again
             if (result != null && !inflated) {
@@ -1105,6 +1210,15 @@ public class LayoutlibSceneManager extends SceneManager {
       });
   }
 
+  /**
+   * Renders of a design surface that is not showing, e.g. the one of an editor in a background tab, yield to the renders of the showing
+   * surfaces.
+   */
+  @NotNull
+  private RenderService.RenderingPriority getRenderingPriority() {
+    return myIsSurfaceShowing ? RenderService.RenderingPriority.HIGH : RenderService.RenderingPriority.LOW;
+  }
+
   public void setElapsedFrameTimeMs(long ms) {
     myElapsedFrameTimeMs = ms;
   }
@@ -69,7 +69,8 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
     val bucketStats = poolStats?.bucketStats?.joinToString("\n") {
       " (${it.minWidth}x${it.minHeight} s=${it.maxSize()}) " +
       "lastAccess=${TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - it.lastAccessTimeMs)}s ago " +
-      "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()}"
+      "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()} " +
+      "evicted=${it.imageWasEvicted()}"
     } ?: ""
 
     return """
@@ -82,6 +83,7 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
       | Allocated     ${(poolStats?.totalBytesAllocated() ?: -1) / MB}MB
       | In use        ${(poolStats?.totalBytesInUse() ?: -1)  / MB}MB
       | Free          ${((poolStats?.totalBytesAllocated() ?: -1) - (poolStats?.totalBytesInUse() ?: 0)) / MB}MB
+      | Max free      ${(poolStats?.maxBytesPooled() ?: -1) / MB}MB
       |
       |Buckets
       |${bucketStats}
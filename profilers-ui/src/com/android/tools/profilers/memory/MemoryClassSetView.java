@@ -247,7 +247,13 @@ final class MemoryClassSetView extends AspectObserver {
         "Retained Size",
         () -> new SimpleColumnRenderer<>(value -> {
           MemoryObject node = value.getAdapter();
-          return node instanceof ValueObject ? NumberFormatter.formatInteger(((ValueObject)node).getRetainedSize()) : "";
+          if (node instanceof ValueObject) {
+            ValueObject valueObject = (ValueObject)node;
+            if (valueObject.getRetainedSize() != MemoryObject.INVALID_VALUE) {
+              return NumberFormatter.formatInteger(valueObject.getRetainedSize());
+            }
+          }
+          return "";
         }, value -> null, SwingConstants.RIGHT),
         SwingConstants.RIGHT,
         DEFAULT_COLUMN_WIDTH,
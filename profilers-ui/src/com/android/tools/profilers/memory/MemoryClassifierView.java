@@ -194,7 +194,9 @@ final class MemoryClassifierView extends AspectObserver {
       new AttributeColumn<>(
         "Retained Size",
         () -> new SimpleColumnRenderer<ClassifierSet>(
-          value -> NumberFormatter.formatInteger(value.getAdapter().getTotalRetainedSize()),
+          value -> myCaptureObject == null || myCaptureObject.hasRetainedSizes()
+                   ? NumberFormatter.formatInteger(value.getAdapter().getTotalRetainedSize())
+                   : "",
           value -> null, SwingConstants.RIGHT),
         SwingConstants.RIGHT,
         DEFAULT_COLUMN_WIDTH,
@@ -21,10 +21,15 @@ import com.android.tools.adtui.model.filter.FilterResult;
 import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * A call in a capture tree. A node either stores its own data or is a lightweight view over a node of a {@link CaptureNodeTree}, in which
+ * case all the getters and setters read and write the tree's storage.
+ */
 public class CaptureNode implements HNode<CaptureNode> {
 
   /**
@@ -69,116 +74,189 @@ public class CaptureNode implements HNode<CaptureNode> {
    */
   private int myDepth;
 
-  @NotNull
+  @Nullable
   private final CaptureNodeModel myData;
 
+  /**
+   * The tree storing the data of this node, or null if the node stores its own data.
+   */
+  @Nullable
+  private final CaptureNodeTree myTree;
+
+  /**
+   * Index of this node in {@link #myTree}.
+   */
+  private final int myIndex;
+
   public CaptureNode(@NotNull CaptureNodeModel model) {
     myChildren = new ArrayList<>();
     myClockType = ClockType.GLOBAL;
     myFilterType = FilterType.MATCH;
     myDepth = 0;
     myData = model;
+    myTree = null;
+    myIndex = -1;
   }
 
+  /**
+   * Creates a view over the node at {@code index} of the given tree. See {@link CaptureNodeTree#getNode(int)}.
+   */
+  CaptureNode(@NotNull CaptureNodeTree tree, int index) {
+    myChildren = Collections.emptyList();
+    myClockType = ClockType.GLOBAL;
+    myFilterType = FilterType.MATCH;
+    myData = null;
+    myTree = tree;
+    myIndex = index;
+  }
+
+  /**
+   * Adds a child to this node. If this node is part of a {@link CaptureNodeTree}, the child must belong to the same tree.
+   */
   public void addChild(CaptureNode node) {
+    if (myTree != null) {
+      if (node.myTree != myTree) {
+        throw new IllegalArgumentException("Only nodes of the same tree can be added as children of a tree node.");
+      }
+      myTree.addChild(myIndex, node.myIndex);
+      return;
+    }
     myChildren.add(node);
     node.myParent = this;
   }
 
   @NotNull
   public List<CaptureNode> getChildren() {
-    return myChildren;
+    return myTree != null ? myTree.getChildren(myIndex) : myChildren;
   }
 
   @NotNull
   public CaptureNodeModel getData() {
+    if (myTree != null) {
+      return myTree.getModel(myIndex);
+    }
+    assert myData != null;
     return myData;
   }
 
   @Override
   public int getChildCount() {
-    return myChildren.size();
+    return myTree != null ? myTree.getChildCount(myIndex) : myChildren.size();
   }
 
   @NotNull
   @Override
   public CaptureNode getChildAt(int index) {
-    return myChildren.get(index);
+    return myTree != null ? myTree.getNode(myTree.getChildAt(myIndex, index)) : myChildren.get(index);
   }
 
   @Nullable
   @Override
   public CaptureNode getParent() {
+    if (myTree != null) {
+      int parent = myTree.getParent(myIndex);
+      return parent < 0 ? null : myTree.getNode(parent);
+    }
     return myParent;
   }
 
   @Override
   public long getStart() {
-    return myClockType == ClockType.THREAD ? myStartThread : myStartGlobal;
+    return getClockType() == ClockType.THREAD ? getStartThread() : getStartGlobal();
   }
 
   @Override
   public long getEnd() {
-    return myClockType == ClockType.THREAD ? myEndThread : myEndGlobal;
+    return getClockType() == ClockType.THREAD ? getEndThread() : getEndGlobal();
   }
 
   @Override
   public int getDepth() {
-    return myDepth;
+    return myTree != null ? myTree.getDepth(myIndex) : myDepth;
   }
 
   public void setStartGlobal(long startGlobal) {
-    myStartGlobal = startGlobal;
+    if (myTree != null) {
+      myTree.setStartGlobal(myIndex, startGlobal);
+    }
+    else {
+      myStartGlobal = startGlobal;
+    }
   }
 
   public long getStartGlobal() {
-    return myStartGlobal;
+    return myTree != null ? myTree.getStartGlobal(myIndex) : myStartGlobal;
   }
 
   public void setEndGlobal(long endGlobal) {
-    myEndGlobal = endGlobal;
+    if (myTree != null) {
+      myTree.setEndGlobal(myIndex, endGlobal);
+    }
+    else {
+      myEndGlobal = endGlobal;
+    }
   }
 
   public long getEndGlobal() {
-    return myEndGlobal;
+    return myTree != null ? myTree.getEndGlobal(myIndex) : myEndGlobal;
   }
 
   public void setStartThread(long startThread) {
-    myStartThread = startThread;
+    if (myTree != null) {
+      myTree.setStartThread(myIndex, startThread);
+    }
+    else {
+      myStartThread = startThread;
+    }
   }
 
   public long getStartThread() {
-    return myStartThread;
+    return myTree != null ? myTree.getStartThread(myIndex) : myStartThread;
   }
 
   public void setEndThread(long endThread) {
-    myEndThread = endThread;
+    if (myTree != null) {
+      myTree.setEndThread(myIndex, endThread);
+    }
+    else {
+      myEndThread = endThread;
+    }
   }
 
   public long getEndThread() {
-    return myEndThread;
+    return myTree != null ? myTree.getEndThread(myIndex) : myEndThread;
   }
 
   public void setClockType(@NotNull ClockType clockType) {
-    myClockType = clockType;
+    if (myTree != null) {
+      myTree.setClockType(myIndex, clockType);
+    }
+    else {
+      myClockType = clockType;
+    }
   }
 
   /**
    * Returns the proportion of time the method was using CPU relative to the total (wall-clock) time that passed.
    */
   public double threadGlobalRatio() {
-    long durationThread = myEndThread - myStartThread;
-    long durationGlobal = myEndGlobal - myStartGlobal;
+    long durationThread = getEndThread() - getStartThread();
+    long durationGlobal = getEndGlobal() - getStartGlobal();
     return (double)durationThread / durationGlobal;
   }
 
   @NotNull
   public ClockType getClockType() {
-    return myClockType;
+    return myTree != null ? myTree.getClockType(myIndex) : myClockType;
   }
 
   public void setDepth(int depth) {
-    myDepth = depth;
+    if (myTree != null) {
+      myTree.setDepth(myIndex, depth);
+    }
+    else {
+      myDepth = depth;
+    }
   }
 
   /**
@@ -231,17 +309,42 @@ public class CaptureNode implements HNode<CaptureNode> {
 
   @NotNull
   public FilterType getFilterType() {
-    return myFilterType;
+    return myTree != null ? myTree.getFilterType(myIndex) : myFilterType;
   }
 
   public void setFilterType(@NotNull FilterType type) {
-    myFilterType = type;
+    if (myTree != null) {
+      myTree.setFilterType(myIndex, type);
+    }
+    else {
+      myFilterType = type;
+    }
   }
 
   public boolean isUnmatched() {
     return getFilterType() == FilterType.UNMATCH;
   }
 
+  /**
+   * Views over the same node of a {@link CaptureNodeTree} are equal, other nodes are only equal to themselves.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (myTree == null || !(obj instanceof CaptureNode)) {
+      return false;
+    }
+    CaptureNode other = (CaptureNode)obj;
+    return myTree == other.myTree && myIndex == other.myIndex;
+  }
+
+  @Override
+  public int hashCode() {
+    return myTree != null ? System.identityHashCode(myTree) * 31 + myIndex : super.hashCode();
+  }
+
   public enum FilterType {
     /**
      * This {@link CaptureNode} matches to the filter.
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compact storage for a tree of {@link CaptureNode}s, used for method traces that can contain tens of millions of calls.
+ * <p>
+ * Instead of one object per call, each property of the nodes is stored in its own primitive array and nodes are referred to by their
+ * int index. {@link CaptureNode}s obtained from {@link #getNode(int)} are lightweight views over a single index, so they can be created
+ * on demand and discarded by the code walking the tree.
+ * <p>
+ * While the tree is built, children are kept as linked lists (first child and next sibling). Once the structure is complete,
+ * {@link #freeze()} packs the children of every node in a single array so {@link CaptureNode#getChildAt(int)} is constant time, and
+ * releases the arrays only needed for building. The times, depth, clock type and filter type of the nodes can still be modified after
+ * the tree is frozen.
+ */
+public final class CaptureNodeTree {
+  private static final int NO_NODE = -1;
+  private static final int DEFAULT_CAPACITY = 64;
+
+  // Flags are stored in a single byte per node: the filter type in the lowest two bits and the clock type in the third one.
+  private static final int FILTER_TYPE_MASK = 0b011;
+  private static final int THREAD_CLOCK_FLAG = 0b100;
+  private static final CaptureNode.FilterType[] FILTER_TYPES = CaptureNode.FilterType.values();
+
+  private int mySize;
+  private boolean myFrozen;
+
+  @NotNull private CaptureNodeModel[] myModels;
+  @NotNull private long[] myStartGlobal;
+  @NotNull private long[] myEndGlobal;
+  @NotNull private long[] myStartThread;
+  @NotNull private long[] myEndThread;
+  @NotNull private int[] myParents;
+  @NotNull private int[] myDepths;
+  @NotNull private int[] myChildCounts;
+  @NotNull private byte[] myFlags;
+
+  // Only used while the tree is being built.
+  @Nullable private int[] myFirstChildren;
+  @Nullable private int[] myLastChildren;
+  @Nullable private int[] myNextSiblings;
+
+  // Only used once the tree is frozen. The children of node i are myChildIndices[myChildOffsets[i]] to
+  // myChildIndices[myChildOffsets[i] + myChildCounts[i] - 1].
+  @Nullable private int[] myChildOffsets;
+  @Nullable private int[] myChildIndices;
+
+  public CaptureNodeTree() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public CaptureNodeTree(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    myModels = new CaptureNodeModel[capacity];
+    myStartGlobal = new long[capacity];
+    myEndGlobal = new long[capacity];
+    myStartThread = new long[capacity];
+    myEndThread = new long[capacity];
+    myParents = new int[capacity];
+    myDepths = new int[capacity];
+    myChildCounts = new int[capacity];
+    myFlags = new byte[capacity];
+    myFirstChildren = new int[capacity];
+    myLastChildren = new int[capacity];
+    myNextSiblings = new int[capacity];
+  }
+
+  /**
+   * Adds a new node without a parent to the tree.
+   *
+   * @return a view over the new node. It can be added as a child of another node of this tree with {@link CaptureNode#addChild}.
+   */
+  @NotNull
+  public CaptureNode createNode(@NotNull CaptureNodeModel model) {
+    checkNotFrozen();
+    ensureCapacity(mySize + 1);
+    int index = mySize++;
+    myModels[index] = model;
+    myParents[index] = NO_NODE;
+    myFirstChildren[index] = NO_NODE;
+    myLastChildren[index] = NO_NODE;
+    myNextSiblings[index] = NO_NODE;
+    myFlags[index] = (byte)CaptureNode.FilterType.MATCH.ordinal();
+    return new CaptureNode(this, index);
+  }
+
+  /**
+   * @return a view over the node at the given index.
+   */
+  @NotNull
+  public CaptureNode getNode(int index) {
+    checkIndex(index);
+    return new CaptureNode(this, index);
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public boolean isFrozen() {
+    return myFrozen;
+  }
+
+  /**
+   * Packs the children of each node in a single array and trims the storage to the number of nodes. After this call, nodes can no longer
+   * be created or re-parented.
+   */
+  public void freeze() {
+    if (myFrozen) {
+      return;
+    }
+    assert myFirstChildren != null && myNextSiblings != null;
+    int[] childOffsets = new int[mySize];
+    int[] childIndices = new int[mySize];
+    int offset = 0;
+    for (int i = 0; i < mySize; i++) {
+      childOffsets[i] = offset;
+      for (int child = myFirstChildren[i]; child != NO_NODE; child = myNextSiblings[child]) {
+        childIndices[offset++] = child;
+      }
+    }
+    myChildOffsets = childOffsets;
+    myChildIndices = Arrays.copyOf(childIndices, offset);
+    myFirstChildren = null;
+    myLastChildren = null;
+    myNextSiblings = null;
+    resize(mySize);
+    myFrozen = true;
+  }
+
+  void addChild(int parent, int child) {
+    checkNotFrozen();
+    checkIndex(parent);
+    checkIndex(child);
+    assert myFirstChildren != null && myLastChildren != null && myNextSiblings != null;
+    if (myParents[child] != NO_NODE) {
+      throw new IllegalArgumentException("Node " + child + " already has a parent.");
+    }
+    myParents[child] = parent;
+    if (myLastChildren[parent] == NO_NODE) {
+      myFirstChildren[parent] = child;
+    }
+    else {
+      myNextSiblings[myLastChildren[parent]] = child;
+    }
+    myLastChildren[parent] = child;
+    myChildCounts[parent]++;
+  }
+
+  @NotNull
+  CaptureNodeModel getModel(int index) {
+    return myModels[index];
+  }
+
+  int getParent(int index) {
+    return myParents[index];
+  }
+
+  int getChildCount(int index) {
+    return myChildCounts[index];
+  }
+
+  int getChildAt(int index, int childPosition) {
+    if (childPosition < 0 || childPosition >= myChildCounts[index]) {
+      throw new IndexOutOfBoundsException("Index: " + childPosition + ", Size: " + myChildCounts[index]);
+    }
+    if (myFrozen) {
+      assert myChildOffsets != null && myChildIndices != null;
+      return myChildIndices[myChildOffsets[index] + childPosition];
+    }
+    assert myFirstChildren != null && myLastChildren != null && myNextSiblings != null;
+    // The last child is accessed often while building the tree, so avoid walking the whole list for it.
+    if (childPosition == myChildCounts[index] - 1) {
+      return myLastChildren[index];
+    }
+    int child = myFirstChildren[index];
+    for (int i = 0; i < childPosition; i++) {
+      child = myNextSiblings[child];
+    }
+    return child;
+  }
+
+  /**
+   * @return a list of views over the children of the node at the given index. The views are created when the list is accessed.
+   */
+  @NotNull
+  List<CaptureNode> getChildren(int index) {
+    return new AbstractList<CaptureNode>() {
+      @Override
+      public CaptureNode get(int position) {
+        return new CaptureNode(CaptureNodeTree.this, getChildAt(index, position));
+      }
+
+      @Override
+      public int size() {
+        return myChildCounts[index];
+      }
+    };
+  }
+
+  long getStartGlobal(int index) {
+    return myStartGlobal[index];
+  }
+
+  void setStartGlobal(int index, long value) {
+    myStartGlobal[index] = value;
+  }
+
+  long getEndGlobal(int index) {
+    return myEndGlobal[index];
+  }
+
+  void setEndGlobal(int index, long value) {
+    myEndGlobal[index] = value;
+  }
+
+  long getStartThread(int index) {
+    return myStartThread[index];
+  }
+
+  void setStartThread(int index, long value) {
+    myStartThread[index] = value;
+  }
+
+  long getEndThread(int index) {
+    return myEndThread[index];
+  }
+
+  void setEndThread(int index, long value) {
+    myEndThread[index] = value;
+  }
+
+  int getDepth(int index) {
+    return myDepths[index];
+  }
+
+  void setDepth(int index, int depth) {
+    myDepths[index] = depth;
+  }
+
+  @NotNull
+  ClockType getClockType(int index) {
+    return (myFlags[index] & THREAD_CLOCK_FLAG) != 0 ? ClockType.THREAD : ClockType.GLOBAL;
+  }
+
+  void setClockType(int index, @NotNull ClockType clockType) {
+    myFlags[index] = (byte)(clockType == ClockType.THREAD ? myFlags[index] | THREAD_CLOCK_FLAG : myFlags[index] & ~THREAD_CLOCK_FLAG);
+  }
+
+  @NotNull
+  CaptureNode.FilterType getFilterType(int index) {
+    return FILTER_TYPES[myFlags[index] & FILTER_TYPE_MASK];
+  }
+
+  void setFilterType(int index, @NotNull CaptureNode.FilterType filterType) {
+    myFlags[index] = (byte)((myFlags[index] & ~FILTER_TYPE_MASK) | filterType.ordinal());
+  }
+
+  private void checkNotFrozen() {
+    if (myFrozen) {
+      throw new IllegalStateException("The structure of a frozen tree can't be modified.");
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > myModels.length) {
+      resize(Math.max(capacity, myModels.length + (myModels.length >> 1)));
+    }
+  }
+
+  private void resize(int capacity) {
+    myModels = Arrays.copyOf(myModels, capacity);
+    myStartGlobal = Arrays.copyOf(myStartGlobal, capacity);
+    myEndGlobal = Arrays.copyOf(myEndGlobal, capacity);
+    myStartThread = Arrays.copyOf(myStartThread, capacity);
+    myEndThread = Arrays.copyOf(myEndThread, capacity);
+    myParents = Arrays.copyOf(myParents, capacity);
+    myDepths = Arrays.copyOf(myDepths, capacity);
+    myChildCounts = Arrays.copyOf(myChildCounts, capacity);
+    myFlags = Arrays.copyOf(myFlags, capacity);
+    if (myFirstChildren != null) {
+      myFirstChildren = Arrays.copyOf(myFirstChildren, capacity);
+    }
+    if (myLastChildren != null) {
+      myLastChildren = Arrays.copyOf(myLastChildren, capacity);
+    }
+    if (myNextSiblings != null) {
+      myNextSiblings = Arrays.copyOf(myNextSiblings, capacity);
+    }
+  }
+}
@@ -43,6 +43,7 @@ import java.nio.BufferUnderflowException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Manages the parsing of traces into {@link CpuCapture} objects and provide a way to retrieve them.
@@ -109,6 +110,12 @@ public class CpuCaptureParser {
    */
   private static Set<String> myPreviouslyLoadedCaptures = new HashSet<>();
 
+  /**
+   * Pool used by the parsers to decode large system traces on all cores. It is static for the same reason as
+   * {@link #myPreviouslyLoadedCaptures}; its worker threads are only started while a trace is being decoded.
+   */
+  private static final ForkJoinPool TRACE_DECODING_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
   public CpuCaptureParser(@NotNull IdeProfilerServices services) {
     myServices = services;
     myCaptures = new HashMap<>();
@@ -302,7 +309,7 @@ public class CpuCaptureParser {
         // session that can tell us which process the user is interested in. So for all imported
         // trace files we ask the user to select a process. The list of processes the user can
         // choose from is parsed from the Atrace file.
-        AtraceParser parser = new AtraceParser(traceFile);
+        AtraceParser parser = new AtraceParser(traceFile, TRACE_DECODING_POOL);
         // Any process matching the application id of the current project will be sorted to
         // the top of our process list.
         CpuThreadSliceInfo[] processList = parser.getProcessList(myServices.getApplicationId());
@@ -485,7 +492,7 @@ public class CpuCaptureParser {
         parser = new SimpleperfTraceParser();
       }
       else if (profilerType == CpuTraceType.ATRACE) {
-        parser = new AtraceParser(session.getPid());
+        parser = new AtraceParser(session.getPid(), TRACE_DECODING_POOL);
       }
       else {
         throw new IllegalStateException("Trace file cannot be parsed. Profiler type (ART, simpleperf, or atrace) needs to be set.");
@@ -102,6 +102,13 @@ public class CpuUsage extends LineChartModel {
   // TODO: make private after LegacyCpuUsageDataSeries is deprecated.
   protected static SeriesData<Long> getCpuUsageData(Cpu.CpuUsageData prevData, Cpu.CpuUsageData data, boolean isOtherProcess) {
     long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getEndTimestamp());
+    return new SeriesData<>(dataTimestamp, getCpuUsage(prevData, data, isOtherProcess));
+  }
+
+  /**
+   * Returns the CPU usage percentage between two adjacent CPU usage data.
+   */
+  static long getCpuUsage(Cpu.CpuUsageData prevData, Cpu.CpuUsageData data, boolean isOtherProcess) {
     long elapsed = (data.getElapsedTimeInMillisec() - prevData.getElapsedTimeInMillisec());
     // TODO: consider using raw data instead of percentage to improve efficiency.
     double app = 100.0 * (data.getAppCpuTimeInMillisec() - prevData.getAppCpuTimeInMillisec()) / elapsed;
@@ -115,6 +122,6 @@ public class CpuUsage extends LineChartModel {
     system = Math.max(0, Math.min(system, 100.0));
     app = Math.max(0, Math.min(app, system));
 
-    return new SeriesData<>(dataTimestamp, (long)(isOtherProcess ? system - app : app));
+    return (long)(isOtherProcess ? system - app : app);
   }
 }
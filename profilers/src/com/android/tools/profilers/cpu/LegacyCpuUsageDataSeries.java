@@ -15,23 +15,21 @@
  */
 package com.android.tools.profilers.cpu;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataSeries;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.SeriesDataBuffer;
 import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.Cpu;
 import com.android.tools.profiler.proto.CpuProfiler.CpuDataRequest;
 import com.android.tools.profiler.proto.CpuProfiler.CpuDataResponse;
 import com.android.tools.profiler.proto.CpuServiceGrpc;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * Legacy class responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
-public class LegacyCpuUsageDataSeries implements DataSeries<Long> {
+public class LegacyCpuUsageDataSeries implements LongDataSeries {
   @NotNull
   private CpuServiceGrpc.CpuServiceBlockingStub myClient;
 
@@ -47,7 +45,7 @@ public class LegacyCpuUsageDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForRange(@NotNull Range timeCurrentRangeUs) {
+  public void getDataForRange(@NotNull Range timeCurrentRangeUs, @NotNull SeriesDataBuffer buffer) {
     // Get an extra padding on each side, to have a smooth rendering at the edges.
     // TODO: Change the CPU API to allow specifying this padding in the request as number of samples.
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
@@ -56,9 +54,12 @@ public class LegacyCpuUsageDataSeries implements DataSeries<Long> {
       .setStartTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMin()) - bufferNs)
       .setEndTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs);
     CpuDataResponse response = myClient.getData(dataRequestBuilder.build());
-    return IntStream.range(0, response.getDataList().size() - 1)
+    buffer.clear();
+    for (int index = 0; index < response.getDataCount() - 1; index++) {
       // Calculate CPU usage percentage from two adjacent CPU usage data.
-      .mapToObj(index -> CpuUsage.getCpuUsageData(response.getData(index), response.getData(index + 1), myIsOtherProcess))
-      .collect(Collectors.toList());
+      Cpu.CpuUsageData data = response.getData(index + 1);
+      long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getEndTimestamp());
+      buffer.add(dataTimestamp, CpuUsage.getCpuUsage(response.getData(index), data, myIsOtherProcess));
+    }
   }
 }
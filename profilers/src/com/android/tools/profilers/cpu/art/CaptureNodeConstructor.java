@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu.art;
 
 import com.android.tools.perflib.vmtrace.TraceAction;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureNodeTree;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.Nullable;
 
@@ -33,6 +34,11 @@ class CaptureNodeConstructor {
    */
   private final CaptureNodeModel myTopLevelNodeModel;
 
+  /**
+   * Compact storage for the nodes of the call stack. ART traces can contain tens of millions of calls.
+   */
+  private final CaptureNodeTree myTree = new CaptureNodeTree();
+
   /**
    * List of nodes currently assumed to be at stack depth 0 (called from the top level)
    */
@@ -62,7 +68,7 @@ class CaptureNodeConstructor {
   }
 
   private void enterMethod(CaptureNodeModel captureNodeModel, int threadTime, int globalTime) {
-    CaptureNode node = new CaptureNode(captureNodeModel);
+    CaptureNode node = myTree.createNode(captureNodeModel);
     node.setStartGlobal(globalTime);
     node.setStartThread(threadTime);
 
@@ -90,7 +96,7 @@ class CaptureNodeConstructor {
     } else {
       // We are exiting out of a method that was entered into before tracing was started.
       // In such a case, create this method
-      CaptureNode node = new CaptureNode(captureNodeModel);
+      CaptureNode node = myTree.createNode(captureNodeModel);
       // All the previous nodes at the top level are now assumed to have been called from
       // this method. So mark this method as having called all of those methods, and reset
       // the top level to only include this method
@@ -169,6 +175,7 @@ class CaptureNodeConstructor {
     // Now that we've added the top level call, there should be only 1 top level call
     assert myTopLevelNodes.size() == 1;
     myTopLevelNode = myTopLevelNodes.get(0);
+    myTree.freeze();
   }
 
   public CaptureNode getTopLevel() {
@@ -35,6 +35,7 @@ import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -110,6 +111,10 @@ public class AtraceParser implements TraceParser {
   private Model myModel;
   private Range myRange;
   private AtraceFrameManager myFrameInfo;
+  /**
+   * Pool used to decode perfetto traces in parallel.
+   */
+  @NotNull private final ForkJoinPool myDecodingPool;
 
   /**
    * This constructor parses the atrace model from the file and should be used for getting the list
@@ -117,7 +122,14 @@ public class AtraceParser implements TraceParser {
    * to be called before parse.
    */
   public AtraceParser(@NotNull File file) throws IOException {
-    this(INVALID_PROCESS);
+    this(file, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Same as {@link #AtraceParser(File)}, perfetto traces are decoded using the given pool.
+   */
+  public AtraceParser(@NotNull File file, @NotNull ForkJoinPool decodingPool) throws IOException {
+    this(INVALID_PROCESS, decodingPool);
     parseModelIfNeeded(file);
   }
 
@@ -126,7 +138,15 @@ public class AtraceParser implements TraceParser {
    * and expects parse with the proper file to be called.
    */
   public AtraceParser(int processId) {
+    this(processId, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Same as {@link #AtraceParser(int)}, perfetto traces are decoded using the given pool.
+   */
+  public AtraceParser(int processId, @NotNull ForkJoinPool decodingPool) {
     myProcessId = processId;
+    myDecodingPool = decodingPool;
     myCaptureTreeNodes = new HashMap<>();
     myThreadStateData = new HashMap<>();
     myCpuSchedulingToCpuData = new HashMap<>();
@@ -162,7 +182,7 @@ public class AtraceParser implements TraceParser {
         producer = new AtraceProducer();
       }
       else {
-        producer = new PerfettoProducer();
+        producer = new PerfettoProducer(myDecodingPool);
       }
       if (!producer.parseFile(file)) {
         throw new IOException("Failed to parse file: " + file.getAbsolutePath());
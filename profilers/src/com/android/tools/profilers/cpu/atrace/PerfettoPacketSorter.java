@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.atrace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This class takes Atrace lines generated from {@link PerfettoTrace.FtraceEventBundle}s and returns them sorted by timestamp.
+ * This is needed because the bundles come in out of order, as well as the lines within a bundle are out of order.
+ * <p>
+ * Lines are sorted with an external merge sort: they are buffered in memory until {@link #myMaxBufferedBytes} is reached, then the
+ * buffer is sorted and spilled to a temporary run file. Once all lines have been added {@link #resetForIterator()} memory-maps each run
+ * and the iterator performs a k-way merge of the runs and whatever is left in the in-memory buffer. A run that can't be mapped is read
+ * into memory instead.
+ * Lines with the same timestamp are returned in the order they were added.
+ * <p>
+ * If a run can't be written, e.g. because the disk is full, spilling is disabled and the remaining lines are kept in memory.
+ */
+public class PerfettoPacketSorter implements Iterator<String> {
+  /**
+   * Default amount of memory (estimated) that lines are allowed to occupy before being spilled to disk.
+   */
+  private static final long DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+  /**
+   * Rough per-line overhead of an {@link Entry} and its {@link String}, used to estimate the memory used by the buffer.
+   */
+  private static final int ENTRY_OVERHEAD_BYTES = 64;
+  private static final Comparator<Entry> ENTRY_COMPARATOR = Comparator.comparingLong(entry -> entry.myTimestamp);
+
+  private final long myMaxBufferedBytes;
+  /**
+   * Directory of the run files, or null for the default temporary directory.
+   */
+  @Nullable private final File myRunDirectory;
+  /**
+   * Set when a run could not be written, after which all the lines are kept in memory.
+   */
+  private boolean mySpillingDisabled = false;
+  @NotNull private final List<Entry> myBuffer = new ArrayList<>();
+  @NotNull private final List<File> myRunFiles = new ArrayList<>();
+  private long myBufferedBytes = 0;
+
+  /**
+   * Cursors over the sorted runs, ordered by their current timestamp. Null until {@link #resetForIterator()} is called.
+   */
+  @Nullable private PriorityQueue<RunCursor> myMergeQueue;
+
+  private static Logger getLogger() {
+    return Logger.getInstance(PerfettoPacketSorter.class);
+  }
+
+  public PerfettoPacketSorter() {
+    this(DEFAULT_MAX_BUFFERED_BYTES);
+  }
+
+  @VisibleForTesting
+  public PerfettoPacketSorter(long maxBufferedBytes) {
+    this(maxBufferedBytes, null);
+  }
+
+  @VisibleForTesting
+  public PerfettoPacketSorter(long maxBufferedBytes, @Nullable File runDirectory) {
+    myMaxBufferedBytes = maxBufferedBytes;
+    myRunDirectory = runDirectory;
+  }
+
+  /**
+   * As a trace file is loaded each line generated from a FtraceEventBundle should be added to the sorter.
+   * If the buffered lines exceed the memory budget, they are sorted and spilled to a run file on disk.
+   */
+  public void addLine(long timestamp, @NotNull String line) {
+    // Lines added after iteration started are ignored, same as when the underlying storage has been closed.
+    if (myMergeQueue != null) {
+      return;
+    }
+    myBuffer.add(new Entry(timestamp, line));
+    myBufferedBytes += ENTRY_OVERHEAD_BYTES + 2L * line.length();
+    if (myBufferedBytes >= myMaxBufferedBytes && !mySpillingDisabled) {
+      spillBuffer();
+    }
+  }
+
+  /**
+   * This function should be called when we want to finalize this class for writing and enable it for reading.
+   * Every spilled run is memory-mapped, or read into memory if it can't be mapped, and merged with the remaining in-memory lines.
+   *
+   * @throws IOException if a run can be neither mapped nor read, as its lines would be missing from the iteration.
+   */
+  public void resetForIterator() throws IOException {
+    if (myMergeQueue != null) {
+      return;
+    }
+    myMergeQueue = new PriorityQueue<>(Math.max(1, myRunFiles.size() + 1));
+    for (int i = 0; i < myRunFiles.size(); i++) {
+      File runFile = myRunFiles.get(i);
+      RunCursor cursor;
+      try {
+        cursor = new MappedRunCursor(i, runFile);
+      }
+      catch (IOException ex) {
+        getLogger().warn("Cannot map sorted lines from " + runFile + ", reading them into memory", ex);
+        cursor = new BufferRunCursor(i, readRun(runFile));
+      }
+      addCursor(cursor);
+    }
+    // The remaining buffer is the newest run, so it gets the highest index to keep ties in insertion order.
+    myBuffer.sort(ENTRY_COMPARATOR);
+    addCursor(new BufferRunCursor(myRunFiles.size(), new ArrayList<>(myBuffer)));
+    myBuffer.clear();
+    myBufferedBytes = 0;
+  }
+
+  /**
+   * Free the in-memory lines and delete the temporary run files.
+   */
+  public void close() {
+    myBuffer.clear();
+    myBufferedBytes = 0;
+    myMergeQueue = null;
+    for (File file : myRunFiles) {
+      // Mapped buffers are unmapped when they are garbage collected, so on some platforms the file can't be deleted yet. In that
+      // case it is cleaned up on exit as the file is created with deleteOnExit.
+      FileUtil.delete(file);
+    }
+    myRunFiles.clear();
+  }
+
+  @VisibleForTesting
+  public int getRunFileCount() {
+    return myRunFiles.size();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return myMergeQueue != null && !myMergeQueue.isEmpty();
+  }
+
+  @Override
+  @NotNull
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    RunCursor cursor = myMergeQueue.poll();
+    String line = cursor.getLine();
+    if (cursor.advance()) {
+      myMergeQueue.add(cursor);
+    }
+    return line;
+  }
+
+  private void addCursor(@NotNull RunCursor cursor) {
+    if (cursor.advance()) {
+      myMergeQueue.add(cursor);
+    }
+  }
+
+  /**
+   * Sorts the in-memory buffer and writes it to a new run file. Each record is written as
+   * [timestamp: long][length: int][line: UTF-8 bytes].
+   */
+  private void spillBuffer() {
+    myBuffer.sort(ENTRY_COMPARATOR);
+    File runFile = null;
+    try {
+      runFile = myRunDirectory != null
+                ? FileUtil.createTempFile(myRunDirectory, "perfetto", ".run", true, true)
+                : FileUtil.createTempFile("perfetto", ".run", true);
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)))) {
+        for (Entry entry : myBuffer) {
+          byte[] data = entry.myLine.getBytes(Charsets.UTF_8);
+          output.writeLong(entry.myTimestamp);
+          output.writeInt(data.length);
+          output.write(data);
+        }
+      }
+      myRunFiles.add(runFile);
+      myBuffer.clear();
+      myBufferedBytes = 0;
+    }
+    catch (IOException ex) {
+      // Retrying would rewrite the whole, growing, buffer for every new line, so keep all the lines in memory instead.
+      getLogger().warn("Cannot write the sorted lines to disk, keeping them in memory", ex);
+      mySpillingDisabled = true;
+      if (runFile != null) {
+        FileUtil.delete(runFile);
+      }
+    }
+  }
+
+  /**
+   * Reads all the records of a run file written by {@link #spillBuffer()}.
+   */
+  @NotNull
+  private static List<Entry> readRun(@NotNull File runFile) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)))) {
+      long remaining = runFile.length();
+      while (remaining > 0) {
+        long timestamp = input.readLong();
+        byte[] data = new byte[input.readInt()];
+        input.readFully(data);
+        entries.add(new Entry(timestamp, new String(data, Charsets.UTF_8)));
+        remaining -= Long.BYTES + Integer.BYTES + data.length;
+      }
+    }
+    return entries;
+  }
+
+  private static final class Entry {
+    private final long myTimestamp;
+    @NotNull private final String myLine;
+
+    private Entry(long timestamp, @NotNull String line) {
+      myTimestamp = timestamp;
+      myLine = line;
+    }
+  }
+
+  /**
+   * Cursor over a single sorted run. {@link #advance()} must be called before the first line can be read.
+   * Cursors compare by their current timestamp and then by run index, so ties are resolved in insertion order.
+   */
+  private static abstract class RunCursor implements Comparable<RunCursor> {
+    private final int myRunIndex;
+    protected long myTimestamp;
+
+    protected RunCursor(int runIndex) {
+      myRunIndex = runIndex;
+    }
+
+    /**
+     * Moves the cursor to the next line in the run.
+     *
+     * @return false if the run is exhausted.
+     */
+    abstract boolean advance();
+
+    @NotNull
+    abstract String getLine();
+
+    @Override
+    public int compareTo(@NotNull RunCursor other) {
+      int result = Long.compare(myTimestamp, other.myTimestamp);
+      return result != 0 ? result : Integer.compare(myRunIndex, other.myRunIndex);
+    }
+  }
+
+  private static final class BufferRunCursor extends RunCursor {
+    @NotNull private final List<Entry> myEntries;
+    private int myIndex = -1;
+
+    private BufferRunCursor(int runIndex, @NotNull List<Entry> entries) {
+      super(runIndex);
+      myEntries = entries;
+    }
+
+    @Override
+    boolean advance() {
+      if (++myIndex >= myEntries.size()) {
+        return false;
+      }
+      myTimestamp = myEntries.get(myIndex).myTimestamp;
+      return true;
+    }
+
+    @NotNull
+    @Override
+    String getLine() {
+      return myEntries.get(myIndex).myLine;
+    }
+  }
+
+  private static final class MappedRunCursor extends RunCursor {
+    @NotNull private final MappedByteBuffer myBuffer;
+    @NotNull private String myLine = "";
+
+    private MappedRunCursor(int runIndex, @NotNull File file) throws IOException {
+      super(runIndex);
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+           FileChannel channel = randomAccessFile.getChannel()) {
+        // The mapping stays valid after the channel is closed.
+        myBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+
+    @Override
+    boolean advance() {
+      if (!myBuffer.hasRemaining()) {
+        return false;
+      }
+      myTimestamp = myBuffer.getLong();
+      byte[] data = new byte[myBuffer.getInt()];
+      myBuffer.get(data);
+      myLine = new String(data, Charsets.UTF_8);
+      return true;
+    }
+
+    @NotNull
+    @Override
+    String getLine() {
+      return myLine;
+    }
+  }
+}
@@ -18,16 +18,26 @@ package com.android.tools.profilers.cpu.atrace;
 import com.android.tools.idea.protobuf.CodedInputStream;
 import com.android.tools.idea.protobuf.DescriptorProtos;
 import com.android.tools.idea.protobuf.ExtensionRegistryLite;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.containers.Predicate;
+import gnu.trove.TLongArrayList;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import perfetto.protos.PerfettoTrace;
@@ -41,6 +51,8 @@ import trebuchet.io.DataSlice;
 public class PerfettoProducer implements TrebuchetBufferProducer {
   // Required line for trebuchet to parse as ftrace.
   private static final String FTRACE_HEADER = "# tracer: nop";
+  // Target size of the packet-aligned chunks the trace file is split into to be decoded in parallel.
+  private static final int DEFAULT_CHUNK_SIZE_BYTES = 4 * 1024 * 1024;
   // Supported events are events that we know how to convert from perfetto format to systrace format.
   // The current set of supported events are the only events that we need as they are the only events that trebuchet supports.
   private static final Predicate<PerfettoTrace.FtraceEvent> IS_SUPPORTED_EVENT = event ->
@@ -51,7 +63,10 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
 
   // Maps thread id to thread group id. A tgid is the thread id at the root of the tree. This is also known as the PID in user space.
   private final ArrayDeque<String> myGeneratedTrebuchetLines = new ArrayDeque<>();
-  private final PerfettoPacketDBSorter mySorter = new PerfettoPacketDBSorter();
+  private final PerfettoPacketSorter mySorter = new PerfettoPacketSorter();
+  // Pool used to decode chunks of the trace file in parallel.
+  @NotNull private final ForkJoinPool myDecodingPool;
+  private final int myChunkSizeBytes;
 
   private static double nanosToSeconds(double nanos) {
     return nanos / TimeUnit.SECONDS.toNanos(1);
@@ -92,7 +107,7 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
    *
    * @return Null is returned for end of stream, otherwise a trace packet is returned.
    */
-  private static PerfettoTrace.TracePacket readOnePacket(CodedInputStream stream, ExtensionRegistryLite packetRegistry) {
+  static PerfettoTrace.TracePacket readOnePacket(CodedInputStream stream, ExtensionRegistryLite packetRegistry) {
     try {
       // Coded Input Streams by default only let you read in 64KB of data from one proto message. Because our root level proto message is
       // greater than this we need to reset the size counter each time we read a new packet.
@@ -121,6 +136,17 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
   }
 
   public PerfettoProducer() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public PerfettoProducer(@NotNull ForkJoinPool decodingPool) {
+    this(decodingPool, DEFAULT_CHUNK_SIZE_BYTES);
+  }
+
+  @VisibleForTesting
+  public PerfettoProducer(@NotNull ForkJoinPool decodingPool, int chunkSizeBytes) {
+    myDecodingPool = decodingPool;
+    myChunkSizeBytes = chunkSizeBytes;
   }
 
   @Override
@@ -136,24 +162,58 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
   }
 
   private void convertToTraceLines(File file) throws IOException {
-    Map<Integer, Integer> myTidToTgid = new HashMap<>();
-    Map<Integer, String> myTidToName = new HashMap<>();
+    ExtensionRegistryLite packetRegistry = ExtensionRegistryLite.newInstance();
+    PerfettoTrace.registerAllExtensions(packetRegistry);
 
+    // Do a first pass on the file in order to collect all thread names, and thread group names mapped to id.
+    // This allows us to properly build the list of threads / events required by trebuchet for it to
+    // map threads to processes. The file is split into chunks as it is read, each chunk is scanned in parallel and the results are
+    // merged in file order.
+    ChunkMetadata metadata = new ChunkMetadata();
     // Add a special case name for thread id 0.
     // Thread id 0 is used for events that are generated by the system not associated with any process.
     // In systrace and perfetto they use <idle> as the name for events generated with this thread id.
-    myTidToName.put(0, "<idle>");
-    // The clock sync packet is set to the first packet encountered with a clock snapshot.
-    PerfettoTrace.TracePacket clockSyncPacket = null;
+    metadata.myTidToName.put(0, "<idle>");
+    List<PerfettoTraceChunk> chunks;
+    try (OrderedDecoder<ChunkMetadata> decoder = new OrderedDecoder<>(metadata::merge)) {
+      chunks = PerfettoTraceChunk.split(file, myChunkSizeBytes,
+                                        (chunk, data) -> decoder.submit(() -> collectMetadata(data, packetRegistry)));
+      decoder.finish();
+    }
 
-    // Do a first pass on the file in order to collect all thread names, and thread group names mapped to id.
-    // This allows us to properly build the list of threads / events required by trebuchet for it to
-    // map threads to processes.
-    ExtensionRegistryLite packetRegistry = ExtensionRegistryLite.newInstance();
-    PerfettoTrace.registerAllExtensions(packetRegistry);
-    CodedInputStream inputStream = CodedInputStream.newInstance(new FileInputStream(file));
-    PerfettoTrace.TracePacket packet;
-    while ((packet = readOnePacket(inputStream, packetRegistry)) != null) {
+    LineFormatter formatter = new LineFormatter(metadata.myTidToTgid, metadata.myTidToName);
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+         OrderedDecoder<FormattedLines> decoder = new OrderedDecoder<>(lines -> {
+           for (int i = 0; i < lines.size(); i++) {
+             mySorter.addLine(lines.getTimestamp(i), lines.getLine(i));
+           }
+         })) {
+      // Do a second pass on the file now that we have all thread names to generate the lines for trebuchet. The chunks found by the
+      // first pass are decoded and formatted in parallel, then handed to the sorter in file order so events with the same timestamp
+      // keep their order.
+      for (PerfettoTraceChunk chunk : chunks) {
+        decoder.submit(() -> formatLines(chunk, channel, packetRegistry, formatter));
+      }
+      decoder.finish();
+
+      // Build systrace lines for each packet.
+      // Note: lines need to be sorted by time else assumptions in trebuchet break.
+      myGeneratedTrebuchetLines.add("# Initial Data Required by Importer");
+      myGeneratedTrebuchetLines.add(FTRACE_HEADER);
+
+      // Each perfetto trace has many clock sync packets. We need the mono and real time clocks from the first packet to align timestamps
+      // with ftrace to timestamps from studio.
+      assert metadata.myClockSyncPacket != null;
+      addClockSyncLines(metadata.myClockSyncPacket, formatter);
+      mySorter.resetForIterator();
+    }
+  }
+
+  @NotNull
+  private static ChunkMetadata collectMetadata(@NotNull byte[] chunkData, @NotNull ExtensionRegistryLite packetRegistry) {
+    ChunkMetadata metadata = new ChunkMetadata();
+    PerfettoTraceChunk.forEachPacket(chunkData, packetRegistry, packet -> {
       if (packet.hasFtraceEvents()) {
         PerfettoTrace.FtraceEventBundle bundle = packet.getFtraceEvents();
         for (PerfettoTrace.FtraceEvent event : bundle.getEventList()) {
@@ -161,53 +221,48 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
             continue;
           }
           PerfettoTrace.SchedSwitchFtraceEvent schedSwitch = event.getSchedSwitch();
-          myTidToName.putIfAbsent(schedSwitch.getPrevPid(), schedSwitch.getPrevComm());
-          myTidToName.putIfAbsent(schedSwitch.getNextPid(), schedSwitch.getNextComm());
+          metadata.myTidToName.putIfAbsent(schedSwitch.getPrevPid(), schedSwitch.getPrevComm());
+          metadata.myTidToName.putIfAbsent(schedSwitch.getNextPid(), schedSwitch.getNextComm());
         }
       }
       else if (packet.hasProcessTree()) {
         PerfettoTrace.ProcessTree processTree = packet.getProcessTree();
         for (PerfettoTrace.ProcessTree.Process process : processTree.getProcessesList()) {
           // Main threads will have the same pid as tgid.
-          myTidToTgid.putIfAbsent(process.getPid(), process.getPid());
+          metadata.myTidToTgid.putIfAbsent(process.getPid(), process.getPid());
         }
         for (PerfettoTrace.ProcessTree.Thread thread : processTree.getThreadsList()) {
-          myTidToTgid.putIfAbsent(thread.getTid(), thread.getTgid());
+          metadata.myTidToTgid.putIfAbsent(thread.getTid(), thread.getTgid());
           if (thread.hasName()) {
-            myTidToName.putIfAbsent(thread.getTid(), thread.getName());
+            metadata.myTidToName.putIfAbsent(thread.getTid(), thread.getName());
           }
         }
       }
-      else if (packet.hasClockSnapshot() && clockSyncPacket == null) {
+      else if (packet.hasClockSnapshot() && metadata.myClockSyncPacket == null) {
         // We only want the first clock sync packet.
-        clockSyncPacket = packet;
+        metadata.myClockSyncPacket = packet;
       }
-    }
-
-    LineFormatter formatter = new LineFormatter(myTidToTgid, myTidToName);
+    });
+    return metadata;
+  }
 
-    // Do a second pass on the file now that we have all thread names do a second pass on the file to generate the lines for trebuchet.
-    inputStream = CodedInputStream.newInstance(new FileInputStream(file));
-    while ((packet = readOnePacket(inputStream, packetRegistry)) != null) {
+  @NotNull
+  private static FormattedLines formatLines(@NotNull PerfettoTraceChunk chunk,
+                                            @NotNull FileChannel channel,
+                                            @NotNull ExtensionRegistryLite packetRegistry,
+                                            @NotNull LineFormatter formatter) throws IOException {
+    FormattedLines lines = new FormattedLines();
+    chunk.forEachPacket(channel, packetRegistry, packet -> {
       if (packet.hasFtraceEvents()) {
         PerfettoTrace.FtraceEventBundle bundle = packet.getFtraceEvents();
-        for(PerfettoTrace.FtraceEvent event : bundle.getEventList())
-        if (IS_SUPPORTED_EVENT.apply(event)) {
-          mySorter.addLine(event.getTimestamp(), formatter.formatLine(event, bundle.getCpu()));
+        for (PerfettoTrace.FtraceEvent event : bundle.getEventList()) {
+          if (IS_SUPPORTED_EVENT.apply(event)) {
+            lines.add(event.getTimestamp(), formatter.formatLine(event, bundle.getCpu()));
+          }
         }
       }
-    }
-
-    // Build systrace lines for each packet.
-    // Note: lines need to be sorted by time else assumptions in trebuchet break.
-    myGeneratedTrebuchetLines.add("# Initial Data Required by Importer");
-    myGeneratedTrebuchetLines.add(FTRACE_HEADER);
-
-    // Each perfetto trace has many clock sync packets. We need the mono and real time clocks from the first packet to align timestamps with
-    // ftrace to timestamps from studio.
-    assert clockSyncPacket != null;
-    addClockSyncLines(clockSyncPacket, formatter);
-    mySorter.resetForIterator();
+    });
+    return lines;
   }
 
   private void addClockSyncLines(@NotNull PerfettoTrace.TracePacket clockSyncPacket, LineFormatter formatter) {
@@ -316,6 +371,118 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
     return "";
   }
 
+  /**
+   * Decodes a single chunk of the trace file. Runs on the decoding pool.
+   */
+  @FunctionalInterface
+  private interface ChunkDecoder<T> {
+    T decode() throws IOException;
+  }
+
+  /**
+   * Runs {@link ChunkDecoder}s using {@link #myDecodingPool} and passes their results to a consumer on the calling thread, in the order
+   * they were submitted. At most a few chunks per worker are decoded ahead of the consumer, which bounds the memory used by pending
+   * chunks and results.
+   */
+  private final class OrderedDecoder<T> implements AutoCloseable {
+    @NotNull private final Consumer<T> myConsumer;
+    private final ArrayDeque<ForkJoinTask<T>> myPending = new ArrayDeque<>();
+    private final int myMaxPending = Math.max(2, myDecodingPool.getParallelism() * 2);
+
+    private OrderedDecoder(@NotNull Consumer<T> consumer) {
+      myConsumer = consumer;
+    }
+
+    /**
+     * Submits the decoder, first waiting for the oldest pending result if too many are pending.
+     */
+    void submit(@NotNull ChunkDecoder<T> decoder) throws IOException {
+      if (myPending.size() >= myMaxPending) {
+        myConsumer.accept(join(myPending.poll()));
+      }
+      myPending.add(myDecodingPool.submit(() -> {
+        try {
+          return decoder.decode();
+        }
+        catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      }));
+    }
+
+    /**
+     * Waits for all the pending results.
+     */
+    void finish() throws IOException {
+      while (!myPending.isEmpty()) {
+        myConsumer.accept(join(myPending.poll()));
+      }
+    }
+
+    private T join(@NotNull ForkJoinTask<T> task) throws IOException {
+      try {
+        return task.join();
+      }
+      catch (UncheckedIOException ex) {
+        throw ex.getCause();
+      }
+    }
+
+    /**
+     * Cancels the pending decoders, if decoding stopped early.
+     */
+    @Override
+    public void close() {
+      myPending.forEach(task -> task.cancel(true));
+    }
+  }
+
+  /**
+   * Thread names, thread group ids and the first clock snapshot found in a chunk of the trace file.
+   */
+  private static final class ChunkMetadata {
+    private final Map<Integer, Integer> myTidToTgid = new HashMap<>();
+    private final Map<Integer, String> myTidToName = new HashMap<>();
+    @Nullable private PerfettoTrace.TracePacket myClockSyncPacket;
+
+    /**
+     * Merges the metadata of the next chunk in file order, so the first value encountered in the file wins.
+     */
+    private void merge(@NotNull ChunkMetadata next) {
+      next.myTidToTgid.forEach(myTidToTgid::putIfAbsent);
+      next.myTidToName.forEach(myTidToName::putIfAbsent);
+      if (myClockSyncPacket == null) {
+        myClockSyncPacket = next.myClockSyncPacket;
+      }
+    }
+  }
+
+  /**
+   * Atrace lines formatted from a chunk of the trace file along with the timestamp of the event they were generated from.
+   */
+  private static final class FormattedLines {
+    private final TLongArrayList myTimestamps = new TLongArrayList();
+    private final List<String> myLines = new ArrayList<>();
+
+    private void add(long timestamp, @NotNull String line) {
+      myTimestamps.add(timestamp);
+      myLines.add(line);
+    }
+
+    private int size() {
+      return myLines.size();
+    }
+
+    private long getTimestamp(int index) {
+      return myTimestamps.get(index);
+    }
+
+    @NotNull
+    private String getLine(int index) {
+      return myLines.get(index);
+    }
+  }
+
   private static final class LineFormatter {
     private final Map<Integer, Integer> myTidToTgid;
     private final Map<Integer, String> myTidToName;
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.atrace;
+
+import com.android.tools.idea.protobuf.CodedInputStream;
+import com.android.tools.idea.protobuf.DescriptorProtos;
+import com.android.tools.idea.protobuf.ExtensionRegistryLite;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import perfetto.protos.PerfettoTrace;
+
+/**
+ * A contiguous, packet-aligned region of a perfetto trace file. Each chunk contains whole {@link PerfettoTrace.TracePacket}s so it
+ * can be decoded independently of the other chunks, which allows the chunks of a large trace to be decoded in parallel.
+ */
+final class PerfettoTraceChunk {
+  private final long myOffset;
+  private final int myLength;
+
+  private PerfettoTraceChunk(long offset, int length) {
+    myOffset = offset;
+    myLength = length;
+  }
+
+  /**
+   * Receives the chunks of a trace file with their contents, in file order, as {@link #split} reads them.
+   */
+  @FunctionalInterface
+  interface ChunkConsumer {
+    void accept(@NotNull PerfettoTraceChunk chunk, @NotNull byte[] data) throws IOException;
+  }
+
+  /**
+   * Splits the trace file into chunks of roughly {@code targetChunkBytes} in a single sequential pass. Each chunk is passed to the
+   * consumer with its contents as soon as it is read, so it can be decoded while the rest of the file is read. The returned chunks can be
+   * read again later with {@link #forEachPacket(FileChannel, ExtensionRegistryLite, Consumer)}. A chunk can be larger than the target if
+   * a single packet is.
+   */
+  @NotNull
+  static List<PerfettoTraceChunk> split(@NotNull File file, int targetChunkBytes, @NotNull ChunkConsumer consumer) throws IOException {
+    List<PerfettoTraceChunk> chunks = new ArrayList<>();
+    try (ChunkReader reader = new ChunkReader(new BufferedInputStream(new FileInputStream(file)))) {
+      long chunkOffset = 0;
+      // The number of bytes read for the current chunk that belong to its packets.
+      int chunkLength = 0;
+      // The trace has one repeated field, anything else is either the end of the data or a corrupted file. In both cases we stop.
+      while (reader.readVarint() == DescriptorProtos.FieldDescriptorProto.Type.TYPE_GROUP_VALUE) {
+        long packetLength = reader.readVarint();
+        if (packetLength < 0) {
+          break;
+        }
+        // A packet truncated by the end of the file is kept, it then fails to parse the same way it would when reading the file
+        // sequentially.
+        boolean isComplete = reader.readBytes(packetLength);
+        chunkLength = reader.getSize();
+        if (!isComplete) {
+          break;
+        }
+        if (chunkLength >= targetChunkBytes) {
+          PerfettoTraceChunk chunk = new PerfettoTraceChunk(chunkOffset, chunkLength);
+          chunks.add(chunk);
+          consumer.accept(chunk, reader.takeBytes(chunkLength));
+          chunkOffset += chunkLength;
+          chunkLength = 0;
+        }
+      }
+      if (chunkLength > 0) {
+        PerfettoTraceChunk chunk = new PerfettoTraceChunk(chunkOffset, chunkLength);
+        chunks.add(chunk);
+        consumer.accept(chunk, reader.takeBytes(chunkLength));
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * Reads the chunk from the channel and passes each of its packets, in file order, to the consumer.
+   * Reads are positional so multiple chunks can be decoded concurrently from the same channel.
+   */
+  void forEachPacket(@NotNull FileChannel channel,
+                     @NotNull ExtensionRegistryLite packetRegistry,
+                     @NotNull Consumer<PerfettoTrace.TracePacket> consumer) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(myLength);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, myOffset + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of perfetto trace at offset " + (myOffset + buffer.position()));
+      }
+    }
+    forEachPacket(buffer.array(), packetRegistry, consumer);
+  }
+
+  /**
+   * Passes each packet of the given chunk contents, in file order, to the consumer.
+   */
+  static void forEachPacket(@NotNull byte[] data,
+                            @NotNull ExtensionRegistryLite packetRegistry,
+                            @NotNull Consumer<PerfettoTrace.TracePacket> consumer) {
+    CodedInputStream stream = CodedInputStream.newInstance(data);
+    PerfettoTrace.TracePacket packet;
+    while ((packet = PerfettoProducer.readOnePacket(stream, packetRegistry)) != null) {
+      consumer.accept(packet);
+    }
+  }
+
+  /**
+   * Reads the packets of a trace file into a buffer, from which the contents of each chunk are taken once it is complete.
+   */
+  private static final class ChunkReader implements AutoCloseable {
+    @NotNull private final InputStream myInput;
+    @NotNull private byte[] myBuffer = new byte[8192];
+    private int mySize = 0;
+
+    private ChunkReader(@NotNull InputStream input) {
+      myInput = input;
+    }
+
+    /**
+     * @return the number of bytes read and not taken yet.
+     */
+    int getSize() {
+      return mySize;
+    }
+
+    /**
+     * Reads the next varint into the buffer.
+     *
+     * @return the value of the varint, or -1 if the end of the stream is reached before the varint is complete.
+     */
+    long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = myInput.read();
+        if (b < 0) {
+          return -1;
+        }
+        ensureCapacity(1);
+        myBuffer[mySize++] = (byte)b;
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint in perfetto trace");
+    }
+
+    /**
+     * Reads the next {@code count} bytes into the buffer.
+     *
+     * @return false if the end of the stream is reached before {@code count} bytes are read.
+     */
+    boolean readBytes(long count) throws IOException {
+      ensureCapacity(count);
+      int end = mySize + (int)count;
+      while (mySize < end) {
+        int read = myInput.read(myBuffer, mySize, end - mySize);
+        if (read < 0) {
+          return false;
+        }
+        mySize += read;
+      }
+      return true;
+    }
+
+    /**
+     * Removes the first {@code length} bytes from the buffer and returns them.
+     */
+    @NotNull
+    byte[] takeBytes(int length) {
+      byte[] bytes = Arrays.copyOf(myBuffer, length);
+      System.arraycopy(myBuffer, length, myBuffer, 0, mySize - length);
+      mySize -= length;
+      return bytes;
+    }
+
+    private void ensureCapacity(long count) throws IOException {
+      // Arrays can't quite reach Integer.MAX_VALUE elements on most VMs.
+      if (count > Integer.MAX_VALUE - 8 - mySize) {
+        throw new IOException("Perfetto trace packet of " + count + " bytes is too large");
+      }
+      int capacity = mySize + (int)count;
+      if (capacity > myBuffer.length) {
+        myBuffer = Arrays.copyOf(myBuffer, (int)Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, 2L * myBuffer.length)));
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      myInput.close();
+    }
+  }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
@@ -33,6 +34,15 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
 
+  /**
+   * Indices used by {@link #update(Range)}, built the first time they are needed so range changes don't walk every node. Like the
+   * indices of {@link CpuTreeNode}, they are only built for nodes with many intervals.
+   */
+  @Nullable private IntervalIndex myTotalIndex;
+  @Nullable private IntervalIndex myNodesIndex;
+  @Nullable private IntervalIndex myNodeChildrenIndex;
+  @Nullable private ClockType myIndexClockType;
+
   private BottomUpNode(String id) {
     super(id);
     myIsRoot = false;
@@ -134,11 +144,58 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
   @Override
   public void update(@NotNull Range range) {
+    if (!isIndexed()) {
+      // how much time was spent in this call stack path, and in the functions it called
+      myGlobalTotal = 0;
+      for (CaptureNode outerNode : collectOuterNodes()) {
+        myGlobalTotal += getIntersection(range, outerNode, ClockType.GLOBAL);
+      }
+      // how much time was spent doing work directly in this call stack path
+      double self = 0;
+      for (CaptureNode node : myNodes) {
+        self += getIntersection(range, node, ClockType.GLOBAL);
+        for (CaptureNode child : node.getChildren()) {
+          self -= getIntersection(range, child, ClockType.GLOBAL);
+        }
+      }
+      myGlobalChildrenTotal = myGlobalTotal - self;
+      return;
+    }
+
+    // The nodes counted in the total only depend on getEnd(), so the indices are only rebuilt if the clock type changes.
+    ClockType clockType = myNodes.isEmpty() ? ClockType.GLOBAL : myNodes.get(0).getClockType();
+    if (myTotalIndex == null || myIndexClockType != clockType) {
+      buildIndices();
+      myIndexClockType = clockType;
+    }
+    assert myTotalIndex != null && myNodesIndex != null && myNodeChildrenIndex != null;
+
     // how much time was spent in this call stack path, and in the functions it called
-    myGlobalTotal = 0;
+    myGlobalTotal = myTotalIndex.getIntersectionLength(range);
     // how much time was spent doing work directly in this call stack path
-    double self = 0;
+    double self = myNodesIndex.getIntersectionLength(range) - myNodeChildrenIndex.getIntersectionLength(range);
+    myGlobalChildrenTotal = myGlobalTotal - self;
+  }
 
+  @Override
+  protected void invalidateIndices() {
+    super.invalidateIndices();
+    myTotalIndex = null;
+    myNodesIndex = null;
+    myNodeChildrenIndex = null;
+  }
+
+  private void buildIndices() {
+    myTotalIndex = IntervalIndex.of(collectOuterNodes(), CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+    myNodesIndex = IntervalIndex.of(myNodes, CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+    myNodeChildrenIndex = IntervalIndex.of(getNodeChildren(), CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+  }
+
+  /**
+   * @return the nodes at the top of the call stack, whose time counts toward the total.
+   */
+  @NotNull
+  private List<CaptureNode> collectOuterNodes() {
     // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
     // then the second method can't be outerSoFarByParent.
     // It's used to exclude nodes which aren't at the top of the
@@ -146,6 +203,7 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
     // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
     HashMap<CaptureNode, CaptureNode> outerSoFarByParent = new HashMap<>();
+    List<CaptureNode> outerNodes = new ArrayList<>();
 
     // myNodes is sorted by CaptureNode#getStart() in increasing order,
     // if they are equal then ancestor comes first
@@ -157,22 +215,14 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
       if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
         if (outerSoFar != null) {
           // |outerSoFarByParent| is at the top of the call stack
-          myGlobalTotal += getIntersection(range, outerSoFar, ClockType.GLOBAL);
+          outerNodes.add(outerSoFar);
         }
         outerSoFarByParent.put(root, node);
       }
-
-      self += getIntersection(range, node, ClockType.GLOBAL);
-      for (CaptureNode child : node.getChildren()) {
-        self -= getIntersection(range, child, ClockType.GLOBAL);
-      }
     }
-
-    for(CaptureNode outerSoFar : outerSoFarByParent.values()) {
-      // |outerSoFarByParent| is at the top of the call stack
-      myGlobalTotal += getIntersection(range, outerSoFar, ClockType.GLOBAL);
-    }
-    myGlobalChildrenTotal = myGlobalTotal - self;
+    // |outerSoFarByParent| is at the top of the call stack
+    outerNodes.addAll(outerSoFarByParent.values());
+    return outerNodes;
   }
 
   @NotNull
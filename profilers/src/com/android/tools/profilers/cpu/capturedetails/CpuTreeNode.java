@@ -22,6 +22,7 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import java.util.ArrayList;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class CpuTreeNode<T extends CpuTreeNode> {
   /**
@@ -37,6 +38,30 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   protected double myThreadTotal = 0;
   protected double myThreadChildrenTotal = 0;
 
+  /**
+   * Nodes with fewer intervals than this, counting the intervals of their children, walk them on every range update instead of building
+   * {@link IntervalIndex}es. Most nodes of a tree only aggregate a few calls, and their indices would take more memory than walking them
+   * takes time.
+   */
+  static final int MIN_INDEXED_INTERVALS = 64;
+
+  /**
+   * The number of intervals of {@link #myNodes} and their children, or -1 if it has not been counted since nodes were last added.
+   */
+  private int myIntervalCount = -1;
+
+  /**
+   * Indices over the intervals of {@link #myNodes} and their children, built the first time they are needed so range updates don't have
+   * to walk every node. They are only built for nodes with at least {@link #MIN_INDEXED_INTERVALS} intervals, and are dropped whenever
+   * nodes are added.
+   */
+  @Nullable private IntervalIndex myGlobalIndex;
+  @Nullable private IntervalIndex myThreadIndex;
+  @Nullable private IntervalIndex myGlobalChildrenIndex;
+  @Nullable private IntervalIndex myThreadChildrenIndex;
+  @Nullable private IntervalIndex myRangeIndex;
+  @Nullable private ClockType myRangeIndexClockType;
+
   public CpuTreeNode(String id) {
     myId = id;
   }
@@ -47,6 +72,16 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
 
   protected void addNode(@NotNull CaptureNode node) {
     myNodes.add(node);
+    invalidateIndices();
+  }
+
+  protected void invalidateIndices() {
+    myIntervalCount = -1;
+    myGlobalIndex = null;
+    myThreadIndex = null;
+    myGlobalChildrenIndex = null;
+    myThreadChildrenIndex = null;
+    myRangeIndex = null;
   }
 
   protected void addNodes(@NotNull List<CaptureNode> nodes) {
@@ -82,20 +117,60 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
     return getGlobalTotal() - getGlobalChildrenTotal();
   }
 
+  /**
+   * @return whether range updates are answered from {@link IntervalIndex}es rather than by walking the nodes.
+   */
+  protected boolean isIndexed() {
+    if (myIntervalCount < 0) {
+      int count = myNodes.size();
+      for (CaptureNode node : myNodes) {
+        count += node.getChildren().size();
+      }
+      myIntervalCount = count;
+    }
+    return myIntervalCount >= MIN_INDEXED_INTERVALS;
+  }
+
   public void update(@NotNull Range range) {
-    myGlobalTotal = 0.0;
-    myGlobalChildrenTotal = 0;
-    myThreadTotal = 0.0;
-    myThreadChildrenTotal = 0;
+    if (!isIndexed()) {
+      myGlobalTotal = 0;
+      myGlobalChildrenTotal = 0;
+      myThreadTotal = 0;
+      myThreadChildrenTotal = 0;
+      for (CaptureNode node : myNodes) {
+        myGlobalTotal += getIntersection(range, node, ClockType.GLOBAL);
+        myThreadTotal += getIntersection(range, node, ClockType.THREAD);
+        for (CaptureNode child : node.getChildren()) {
+          myGlobalChildrenTotal += getIntersection(range, child, ClockType.GLOBAL);
+          myThreadChildrenTotal += getIntersection(range, child, ClockType.THREAD);
+        }
+      }
+      return;
+    }
+
+    if (myGlobalIndex == null) {
+      List<CaptureNode> children = getNodeChildren();
+      myGlobalIndex = IntervalIndex.of(myNodes, CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+      myThreadIndex = IntervalIndex.of(myNodes, CaptureNode::getStartThread, CaptureNode::getEndThread);
+      myGlobalChildrenIndex = IntervalIndex.of(children, CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+      myThreadChildrenIndex = IntervalIndex.of(children, CaptureNode::getStartThread, CaptureNode::getEndThread);
+    }
+    myGlobalTotal = myGlobalIndex.getIntersectionLength(range);
+    myThreadTotal = myThreadIndex.getIntersectionLength(range);
+    myGlobalChildrenTotal = myGlobalChildrenIndex.getIntersectionLength(range);
+    myThreadChildrenTotal = myThreadChildrenIndex.getIntersectionLength(range);
+  }
 
+  /**
+   * @return the children of all the nodes in {@link #myNodes}.
+   */
+  @NotNull
+  protected List<CaptureNode> getNodeChildren() {
+    List<CaptureNode> children = new ArrayList<>();
     for (CaptureNode node : myNodes) {
-      myGlobalTotal += getIntersection(range, node, ClockType.GLOBAL);
-      myThreadTotal += getIntersection(range, node, ClockType.THREAD);
-      for (CaptureNode child : node.getChildren()) {
-        myGlobalChildrenTotal += getIntersection(range, child, ClockType.GLOBAL);
-        myThreadChildrenTotal += getIntersection(range, child, ClockType.THREAD);
-      }
+      children.addAll(node.getChildren());
     }
+    return children;
   }
 
   protected static double getIntersection(@NotNull Range range, @NotNull CaptureNode node, @NotNull ClockType type) {
@@ -105,7 +180,19 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public boolean inRange(Range range) {
-    return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
+    if (myNodes.isEmpty()) {
+      return false;
+    }
+    if (!isIndexed()) {
+      return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
+    }
+    // getStart and getEnd depend on the clock type of the nodes, so the index needs to be rebuilt if it changed.
+    ClockType clockType = myNodes.get(0).getClockType();
+    if (myRangeIndex == null || myRangeIndexClockType != clockType) {
+      myRangeIndex = IntervalIndex.of(myNodes, CaptureNode::getStart, CaptureNode::getEnd);
+      myRangeIndexClockType = clockType;
+    }
+    return myRangeIndex.intersects(range);
   }
 
   public void reset() {
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.profilers.cpu.CaptureNode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Precomputed index over the time intervals of a list of {@link CaptureNode}s that answers range queries in logarithmic time, so
+ * {@link CpuTreeNode}s don't have to walk all their nodes every time the selection range changes.
+ * <p>
+ * The total intersection length of the intervals with [a, b] is F(b) - F(a), where F(x) = sum((x - start)+) - sum((x - end)+). Each sum
+ * is computed from the prefix sums of the sorted starts (or ends), which also give back the sorted values themselves. Intervals can
+ * overlap, each one is counted separately.
+ */
+final class IntervalIndex {
+  private static final IntervalIndex EMPTY = new IntervalIndex(0, new long[0], new long[0]);
+
+  /**
+   * All values are stored relative to the smallest start so the prefix sums don't overflow.
+   */
+  private final long myBase;
+  private final int mySize;
+  /**
+   * Element k is the sum of the k smallest starts (or ends). The k-th smallest value itself is sums[k + 1] - sums[k].
+   */
+  @NotNull private final long[] myStartPrefixSums;
+  @NotNull private final long[] myEndPrefixSums;
+
+  private IntervalIndex(long base, @NotNull long[] sortedStarts, @NotNull long[] sortedEnds) {
+    myBase = base;
+    mySize = sortedStarts.length;
+    myStartPrefixSums = prefixSums(sortedStarts);
+    myEndPrefixSums = prefixSums(sortedEnds);
+  }
+
+  @NotNull
+  static IntervalIndex of(@NotNull List<CaptureNode> nodes,
+                          @NotNull ToLongFunction<CaptureNode> start,
+                          @NotNull ToLongFunction<CaptureNode> end) {
+    long[] starts = new long[nodes.size()];
+    long[] ends = new long[nodes.size()];
+    int count = 0;
+    for (CaptureNode node : nodes) {
+      long nodeStart = start.applyAsLong(node);
+      long nodeEnd = end.applyAsLong(node);
+      // Malformed intervals, which end before they start, have no intersection with any range.
+      if (nodeEnd >= nodeStart) {
+        starts[count] = nodeStart;
+        ends[count] = nodeEnd;
+        count++;
+      }
+    }
+    if (count == 0) {
+      return EMPTY;
+    }
+    starts = Arrays.copyOf(starts, count);
+    ends = Arrays.copyOf(ends, count);
+    Arrays.sort(starts);
+    Arrays.sort(ends);
+    long base = starts[0];
+    for (int i = 0; i < count; i++) {
+      starts[i] -= base;
+      ends[i] -= base;
+    }
+    return new IntervalIndex(base, starts, ends);
+  }
+
+  /**
+   * @return the sum of the intersection lengths of every interval with the range, same as summing {@link Range#getIntersectionLength}.
+   */
+  double getIntersectionLength(@NotNull Range range) {
+    if (range.isEmpty() || mySize == 0) {
+      return 0;
+    }
+    return Math.max(0, coveredLength(range.getMax()) - coveredLength(range.getMin()));
+  }
+
+  /**
+   * @return true if any interval satisfies start < range.max && range.min < end. An empty range doesn't intersect any interval.
+   */
+  boolean intersects(@NotNull Range range) {
+    if (range.isEmpty() || mySize == 0) {
+      return false;
+    }
+    // As every interval ends after it starts, an interval that ends before range.min necessarily starts before range.max.
+    int startedBeforeMax = countLessThan(myStartPrefixSums, range.getMax() - myBase);
+    int endedBeforeMin = mySize - countGreaterThan(myEndPrefixSums, range.getMin() - myBase);
+    return startedBeforeMax - endedBeforeMin > 0;
+  }
+
+  /**
+   * F(x): the total length of the intervals that lies before x.
+   */
+  private double coveredLength(double value) {
+    // F is 0 before the first start and constant after the last end. Clamping also keeps huge range values from overflowing.
+    double x = Math.min(Math.max(value - myBase, 0), valueAt(myEndPrefixSums, mySize - 1));
+    int startCount = countLessThan(myStartPrefixSums, x);
+    int endCount = countLessThan(myEndPrefixSums, x);
+    return (startCount * x - myStartPrefixSums[startCount]) - (endCount * x - myEndPrefixSums[endCount]);
+  }
+
+  private static long valueAt(@NotNull long[] prefixSums, int index) {
+    return prefixSums[index + 1] - prefixSums[index];
+  }
+
+  /**
+   * @return the number of sorted values, given by their prefix sums, strictly less than value.
+   */
+  private static int countLessThan(@NotNull long[] prefixSums, double value) {
+    int low = 0;
+    int high = prefixSums.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (valueAt(prefixSums, mid) < value) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the number of sorted values, given by their prefix sums, strictly greater than value.
+   */
+  private static int countGreaterThan(@NotNull long[] prefixSums, double value) {
+    int size = prefixSums.length - 1;
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (valueAt(prefixSums, mid) <= value) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return size - low;
+  }
+
+  @NotNull
+  private static long[] prefixSums(@NotNull long[] values) {
+    long[] sums = new long[values.length + 1];
+    for (int i = 0; i < values.length; i++) {
+      sums[i + 1] = sums[i] + values[i];
+    }
+    return sums;
+  }
+}
@@ -19,6 +19,7 @@ import com.android.tools.adtui.model.Range;
 import com.android.tools.profiler.proto.Cpu;
 import com.android.tools.profiler.proto.SimpleperfReport;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureNodeTree;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.android.tools.profilers.cpu.TraceParser;
@@ -190,8 +191,8 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   @NotNull
-  private static CaptureNode createCaptureNode(CaptureNodeModel model, long timestamp) {
-    CaptureNode node = new CaptureNode(model);
+  private static CaptureNode createCaptureNode(@NotNull CaptureNodeTree tree, CaptureNodeModel model, long timestamp) {
+    CaptureNode node = tree.createNode(model);
     setNodeStartTime(node, timestamp);
     node.setDepth(0);
     return node;
@@ -350,14 +351,16 @@ public class SimpleperfTraceParser implements TraceParser {
     // Add a root node to represent the thread itself.
     long firstTimestamp = threadSamples.get(0).getTime();
     SimpleperfReport.Thread thread = myThreads.get(threadId);
-    CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp);
+    // Nodes are stored in a compact tree as long recordings can contain millions of calls.
+    CaptureNodeTree tree = new CaptureNodeTree();
+    CaptureNode root = createCaptureNode(tree, new SingleNameModel(thread.getThreadName()), firstTimestamp);
     root.setDepth(0);
     myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
 
     // Parse the first call chain so we have a value for lastCallchain
     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
     // Node used to traverse the tree. In the first traversal we pass an empty list as previous call chain and root as last visited node.
-    CaptureNode lastVisitedNode = parseCallChain(previousCallChain, Collections.emptyList(), threadSamples.get(0).getTime(), root);
+    CaptureNode lastVisitedNode = parseCallChain(tree, previousCallChain, Collections.emptyList(), threadSamples.get(0).getTime(), root);
 
     // Now parse all the rest of the samples collected for this thread
     for (int i = 1; i < threadSamples.size(); i++) {
@@ -366,7 +369,7 @@ public class SimpleperfTraceParser implements TraceParser {
       // so reversing it makes the traversal easier.
       List<SimpleperfReport.Sample.CallChainEntry> callChain = Lists.reverse(sample.getCallchainList());
       // TODO: when --trace-offcpu is supported, we will need to call updateAncestorsEndTime if sample has a "schedule" out event.
-      lastVisitedNode = parseCallChain(callChain, previousCallChain, sample.getTime(), lastVisitedNode);
+      lastVisitedNode = parseCallChain(tree, callChain, previousCallChain, sample.getTime(), lastVisitedNode);
       previousCallChain = callChain;
     }
 
@@ -376,6 +379,7 @@ public class SimpleperfTraceParser implements TraceParser {
     updateAncestorsEndTime(lastTimestamp, lastVisitedNode);
     // update the root timestamp
     setNodeEndTime(root, lastTimestamp);
+    tree.freeze();
   }
 
   /**
@@ -396,7 +400,8 @@ public class SimpleperfTraceParser implements TraceParser {
    * Receives a {@link CaptureNode} as a starting point to traverse the tree when adding new nodes or visiting existing ones. Returns the
    * last visited node.
    */
-  private CaptureNode parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain,
+  private CaptureNode parseCallChain(@NotNull CaptureNodeTree tree,
+                                     List<SimpleperfReport.Sample.CallChainEntry> callChain,
                                      List<SimpleperfReport.Sample.CallChainEntry> previousCallChain,
                                      long sampleTimestamp, CaptureNode lastVisitedNode) {
     // Node used to traverse the tree when adding new nodes or going up to find the divergent node ancestor.
@@ -417,7 +422,7 @@ public class SimpleperfTraceParser implements TraceParser {
 
     // We add the new nodes (if any) present in the new call chain as descendants of the parent of the first divergent node.
     if (divergenceIndex < callChain.size()) {
-      traversalNode = addNewNodes(callChain, traversalNode, divergenceIndex, sampleTimestamp);
+      traversalNode = addNewNodes(tree, callChain, traversalNode, divergenceIndex, sampleTimestamp);
     }
 
     // Finally, return the traversal node.
@@ -442,13 +447,14 @@ public class SimpleperfTraceParser implements TraceParser {
    * Given a list of call chain entries and a start index, convert them to {@link CaptureNode} and add them as descendants of a given node.
    * Returns the last visited (added) node.
    */
-  private CaptureNode addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
+  private CaptureNode addNewNodes(@NotNull CaptureNodeTree tree,
+                                  List<SimpleperfReport.Sample.CallChainEntry> callChain,
                                   CaptureNode node, int startIndex, long startTimestamp) {
     assert node != null;
     for (int i = startIndex; i < callChain.size(); i++) {
       // Get the parent function vAddress. That corresponds to the line of the parent function where the current function is called.
       long parentVAddress = i > 0 ? callChain.get(i - 1).getVaddrInFile() : -1;
-      CaptureNode child = createCaptureNode(methodModelFromCallchainEntry(callChain.get(i), parentVAddress), startTimestamp);
+      CaptureNode child = createCaptureNode(tree, methodModelFromCallchainEntry(callChain.get(i), parentVAddress), startTimestamp);
       node.addChild(child);
       child.setDepth(node.getDepth() + 1);
       node = child;
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the instances alive at the boundaries of fixed-duration time buckets during a live allocation tracking session, so the
+ * snapshot at the start of a selection can be computed by replaying the events from the closest cached boundary instead of from the
+ * start of the session.
+ * <p>
+ * Only the raw allocation data is kept, as the instance objects are mutated by the queries. The cache is bounded by the total number of
+ * instances it holds; the least recently used snapshots are evicted first.
+ */
+final class AllocationSnapshotCache {
+  static final long DEFAULT_BUCKET_DURATION_NS = TimeUnit.SECONDS.toNanos(10);
+  static final int DEFAULT_MAX_CACHED_INSTANCE_COUNT = 1_000_000;
+
+  /**
+   * The instances of one shard alive at a snapshot time, in the order they were allocated.
+   */
+  static final class ShardSnapshot {
+    @NotNull final int[] myTags;
+    @NotNull final int[] myClassTags;
+    @NotNull final int[] myStackIds;
+    @NotNull final int[] myThreadIds;
+    @NotNull final int[] myHeapIds;
+    @NotNull final long[] mySizes;
+    @NotNull final long[] myAllocTimes;
+    // Position of each allocation in the event stream, used to merge the shards back in allocation order.
+    @NotNull final long[] myOrdinals;
+
+    ShardSnapshot(int size) {
+      myTags = new int[size];
+      myClassTags = new int[size];
+      myStackIds = new int[size];
+      myThreadIds = new int[size];
+      myHeapIds = new int[size];
+      mySizes = new long[size];
+      myAllocTimes = new long[size];
+      myOrdinals = new long[size];
+    }
+
+    int size() {
+      return myTags.length;
+    }
+  }
+
+  static final class Snapshot {
+    private final long myTimeNs;
+    @NotNull private final ShardSnapshot[] myShards;
+    private final long myNextOrdinal;
+
+    /**
+     * @param nextOrdinal an ordinal greater than the ordinals of all the instances in the snapshot.
+     */
+    Snapshot(long timeNs, @NotNull ShardSnapshot[] shards, long nextOrdinal) {
+      myTimeNs = timeNs;
+      myShards = shards;
+      myNextOrdinal = nextOrdinal;
+    }
+
+    /**
+     * @return the time of the snapshot. The snapshot contains the instances allocated and not freed strictly before that time.
+     */
+    long getTimeNs() {
+      return myTimeNs;
+    }
+
+    @NotNull
+    ShardSnapshot getShard(int shard) {
+      return myShards[shard];
+    }
+
+    long getNextOrdinal() {
+      return myNextOrdinal;
+    }
+
+    int getInstanceCount() {
+      int count = 0;
+      for (ShardSnapshot shard : myShards) {
+        count += shard.size();
+      }
+      return count;
+    }
+  }
+
+  private final long myBucketDurationNs;
+  private final int myMaxCachedInstanceCount;
+  @NotNull private final TreeMap<Long, Snapshot> mySnapshots = new TreeMap<>();
+  // Same snapshots as mySnapshots, in access order.
+  @NotNull private final LinkedHashMap<Long, Snapshot> myLruSnapshots = new LinkedHashMap<>(16, 0.75f, true);
+  private int myCachedInstanceCount;
+
+  AllocationSnapshotCache() {
+    this(DEFAULT_BUCKET_DURATION_NS, DEFAULT_MAX_CACHED_INSTANCE_COUNT);
+  }
+
+  @VisibleForTesting
+  AllocationSnapshotCache(long bucketDurationNs, int maxCachedInstanceCount) {
+    assert bucketDurationNs > 0;
+    myBucketDurationNs = bucketDurationNs;
+    myMaxCachedInstanceCount = maxCachedInstanceCount;
+  }
+
+  long getBucketDurationNs() {
+    return myBucketDurationNs;
+  }
+
+  /**
+   * @return the cached snapshot with the latest time at or before |timeNs|, or null if there is none.
+   */
+  @Nullable
+  synchronized Snapshot getLatestSnapshot(long timeNs) {
+    Map.Entry<Long, Snapshot> entry = mySnapshots.floorEntry(timeNs);
+    if (entry == null) {
+      return null;
+    }
+    // Marks the snapshot as recently used.
+    myLruSnapshots.get(entry.getKey());
+    return entry.getValue();
+  }
+
+  synchronized boolean contains(long timeNs) {
+    return mySnapshots.containsKey(timeNs);
+  }
+
+  synchronized void put(@NotNull Snapshot snapshot) {
+    int instanceCount = snapshot.getInstanceCount();
+    if (instanceCount > myMaxCachedInstanceCount || mySnapshots.containsKey(snapshot.getTimeNs())) {
+      return;
+    }
+    mySnapshots.put(snapshot.getTimeNs(), snapshot);
+    myLruSnapshots.put(snapshot.getTimeNs(), snapshot);
+    myCachedInstanceCount += instanceCount;
+
+    Iterator<Snapshot> iterator = myLruSnapshots.values().iterator();
+    while (myCachedInstanceCount > myMaxCachedInstanceCount) {
+      Snapshot evicted = iterator.next();
+      iterator.remove();
+      mySnapshots.remove(evicted.getTimeNs());
+      myCachedInstanceCount -= evicted.getInstanceCount();
+    }
+  }
+
+  synchronized void clear() {
+    mySnapshots.clear();
+    myLruSnapshots.clear();
+    myCachedInstanceCount = 0;
+  }
+
+  @VisibleForTesting
+  synchronized int getSnapshotCount() {
+    return mySnapshots.size();
+  }
+}
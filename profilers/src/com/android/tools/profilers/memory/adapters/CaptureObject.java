@@ -169,13 +169,21 @@ public interface CaptureObject extends MemoryObject {
    * Entry point for the {@link CaptureObject} to load its data. Note that it is up to the implementation to listen to changes
    * in the queryRange and make data changes accordingly. The optional queryJoiner allows the implementation to perform
    * operation back on the caller's thread (e.g. notifying UI updates) if bulk loading is done on a separate thread.
-   * These parameters are only used by {@link LiveAllocationCaptureObject} instances at the moment, since partial selection/queries are
+   * The queryRange is only used by {@link LiveAllocationCaptureObject} instances at the moment, since partial selection/queries are
    * not supported otherwise.
    */
   boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner);
 
   boolean isDoneLoading();
 
+  /**
+   * Returns false while the retained sizes of the instances are still being computed, after the capture has been loaded. Until then the
+   * retained sizes of the instances are {@link MemoryObject#INVALID_VALUE}.
+   */
+  default boolean hasRetainedSizes() {
+    return true;
+  }
+
   boolean isError();
 
   void unload();
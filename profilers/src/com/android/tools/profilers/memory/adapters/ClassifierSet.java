@@ -22,7 +22,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -33,11 +32,11 @@ public abstract class ClassifierSet implements MemoryObject {
   @Nullable private Supplier<String> myNameSupplier = null;
 
   // The set of instances that make up our baseline snapshot (e.g. live objects at the left of a selection range).
-  @NotNull protected final Set<InstanceObject> mySnapshotInstances = new LinkedHashSet<>(0);
+  @NotNull protected final InstanceSet mySnapshotInstances = new InstanceSet();
   // The set of instances that have delta events (e.g. delta allocations/deallocations within a selection range).
   // Note that instances here can also appear in the set of snapshot instances (e.g. when a instance is allocated before the selection
   // and deallocation within the selection).
-  @NotNull protected final Set<InstanceObject> myDeltaInstances = new LinkedHashSet<>(0);
+  @NotNull protected final InstanceSet myDeltaInstances = new InstanceSet();
 
   // Lazily create the Classifier, as it is configurable and isn't necessary until nodes under this node needs to be classified.
   @Nullable protected Classifier myClassifier = null;
@@ -130,8 +129,8 @@ public abstract class ClassifierSet implements MemoryObject {
       myClassifier.getClassifierSet(instanceObject, true).addSnapshotInstanceObject(instanceObject);
     }
     else {
-      assert !mySnapshotInstances.contains(instanceObject);
-      mySnapshotInstances.add(instanceObject);
+      boolean added = mySnapshotInstances.add(instanceObject);
+      assert added;
     }
 
     mySnapshotObjectCount++;
@@ -154,8 +153,8 @@ public abstract class ClassifierSet implements MemoryObject {
       classifierSet.removeSnapshotInstanceObject(instanceObject);
     }
     else {
-      assert mySnapshotInstances.contains(instanceObject);
-      mySnapshotInstances.remove(instanceObject);
+      boolean removed = mySnapshotInstances.remove(instanceObject);
+      assert removed;
     }
 
     mySnapshotObjectCount--;
@@ -203,10 +202,7 @@ public abstract class ClassifierSet implements MemoryObject {
       instanceAdded = myClassifier.getClassifierSet(instanceObject, true).addDeltaInstanceInformation(instanceObject, isAllocation);
     }
     else {
-      if (!myDeltaInstances.contains(instanceObject)) {
-        instanceAdded = true;
-        myDeltaInstances.add(instanceObject);
-      }
+      instanceAdded = myDeltaInstances.add(instanceObject);
     }
 
     if (isAllocation) {
@@ -242,10 +238,7 @@ public abstract class ClassifierSet implements MemoryObject {
       instanceRemoved = classifierSet.removeDeltaInstanceInformation(instanceObject, isAllocation);
     }
     else {
-      if (!instanceObject.hasTimeData() && myDeltaInstances.contains(instanceObject)) {
-        myDeltaInstances.remove(instanceObject);
-        instanceRemoved = true;
-      }
+      instanceRemoved = !instanceObject.hasTimeData() && myDeltaInstances.remove(instanceObject);
     }
 
     if (isAllocation) {
@@ -287,14 +280,19 @@ public abstract class ClassifierSet implements MemoryObject {
   }
 
   public int getInstancesCount() {
-    if (myClassifier == null) {
-      Set<InstanceObject> total = new HashSet<>(mySnapshotInstances);
-      total.addAll(myDeltaInstances);
-      return total.size();
+    // Descendants hold distinct instances, as an instance always belongs to the same child.
+    int count = mySnapshotInstances.size();
+    for (InstanceObject instance : myDeltaInstances) {
+      if (!mySnapshotInstances.contains(instance)) {
+        count++;
+      }
     }
-    else {
-      return (int)getInstancesStream().count();
+    if (myClassifier != null) {
+      for (ClassifierSet classifierSet : myClassifier.getAllClassifierSets()) {
+        count += classifierSet.getInstancesCount();
+      }
     }
+    return count;
   }
 
   /**
@@ -302,7 +300,8 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @NotNull
   public Stream<InstanceObject> getInstancesStream() {
-    Stream<InstanceObject> total = Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).distinct();
+    Stream<InstanceObject> total =
+      Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream().filter(instance -> !mySnapshotInstances.contains(instance)));
     if (myClassifier == null) {
       return total;
     }
@@ -362,18 +361,14 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @Nullable
   public ClassifierSet findContainingClassifierSet(@NotNull InstanceObject target) {
-    boolean instancesContainsTarget =
-      Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).filter(instance -> target.equals(instance)).findAny()
-        .isPresent();
+    boolean instancesContainsTarget = mySnapshotInstances.contains(target) || myDeltaInstances.contains(target);
     if (instancesContainsTarget && myClassifier != null) {
       return this;
     }
     else if (instancesContainsTarget || myClassifier != null) {
       List<ClassifierSet> childrenClassifierSets = getChildrenClassifierSets();
-      // mySnapshotInstances/myDeltaInstances can be updated after getChildrenClassiferSets so rebuild the stream.
-      boolean stillContainsTarget =
-        Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).filter(instance -> target.equals(instance)).findAny()
-          .isPresent();
+      // mySnapshotInstances/myDeltaInstances can be updated after getChildrenClassiferSets so check them again.
+      boolean stillContainsTarget = mySnapshotInstances.contains(target) || myDeltaInstances.contains(target);
       if (instancesContainsTarget && stillContainsTarget) {
         return this; // If after the partition the target still falls within the instances within this set, then return this set.
       }
@@ -398,7 +393,8 @@ public abstract class ClassifierSet implements MemoryObject {
       return false;
     }
 
-    Set<InstanceObject> instances = getInstancesStream().collect(Collectors.toSet());
+    InstanceSet instances = new InstanceSet();
+    getInstancesStream().forEach(instances::add);
     return targetSet.getInstancesStream().allMatch(instances::contains);
   }
 
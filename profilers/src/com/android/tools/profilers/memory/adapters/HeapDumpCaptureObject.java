@@ -29,7 +29,9 @@ import com.android.tools.perflib.heap.Heap;
 import com.android.tools.perflib.heap.Instance;
 import com.android.tools.perflib.heap.Snapshot;
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor;
+import com.android.tools.perflib.heap.io.HprofBuffer;
 import com.android.tools.perflib.heap.io.InMemoryBuffer;
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo;
 import com.android.tools.profiler.proto.Transport;
@@ -45,7 +47,10 @@ import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import gnu.trove.TLongObjectHashMap;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
@@ -57,7 +62,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -65,6 +72,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class HeapDumpCaptureObject implements CaptureObject {
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
 
   @NotNull
   private final ProfilerClient myClient;
@@ -78,12 +88,13 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @NotNull
   private final Map<Integer, HeapSet> myHeapSets = new HashMap<>();
 
-  @NotNull
-  private final TLongObjectHashMap<InstanceObject> myInstanceIndex = new TLongObjectHashMap<>();
-
   @NotNull
   private final ClassDb myClassDb = new ClassDb();
 
+  // The entry of java.lang.Class, which is the class of all the class objects.
+  @Nullable
+  private ClassDb.ClassEntry myJavaLangClassEntry;
+
   @NotNull
   private final HeapDumpInfo myHeapDumpInfo;
 
@@ -93,8 +104,15 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  // The temporary file the snapshot is memory-mapped from, if any.
+  @Nullable
+  private File myHeapDumpFile;
+
   private volatile boolean myIsLoadingError = false;
 
+  // Set once the dominators of the snapshot, which give the retained sizes and the depths of the instances, are computed.
+  private volatile boolean myHasRetainedSizes = false;
+
   private boolean myHasNativeAllocations;
 
   @NotNull
@@ -104,8 +122,9 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   private final Set<CaptureObjectInstanceFilter> myCurrentInstanceFilters = new HashSet<>();
 
-  private final ExecutorService myExecutorService =
-    Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("memory-heapdump-instancefilters").build());
+  private final ThreadPoolExecutor myExecutorService =
+    new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                           new ThreadFactoryBuilder().setNameFormat("memory-heapdump-instancefilters").build());
 
   public HeapDumpCaptureObject(@NotNull ProfilerClient client,
                                @NotNull Common.Session session,
@@ -197,19 +216,20 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myClassDb;
   }
 
+  /**
+   * Parses the heap dump and fills the heap sets, so the instances can be shown by class with their counts and shallow sizes. Computing
+   * the dominators of a large heap dump takes longer than parsing it, so when a queryJoiner is given, they are computed afterwards on the
+   * instance filter executor, and the heap sets are then refreshed with the retained sizes and depths on the queryJoiner. Otherwise,
+   * they are computed before this returns.
+   */
   @Override
   public boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner) {
-    Transport.BytesResponse response = myClient.getTransportClient().getBytes(Transport.BytesRequest.newBuilder()
-                                                                                .setStreamId(mySession.getStreamId())
-                                                                                .setId(Long.toString(myHeapDumpInfo.getStartTime()))
-                                                                                .build());
-
-    if (response.getContents() == ByteString.EMPTY) {
+    HprofBuffer buffer = fetchHeapDump();
+    if (buffer == null) {
       myIsLoadingError = true;
       return false;
     }
 
-    InMemoryBuffer buffer = new InMemoryBuffer(response.getContents().asReadOnlyByteBuffer());
     Snapshot snapshot;
     NativeRegistryPostProcessor nativeRegistryPostProcessor = new NativeRegistryPostProcessor();
     if (myProguardMap != null) {
@@ -218,7 +238,10 @@ public class HeapDumpCaptureObject implements CaptureObject {
     else {
       snapshot = Snapshot.createSnapshot(buffer, new ProguardMap(), Collections.singletonList(nativeRegistryPostProcessor));
     }
-    snapshot.computeDominators();
+    if (queryJoiner == null) {
+      snapshot.computeDominators();
+      myHasRetainedSizes = true;
+    }
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
     mySnapshot = snapshot;
 
@@ -232,6 +255,7 @@ public class HeapDumpCaptureObject implements CaptureObject {
           heap.getClasses().stream().filter(classObj -> JAVA_LANG_CLASS.equals(classObj.getClassName())).findFirst().orElse(null);
         if (javaLangClass != null) {
           javaLangClassObject = createClassObjectInstance(null, javaLangClass);
+          myJavaLangClassEntry = javaLangClassObject.getClassEntry();
         }
       }
     }
@@ -241,8 +265,6 @@ public class HeapDumpCaptureObject implements CaptureObject {
       HeapSet heapSet = heapSets.get(heap);
       heap.getClasses().forEach(classObj -> {
         InstanceObject classObject = createClassObjectInstance(finalJavaLangClassObject, classObj);
-        assert !myInstanceIndex.containsKey(classObj.getId());
-        myInstanceIndex.put(classObj.getId(), classObject);
         heapSet.addDeltaInstanceObject(classObject);
       });
     }
@@ -258,8 +280,6 @@ public class HeapDumpCaptureObject implements CaptureObject {
           myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), classObj.getClassName()) :
           myClassDb.registerClass(classObj.getId(), classObj.getClassName());
         InstanceObject instanceObject = new HeapDumpInstanceObject(this, instance, classEntry, null);
-        assert !myInstanceIndex.containsKey(instance.getId());
-        myInstanceIndex.put(instance.getId(), instanceObject);
         heapSet.addDeltaInstanceObject(instanceObject);
         return true;
       });
@@ -277,9 +297,94 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
     myStage.refreshSelectedHeap();
 
+    if (queryJoiner != null) {
+      // Queued before any instance filter, since they use the depths of the instances.
+      myExecutorService.execute(() -> computeRetainedSizes(snapshot, queryJoiner));
+    }
     return true;
   }
 
+  private void computeRetainedSizes(@NotNull Snapshot snapshot, @NotNull Executor joiner) {
+    snapshot.computeDominators();
+    myHasRetainedSizes = true;
+    joiner.execute(() -> {
+      // The classifier sets total the retained sizes of the instances when they are added, so they are added again.
+      for (HeapSet heap : myHeapSets.values()) {
+        Set<InstanceObject> instances = heap.getInstancesStream().collect(Collectors.toSet());
+        heap.clearClassifierSets();
+        instances.forEach(heap::addDeltaInstanceObject);
+      }
+      myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
+      myStage.refreshSelectedHeap();
+    });
+  }
+
+  @Override
+  public boolean hasRetainedSizes() {
+    return myHasRetainedSizes;
+  }
+
+  /**
+   * Fetches the heap dump and spills it to a memory-mapped temporary file, so the snapshot reads it (e.g. to resolve field values on
+   * demand) from the page cache instead of keeping the whole dump in the Java heap. Falls back to reading it from memory if the file
+   * can't be written.
+   * The file is unmapped and deleted by {@link #unload()}.
+   *
+   * @return the buffer to parse the heap dump from, or null if there is no heap dump.
+   */
+  @Nullable
+  private HprofBuffer fetchHeapDump() {
+    Transport.BytesResponse response = myClient.getTransportClient().getBytes(Transport.BytesRequest.newBuilder()
+                                                                                .setStreamId(mySession.getStreamId())
+                                                                                .setId(Long.toString(myHeapDumpInfo.getStartTime()))
+                                                                                .build());
+    ByteString contents = response.getContents();
+    if (contents == ByteString.EMPTY) {
+      return null;
+    }
+
+    File file = null;
+    try {
+      file = File.createTempFile("heapdump", ".hprof");
+      try (OutputStream output = new FileOutputStream(file)) {
+        contents.writeTo(output);
+      }
+      HprofBuffer buffer = new MemoryMappedFileBuffer(file);
+      myHeapDumpFile = file;
+      return buffer;
+    }
+    catch (IOException e) {
+      getLogger().warn("Cannot memory-map the heap dump, loading it in memory instead.", e);
+      if (file != null) {
+        deleteHeapDumpFile(file);
+      }
+      return new InMemoryBuffer(contents.asReadOnlyByteBuffer());
+    }
+  }
+
+  /**
+   * Unmaps the snapshot and deletes its temporary file. Runs on the instance filter executor, after the filter that may be reading the
+   * snapshot.
+   */
+  private void releaseHeapDump() {
+    Snapshot snapshot = mySnapshot;
+    mySnapshot = null;
+    if (snapshot != null) {
+      snapshot.dispose();
+    }
+    if (myHeapDumpFile != null) {
+      deleteHeapDumpFile(myHeapDumpFile);
+      myHeapDumpFile = null;
+    }
+  }
+
+  private static void deleteHeapDumpFile(@NotNull File file) {
+    if (!file.delete()) {
+      getLogger().warn("Cannot delete the temporary heap dump file " + file);
+      file.deleteOnExit();
+    }
+  }
+
   @Override
   public boolean isDoneLoading() {
     return mySnapshot != null || myIsLoadingError;
@@ -292,7 +397,13 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public void unload() {
-    myExecutorService.shutdownNow();
+    if (myExecutorService.isShutdown()) {
+      return;
+    }
+    // Drop the pending instance filters, but let the running one finish before releasing the heap dump it may be reading.
+    myExecutorService.getQueue().clear();
+    myExecutorService.execute(this::releaseHeapDump);
+    myExecutorService.shutdown();
   }
 
   @NotNull
@@ -313,13 +424,21 @@ public class HeapDumpCaptureObject implements CaptureObject {
              .asList(InstanceAttribute.LABEL, InstanceAttribute.DEPTH, InstanceAttribute.SHALLOW_SIZE, InstanceAttribute.RETAINED_SIZE);
   }
 
+  /**
+   * Instance objects are not indexed, as there can be millions of them. Instead, a new one is created for |instance|, equal to the one in
+   * the {@link HeapSet}s.
+   */
   @Nullable
   public InstanceObject findInstanceObject(@NotNull Instance instance) {
     if (mySnapshot == null) {
       return null;
     }
 
-    return myInstanceIndex.get(instance.getId());
+    if (instance instanceof ClassObj) {
+      ClassDb.ClassEntry classEntry = myJavaLangClassEntry != null ? myJavaLangClassEntry : myClassDb.getEntry(instance.getId());
+      return new HeapDumpInstanceObject(this, instance, classEntry, ValueObject.ValueType.CLASS);
+    }
+    return new HeapDumpInstanceObject(this, instance, myClassDb.getEntry(instance.getClassObj().getId()), null);
   }
 
   @NotNull
@@ -357,6 +476,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myExecutorService;
   }
 
+  @VisibleForTesting
+  @Nullable
+  File getHeapDumpFile() {
+    return myHeapDumpFile;
+  }
+
   @Override
   public void addInstanceFilter(@NotNull CaptureObjectInstanceFilter filterToAdd, @NotNull Executor analyzeJoiner) {
     assert mySupportedInstanceFilters.contains(filterToAdd);
@@ -395,8 +520,16 @@ public class HeapDumpCaptureObject implements CaptureObject {
     myExecutorService.submit(() -> {
       // Run the remaining analyzers on the full instance set, since we don't know the the instances that have been removed from the
       // HeapSets using the filter that we are removing.
-      Set<InstanceObject> allInstances = new HashSet<>(myInstanceIndex.size());
-      myInstanceIndex.forEachValue(instance -> allInstances.add(instance));
+      Set<InstanceObject> allInstances = new HashSet<>();
+      Snapshot snapshot = mySnapshot;
+      assert snapshot != null;
+      for (Heap heap : snapshot.getHeaps()) {
+        heap.getClasses().forEach(classObj -> allInstances.add(findInstanceObject(classObj)));
+        heap.forEachInstance(instance -> {
+          allInstances.add(findInstanceObject(instance));
+          return true;
+        });
+      }
       Set<InstanceObject> matchedInstances = allInstances;
       for (CaptureObjectInstanceFilter filter : myCurrentInstanceFilters) {
         matchedInstances = filter.filter(matchedInstances, myClassDb);
@@ -131,12 +131,13 @@ final class HeapDumpFieldObject implements FieldObject {
 
   @Override
   public long getRetainedSize() {
-    return myRetainedSize;
+    // Read from the instance, since the retained sizes of a heap dump may be computed after its fields are first shown.
+    return myInstanceObject != null ? myInstanceObject.getRetainedSize() : myRetainedSize;
   }
 
   @Override
   public int getDepth() {
-    return myDepth;
+    return myInstanceObject != null ? myInstanceObject.getDepth() : myDepth;
   }
 
   @NotNull
@@ -52,7 +52,8 @@ class HeapDumpInstanceObject implements InstanceObject {
   @NotNull private final HeapDumpCaptureObject myCaptureObject;
   @NotNull private final Instance myInstance;
   @NotNull private final ClassDb.ClassEntry myClassEntry;
-  @NotNull private final String myMemoizedLabel;
+  // Lazily formatted, as there can be millions of instances but only the displayed ones need a label.
+  @Nullable private String myMemoizedLabel;
 
   HeapDumpInstanceObject(@NotNull HeapDumpCaptureObject captureObject,
                          @NotNull Instance instance,
@@ -62,8 +63,6 @@ class HeapDumpInstanceObject implements InstanceObject {
     myInstance = instance;
     myClassEntry = classEntry;
 
-    myMemoizedLabel =
-      String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
     if (precomputedValueType != null) {
       myValueType = precomputedValueType;
       return;
@@ -109,6 +108,10 @@ class HeapDumpInstanceObject implements InstanceObject {
   @Override
   public String getValueText() {
     // TODO show length of array instance
+    if (myMemoizedLabel == null) {
+      myMemoizedLabel =
+        String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
+    }
     return myMemoizedLabel;
   }
 
@@ -165,7 +168,7 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public long getRetainedSize() {
-    return myInstance.getTotalRetainedSize();
+    return myCaptureObject.hasRetainedSizes() ? myInstance.getTotalRetainedSize() : INVALID_VALUE;
   }
 
   @Override
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A compact, insertion-ordered set of {@link InstanceObject}s, used by {@link ClassifierSet}s which can hold millions of instances.
+ * <p>
+ * Instead of a node per entry like {@link java.util.LinkedHashSet}, the instances are kept in an array in insertion order, indexed by an
+ * open-addressing table of int positions into that array. Removed instances leave a hole in the array, which is compacted when the set
+ * grows.
+ */
+final class InstanceSet extends AbstractSet<InstanceObject> {
+  private static final InstanceObject[] EMPTY_ELEMENTS = new InstanceObject[0];
+  private static final int[] EMPTY_TABLE = new int[0];
+  private static final int MIN_CAPACITY = 4;
+  // Values of the table slots which don't hold the position of an element. Other values are the position + 1.
+  private static final int FREE_SLOT = 0;
+  private static final int REMOVED_SLOT = -1;
+
+  // The instances in insertion order, with nulls in place of the removed ones.
+  @NotNull private InstanceObject[] myElements = EMPTY_ELEMENTS;
+  // Open-addressing hash table of positions in myElements. Its length is a power of two, at least twice the number of used positions.
+  @NotNull private int[] myTable = EMPTY_TABLE;
+  // Number of positions used in myElements, including removed ones.
+  private int myEnd;
+  private int mySize;
+  private int myModCount;
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof InstanceObject && findSlot((InstanceObject)o) >= 0;
+  }
+
+  @Override
+  public boolean add(@NotNull InstanceObject instance) {
+    if (findSlot(instance) >= 0) {
+      return false;
+    }
+    if (myEnd == myElements.length) {
+      ensureCapacity();
+    }
+    myElements[myEnd] = instance;
+    insertSlot(instance, myEnd);
+    myEnd++;
+    mySize++;
+    myModCount++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof InstanceObject)) {
+      return false;
+    }
+    int slot = findSlot((InstanceObject)o);
+    if (slot < 0) {
+      return false;
+    }
+    myElements[myTable[slot] - 1] = null;
+    myTable[slot] = REMOVED_SLOT;
+    mySize--;
+    myModCount++;
+    if (mySize == 0) {
+      clear();
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    myElements = EMPTY_ELEMENTS;
+    myTable = EMPTY_TABLE;
+    myEnd = 0;
+    mySize = 0;
+    myModCount++;
+  }
+
+  @NotNull
+  @Override
+  public Iterator<InstanceObject> iterator() {
+    return new Iterator<InstanceObject>() {
+      private int myNext = advance(0);
+      private int myLast = -1;
+      private int myExpectedModCount = myModCount;
+
+      private int advance(int position) {
+        while (position < myEnd && myElements[position] == null) {
+          position++;
+        }
+        return position;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return myNext < myEnd;
+      }
+
+      @Override
+      public InstanceObject next() {
+        if (myModCount != myExpectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (myNext >= myEnd) {
+          throw new NoSuchElementException();
+        }
+        myLast = myNext;
+        myNext = advance(myNext + 1);
+        return myElements[myLast];
+      }
+
+      @Override
+      public void remove() {
+        if (myLast < 0) {
+          throw new IllegalStateException();
+        }
+        if (myModCount != myExpectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        // Removing only clears the element's position (or everything if the set becomes empty), so the iteration can go on.
+        boolean lastElement = mySize == 1;
+        InstanceSet.this.remove(myElements[myLast]);
+        myExpectedModCount = myModCount;
+        myLast = -1;
+        if (lastElement) {
+          myNext = 0;
+        }
+      }
+    };
+  }
+
+  @Override
+  public Spliterator<InstanceObject> spliterator() {
+    return Spliterators.spliterator(this, Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL);
+  }
+
+  /**
+   * @return the slot of the table holding |instance|'s position, or -1 if it is not in the set.
+   */
+  private int findSlot(@NotNull InstanceObject instance) {
+    if (mySize == 0) {
+      return -1;
+    }
+    int mask = myTable.length - 1;
+    for (int slot = hash(instance) & mask; ; slot = (slot + 1) & mask) {
+      int value = myTable[slot];
+      if (value == FREE_SLOT) {
+        return -1;
+      }
+      if (value != REMOVED_SLOT && instance.equals(myElements[value - 1])) {
+        return slot;
+      }
+    }
+  }
+
+  private void insertSlot(@NotNull InstanceObject instance, int position) {
+    int mask = myTable.length - 1;
+    int slot = hash(instance) & mask;
+    while (myTable[slot] != FREE_SLOT && myTable[slot] != REMOVED_SLOT) {
+      slot = (slot + 1) & mask;
+    }
+    myTable[slot] = position + 1;
+  }
+
+  /**
+   * Makes room for one more element: compacts the removed positions away, growing the arrays if they are at least half full.
+   */
+  private void ensureCapacity() {
+    int capacity = Math.max(MIN_CAPACITY, mySize + 1);
+    if (capacity * 2 > myElements.length) {
+      capacity = Math.max(capacity, myElements.length + (myElements.length >> 1));
+    }
+    else {
+      capacity = myElements.length;
+    }
+
+    InstanceObject[] elements = new InstanceObject[capacity];
+    int size = 0;
+    for (int i = 0; i < myEnd; i++) {
+      if (myElements[i] != null) {
+        elements[size++] = myElements[i];
+      }
+    }
+    myElements = elements;
+    myEnd = size;
+    myTable = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    for (int i = 0; i < size; i++) {
+      insertSlot(elements[i], i);
+    }
+  }
+
+  private static int hash(@NotNull InstanceObject instance) {
+    int hash = instance.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
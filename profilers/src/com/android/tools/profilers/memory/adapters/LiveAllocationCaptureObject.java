@@ -47,10 +47,14 @@ import com.android.tools.profilers.memory.MemoryProfilerAspect;
 import com.android.tools.profilers.memory.MemoryProfilerStage;
 import com.android.tools.profilers.stacktrace.ThreadId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.openapi.diagnostic.Logger;
+import gnu.trove.TIntArrayList;
 import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongArrayList;
 import gnu.trove.TLongObjectHashMap;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -64,6 +68,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -71,6 +77,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
@@ -88,11 +95,21 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   @VisibleForTesting static final String SAMPLING_INFO_MESSAGE = "Selected region does not have full tracking. Data may be inaccurate.";
 
+  // Allocation events are replayed in parallel by partitioning them by tag, so all the events of an instance are replayed in order by the
+  // same shard. The shards of all the captures are replayed on a shared pool.
+  private static final int SHARD_COUNT = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+  private static final ExecutorService SHARD_EXECUTOR = Executors.newFixedThreadPool(
+    SHARD_COUNT, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("profiler-live-allocation-shard-%d").build());
+  // Below this number of events, the shards are replayed on the loading thread as handing them off costs more than replaying them.
+  private static final int PARALLEL_REPLAY_MIN_EVENT_COUNT = 10_000;
+
   @Nullable private MemoryProfilerStage myStage;
 
   @VisibleForTesting final ExecutorService myExecutorService;
   private final ClassDb myClassDb;
-  private final TIntObjectHashMap<LiveAllocationInstanceObject> myInstanceMap;
+  // Instances by tag, partitioned the same way as the events. See getShard(int).
+  private final TIntObjectHashMap<LiveAllocationInstanceObject>[] myInstanceShards;
+  @NotNull private final AllocationSnapshotCache mySnapshotCache;
   private final TIntObjectHashMap<Memory.AllocationStack> myCallstackMap;
   // Mapping from unsymbolized addresses to symbolized native frames
   @NotNull private final TLongObjectHashMap<NativeCallStack.NativeFrame> myNativeFrameMap;
@@ -123,6 +140,17 @@ public class LiveAllocationCaptureObject implements CaptureObject {
                                      long captureStartTime,
                                      @Nullable ExecutorService loadService,
                                      @Nullable MemoryProfilerStage stage) {
+    this(client, session, captureStartTime, loadService, stage, new AllocationSnapshotCache());
+  }
+
+  @VisibleForTesting
+  @SuppressWarnings("unchecked")
+  LiveAllocationCaptureObject(@NotNull ProfilerClient client,
+                              @NotNull Common.Session session,
+                              long captureStartTime,
+                              @Nullable ExecutorService loadService,
+                              @Nullable MemoryProfilerStage stage,
+                              @NotNull AllocationSnapshotCache snapshotCache) {
     if (loadService == null) {
       myExecutorService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("profiler-live-allocation").build());
     }
@@ -131,7 +159,11 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
 
     myClassDb = new ClassDb();
-    myInstanceMap = new TIntObjectHashMap<>();
+    myInstanceShards = new TIntObjectHashMap[SHARD_COUNT];
+    for (int shard = 0; shard < SHARD_COUNT; shard++) {
+      myInstanceShards[shard] = new TIntObjectHashMap<>();
+    }
+    mySnapshotCache = snapshotCache;
     myCallstackMap = new TIntObjectHashMap<>();
     myNativeFrameMap = new TLongObjectHashMap<>();
     myMethodIdMap = new TLongObjectHashMap<>();
@@ -282,6 +314,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   public void unload() {
     myQueryRange.removeDependencies(myAspectObserver);
     myExecutorService.shutdownNow();
+    mySnapshotCache.clear();
   }
 
   // Update myContextEndTimeNs and Callstack information
@@ -357,7 +390,9 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         // Clear and recreate the instance/heap sets if previous range does not intersect with the new one
         boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs;
         if (clear) {
-          myInstanceMap.clear();
+          for (TIntObjectHashMap<LiveAllocationInstanceObject> instanceShard : myInstanceShards) {
+            instanceShard.clear();
+          }
           // If we are resetting, then first establish the object snapshot at the query range's start point.
           queryJavaInstanceSnapshot(newStartTimeNs, snapshotList);
           queryJniReferencesSnapshot(newStartTimeNs, snapshotList);
@@ -453,7 +488,8 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   @NotNull
   private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
-    LiveAllocationInstanceObject instance = myInstanceMap.get(tag);
+    TIntObjectHashMap<LiveAllocationInstanceObject> instanceShard = getInstanceShard(tag);
+    LiveAllocationInstanceObject instance = instanceShard.get(tag);
     if (instance == null) {
       ClassDb.ClassEntry entry = myClassDb.getEntry(classTag);
       AllocationStack callstack = null;
@@ -467,7 +503,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         thread = myThreadIdMap.get(threadId);
       }
       instance = new LiveAllocationInstanceObject(this, entry, thread, callstack, size, heapId);
-      myInstanceMap.put(tag, instance);
+      instanceShard.put(tag, instance);
     }
 
     return instance;
@@ -475,7 +511,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   @Nullable
   private JniReferenceInstanceObject getOrCreateJniRefObject(int tag, long refValue) {
-    LiveAllocationInstanceObject referencedObject = myInstanceMap.get(tag);
+    LiveAllocationInstanceObject referencedObject = getInstanceShard(tag).get(tag);
     if (referencedObject == null) {
       // If a Java object can't be found by a given tag, nothing is known about the JNI reference and we can't track it.
       return null;
@@ -490,43 +526,63 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   /**
    * Populates the input list with all instance objects that are alive at |snapshotTimeNs|.
+   * <p>
+   * The events are replayed from the latest cached snapshot at or before |snapshotTimeNs|, or from the start of the session if there is
+   * none. The snapshots at the time bucket boundaries crossed by the replay are added to the cache.
    */
   private void queryJavaInstanceSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
-    // Retrieve all the event samples from the start of the session until the snapshot time.
-    long sessionStartNs = mySession.getStartTimestamp();
-    List<Memory.BatchAllocationEvents> eventsList = getAllocationEvents(sessionStartNs, snapshotTimeNs);
-    Map<Integer, LiveAllocationInstanceObject> liveInstanceMap = new LinkedHashMap<>();
-    for (Memory.BatchAllocationEvents events : eventsList) {
-      // Only consider events up to but excluding the snapshot time.
-      Iterator<AllocationEvent> itr = events.getEventsList().stream().filter(evt -> evt.getTimestamp() < snapshotTimeNs)
-        .sorted(Comparator.comparingLong(AllocationEvent::getTimestamp)).iterator();
-      while (itr.hasNext()) {
-        AllocationEvent event = itr.next();
-        LiveAllocationInstanceObject instance;
-        switch (event.getEventCase()) {
-          case ALLOC_DATA:
-            // Allocation - create an InstanceObject. This might be removed later if there is a corresponding FREE_DATA event.
-            AllocationEvent.Allocation allocation = event.getAllocData();
-            instance = getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
-                                                 allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
-            instance.setAllocationTime(event.getTimestamp());
-            liveInstanceMap.put(allocation.getTag(), instance);
-            break;
-          case FREE_DATA:
-            // Deallocation - there should be a matching InstanceObject.
-            AllocationEvent.Deallocation deallocation = event.getFreeData();
-            liveInstanceMap.remove(deallocation.getTag());
-            // Don't keep deallocated objects around in the cache to avoid bloating memory.
-            myInstanceMap.remove(deallocation.getTag());
-            break;
-          case CLASS_DATA:
-            // ignore CLASS_DATA as they are handled via context updates.
-            break;
+    AllocationSnapshotCache.Snapshot cachedSnapshot = mySnapshotCache.getLatestSnapshot(snapshotTimeNs);
+    long fromTimeNs;
+    long firstOrdinal;
+    List<AllocationEvent> events;
+    if (cachedSnapshot == null) {
+      // Retrieve all the event samples from the start of the session until the snapshot time.
+      fromTimeNs = mySession.getStartTimestamp();
+      firstOrdinal = 0;
+      events = getSortedAllocationEvents(fromTimeNs, snapshotTimeNs, Long.MIN_VALUE);
+    }
+    else {
+      fromTimeNs = cachedSnapshot.getTimeNs();
+      firstOrdinal = cachedSnapshot.getNextOrdinal();
+      events = fromTimeNs == snapshotTimeNs ? Collections.emptyList() : getSortedAllocationEvents(fromTimeNs, snapshotTimeNs, fromTimeNs);
+    }
+
+    // Only cache the snapshots at times before which all the events have arrived.
+    TLongArrayList boundaries = new TLongArrayList();
+    if (myLastSeenTimestampNs != Long.MIN_VALUE) {
+      long bucketDurationNs = mySnapshotCache.getBucketDurationNs();
+      long lastBoundaryNs = Math.min(snapshotTimeNs, myLastSeenTimestampNs - QUERY_BUFFER_NS);
+      for (long boundaryNs = (Math.floorDiv(fromTimeNs, bucketDurationNs) + 1) * bucketDurationNs; boundaryNs <= lastBoundaryNs;
+           boundaryNs += bucketDurationNs) {
+        if (!mySnapshotCache.contains(boundaryNs)) {
+          boundaries.add(boundaryNs);
         }
       }
     }
 
-    snapshotList.addAll(liveInstanceMap.values());
+    TIntArrayList[] shardEventIndices = partitionByTag(events);
+    SnapshotShardReplay[] replays = new SnapshotShardReplay[SHARD_COUNT];
+    for (int shard = 0; shard < SHARD_COUNT; shard++) {
+      replays[shard] = new SnapshotShardReplay(events, shardEventIndices[shard], firstOrdinal, boundaries.toNativeArray());
+    }
+    runShards(events.size(), shard -> replays[shard].replay(cachedSnapshot == null ? null : cachedSnapshot.getShard(shard)));
+
+    long nextOrdinal = firstOrdinal + events.size();
+    for (int i = 0; i < boundaries.size(); i++) {
+      AllocationSnapshotCache.ShardSnapshot[] shardSnapshots = new AllocationSnapshotCache.ShardSnapshot[SHARD_COUNT];
+      for (int shard = 0; shard < SHARD_COUNT; shard++) {
+        shardSnapshots[shard] = replays[shard].myBoundarySnapshots[i];
+      }
+      mySnapshotCache.put(new AllocationSnapshotCache.Snapshot(boundaries.get(i), shardSnapshots, nextOrdinal));
+    }
+
+    // Merge the shards' instances back in allocation order.
+    List<Iterator<LiveEntry>> shardEntries = new ArrayList<>(SHARD_COUNT);
+    for (SnapshotShardReplay replay : replays) {
+      shardEntries.add(replay.myLiveEntries.values().iterator());
+    }
+    Iterators.mergeSorted(shardEntries, Comparator.comparingLong((LiveEntry entry) -> entry.myOrdinal))
+      .forEachRemaining(entry -> snapshotList.add(entry.myInstance));
   }
 
   private void queryJniReferencesSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
@@ -570,8 +626,9 @@ public class LiveAllocationCaptureObject implements CaptureObject {
           case DELETE_GLOBAL_REF:
             refObject = instanceMap.remove(event.getRefValue());
             // If the referencing instance object is still around, remove the added JNI ref.
-            if (refObject != null && myInstanceMap.containsKey(event.getObjectTag())) {
-              myInstanceMap.get(event.getObjectTag()).removeJniRef(refObject);
+            TIntObjectHashMap<LiveAllocationInstanceObject> instanceShard = getInstanceShard(event.getObjectTag());
+            if (refObject != null && instanceShard.containsKey(event.getObjectTag())) {
+              instanceShard.get(event.getObjectTag()).removeJniRef(refObject);
             }
             break;
         }
@@ -601,17 +658,16 @@ public class LiveAllocationCaptureObject implements CaptureObject {
       return;
     }
 
-
-    List<Memory.BatchAllocationEvents> eventsList = getAllocationEvents(startTimeNs, endTimeNs);
-    for (Memory.BatchAllocationEvents events : eventsList) {
-      // Only consider events between the delta range [start time, end time)
-      Iterator<AllocationEvent> itr =
-        events.getEventsList().stream()
-          .filter(evt -> evt.getTimestamp() >= startTimeNs && evt.getTimestamp() < endTimeNs)
-          .sorted(Comparator.comparingLong(AllocationEvent::getTimestamp))
-          .iterator();
-      while (itr.hasNext()) {
-        AllocationEvent event = itr.next();
+    List<AllocationEvent> events = getSortedAllocationEvents(startTimeNs, endTimeNs, startTimeNs);
+    // Each shard stores its instances at the positions of their events, so the results are merged back in the order of the events.
+    InstanceObject[] allocations = new InstanceObject[events.size()];
+    InstanceObject[] deallocations = new InstanceObject[events.size()];
+    TIntArrayList[] shardEventIndices = partitionByTag(events);
+    runShards(events.size(), shard -> {
+      TIntArrayList eventIndices = shardEventIndices[shard];
+      for (int i = 0; i < eventIndices.size(); i++) {
+        int eventIndex = eventIndices.get(i);
+        AllocationEvent event = events.get(eventIndex);
         LiveAllocationInstanceObject instance;
         switch (event.getEventCase()) {
           case ALLOC_DATA:
@@ -620,24 +676,54 @@ public class LiveAllocationCaptureObject implements CaptureObject {
             instance = getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
                                                  allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
             instance.setAllocationTime(resetInstance ? Long.MIN_VALUE : event.getTimestamp());
-            allocationList.add(instance);
+            allocations[eventIndex] = instance;
             break;
           case FREE_DATA:
             // New deallocation - there should be a matching InstanceObject.
             AllocationEvent.Deallocation deallocation = event.getFreeData();
-            assert myInstanceMap.containsKey(deallocation.getTag());
-            instance = myInstanceMap.get(deallocation.getTag());
+            TIntObjectHashMap<LiveAllocationInstanceObject> instanceShard = getInstanceShard(deallocation.getTag());
+            assert instanceShard.containsKey(deallocation.getTag());
+            instance = instanceShard.get(deallocation.getTag());
             instance.setDeallocTime(resetInstance ? Long.MAX_VALUE : event.getTimestamp());
-            deallocationList.add(instance);
-            break;
-          case CLASS_DATA:
-            // ignore CLASS_DATA as they are handled via context updates.
+            deallocations[eventIndex] = instance;
             break;
         }
       }
+    });
+
+    for (InstanceObject instance : allocations) {
+      if (instance != null) {
+        allocationList.add(instance);
+      }
+    }
+    for (InstanceObject instance : deallocations) {
+      if (instance != null) {
+        deallocationList.add(instance);
+      }
     }
   }
 
+  /**
+   * @return the allocation and deallocation events with timestamps in [minTimestampNs, endTimeNs) from the samples around the
+   * [startTimeNs, endTimeNs] range, sorted by timestamp.
+   */
+  @NotNull
+  private List<AllocationEvent> getSortedAllocationEvents(long startTimeNs, long endTimeNs, long minTimestampNs) {
+    List<AllocationEvent> events = new ArrayList<>();
+    for (Memory.BatchAllocationEvents batch : getAllocationEvents(startTimeNs, endTimeNs)) {
+      for (AllocationEvent event : batch.getEventsList()) {
+        // CLASS_DATA events are ignored as they are handled via context updates.
+        if ((event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA || event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) &&
+            event.getTimestamp() >= minTimestampNs && event.getTimestamp() < endTimeNs) {
+          events.add(event);
+        }
+      }
+    }
+    // The sort is stable, so events with the same timestamp stay in the order they were sent in.
+    events.sort(Comparator.comparingLong(AllocationEvent::getTimestamp));
+    return events;
+  }
+
   private void queryJniReferencesDelta(long startTimeNs,
                                        long endTimeNs,
                                        @NotNull List<InstanceObject> allocationList,
@@ -838,4 +924,174 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
     return eventList;
   }
+
+  @NotNull
+  private TIntObjectHashMap<LiveAllocationInstanceObject> getInstanceShard(int tag) {
+    return myInstanceShards[getShard(tag)];
+  }
+
+  private static int getShard(int tag) {
+    return (tag & Integer.MAX_VALUE) % SHARD_COUNT;
+  }
+
+  /**
+   * @return for each shard, the indices of the events of the instances that belong to it, in increasing order.
+   */
+  @NotNull
+  private static TIntArrayList[] partitionByTag(@NotNull List<AllocationEvent> events) {
+    TIntArrayList[] shardEventIndices = new TIntArrayList[SHARD_COUNT];
+    for (int shard = 0; shard < SHARD_COUNT; shard++) {
+      shardEventIndices[shard] = new TIntArrayList();
+    }
+    for (int i = 0; i < events.size(); i++) {
+      AllocationEvent event = events.get(i);
+      int tag = event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA ? event.getAllocData().getTag() : event.getFreeData().getTag();
+      shardEventIndices[getShard(tag)].add(i);
+    }
+    return shardEventIndices;
+  }
+
+  /**
+   * Runs |shardTask| for every shard and returns once they are all done. The shards run in parallel if there are enough events to replay.
+   */
+  private static void runShards(int eventCount, @NotNull IntConsumer shardTask) {
+    if (SHARD_COUNT == 1 || eventCount < PARALLEL_REPLAY_MIN_EVENT_COUNT) {
+      for (int shard = 0; shard < SHARD_COUNT; shard++) {
+        shardTask.accept(shard);
+      }
+      return;
+    }
+
+    List<Future<?>> futures = new ArrayList<>(SHARD_COUNT);
+    for (int shard = 0; shard < SHARD_COUNT; shard++) {
+      int taskShard = shard;
+      futures.add(SHARD_EXECUTOR.submit(() -> shardTask.accept(taskShard)));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new CancellationException();
+    }
+    catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * An instance alive during a snapshot replay, with the allocation data needed to cache it.
+   */
+  private static final class LiveEntry {
+    @NotNull private final LiveAllocationInstanceObject myInstance;
+    private final int myClassTag;
+    private final int myStackId;
+    private final int myThreadId;
+    private final long mySize;
+    private final long myOrdinal;
+
+    private LiveEntry(@NotNull LiveAllocationInstanceObject instance, int classTag, int stackId, int threadId, long size, long ordinal) {
+      myInstance = instance;
+      myClassTag = classTag;
+      myStackId = stackId;
+      myThreadId = threadId;
+      mySize = size;
+      myOrdinal = ordinal;
+    }
+  }
+
+  /**
+   * Replays the allocation events of one shard to find its instances alive after the events, and at each of the given boundaries.
+   */
+  private final class SnapshotShardReplay {
+    @NotNull private final List<AllocationEvent> myEvents;
+    @NotNull private final TIntArrayList myEventIndices;
+    private final long myFirstOrdinal;
+    @NotNull private final long[] myBoundariesNs;
+    @NotNull private final AllocationSnapshotCache.ShardSnapshot[] myBoundarySnapshots;
+    // Alive instances by tag, in allocation order.
+    @NotNull private final LinkedHashMap<Integer, LiveEntry> myLiveEntries = new LinkedHashMap<>();
+
+    private SnapshotShardReplay(@NotNull List<AllocationEvent> events,
+                                @NotNull TIntArrayList eventIndices,
+                                long firstOrdinal,
+                                @NotNull long[] boundariesNs) {
+      myEvents = events;
+      myEventIndices = eventIndices;
+      myFirstOrdinal = firstOrdinal;
+      myBoundariesNs = boundariesNs;
+      myBoundarySnapshots = new AllocationSnapshotCache.ShardSnapshot[boundariesNs.length];
+    }
+
+    private void replay(@Nullable AllocationSnapshotCache.ShardSnapshot cachedSnapshot) {
+      if (cachedSnapshot != null) {
+        for (int i = 0; i < cachedSnapshot.size(); i++) {
+          int tag = cachedSnapshot.myTags[i];
+          LiveAllocationInstanceObject instance =
+            getOrCreateInstanceObject(tag, cachedSnapshot.myClassTags[i], cachedSnapshot.myStackIds[i], cachedSnapshot.myThreadIds[i],
+                                      cachedSnapshot.mySizes[i], cachedSnapshot.myHeapIds[i]);
+          instance.setAllocationTime(cachedSnapshot.myAllocTimes[i]);
+          myLiveEntries.put(tag, new LiveEntry(instance, cachedSnapshot.myClassTags[i], cachedSnapshot.myStackIds[i],
+                                               cachedSnapshot.myThreadIds[i], cachedSnapshot.mySizes[i], cachedSnapshot.myOrdinals[i]));
+        }
+      }
+
+      int nextBoundary = 0;
+      for (int i = 0; i < myEventIndices.size(); i++) {
+        int eventIndex = myEventIndices.get(i);
+        AllocationEvent event = myEvents.get(eventIndex);
+        while (nextBoundary < myBoundariesNs.length && event.getTimestamp() >= myBoundariesNs[nextBoundary]) {
+          myBoundarySnapshots[nextBoundary++] = createShardSnapshot();
+        }
+        switch (event.getEventCase()) {
+          case ALLOC_DATA:
+            // Allocation - create an InstanceObject. This might be removed later if there is a corresponding FREE_DATA event.
+            AllocationEvent.Allocation allocation = event.getAllocData();
+            LiveAllocationInstanceObject instance =
+              getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+                                        allocation.getSize(), allocation.getHeapId());
+            instance.setAllocationTime(event.getTimestamp());
+            // An instance that is already alive keeps its position.
+            LiveEntry previousEntry = myLiveEntries.get(allocation.getTag());
+            long ordinal = previousEntry == null ? myFirstOrdinal + eventIndex : previousEntry.myOrdinal;
+            myLiveEntries.put(allocation.getTag(), new LiveEntry(instance, allocation.getClassTag(), allocation.getStackId(),
+                                                                 allocation.getThreadId(), allocation.getSize(), ordinal));
+            break;
+          case FREE_DATA:
+            // Deallocation - there should be a matching InstanceObject.
+            AllocationEvent.Deallocation deallocation = event.getFreeData();
+            myLiveEntries.remove(deallocation.getTag());
+            // Don't keep deallocated objects around in the cache to avoid bloating memory.
+            getInstanceShard(deallocation.getTag()).remove(deallocation.getTag());
+            break;
+        }
+      }
+      while (nextBoundary < myBoundariesNs.length) {
+        myBoundarySnapshots[nextBoundary++] = createShardSnapshot();
+      }
+    }
+
+    @NotNull
+    private AllocationSnapshotCache.ShardSnapshot createShardSnapshot() {
+      AllocationSnapshotCache.ShardSnapshot snapshot = new AllocationSnapshotCache.ShardSnapshot(myLiveEntries.size());
+      int i = 0;
+      for (Map.Entry<Integer, LiveEntry> liveEntry : myLiveEntries.entrySet()) {
+        LiveEntry entry = liveEntry.getValue();
+        snapshot.myTags[i] = liveEntry.getKey();
+        snapshot.myClassTags[i] = entry.myClassTag;
+        snapshot.myStackIds[i] = entry.myStackId;
+        snapshot.myThreadIds[i] = entry.myThreadId;
+        snapshot.myHeapIds[i] = entry.myInstance.getHeapId();
+        snapshot.mySizes[i] = entry.mySize;
+        snapshot.myAllocTimes[i] = entry.myInstance.getAllocTime();
+        snapshot.myOrdinals[i] = entry.myOrdinal;
+        i++;
+      }
+      return snapshot;
+    }
+  }
 }
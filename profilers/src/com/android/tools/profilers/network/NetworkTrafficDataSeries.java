@@ -15,16 +15,14 @@
  */
 package com.android.tools.profilers.network;
 
-import com.android.tools.adtui.model.DataSeries;
+import com.android.tools.adtui.model.LongDataSeries;
 import com.android.tools.adtui.model.Range;
-import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.SeriesDataBuffer;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -33,7 +31,7 @@ import java.util.concurrent.TimeUnit;
  *
  * It is responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
-public class NetworkTrafficDataSeries implements DataSeries<Long> {
+public class NetworkTrafficDataSeries implements LongDataSeries {
   public enum Type {
     BYTES_RECEIVED("Receiving", "Received") {
       @Override
@@ -76,8 +74,8 @@ public class NetworkTrafficDataSeries implements DataSeries<Long> {
   }
 
   @Override
-  public List<SeriesData<Long>> getDataForRange(@NotNull Range timeCurrentRangeUs) {
-    List<SeriesData<Long>> seriesData = new ArrayList<>();
+  public void getDataForRange(@NotNull Range timeCurrentRangeUs, @NotNull SeriesDataBuffer buffer) {
+    buffer.clear();
 
     // TODO: Change the Network API to allow specifying padding in the request as number of samples.
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
@@ -90,8 +88,7 @@ public class NetworkTrafficDataSeries implements DataSeries<Long> {
     for (NetworkProfiler.NetworkProfilerData data : response.getDataList()) {
       long xTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getEndTimestamp());
       NetworkProfiler.SpeedData speedData = data.getSpeedData();
-      seriesData.add(new SeriesData<>(xTimestamp, myType.getBytes(speedData)));
+      buffer.add(xTimestamp, myType.getBytes(speedData));
     }
-    return seriesData;
   }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.adtui.model.filter.Filter;
+import com.android.tools.perflib.vmtrace.ClockType;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import org.junit.Test;
+
+public class CaptureNodeTreeTest {
+
+  @Test
+  public void viewsReadAndWriteTreeStorage() {
+    CaptureNodeTree tree = new CaptureNodeTree(1);
+    CaptureNodeModel model = new SingleNameModel("root");
+    CaptureNode node = tree.createNode(model);
+    node.setStartGlobal(3);
+    node.setEndGlobal(13);
+    node.setStartThread(3);
+    node.setEndThread(5);
+    node.setDepth(2);
+
+    CaptureNode other = tree.getNode(0);
+    assertThat(other).isEqualTo(node);
+    assertThat(other.hashCode()).isEqualTo(node.hashCode());
+    assertThat(other.getData()).isSameAs(model);
+    assertThat(other.getStartGlobal()).isEqualTo(3);
+    assertThat(other.getEndGlobal()).isEqualTo(13);
+    assertThat(other.getStartThread()).isEqualTo(3);
+    assertThat(other.getEndThread()).isEqualTo(5);
+    assertThat(other.getDepth()).isEqualTo(2);
+    assertThat(other.threadGlobalRatio()).isWithin(0.0001).of(0.2);
+
+    assertThat(other.getClockType()).isEqualTo(ClockType.GLOBAL);
+    assertThat(other.getStart()).isEqualTo(3);
+    node.setClockType(ClockType.THREAD);
+    assertThat(other.getClockType()).isEqualTo(ClockType.THREAD);
+    assertThat(other.getEnd()).isEqualTo(5);
+
+    assertThat(other.getFilterType()).isEqualTo(CaptureNode.FilterType.MATCH);
+    node.setFilterType(CaptureNode.FilterType.UNMATCH);
+    assertThat(other.isUnmatched()).isTrue();
+    // Changing the filter type doesn't affect the clock type stored in the same flags.
+    assertThat(other.getClockType()).isEqualTo(ClockType.THREAD);
+  }
+
+  @Test
+  public void childrenKeepInsertionOrderBeforeAndAfterFreeze() {
+    CaptureNodeTree tree = new CaptureNodeTree(1);
+    CaptureNode root = tree.createNode(new SingleNameModel("root"));
+    CaptureNode childA = tree.createNode(new SingleNameModel("A"));
+    root.addChild(childA);
+    CaptureNode grandChild = tree.createNode(new SingleNameModel("A1"));
+    childA.addChild(grandChild);
+    CaptureNode childB = tree.createNode(new SingleNameModel("B"));
+    root.addChild(childB);
+    CaptureNode childC = tree.createNode(new SingleNameModel("C"));
+    root.addChild(childC);
+
+    assertThat(root.getChildren()).containsExactly(childA, childB, childC).inOrder();
+    assertThat(root.getLastChild()).isEqualTo(childC);
+    assertThat(grandChild.getParent()).isEqualTo(childA);
+    assertThat(root.getParent()).isNull();
+
+    tree.freeze();
+    assertThat(tree.isFrozen()).isTrue();
+    assertThat(tree.size()).isEqualTo(5);
+    assertThat(root.getChildCount()).isEqualTo(3);
+    assertThat(root.getChildAt(1).getData().getName()).isEqualTo("B");
+    assertThat(root.getChildren()).containsExactly(childA, childB, childC).inOrder();
+    assertThat(childA.getChildren()).containsExactly(grandChild);
+    assertThat(grandChild.getParent()).isEqualTo(childA);
+    assertThat(childC.getChildren()).isEmpty();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void frozenTreeCantCreateNodes() {
+    CaptureNodeTree tree = new CaptureNodeTree();
+    tree.createNode(new SingleNameModel("root"));
+    tree.freeze();
+    tree.createNode(new SingleNameModel("other"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nodesOfAnotherTreeCantBeAdded() {
+    CaptureNode root = new CaptureNodeTree().createNode(new SingleNameModel("root"));
+    root.addChild(new CaptureNodeTree().createNode(new SingleNameModel("child")));
+  }
+
+  @Test
+  public void filterIsAppliedToTreeNodes() {
+    CaptureNodeTree tree = new CaptureNodeTree();
+    CaptureNode root = tree.createNode(new SingleNameModel("root"));
+    root.addChild(tree.createNode(new SingleNameModel("match")));
+    root.addChild(tree.createNode(new SingleNameModel("other")));
+    tree.freeze();
+
+    root.applyFilter(new Filter("match"));
+    assertThat(root.getFilterType()).isEqualTo(CaptureNode.FilterType.MATCH);
+    assertThat(root.getChildAt(0).getFilterType()).isEqualTo(CaptureNode.FilterType.EXACT_MATCH);
+    assertThat(root.getChildAt(1).getFilterType()).isEqualTo(CaptureNode.FilterType.UNMATCH);
+  }
+}
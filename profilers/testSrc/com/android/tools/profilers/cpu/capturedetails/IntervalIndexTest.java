@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.adtui.model.Range;
+import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class IntervalIndexTest {
+  private final static double EPS = 1e-5;
+
+  @Test
+  public void intersectionLengthOfOverlappingIntervals() {
+    IntervalIndex index = IntervalIndex.of(createNodes(0, 10, 5, 15, 20, 30), CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+    assertEquals(30, index.getIntersectionLength(new Range(0, 100)), EPS);
+    assertEquals(10, index.getIntersectionLength(new Range(5, 10)), EPS);
+    assertEquals(2.5, index.getIntersectionLength(new Range(17.5, 22.5)), EPS);
+    assertEquals(0, index.getIntersectionLength(new Range(15, 20)), EPS);
+    assertEquals(30, index.getIntersectionLength(new Range(-Double.MAX_VALUE, Double.MAX_VALUE)), EPS);
+  }
+
+  @Test
+  public void intersectsMatchesOpenIntervalSemantics() {
+    IntervalIndex index = IntervalIndex.of(createNodes(10, 20, 30, 40), CaptureNode::getStart, CaptureNode::getEnd);
+    assertTrue(index.intersects(new Range(15, 16)));
+    assertTrue(index.intersects(new Range(0, 11)));
+    assertFalse(index.intersects(new Range(0, 10)));
+    assertFalse(index.intersects(new Range(20, 30)));
+    assertFalse(index.intersects(new Range(40, 50)));
+  }
+
+  @Test
+  public void emptyIndex() {
+    IntervalIndex index = IntervalIndex.of(Collections.emptyList(), CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+    assertEquals(0, index.getIntersectionLength(new Range(0, 100)), EPS);
+    assertFalse(index.intersects(new Range(0, 100)));
+  }
+
+  @Test
+  public void matchesSumOfIntersectionsWithLargeTimestamps() {
+    Random random = new Random(42);
+    long base = 1_500_000_000_000_000L;
+    long[] bounds = new long[2000];
+    for (int i = 0; i < bounds.length; i += 2) {
+      bounds[i] = base + random.nextInt(1_000_000);
+      bounds[i + 1] = bounds[i] + random.nextInt(10_000);
+    }
+    List<CaptureNode> nodes = createNodes(bounds);
+    IntervalIndex index = IntervalIndex.of(nodes, CaptureNode::getStartGlobal, CaptureNode::getEndGlobal);
+    for (int i = 0; i < 100; i++) {
+      double min = base + random.nextInt(1_100_000) - 50_000;
+      Range range = new Range(min, min + random.nextInt(200_000));
+      double expected = 0;
+      boolean intersects = false;
+      for (CaptureNode node : nodes) {
+        expected += range.getIntersectionLength(node.getStartGlobal(), node.getEndGlobal());
+        intersects |= node.getStart() < range.getMax() && range.getMin() < node.getEnd();
+      }
+      assertEquals(expected, index.getIntersectionLength(range), EPS);
+      assertEquals(intersects, index.intersects(range));
+    }
+  }
+
+  private static List<CaptureNode> createNodes(long... bounds) {
+    List<CaptureNode> nodes = new ArrayList<>();
+    for (int i = 0; i < bounds.length; i += 2) {
+      CaptureNode node = new CaptureNode(new SingleNameModel("node" + i));
+      node.setStartGlobal(bounds[i]);
+      node.setEndGlobal(bounds[i + 1]);
+      nodes.add(node);
+    }
+    return nodes;
+  }
+}
@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class TopDownNodeTest {
@@ -142,6 +143,33 @@ public class TopDownNodeTest {
     assertEquals(0, topDown.getThreadTotal(), 0);
   }
 
+  @Test
+  public void testIndexedTreeTime() {
+    // Enough calls to B that its totals are computed from interval indices.
+    int count = CpuTreeNode.MIN_INDEXED_INTERVALS;
+    CaptureNode root = newNode("A", 0, count * 10);
+    for (int i = 0; i < count; i++) {
+      CaptureNode node = newNode("B", i * 10, i * 10 + 5);
+      node.addChild(newNode("C", i * 10 + 1, i * 10 + 3));
+      root.addChild(node);
+    }
+
+    TopDownNode topDown = new TopDownNode(root);
+    assertEquals(1, topDown.getChildren().size());
+    TopDownNode child = topDown.getChildren().get(0);
+    child.update(new Range(root.getStart(), root.getEnd()));
+    assertEquals(count * 5, child.getGlobalTotal(), 0);
+    assertEquals(count * 4, child.getThreadTotal(), 0);
+    assertEquals(count * 3, child.getSelf(), 0);
+
+    child.update(new Range(12, 33));
+    assertEquals(11, child.getGlobalTotal(), 0);
+    assertEquals(6, child.getSelf(), 0);
+
+    assertTrue(child.inRange(new Range(4, 6)));
+    assertFalse(child.inRange(new Range(6, 9)));
+  }
+
   /**
    * Creates a test to be used for testing. The shape of the tree is as follows:
    *              0123456789012345678901234567890
@@ -19,6 +19,7 @@ import com.android.tools.profilers.cpu.CpuProfilerTestUtils
 import com.android.tools.profilers.cpu.atrace.PerfettoProducer
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
+import java.util.concurrent.ForkJoinPool
 
 class PerfettoProducerTest {
 
@@ -79,4 +80,28 @@ class PerfettoProducerTest {
     //"tracing_mark_write: trace_event_clock_sync: realtime_ts=" +
     assertThat(slice.toString()).containsMatch(".*: tracing_mark_write: trace_event_clock_sync: realtime_ts=\\d+")
   }
+
+  @Test
+  fun chunkedDecodingMatchesSingleChunkDecoding() {
+    val pool = ForkJoinPool(4)
+    // A tiny chunk size puts every packet in its own chunk.
+    val chunked = PerfettoProducer(pool, 1)
+    val single = PerfettoProducer(pool, Int.MAX_VALUE)
+    val file = CpuProfilerTestUtils.getTraceFile("perfetto.trace")
+    assertThat(chunked.parseFile(file)).isTrue()
+    assertThat(single.parseFile(file)).isTrue()
+
+    var lineCount = 0
+    while (true) {
+      val expected = single.next()
+      val actual = chunked.next()
+      assertThat(actual?.toString()).isEqualTo(expected?.toString())
+      if (expected == null) {
+        break
+      }
+      lineCount++
+    }
+    assertThat(lineCount).isGreaterThan(2)
+    pool.shutdown()
+  }
 }
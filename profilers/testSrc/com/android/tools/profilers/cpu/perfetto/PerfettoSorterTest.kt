@@ -16,17 +16,20 @@
 package com.android.tools.profilers.cpu.perfetto
 
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils
-import com.android.tools.profilers.cpu.atrace.PerfettoPacketDBSorter
+import com.android.tools.profilers.cpu.atrace.PerfettoPacketSorter
 import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.io.FileUtil
 import org.junit.Test
 import perfetto.protos.PerfettoTrace
+import java.io.File
 import java.io.FileInputStream
+import java.io.IOException
 
 class PerfettoSorterTest {
 
   @Test
   fun formattedLinesAreReturnedOnNext() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -36,7 +39,7 @@ class PerfettoSorterTest {
 
   @Test
   fun hasNextCanBeCalledMultipleTimes() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some Line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -45,4 +48,68 @@ class PerfettoSorterTest {
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.next()).isEqualTo("Some Line")
   }
+
+  @Test
+  fun linesAreReturnedSortedByTimestamp() {
+    val sorter = PerfettoPacketSorter()
+    sorter.addLine(3, "Third")
+    sorter.addLine(1, "First")
+    sorter.addLine(2, "Second")
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("First", "Second", "Third").inOrder()
+    assertThat(sorter.runFileCount).isEqualTo(0)
+  }
+
+  @Test
+  fun spilledRunsAreMergedInOrder() {
+    // A tiny budget forces each line into its own run file.
+    val sorter = PerfettoPacketSorter(1)
+    sorter.addLine(5, "Line 5")
+    sorter.addLine(1, "Line 1")
+    sorter.addLine(4, "Line 4")
+    sorter.addLine(2, "Line 2")
+    sorter.addLine(3, "Line 3")
+    assertThat(sorter.runFileCount).isEqualTo(5)
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("Line 1", "Line 2", "Line 3", "Line 4", "Line 5").inOrder()
+    sorter.close()
+    assertThat(sorter.runFileCount).isEqualTo(0)
+  }
+
+  @Test
+  fun linesWithSameTimestampKeepInsertionOrder() {
+    val sorter = PerfettoPacketSorter(100)
+    for (i in 0 until 10) {
+      sorter.addLine(i % 2L, "Line $i")
+    }
+    assertThat(sorter.runFileCount).isGreaterThan(0)
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("Line 0", "Line 2", "Line 4", "Line 6", "Line 8",
+                                                             "Line 1", "Line 3", "Line 5", "Line 7", "Line 9").inOrder()
+  }
+
+  @Test
+  fun linesAreKeptInMemoryWhenRunsCannotBeWritten() {
+    val notADirectory = File.createTempFile("perfetto", ".txt")
+    notADirectory.deleteOnExit()
+    val sorter = PerfettoPacketSorter(1, notADirectory)
+    sorter.addLine(3, "Line 3")
+    sorter.addLine(1, "Line 1")
+    sorter.addLine(2, "Line 2")
+    assertThat(sorter.runFileCount).isEqualTo(0)
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("Line 1", "Line 2", "Line 3").inOrder()
+  }
+
+  @Test(expected = IOException::class)
+  fun resetForIteratorFailsWhenARunIsLost() {
+    val runDirectory = FileUtil.createTempDirectory("perfetto", null)
+    val sorter = PerfettoPacketSorter(1, runDirectory)
+    sorter.addLine(1, "Line 1")
+    sorter.addLine(2, "Line 2")
+    assertThat(sorter.runFileCount).isEqualTo(2)
+    // Neither mapping nor reading a deleted run works, its lines must not be silently dropped.
+    FileUtil.delete(runDirectory)
+    sorter.resetForIterator()
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class AllocationSnapshotCacheTest {
+  @Test
+  public void latestSnapshotAtOrBeforeTime() {
+    AllocationSnapshotCache cache = new AllocationSnapshotCache(10, 100);
+    cache.put(createSnapshot(10, 1));
+    cache.put(createSnapshot(30, 1));
+
+    assertThat(cache.getLatestSnapshot(5)).isNull();
+    assertThat(cache.getLatestSnapshot(10).getTimeNs()).isEqualTo(10L);
+    assertThat(cache.getLatestSnapshot(29).getTimeNs()).isEqualTo(10L);
+    assertThat(cache.getLatestSnapshot(100).getTimeNs()).isEqualTo(30L);
+    assertThat(cache.contains(30)).isTrue();
+    assertThat(cache.contains(20)).isFalse();
+  }
+
+  @Test
+  public void leastRecentlyUsedSnapshotsAreEvicted() {
+    AllocationSnapshotCache cache = new AllocationSnapshotCache(10, 10);
+    cache.put(createSnapshot(10, 4));
+    cache.put(createSnapshot(20, 4));
+    // Uses the snapshot at 10, so the one at 20 is evicted first.
+    cache.getLatestSnapshot(15);
+    cache.put(createSnapshot(30, 4));
+
+    assertThat(cache.getSnapshotCount()).isEqualTo(2);
+    assertThat(cache.contains(10)).isTrue();
+    assertThat(cache.contains(20)).isFalse();
+    assertThat(cache.contains(30)).isTrue();
+  }
+
+  @Test
+  public void snapshotLargerThanCacheIsNotCached() {
+    AllocationSnapshotCache cache = new AllocationSnapshotCache(10, 10);
+    cache.put(createSnapshot(10, 4));
+    cache.put(createSnapshot(20, 11));
+
+    assertThat(cache.getSnapshotCount()).isEqualTo(1);
+    assertThat(cache.getLatestSnapshot(20).getTimeNs()).isEqualTo(10L);
+
+    cache.clear();
+    assertThat(cache.getSnapshotCount()).isEqualTo(0);
+  }
+
+  private static AllocationSnapshotCache.Snapshot createSnapshot(long timeNs, int instanceCount) {
+    AllocationSnapshotCache.ShardSnapshot[] shards = {
+      new AllocationSnapshotCache.ShardSnapshot(instanceCount / 2),
+      new AllocationSnapshotCache.ShardSnapshot(instanceCount - instanceCount / 2)
+    };
+    return new AllocationSnapshotCache.Snapshot(timeNs, shards, instanceCount);
+  }
+}
@@ -50,6 +50,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
@@ -178,6 +179,83 @@ public class HeapDumpCaptureObjectTest {
     assertNotNull(defaultHeap);
   }
 
+  @Test
+  public void testHeapDumpIsMemoryMappedUntilUnloaded() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA, dumpInfo,
+                                null,
+                                myIdeProfilerServices.getFeatureTracker(), myStage);
+
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(3), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    capture.load(null, null);
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.isError());
+
+    // The snapshot is parsed from a temporary file, and its field values are still read from it after the load.
+    File hprof = capture.getHeapDumpFile();
+    assertNotNull(hprof);
+    assertTrue(hprof.exists());
+    ClassifierSet.Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(Collections.emptyList(), capture.getInstances().collect(Collectors.toSet()));
+    InstanceObject instance0 = findChildClassSetWithName(classClassifier, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    assertEquals(instance1, instance0.getFields().get(0).getAsInstance());
+
+    capture.unload();
+    assertTrue(capture.getInstanceFilterExecutor().awaitTermination(1, TimeUnit.MINUTES));
+    assertNull(capture.getHeapDumpFile());
+    assertFalse(hprof.exists());
+  }
+
+  @Test
+  public void testRetainedSizesAreComputedAfterTheInstancesAreShown() throws Exception {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA, dumpInfo,
+                                null,
+                                myIdeProfilerServices.getFeatureTracker(), myStage);
+
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(3), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    // Hold the executor that computes the retained sizes, so the capture can be checked before they are available.
+    CountDownLatch computeLatch = new CountDownLatch(1);
+    capture.getInstanceFilterExecutor().submit(() -> {
+      computeLatch.await();
+      return null;
+    });
+    capture.load(null, Runnable::run);
+    assertFalse(capture.hasRetainedSizes());
+
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    assertEquals(6, testHeap.getInstancesCount());
+    assertEquals(0, testHeap.getTotalRetainedSize());
+    ClassifierSet.Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(Collections.emptyList(), capture.getInstances().collect(Collectors.toSet()));
+    InstanceObject instance0 = findChildClassSetWithName(classClassifier, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    assertEquals(MemoryObject.INVALID_VALUE, instance0.getRetainedSize());
+    assertEquals(MemoryObject.INVALID_VALUE, instance0.getFields().get(0).getRetainedSize());
+
+    computeLatch.countDown();
+    // Wait for the retained sizes to be computed, and the heap sets to be refreshed, on the off-main-thread executor.
+    capture.getInstanceFilterExecutor().submit(() -> {}).get(1, TimeUnit.MINUTES);
+    assertTrue(capture.hasRetainedSizes());
+    assertEquals(6, testHeap.getInstancesCount());
+    assertEquals(instance1.getShallowSize(), instance1.getRetainedSize());
+    assertEquals(instance0.getShallowSize() + instance1.getShallowSize(), instance0.getRetainedSize());
+    assertEquals(instance1.getRetainedSize(), instance0.getFields().get(0).getRetainedSize());
+    assertTrue(testHeap.getTotalRetainedSize() >= instance0.getRetainedSize());
+    assertEquals(0, instance0.getDepth());
+    assertEquals(1, instance1.getDepth());
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class InstanceSetTest {
+  private final FakeCaptureObject myCaptureObject = new FakeCaptureObject.Builder().build();
+
+  @Test
+  public void matchesLinkedHashSet() {
+    List<InstanceObject> instances = createInstances(200);
+    Random random = new Random(1);
+    InstanceSet set = new InstanceSet();
+    Set<InstanceObject> expected = new LinkedHashSet<>();
+    for (int i = 0; i < 10_000; i++) {
+      InstanceObject instance = instances.get(random.nextInt(instances.size()));
+      if (random.nextInt(3) == 0) {
+        assertThat(set.remove(instance)).isEqualTo(expected.remove(instance));
+      }
+      else {
+        assertThat(set.add(instance)).isEqualTo(expected.add(instance));
+      }
+      assertThat(set.size()).isEqualTo(expected.size());
+    }
+    assertThat(set).containsExactlyElementsIn(expected).inOrder();
+    assertThat(set.stream().collect(Collectors.toList())).containsExactlyElementsIn(expected).inOrder();
+    for (InstanceObject instance : instances) {
+      assertThat(set.contains(instance)).isEqualTo(expected.contains(instance));
+    }
+  }
+
+  @Test
+  public void iteratorRemove() {
+    List<InstanceObject> instances = createInstances(10);
+    InstanceSet set = new InstanceSet();
+    set.addAll(instances);
+    Iterator<InstanceObject> iterator = set.iterator();
+    for (int i = 0; iterator.hasNext(); i++) {
+      iterator.next();
+      if (i % 2 == 0) {
+        iterator.remove();
+      }
+    }
+    assertThat(set).containsExactly(instances.get(1), instances.get(3), instances.get(5), instances.get(7), instances.get(9)).inOrder();
+
+    set.removeIf(instance -> true);
+    assertThat(set).isEmpty();
+    set.add(instances.get(0));
+    assertThat(set).containsExactly(instances.get(0));
+  }
+
+  @Test
+  public void clear() {
+    InstanceSet set = new InstanceSet();
+    set.addAll(createInstances(100));
+    set.clear();
+    assertThat(set).isEmpty();
+    assertThat(set.iterator().hasNext()).isFalse();
+  }
+
+  private List<InstanceObject> createInstances(int count) {
+    List<InstanceObject> instances = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      instances.add(new FakeInstanceObject.Builder(myCaptureObject, i, "Foo" + i).build());
+    }
+    return instances;
+  }
+}
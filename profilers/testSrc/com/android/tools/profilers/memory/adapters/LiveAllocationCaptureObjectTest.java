@@ -568,6 +568,54 @@ public class LiveAllocationCaptureObjectTest {
       verifyClassifierResult(heapSet, new LinkedList<>(expected_0_to_4), 0);
     }
 
+    @Test
+    public void testSelectionShiftWithCachedSnapshots() throws Exception {
+      // Flag that gets set on the joiner thread to notify the main thread whether the contents in the ChangeNode are accurate.
+      boolean[] loadSuccess = new boolean[1];
+      AllocationSnapshotCache snapshotCache = new AllocationSnapshotCache(TimeUnit.SECONDS.toNanos(1), Integer.MAX_VALUE);
+      LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myProfilerClient,
+                                                                            ProfilersTestData.SESSION_DATA,
+                                                                            CAPTURE_START_TIME,
+                                                                            LOAD_SERVICE,
+                                                                            myStage,
+                                                                            snapshotCache);
+
+      HeapSet heapSet = capture.getHeapSet(myHeapId);
+      heapSet.setClassGrouping(MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_PACKAGE);
+
+      myStage.getAspect().addDependency(myAspectObserver).onChange(MemoryProfilerAspect.CURRENT_HEAP_CONTENTS, () -> loadSuccess[0] = true);
+
+      Queue<ClassifierSetTestData> expected_4_to_8 = new LinkedList<>();
+      expected_4_to_8.add(new ClassifierSetTestData(0, myHeapName, 4, 4, 2, 6, 2, true));
+      expected_4_to_8.add(new ClassifierSetTestData(1, "This", 2, 2, 1, 3, 2, true));
+      expected_4_to_8.add(new ClassifierSetTestData(2, "Also", 1, 1, 1, 2, 1, true));
+      expected_4_to_8.add(new ClassifierSetTestData(3, "Foo", 1, 1, 1, 2, 0, true));
+      expected_4_to_8.add(new ClassifierSetTestData(2, "Is", 1, 1, 0, 1, 1, true));
+      expected_4_to_8.add(new ClassifierSetTestData(3, "Foo", 1, 1, 0, 1, 0, true));
+      expected_4_to_8.add(new ClassifierSetTestData(1, "That", 2, 2, 1, 3, 2, true));
+      expected_4_to_8.add(new ClassifierSetTestData(2, "Also", 1, 1, 1, 2, 1, true));
+      expected_4_to_8.add(new ClassifierSetTestData(3, "Bar", 1, 1, 1, 2, 0, true));
+      expected_4_to_8.add(new ClassifierSetTestData(2, "Is", 1, 1, 0, 1, 1, true));
+      expected_4_to_8.add(new ClassifierSetTestData(3, "Bar", 1, 1, 0, 1, 0, true));
+
+      // Select {4,8}: the snapshot at 4 is replayed from the start of the session, caching the snapshots on the way.
+      Range loadRange = new Range(CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(4), CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(8));
+      loadSuccess[0] = false;
+      capture.load(loadRange, LOAD_JOINER);
+      assertThat(loadSuccess[0]).isTrue();
+      verifyClassifierResult(heapSet, new LinkedList<>(expected_4_to_8), 0);
+      assertThat(snapshotCache.getSnapshotCount()).isGreaterThan(0);
+
+      // Select {0,1} then {4,8} again: the snapshot at 4 is now replayed from a cached snapshot.
+      loadSuccess[0] = false;
+      loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(1));
+      assertThat(loadSuccess[0]).isTrue();
+      loadSuccess[0] = false;
+      loadRange.set(CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(4), CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(8));
+      assertThat(loadSuccess[0]).isTrue();
+      verifyClassifierResult(heapSet, new LinkedList<>(expected_4_to_8), 0);
+    }
+
     @Test
     public void testInfoMessageBasedOnSelection() {
       MemoryAllocSamplingData fullData = MemoryAllocSamplingData.newBuilder()
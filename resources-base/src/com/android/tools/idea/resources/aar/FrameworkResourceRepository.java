@@ -264,6 +264,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
             }
             continue;
           }
+          stream.enableStringTable();
           loadFromStream(stream, stringCache, namespaceResolverCache);
           loadedLanguages.add(language);
           myNumberOfLanguageGroupsLoadedFromCache++;
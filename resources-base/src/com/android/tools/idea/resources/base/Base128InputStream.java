@@ -21,6 +21,8 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -33,6 +35,7 @@ import org.jetbrains.annotations.Nullable;
  */
 public final class Base128InputStream extends BufferedInputStream {
   @Nullable private Map<String, String> myStringCache;
+  @Nullable private List<String> myStringTable;
 
   /**
    * Wraps a given input stream.
@@ -62,6 +65,18 @@ public final class Base128InputStream extends BufferedInputStream {
     myStringCache = stringCache;
   }
 
+  /**
+   * Starts resolving strings read by the {@link #readString()} method against a table of previously read strings.
+   * Has to be called at the same position in the stream as {@link Base128OutputStream#enableStringTable()} was called
+   * when the stream was written. Besides keeping the stream compact, the string table guarantees that repeated
+   * occurrences of a string are returned as the same instance without looking them up in the string cache.
+   */
+  public void enableStringTable() {
+    if (myStringTable == null) {
+      myStringTable = new ArrayList<>();
+    }
+  }
+
   /**
    * Reads a 32-bit integer from the stream. The integer had to be written by {@link Base128OutputStream#writeInt(int)}.
    *
@@ -121,6 +136,7 @@ public final class Base128InputStream extends BufferedInputStream {
    *     with a null argument
    * @throws IOException if an I/O error occurs
    * @throws StreamFormatException if an invalid data format is detected
+   * @see #enableStringTable()
    */
   @Nullable
   public String readString() throws IOException, StreamFormatException {
@@ -131,7 +147,28 @@ public final class Base128InputStream extends BufferedInputStream {
     if (len == 0) {
       return null;
     }
-    --len;
+    if (myStringTable == null) {
+      return readChars(len - 1);
+    }
+
+    if (len == 1) {
+      len = readInt();
+      if (len < 0) {
+        throw StreamFormatException.invalidFormat();
+      }
+      String str = readChars(len);
+      myStringTable.add(str);
+      return str;
+    }
+    int index = len - 2;
+    if (index >= myStringTable.size()) {
+      throw StreamFormatException.invalidFormat();
+    }
+    return myStringTable.get(index);
+  }
+
+  @NotNull
+  private String readChars(int len) throws IOException, StreamFormatException {
     if (len == 0) {
       return "";
     }
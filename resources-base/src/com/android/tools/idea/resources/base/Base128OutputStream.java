@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.resources.base;
 
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -29,6 +30,8 @@ import org.jetbrains.annotations.Nullable;
  * @see Base128InputStream
  */
 public class Base128OutputStream extends BufferedOutputStream {
+  @Nullable private Object2IntOpenHashMap<String> myStringTable;
+
   public Base128OutputStream(@NotNull OutputStream stream) {
     super(stream);
   }
@@ -37,6 +40,21 @@ public class Base128OutputStream extends BufferedOutputStream {
     super(Files.newOutputStream(file));
   }
 
+  /**
+   * Starts deduplicating strings written by the {@link #writeString(String)} method. Each distinct string is written
+   * only once, subsequent occurrences are written as indices in the table of previously written strings. A stream
+   * written with the string table enabled has to be read by a {@link Base128InputStream} that has the string table
+   * enabled at the same position.
+   *
+   * @see Base128InputStream#enableStringTable()
+   */
+  public void enableStringTable() {
+    if (myStringTable == null) {
+      myStringTable = new Object2IntOpenHashMap<>();
+      myStringTable.defaultReturnValue(-1);
+    }
+  }
+
   /**
    * Writes a 32-bit integer to the stream. Small positive integers take less space than larger ones:
    * <ul>
@@ -97,22 +115,42 @@ public class Base128OutputStream extends BufferedOutputStream {
    * Write a String to the stream. The string is prefixed by its length + 1.
    * Each character is then written using the {@link #writeChar} method.
    *
+   * <p>If the string table is enabled, a null string is written as 0, a string that has already been written as its index
+   * in the string table + 2, and a new string as 1 followed by its length and characters.
+   *
    * @param str the string to write or null
    * @throws IOException if an I/O error occurs.
+   * @see #enableStringTable()
    */
   public final void writeString(@Nullable String str) throws IOException {
     if (str == null) {
       writeInt(0);
     }
+    else if (myStringTable == null) {
+      writeInt(str.length() + 1);
+      writeChars(str);
+    }
     else {
-      int len = str.length();
-      writeInt(len + 1);
-      for (int i = 0; i < len; i++) {
-        writeChar(str.charAt(i));
+      int index = myStringTable.getInt(str);
+      if (index >= 0) {
+        writeInt(index + 2);
+      }
+      else {
+        myStringTable.put(str, myStringTable.size());
+        writeInt(1);
+        writeInt(str.length());
+        writeChars(str);
       }
     }
   }
 
+  private void writeChars(@NotNull String str) throws IOException {
+    int len = str.length();
+    for (int i = 0; i < len; i++) {
+      writeChar(str.charAt(i));
+    }
+  }
+
   /**
    * Writes a 16-bit integer to the stream. Small positive integers take less space than larger ones:
    * <ul>
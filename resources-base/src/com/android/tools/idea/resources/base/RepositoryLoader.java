@@ -106,7 +106,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.jetbrains.annotations.NotNull;
@@ -117,6 +120,8 @@ import org.xmlpull.v1.XmlPullParserException;
 
 public abstract class RepositoryLoader<T extends LoadableResourceRepository> implements FileFilter {
   private static final Logger LOG = Logger.getInstance(RepositoryLoader.class);
+  /** The minimum number of resource files for which parsing them in parallel pays off. */
+  private static final int MIN_FILE_COUNT_FOR_PARALLEL_LOADING = 32;
   /** The set of attribute formats that is used when no formats are explicitly specified and the attribute is not a flag or enum. */
   private final Set<AttributeFormat> DEFAULT_ATTR_FORMATS = Sets.immutableEnumSet(
       AttributeFormat.BOOLEAN,
@@ -137,9 +142,10 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   /** Cache of FolderConfiguration instances, keyed by qualifier strings (see {@link FolderConfiguration#getQualifierString()}). */
   @NotNull protected final Map<String, FolderConfiguration> myFolderConfigCache = new HashMap<>();
   @NotNull private final Map<FolderConfiguration, RepositoryConfiguration> myConfigCache = new HashMap<>();
-  @NotNull private final ValueResourceXmlParser myParser = new ValueResourceXmlParser();
-  @NotNull private final XmlTextExtractor myTextExtractor = new XmlTextExtractor();
-  @NotNull private final ResourceUrlParser myUrlParser = new ResourceUrlParser();
+  /** Namespace resolvers shared by the parsers of all threads loading the repository. */
+  @NotNull private final Map<NamespaceResolver, NamespaceResolver> myNamespaceResolverCache = new ConcurrentHashMap<>();
+  /** The parsing context used when resource files are parsed on the loading thread. */
+  @NotNull private final ParsingContext myParsingContext = new ParsingContext(myNamespaceResolverCache);
   // Used to keep track of resources defined in the current value resource file.
   @NotNull private final Table<ResourceType, String, BasicValueResourceItemBase> myValueFileResources =
       Tables.newCustomTable(new EnumMap<>(ResourceType.class), () -> new LinkedHashMap<>());
@@ -189,12 +195,13 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       loadPublicResourceNames();
       boolean shouldParseResourceIds = !loadIdsFromRTxt();
 
+      List<PathString> resourceFiles = new ArrayList<>();
       zipFile.stream().forEach(zipEntry -> {
         if (!zipEntry.isDirectory()) {
-          PathString path = new PathString(zipEntry.getName());
-          loadResourceFile(path, repository, shouldParseResourceIds);
+          resourceFiles.add(new PathString(zipEntry.getName()));
         }
       });
+      loadResourceFiles(resourceFiles, repository, shouldParseResourceIds);
     }
     catch (Exception e) {
       LOG.error("Failed to load resources from " + myResourceDirectoryOrFile.toString(), e);
@@ -219,9 +226,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
                                          ImmutableList.of(myResourceDirectoryOrFile) :
                                          myResourceFilesAndFolders.stream().map(PathString::toPath).collect(Collectors.toList());
       List<PathString> resourceFiles = findResourceFiles(sourceFilesAndFolders);
-      for (PathString file : resourceFiles) {
-        loadResourceFile(file, repository, shouldParseResourceIds);
-      }
+      loadResourceFiles(resourceFiles, repository, shouldParseResourceIds);
     }
     catch (Exception e) {
       LOG.error("Failed to load resources from " + myResourceDirectoryOrFile.toString(), e);
@@ -230,17 +235,78 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     finishLoading(repository);
   }
 
+  /**
+   * Loads the given resource files. If {@link #isParallelLoadingEnabled()} returns true and there are enough files, the files are
+   * parsed in parallel on the common fork-join pool. The parsed resources are added to the repository in the order of the files
+   * regardless of the loading mode, so the contents of the loaded repository don't depend on it.
+   */
+  private void loadResourceFiles(@NotNull List<PathString> files, @NotNull T repository, boolean shouldParseResourceIds) {
+    int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    if (!isParallelLoadingEnabled() || parallelism <= 1 || files.size() < MIN_FILE_COUNT_FOR_PARALLEL_LOADING) {
+      for (PathString file : files) {
+        loadResourceFile(file, repository, shouldParseResourceIds);
+      }
+      return;
+    }
+
+    // Folder configurations are resolved on the loading thread because their caches are not thread-safe.
+    List<PathString> resourceFiles = new ArrayList<>(files.size());
+    List<FolderInfo> folderInfos = new ArrayList<>(files.size());
+    List<RepositoryConfiguration> configurations = new ArrayList<>(files.size());
+    for (PathString file : files) {
+      String folderName = file.getParentFileName();
+      if (folderName != null) {
+        FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
+        if (folderInfo != null) {
+          resourceFiles.add(file);
+          folderInfos.add(folderInfo);
+          configurations.add(getConfiguration(repository, folderInfo.configuration));
+        }
+      }
+    }
+
+    // Each task parses a contiguous range of files with its own parsing context. The changes produced by parsing of each file
+    // are recorded and applied afterwards on the loading thread in file order.
+    int fileCount = resourceFiles.size();
+    int taskCount = Math.min(parallelism * 4, fileCount);
+    @SuppressWarnings("unchecked") List<Runnable>[] changesByFile = new List[fileCount];
+    IntStream.range(0, taskCount).parallel().forEach(task -> {
+      ParsingContext context = new ParsingContext(myNamespaceResolverCache);
+      for (int i = (int)((long)fileCount * task / taskCount), end = (int)((long)fileCount * (task + 1) / taskCount); i < end; i++) {
+        List<Runnable> changes = new ArrayList<>();
+        context.deferredChanges = changes;
+        loadResourceFile(resourceFiles.get(i), folderInfos.get(i), configurations.get(i), shouldParseResourceIds, context);
+        changesByFile[i] = changes;
+      }
+    });
+
+    for (List<Runnable> changes : changesByFile) {
+      for (Runnable change : changes) {
+        change.run();
+      }
+    }
+  }
+
   protected final void loadResourceFile(@NotNull PathString file, @NotNull T repository, boolean shouldParseResourceIds) {
     String folderName = file.getParentFileName();
     if (folderName != null) {
       FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
       if (folderInfo != null) {
         RepositoryConfiguration configuration = getConfiguration(repository, folderInfo.configuration);
-        loadResourceFile(file, folderInfo, configuration, shouldParseResourceIds);
+        loadResourceFile(file, folderInfo, configuration, shouldParseResourceIds, myParsingContext);
       }
     }
   }
 
+  /**
+   * Returns true if resource files loaded by {@link #loadFromResFolder} and {@link #loadFromZip} may be parsed in parallel.
+   * Subclasses that override {@link #getInputStream}, {@link #createResourceSourceFile} or {@link #handleParsingError} with
+   * methods that are not thread-safe should return false.
+   */
+  protected boolean isParallelLoadingEnabled() {
+    return true;
+  }
+
   protected void finishLoading(@NotNull T repository) {
     processAttrsAndStyleables();
   }
@@ -429,19 +495,19 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   private void loadResourceFile(@NotNull PathString file, @NotNull FolderInfo folderInfo, @NotNull RepositoryConfiguration configuration,
-                                boolean shouldParseResourceIds) {
+                                boolean shouldParseResourceIds, @NotNull ParsingContext context) {
     if (folderInfo.resourceType == null) {
       if (isXmlFile(file)) {
-        parseValueResourceFile(file, configuration);
+        parseValueResourceFile(file, configuration, context);
       }
     }
     else {
       if (shouldParseResourceIds && folderInfo.isIdGenerating && isXmlFile(file)) {
-        parseIdGeneratingResourceFile(file, configuration);
+        parseIdGeneratingResourceFile(file, configuration, context);
       }
 
       BasicFileResourceItem item = createFileResourceItem(file, folderInfo.resourceType, configuration);
-      addResourceItem(item);
+      context.apply(() -> addResourceItem(item));
     }
   }
 
@@ -461,19 +527,25 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   protected abstract void addResourceItem(@NotNull BasicResourceItem item, @NotNull T repository);
 
   protected final void parseValueResourceFile(@NotNull PathString file, @NotNull RepositoryConfiguration configuration) {
+    parseValueResourceFile(file, configuration, myParsingContext);
+  }
+
+  private void parseValueResourceFile(@NotNull PathString file, @NotNull RepositoryConfiguration configuration,
+                                      @NotNull ParsingContext context) {
+    ValueResourceXmlParser parser = context.parser;
     try (InputStream stream = getInputStream(file)) {
       ResourceSourceFile sourceFile = createResourceSourceFile(file, configuration);
-      myParser.setInput(stream, null);
+      parser.setInput(stream, null);
 
       int event;
       do {
-        event = myParser.nextToken();
-        int depth = myParser.getDepth();
+        event = parser.nextToken();
+        int depth = parser.getDepth();
         if (event == XmlPullParser.START_TAG) {
-          if (myParser.getPrefix() != null) {
+          if (parser.getPrefix() != null) {
             continue;
           }
-          String tagName = myParser.getName();
+          String tagName = parser.getName();
           assert depth <= 2; // Deeper tags should be consumed by the createResourceItem method.
           if (depth == 1) {
             if (!tagName.equals(TAG_RESOURCES)) {
@@ -481,13 +553,13 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
             }
           }
           else if (depth > 1) {
-            ResourceType resourceType = getResourceType(tagName, file);
+            ResourceType resourceType = getResourceType(tagName, file, parser);
             if (resourceType != null && resourceType != ResourceType.PUBLIC) {
-              String resourceName = myParser.getAttributeValue(null, ATTR_NAME);
+              String resourceName = parser.getAttributeValue(null, ATTR_NAME);
               if (resourceName != null) {
-                validateResourceName(resourceName, resourceType, file);
-                BasicValueResourceItemBase item = createResourceItem(resourceType, resourceName, sourceFile);
-                addValueResourceItem(item);
+                validateResourceName(resourceName, resourceType, file, parser);
+                BasicValueResourceItemBase item = createResourceItem(resourceType, resourceName, sourceFile, context);
+                context.apply(() -> addValueResourceItem(item));
               }
             }
           }
@@ -499,7 +571,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       handleParsingError(file, e);
     }
 
-    addValueFileResources();
+    context.apply(this::addValueFileResources);
   }
 
   @NotNull
@@ -533,6 +605,11 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   protected final void parseIdGeneratingResourceFile(@NotNull PathString file, @NotNull RepositoryConfiguration configuration) {
+    parseIdGeneratingResourceFile(file, configuration, myParsingContext);
+  }
+
+  private void parseIdGeneratingResourceFile(@NotNull PathString file, @NotNull RepositoryConfiguration configuration,
+                                             @NotNull ParsingContext context) {
     try (InputStream stream = getInputStream(file)) {
       ResourceSourceFile sourceFile = createResourceSourceFile(file, configuration);
       XmlPullParser parser = new KXmlParser();
@@ -548,7 +625,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
             String idValue = parser.getAttributeValue(i);
             if (idValue.startsWith(NEW_ID_PREFIX) && idValue.length() > NEW_ID_PREFIX.length()) {
               String resourceName = idValue.substring(NEW_ID_PREFIX.length());
-              addIdResourceItem(resourceName, sourceFile);
+              addIdResourceItem(resourceName, sourceFile, context);
             }
           }
         }
@@ -559,7 +636,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       handleParsingError(file, e);
     }
 
-    addValueFileResources();
+    context.apply(this::addValueFileResources);
   }
 
   protected void handleParsingError(@NotNull PathString file, @NotNull Exception e) {
@@ -583,11 +660,17 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   protected final void addIdResourceItem(@NotNull String resourceName, @NotNull ResourceSourceFile sourceFile) {
+    addIdResourceItem(resourceName, sourceFile, myParsingContext);
+  }
+
+  private void addIdResourceItem(@NotNull String resourceName, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context) {
     ResourceVisibility visibility = getVisibility(ResourceType.ID, resourceName);
     BasicValueResourceItem item = new BasicValueResourceItem(ResourceType.ID, resourceName, sourceFile, visibility, null);
-    if (!resourceAlreadyDefined(item)) { // Don't create duplicate ID resources.
-      addValueResourceItem(item);
-    }
+    context.apply(() -> {
+      if (!resourceAlreadyDefined(item)) { // Don't create duplicate ID resources.
+        addValueResourceItem(item);
+      }
+    });
   }
 
   @NotNull
@@ -628,26 +711,26 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
 
   @NotNull
   private BasicValueResourceItemBase createResourceItem(
-      @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile)
+      @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException, XmlSyntaxException {
     switch (type) {
       case ARRAY:
-        return createArrayItem(name, sourceFile);
+        return createArrayItem(name, sourceFile, context);
 
       case ATTR:
-        return createAttrItem(name, sourceFile);
+        return createAttrItem(name, sourceFile, context);
 
       case PLURALS:
-        return createPluralsItem(name, sourceFile);
+        return createPluralsItem(name, sourceFile, context);
 
       case STRING:
-        return createStringItem(type, name, sourceFile, true);
+        return createStringItem(type, name, sourceFile, true, context);
 
       case STYLE:
-        return createStyleItem(name, sourceFile);
+        return createStyleItem(name, sourceFile, context);
 
       case STYLEABLE:
-        return createStyleableItem(name, sourceFile);
+        return createStyleableItem(name, sourceFile, context);
 
       case ANIMATOR:
       case DRAWABLE:
@@ -656,21 +739,23 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       case MENU:
       case MIPMAP:
       case TRANSITION:
-        return createFileReferenceItem(type, name, sourceFile);
+        return createFileReferenceItem(type, name, sourceFile, context);
 
       default:
-        return createStringItem(type, name, sourceFile, false);
+        return createStringItem(type, name, sourceFile, false, context);
     }
   }
 
   @NotNull
-  private BasicArrayResourceItem createArrayItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicArrayResourceItem createArrayItem(
+      @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException, XmlSyntaxException {
-    String indexValue = myParser.getAttributeValue(TOOLS_URI, ATTR_INDEX);
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    ValueResourceXmlParser parser = context.parser;
+    String indexValue = parser.getAttributeValue(TOOLS_URI, ATTR_INDEX);
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
     List<String> values = new ArrayList<>();
-    forSubTags(TAG_ITEM, () -> {
-      String text = myTextExtractor.extractText(myParser, false);
+    forSubTags(TAG_ITEM, parser, () -> {
+      String text = context.textExtractor.extractText(parser, false);
       values.add(text);
     });
     int index = 0;
@@ -681,12 +766,12 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       catch (NumberFormatException e) {
         throw new XmlSyntaxException(
             "The value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_INDEX + " attribute is not a valid number.",
-            myParser, getDisplayName(sourceFile));
+            parser, getDisplayName(sourceFile));
       }
       if (index >= values.size()) {
         throw new XmlSyntaxException(
             "The value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_INDEX + " attribute is out of bounds.",
-            myParser, getDisplayName(sourceFile));
+            parser, getDisplayName(sourceFile));
       }
     }
     ResourceVisibility visibility = getVisibility(ResourceType.ARRAY, name);
@@ -696,45 +781,48 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicAttrResourceItem createAttrItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicAttrResourceItem createAttrItem(
+      @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException, XmlSyntaxException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    ValueResourceXmlParser parser = context.parser;
+    ResourceUrlParser urlParser = context.urlParser;
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
     ResourceNamespace attrNamespace;
-    myUrlParser.parseResourceUrl(name);
-    if (myUrlParser.hasNamespacePrefix(ANDROID_NS_NAME)) {
+    urlParser.parseResourceUrl(name);
+    if (urlParser.hasNamespacePrefix(ANDROID_NS_NAME)) {
       attrNamespace = ResourceNamespace.ANDROID;
     } else {
-      String prefix = myUrlParser.getNamespacePrefix();
-      attrNamespace = ResourceNamespace.fromNamespacePrefix(prefix, myNamespace, myParser.getNamespaceResolver());
+      String prefix = urlParser.getNamespacePrefix();
+      attrNamespace = ResourceNamespace.fromNamespacePrefix(prefix, myNamespace, parser.getNamespaceResolver());
       if (attrNamespace == null) {
-        throw new XmlSyntaxException("Undefined prefix of attr resource name \"" + name + "\"", myParser, getDisplayName(sourceFile));
+        throw new XmlSyntaxException("Undefined prefix of attr resource name \"" + name + "\"", parser, getDisplayName(sourceFile));
       }
     }
-    name = myUrlParser.getName();
+    name = urlParser.getName();
 
-    String description = myParser.getLastComment();
-    String groupName = myParser.getAttrGroupComment();
-    String formatString = myParser.getAttributeValue(null, ATTR_FORMAT);
+    String description = parser.getLastComment();
+    String groupName = parser.getAttrGroupComment();
+    String formatString = parser.getAttributeValue(null, ATTR_FORMAT);
     Set<AttributeFormat> formats =
       StringUtil.isEmpty(formatString) ? EnumSet.noneOf(AttributeFormat.class) : AttributeFormat.parse(formatString);
 
     // The average number of enum or flag values is 7 for Android framework, so start with small maps.
     Map<String, Integer> valueMap = Maps.newHashMapWithExpectedSize(8);
     Map<String, String> descriptionMap = Maps.newHashMapWithExpectedSize(8);
-    forSubTags(null, () -> {
-      if (myParser.getPrefix() == null) {
-        String tagName = myParser.getName();
+    forSubTags(null, parser, () -> {
+      if (parser.getPrefix() == null) {
+        String tagName = parser.getName();
         AttributeFormat format =
             tagName.equals(TAG_ENUM) ? AttributeFormat.ENUM : tagName.equals(TAG_FLAG) ? AttributeFormat.FLAGS : null;
         if (format != null) {
           formats.add(format);
-          String valueName = myParser.getAttributeValue(null, ATTR_NAME);
+          String valueName = parser.getAttributeValue(null, ATTR_NAME);
           if (valueName != null) {
-            String valueDescription = myParser.getLastComment();
+            String valueDescription = parser.getLastComment();
             if (valueDescription != null) {
               descriptionMap.put(valueName, valueDescription);
             }
-            String value = myParser.getAttributeValue(null, ATTR_VALUE);
+            String value = parser.getAttributeValue(null, ATTR_VALUE);
             Integer numericValue = null;
             if (value != null) {
               try {
@@ -764,17 +852,19 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicPluralsResourceItem createPluralsItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicPluralsResourceItem createPluralsItem(
+      @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException, XmlSyntaxException {
-    String defaultQuantity = myParser.getAttributeValue(TOOLS_URI, ATTR_QUANTITY);
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    ValueResourceXmlParser parser = context.parser;
+    String defaultQuantity = parser.getAttributeValue(TOOLS_URI, ATTR_QUANTITY);
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
     EnumMap<Arity, String> values = new EnumMap<>(Arity.class);
-    forSubTags(TAG_ITEM, () -> {
-      String quantityValue = myParser.getAttributeValue(null, ATTR_QUANTITY);
+    forSubTags(TAG_ITEM, parser, () -> {
+      String quantityValue = parser.getAttributeValue(null, ATTR_QUANTITY);
       if (quantityValue != null) {
         Arity quantity = Arity.getEnum(quantityValue);
         if (quantity != null) {
-          String text = myTextExtractor.extractText(myParser, false);
+          String text = context.textExtractor.extractText(parser, false);
           values.put(quantity, text);
         }
       }
@@ -784,7 +874,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       defaultArity = Arity.getEnum(defaultQuantity);
       if (defaultArity == null || !values.containsKey(defaultArity)) {
         throw new XmlSyntaxException(
-            "Invalid value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_QUANTITY + " attribute.", myParser,
+            "Invalid value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_QUANTITY + " attribute.", parser,
             getDisplayName(sourceFile));
       }
     }
@@ -795,12 +885,13 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicValueResourceItem createStringItem(
-      @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile, boolean withRowXml)
+  private BasicValueResourceItem createStringItem(@NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile,
+                                                  boolean withRowXml, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String text = type == ResourceType.ID ? null : myTextExtractor.extractText(myParser, withRowXml);
-    String rawXml = type == ResourceType.ID ? null : myTextExtractor.getRawXml();
+    ValueResourceXmlParser parser = context.parser;
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
+    String text = type == ResourceType.ID ? null : context.textExtractor.extractText(parser, withRowXml);
+    String rawXml = type == ResourceType.ID ? null : context.textExtractor.getRawXml();
     assert withRowXml || rawXml == null; // Text extractor doesn't extract raw XML unless asked to do it.
     ResourceVisibility visibility = getVisibility(type, name);
     BasicValueResourceItem item = rawXml == null ?
@@ -811,20 +902,23 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicStyleResourceItem createStyleItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicStyleResourceItem createStyleItem(
+      @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String parentStyle = myParser.getAttributeValue(null, ATTR_PARENT);
+    ValueResourceXmlParser parser = context.parser;
+    ResourceUrlParser urlParser = context.urlParser;
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
+    String parentStyle = parser.getAttributeValue(null, ATTR_PARENT);
     if (parentStyle != null && !parentStyle.isEmpty()) {
-      myUrlParser.parseResourceUrl(parentStyle);
-      parentStyle = myUrlParser.getQualifiedName();
+      urlParser.parseResourceUrl(parentStyle);
+      parentStyle = urlParser.getQualifiedName();
     }
     List<StyleItemResourceValue> styleItems = new ArrayList<>();
-    forSubTags(TAG_ITEM, () -> {
-      ResourceNamespace.Resolver itemNamespaceResolver = myParser.getNamespaceResolver();
-      String itemName = myParser.getAttributeValue(null, ATTR_NAME);
+    forSubTags(TAG_ITEM, parser, () -> {
+      ResourceNamespace.Resolver itemNamespaceResolver = parser.getNamespaceResolver();
+      String itemName = parser.getAttributeValue(null, ATTR_NAME);
       if (itemName != null) {
-        String text = myTextExtractor.extractText(myParser, false);
+        String text = context.textExtractor.extractText(parser, false);
         StyleItemResourceValueImpl styleItem =
             new StyleItemResourceValueImpl(myNamespace, itemName, text, sourceFile.getRepository().getLibraryName());
         styleItem.setNamespaceResolver(itemNamespaceResolver);
@@ -838,15 +932,17 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicStyleableResourceItem createStyleableItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicStyleableResourceItem createStyleableItem(
+      @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    ValueResourceXmlParser parser = context.parser;
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
     List<AttrResourceValue> attrs = new ArrayList<>();
-    forSubTags(TAG_ATTR, () -> {
-      String attrName = myParser.getAttributeValue(null, ATTR_NAME);
+    forSubTags(TAG_ATTR, parser, () -> {
+      String attrName = parser.getAttributeValue(null, ATTR_NAME);
       if (attrName != null) {
         try {
-          BasicAttrResourceItem attr = createAttrItem(attrName, sourceFile);
+          BasicAttrResourceItem attr = createAttrItem(attrName, sourceFile, context);
           // Mimic behavior of AAPT2 and put an attr reference inside a styleable resource.
           attrs.add(attr.getFormats().isEmpty() ? attr : attr.createReference());
 
@@ -854,7 +950,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
           // The second condition is determined by the fact that the attr in the res-auto namespace may have an explicit definition
           // outside of this resource repository.
           if (attr.getNamespace().equals(myNamespace) && (myNamespace != ResourceNamespace.RES_AUTO || !attr.getFormats().isEmpty())) {
-            addAttr(attr, myAttrCandidates);
+            context.apply(() -> addAttr(attr, myAttrCandidates));
           }
         }
         catch (XmlSyntaxException e) {
@@ -996,10 +1092,11 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
 
   @NotNull
   private BasicValueResourceItem createFileReferenceItem(
-      @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile)
+      @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile, @NotNull ParsingContext context)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String text = myTextExtractor.extractText(myParser, false).trim();
+    ValueResourceXmlParser parser = context.parser;
+    ResourceNamespace.Resolver namespaceResolver = parser.getNamespaceResolver();
+    String text = context.textExtractor.extractText(parser, false).trim();
     if (!text.isEmpty() && !text.startsWith(PREFIX_RESOURCE_REF) && !text.startsWith(PREFIX_THEME_REF)) {
       text = text.replace('/', File.separatorChar);
     }
@@ -1010,7 +1107,8 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @Nullable
-  private ResourceType getResourceType(@NotNull String tagName, @NotNull PathString file) throws XmlSyntaxException {
+  private ResourceType getResourceType(@NotNull String tagName, @NotNull PathString file, @NotNull XmlPullParser parser)
+      throws XmlSyntaxException {
     ResourceType type = ResourceType.fromXmlTagName(tagName);
 
     if (type == null) {
@@ -1019,18 +1117,18 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       }
 
       if (tagName.equals(TAG_ITEM)) {
-        String typeAttr = myParser.getAttributeValue(null, ATTR_TYPE);
+        String typeAttr = parser.getAttributeValue(null, ATTR_TYPE);
         if (typeAttr != null) {
           type = ResourceType.fromClassName(typeAttr);
           if (type != null) {
             return type;
           }
 
-          throw new XmlSyntaxException("Invalid type attribute \"" + typeAttr + "\"", myParser, getDisplayName(file));
+          throw new XmlSyntaxException("Invalid type attribute \"" + typeAttr + "\"", parser, getDisplayName(file));
         }
       }
 
-      throw new XmlSyntaxException("Invalid tag name \"" + tagName + "\"", myParser, getDisplayName(file));
+      throw new XmlSyntaxException("Invalid tag name \"" + tagName + "\"", parser, getDisplayName(file));
     }
 
     return type;
@@ -1041,22 +1139,23 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
    * If {@code tagName} is not null, calls {@code subtagVisitor.visitTag()} for every subtag of the current tag
    * which name doesn't have a prefix and matches {@code tagName}.
    */
-  private void forSubTags(@Nullable String tagName, @NotNull XmlTagVisitor subtagVisitor) throws IOException, XmlPullParserException {
-    int elementDepth = myParser.getDepth();
+  private static void forSubTags(@Nullable String tagName, @NotNull XmlPullParser parser, @NotNull XmlTagVisitor subtagVisitor)
+      throws IOException, XmlPullParserException {
+    int elementDepth = parser.getDepth();
     int event;
     do {
-      event = myParser.nextToken();
-      if (event == XmlPullParser.START_TAG && (tagName == null || tagName.equals(myParser.getName()) && myParser.getPrefix() == null)) {
+      event = parser.nextToken();
+      if (event == XmlPullParser.START_TAG && (tagName == null || tagName.equals(parser.getName()) && parser.getPrefix() == null)) {
         subtagVisitor.visitTag();
       }
-    } while (event != XmlPullParser.END_DOCUMENT && (event != XmlPullParser.END_TAG || myParser.getDepth() > elementDepth));
+    } while (event != XmlPullParser.END_DOCUMENT && (event != XmlPullParser.END_TAG || parser.getDepth() > elementDepth));
   }
 
-  private void validateResourceName(@NotNull String resourceName, @NotNull ResourceType resourceType, @NotNull PathString file)
-      throws XmlSyntaxException {
+  private void validateResourceName(@NotNull String resourceName, @NotNull ResourceType resourceType, @NotNull PathString file,
+                                    @NotNull XmlPullParser parser) throws XmlSyntaxException {
     String error = ValueResourceNameValidator.getErrorText(resourceName, resourceType);
     if (error != null) {
-      throw new XmlSyntaxException(error, myParser, getDisplayName(file));
+      throw new XmlSyntaxException(error, parser, getDisplayName(file));
     }
   }
 
@@ -1336,6 +1435,33 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     }
   }
 
+  /**
+   * Parsers and buffers used for parsing resource files on a single thread.
+   */
+  private static final class ParsingContext {
+    @NotNull final ValueResourceXmlParser parser;
+    @NotNull final XmlTextExtractor textExtractor = new XmlTextExtractor();
+    @NotNull final ResourceUrlParser urlParser = new ResourceUrlParser();
+    /**
+     * Changes to the state of the loader and the repository produced by parsing of the current file, or null if the changes
+     * are applied immediately. The changes are deferred when files are parsed in parallel.
+     */
+    @Nullable List<Runnable> deferredChanges;
+
+    ParsingContext(@NotNull Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) {
+      parser = new ValueResourceXmlParser(namespaceResolverCache);
+    }
+
+    void apply(@NotNull Runnable change) {
+      if (deferredChanges == null) {
+        change.run();
+      }
+      else {
+        deferredChanges.add(change);
+      }
+    }
+  }
+
   private static class XmlSyntaxException extends Exception {
     XmlSyntaxException(@NotNull String error, @NotNull XmlPullParser parser, @NotNull String filename) {
       super(error + " at " + filename + " line " + parser.getLineNumber());
@@ -65,6 +65,10 @@ public class ResourceSerializationUtil {
    *   <li>Number of resource items (int)</li>
    *   <li>Serialized resource items (see {@link BasicResourceItemBase#serialize})</li>
    * </ol>
+   *
+   * All strings following the header are written with the string table of the stream enabled, so the contents of the cache
+   * file have to be read after calling {@link Base128InputStream#enableStringTable()} on the input stream. Callers should
+   * include a format version in the header that is changed whenever the data layout changes.
    */
   public static void createPersistentCache(@NotNull Path cacheFile, @NotNull byte[] fileHeader,
                                            @NotNull Base128StreamWriter contentWriter) {
@@ -88,6 +92,7 @@ public class ResourceSerializationUtil {
 
     try (Base128OutputStream stream = new Base128OutputStream(tempFile)) {
       stream.write(fileHeader);
+      stream.enableStringTable();
       contentWriter.write(stream);
     }
     catch (Throwable e) {
@@ -22,7 +22,6 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
@@ -34,9 +33,17 @@ import org.xmlpull.v1.XmlPullParserException;
  * for the current tag.
  */
 class ValueResourceXmlParser extends CommentTrackingXmlPullParser {
-  @NotNull final Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = new HashMap<>();
+  @NotNull final Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache;
   @NotNull final Deque<NamespaceResolver> resolverStack = new ArrayDeque<>(4);
 
+  /**
+   * @param namespaceResolverCache the cache of namespace resolvers, which may be shared with other parsers. If the parsers are
+   *     used on different threads, the cache has to be thread-safe.
+   */
+  ValueResourceXmlParser(@NotNull Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) {
+    this.namespaceResolverCache = namespaceResolverCache;
+  }
+
   /**
    * Returns the namespace resolver for the current XML node. The parser has to be positioned on a start tag
    * when this method is called.
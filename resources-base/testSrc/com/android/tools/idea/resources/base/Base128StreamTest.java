@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.resources.base;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Base128OutputStream} and {@link Base128InputStream}.
+ */
+public class Base128StreamTest {
+  @Test
+  public void stringTable() throws IOException {
+    ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+    try (Base128OutputStream stream = new Base128OutputStream(byteStream)) {
+      stream.writeString("header");
+      stream.enableStringTable();
+      stream.writeString("name");
+      stream.writeString(null);
+      stream.writeString("");
+      stream.writeInt(42);
+      stream.writeString("name");
+      stream.writeString("");
+      stream.writeString("other");
+      stream.writeString("name");
+    }
+
+    try (Base128InputStream stream = new Base128InputStream(new ByteArrayInputStream(byteStream.toByteArray()))) {
+      stream.setStringCache(new HashMap<>());
+      assertThat(stream.readString()).isEqualTo("header");
+      stream.enableStringTable();
+      String name = stream.readString();
+      assertThat(name).isEqualTo("name");
+      assertThat(stream.readString()).isNull();
+      assertThat(stream.readString()).isEmpty();
+      assertThat(stream.readInt()).isEqualTo(42);
+      assertThat(stream.readString()).isSameAs(name);
+      assertThat(stream.readString()).isEmpty();
+      assertThat(stream.readString()).isEqualTo("other");
+      assertThat(stream.readString()).isSameAs(name);
+    }
+  }
+
+  @Test
+  public void stringTableMakesRepeatedStringsCompact() throws IOException {
+    ByteArrayOutputStream plainBytes = new ByteArrayOutputStream();
+    try (Base128OutputStream stream = new Base128OutputStream(plainBytes)) {
+      for (int i = 0; i < 100; i++) {
+        stream.writeString("@android:color/transparent");
+      }
+    }
+    ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+    try (Base128OutputStream stream = new Base128OutputStream(tableBytes)) {
+      stream.enableStringTable();
+      for (int i = 0; i < 100; i++) {
+        stream.writeString("@android:color/transparent");
+      }
+    }
+
+    assertThat(tableBytes.size()).isLessThan(plainBytes.size() / 10);
+  }
+
+  @Test(expected = Base128InputStream.StreamFormatException.class)
+  public void invalidStringTableIndex() throws IOException {
+    ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+    try (Base128OutputStream stream = new Base128OutputStream(byteStream)) {
+      stream.writeInt(2); // Refers to the first string table entry, which doesn't exist.
+    }
+
+    try (Base128InputStream stream = new Base128InputStream(new ByteArrayInputStream(byteStream.toByteArray()))) {
+      stream.enableStringTable();
+      stream.readString();
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.DataStoreTable;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
@@ -102,6 +103,8 @@ public class DataStoreDatabase {
 
   public void disconnect() {
     try {
+      // Buffered writes must be written before the transaction is committed, or they are lost.
+      DataStoreTable.closeTables(myConnection);
       myConnection.commit();
     }
     catch (SQLException e) {
@@ -16,10 +16,12 @@
 package com.android.tools.datastore;
 
 import static com.android.tools.datastore.DataStoreDatabase.Characteristic.DURABLE;
+import static com.android.tools.idea.flags.StudioFlags.PROFILER_IN_MEMORY_EVENT_STORE;
 import static com.android.tools.idea.flags.StudioFlags.PROFILER_UNIFIED_PIPELINE;
 
 import com.android.tools.analytics.UsageTracker;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.InMemoryUnifiedEventsTable;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.datastore.service.CpuService;
 import com.android.tools.datastore.service.EnergyService;
@@ -196,14 +198,14 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public void createPollers() {
     // TODO b/73538507 shared between all services to support inserting file content into generic byte cache (e.g. importing hprof)
     // We should be able to keep this inside TransportService after legacy pipeline removal.
-    UnifiedEventsTable unifiedTable = new UnifiedEventsTable();
-    myTransportService = new TransportService(this, unifiedTable, myFetchExecutor, !PROFILER_UNIFIED_PIPELINE.get());
+    UnifiedEventsTable unifiedTable = PROFILER_IN_MEMORY_EVENT_STORE.get() ? new InMemoryUnifiedEventsTable() : new UnifiedEventsTable();
+    myTransportService = new TransportService(this, unifiedTable, myFetchExecutor, !PROFILER_UNIFIED_PIPELINE.get(), myLogService);
     registerService(myTransportService);
     registerService(new ProfilerService(this, myLogService));
-    registerService(new EventService(this, myFetchExecutor));
+    registerService(new EventService(this, myFetchExecutor, myLogService));
     registerService(new CpuService(this, myFetchExecutor, myLogService));
     registerService(new MemoryService(this, unifiedTable, myFetchExecutor, myLogService));
-    registerService(new NetworkService(this, myFetchExecutor));
+    registerService(new NetworkService(this, myFetchExecutor, myLogService));
     registerService(new EnergyService(this, myFetchExecutor, myLogService));
   }
 
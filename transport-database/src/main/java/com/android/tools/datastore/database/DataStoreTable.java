@@ -15,12 +15,14 @@
  */
 package com.android.tools.datastore.database;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Interface a {@link com.android.tools.datastore.ServicePassThrough} object returns to indicate this object is
@@ -29,16 +31,32 @@ import java.util.function.Function;
 public abstract class DataStoreTable<T extends Enum> {
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = ConcurrentHashMap.newKeySet();
 
+  // Initialized tables, so their buffered writes can be flushed before their connection is closed.
+  private static final Set<DataStoreTable<?>> INITIALIZED_TABLES =
+    Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
   private Connection myConnection;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
 
   // Cache custom queries we have a limited number and we call the same query multiple times.
   private final ThreadLocal<Map<String, PreparedStatement>> myCustomQueryCache = new ThreadLocal<>();
 
+  // Writes issued with executeBuffered, waiting to be written in a batch.
+  @NotNull private final DataStoreWriteQueue<T> myWriteQueue;
+
   public interface DataStoreTableErrorCallback {
     void onDataStoreError(Throwable t);
   }
 
+  protected DataStoreTable() {
+    this(DataStoreWriteQueue.DEFAULT_CAPACITY, DataStoreWriteQueue.DEFAULT_BATCH_SIZE, DataStoreWriteQueue.DEFAULT_MAX_DELAY_NS);
+  }
+
+  @VisibleForTesting
+  protected DataStoreTable(int writeQueueCapacity, int writeBatchSize, long maxWriteDelayNs) {
+    myWriteQueue = new DataStoreWriteQueue<>(writeQueueCapacity, writeBatchSize, maxWriteDelayNs, this::executePendingWrites);
+  }
+
   /**
    * Initialization function to create tables for the Database.
    *
@@ -46,6 +64,20 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public void initialize(@NotNull Connection connection) {
     myConnection = connection;
+    INITIALIZED_TABLES.add(this);
+  }
+
+  /**
+   * Writes the pending buffered writes of all the tables initialized with the given connection, and stops buffering writes for these
+   * tables. Must be called before the connection is committed and closed.
+   */
+  public static void closeTables(@NotNull Connection connection) {
+    List<DataStoreTable<?>> tables;
+    synchronized (INITIALIZED_TABLES) {
+      tables = INITIALIZED_TABLES.stream().filter(table -> table.myConnection == connection).collect(Collectors.toList());
+      INITIALIZED_TABLES.removeAll(tables);
+    }
+    tables.forEach(table -> table.myWriteQueue.close());
   }
 
   /**
@@ -77,6 +109,21 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * @return the queue of the writes issued with {@link #executeBuffered}, which also keeps statistics about its depth and flush latency.
+   */
+  @NotNull
+  public DataStoreWriteQueue<T> getWriteQueue() {
+    return myWriteQueue;
+  }
+
+  /**
+   * Writes all the pending buffered writes of this table to the database.
+   */
+  public void flushPendingWrites() {
+    myWriteQueue.flush();
+  }
+
   /**
    * Error handling is handled in the callbacks. One of the callbacks is
    * expected in the {@link DataStoreService}. One of the callbacks will log all errors
@@ -139,6 +186,11 @@ public abstract class DataStoreTable<T extends Enum> {
    *                       of the specified statement.
    */
   protected <K> void executeBatch(@NotNull T statement, @NotNull List<K> batchParams, @NotNull Function<K, Object[]> paramConverter) {
+    flushPendingWrites();
+    executeBatchNow(statement, batchParams, paramConverter);
+  }
+
+  private <K> void executeBatchNow(@NotNull T statement, @NotNull List<K> batchParams, @NotNull Function<K, Object[]> paramConverter) {
     if (isClosed()) {
       return;
     }
@@ -153,6 +205,7 @@ public abstract class DataStoreTable<T extends Enum> {
         }
       });
       int[] results = stmt.executeBatch();
+      stmt.clearParameters();
       for(int i = 0; i < results.length; i++) {
         if (results[i] == Statement.EXECUTE_FAILED) {
           throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
@@ -164,7 +217,35 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Queues a write to be executed later in a batch with other writes of this table. This is an optimization for the pollers inserting
+   * samples at a high rate, as executing a statement per sample holds the connection shared with the queries for longer.
+   * <p>
+   * Buffered writes are always flushed before any other statement of this table is executed, so they are visible to the queries of this
+   * table and ordered with its unbuffered writes. They are not visible to the queries of other tables until flushed.
+   */
+  protected void executeBuffered(@NotNull T statement, Object... params) {
+    if (isClosed()) {
+      return;
+    }
+    myWriteQueue.add(statement, params);
+  }
+
+  /**
+   * Executes the writes, in order, grouping consecutive writes of the same statement in a single batch.
+   */
+  private void executePendingWrites(@NotNull List<DataStoreWriteQueue.PendingWrite<T>> writes) {
+    int batchStart = 0;
+    for (int i = 1; i <= writes.size(); i++) {
+      if (i == writes.size() || writes.get(i).getStatement() != writes.get(batchStart).getStatement()) {
+        executeBatchNow(writes.get(batchStart).getStatement(), writes.subList(batchStart, i), DataStoreWriteQueue.PendingWrite::getParams);
+        batchStart = i;
+      }
+    }
+  }
+
   protected void execute(@NotNull T statement, Object... params) {
+    flushPendingWrites();
     if (isClosed()) {
       return;
     }
@@ -182,6 +263,7 @@ public abstract class DataStoreTable<T extends Enum> {
   }
 
   protected ResultSet executeQuery(@NotNull T statement, Object... params) throws SQLException {
+    flushPendingWrites();
     if (isClosed()) {
       return new EmptyResultSet();
     }
@@ -191,6 +273,7 @@ public abstract class DataStoreTable<T extends Enum> {
   }
 
   protected ResultSet executeOneTimeQuery(@NotNull String sql, Object[] params) throws SQLException {
+    flushPendingWrites();
     if (isClosed()) {
       return new EmptyResultSet();
     }
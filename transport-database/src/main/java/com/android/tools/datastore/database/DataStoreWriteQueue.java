@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounded write-behind queue of a {@link DataStoreTable}. Writes are accumulated and handed to the table in batches, so the table can
+ * execute them with a single JDBC batch instead of one statement each.
+ * <p>
+ * The queue is flushed when it holds {@code batchSize} writes, after {@code maxDelayNs} since the first pending write, or when the
+ * table needs to read or write synchronously. When the queue is full, the producer flushes it itself before enqueuing, which slows
+ * down pollers that write faster than the database can keep up with instead of buffering without bounds.
+ */
+public final class DataStoreWriteQueue<T extends Enum> {
+  static final int DEFAULT_CAPACITY = 4096;
+  static final int DEFAULT_BATCH_SIZE = 256;
+  static final long DEFAULT_MAX_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(50);
+
+  /**
+   * A single thread is shared by all queues to flush the writes that have been waiting for too long.
+   */
+  private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("DataStoreWriteQueue-flush").build());
+
+  /**
+   * A write waiting in the queue: the statement to execute and its parameters.
+   */
+  static final class PendingWrite<T extends Enum> {
+    @NotNull private final T myStatement;
+    @NotNull private final Object[] myParams;
+
+    PendingWrite(@NotNull T statement, @NotNull Object[] params) {
+      myStatement = statement;
+      myParams = params;
+    }
+
+    @NotNull
+    T getStatement() {
+      return myStatement;
+    }
+
+    @NotNull
+    Object[] getParams() {
+      return myParams;
+    }
+  }
+
+  @NotNull private final BlockingQueue<PendingWrite<T>> myQueue;
+  @NotNull private final Consumer<List<PendingWrite<T>>> myWriter;
+  private final int myBatchSize;
+  private final long myMaxDelayNs;
+
+  // Flushes are serialized so batches are written in the order they were enqueued.
+  @NotNull private final Object myFlushLock = new Object();
+  @NotNull private final AtomicBoolean myFlushScheduled = new AtomicBoolean(false);
+  private volatile boolean myClosed;
+
+  @NotNull private final AtomicLong myFlushCount = new AtomicLong();
+  @NotNull private final AtomicLong myFlushedWriteCount = new AtomicLong();
+  @NotNull private final AtomicLong myTotalFlushLatencyNs = new AtomicLong();
+  @NotNull private final AtomicLong myMaxFlushLatencyNs = new AtomicLong();
+  @NotNull private final AtomicLong myBackPressureCount = new AtomicLong();
+
+  /**
+   * @param writer executes a batch of writes, in order, on the calling thread.
+   */
+  DataStoreWriteQueue(int capacity, int batchSize, long maxDelayNs, @NotNull Consumer<List<PendingWrite<T>>> writer) {
+    assert batchSize > 0 && batchSize <= capacity;
+    myQueue = new ArrayBlockingQueue<>(capacity);
+    myBatchSize = batchSize;
+    myMaxDelayNs = maxDelayNs;
+    myWriter = writer;
+  }
+
+  void add(@NotNull T statement, @NotNull Object[] params) {
+    if (myClosed) {
+      return;
+    }
+    PendingWrite<T> write = new PendingWrite<>(statement, params);
+    while (!myQueue.offer(write)) {
+      myBackPressureCount.incrementAndGet();
+      flush();
+    }
+    if (myQueue.size() >= myBatchSize) {
+      flush();
+    }
+    else if (myFlushScheduled.compareAndSet(false, true)) {
+      FLUSH_EXECUTOR.schedule(() -> {
+        myFlushScheduled.set(false);
+        flush();
+      }, myMaxDelayNs, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Writes all the pending writes on the calling thread. Returns once the writes enqueued before this call are written.
+   */
+  void flush() {
+    synchronized (myFlushLock) {
+      if (myClosed || myQueue.isEmpty()) {
+        return;
+      }
+      List<PendingWrite<T>> writes = new ArrayList<>(myQueue.size());
+      myQueue.drainTo(writes);
+      long startNs = System.nanoTime();
+      myWriter.accept(writes);
+      long latencyNs = System.nanoTime() - startNs;
+
+      myFlushCount.incrementAndGet();
+      myFlushedWriteCount.addAndGet(writes.size());
+      myTotalFlushLatencyNs.addAndGet(latencyNs);
+      myMaxFlushLatencyNs.accumulateAndGet(latencyNs, Math::max);
+    }
+  }
+
+  /**
+   * Writes all the pending writes on the calling thread, then ignores the writes added and the flushes scheduled afterwards. Called
+   * before the connection of the table is closed.
+   */
+  void close() {
+    synchronized (myFlushLock) {
+      flush();
+      myClosed = true;
+    }
+  }
+
+  /**
+   * @return the number of writes waiting to be flushed.
+   */
+  public int getQueueDepth() {
+    return myQueue.size();
+  }
+
+  public long getFlushCount() {
+    return myFlushCount.get();
+  }
+
+  public long getFlushedWriteCount() {
+    return myFlushedWriteCount.get();
+  }
+
+  public long getTotalFlushLatencyNs() {
+    return myTotalFlushLatencyNs.get();
+  }
+
+  public long getMaxFlushLatencyNs() {
+    return myMaxFlushLatencyNs.get();
+  }
+
+  /**
+   * @return the number of times a producer found the queue full and had to flush it before enqueuing its write.
+   */
+  public long getBackPressureCount() {
+    return myBackPressureCount.get();
+  }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.android.tools.profiler.proto.Transport.EventGroup;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores parsed {@link Event}s in memory so they can be queried without going through SQL and protobuf parsing.
+ * <p>
+ * The events of each stream are partitioned in time segments. Within a segment, events are kept by kind and group id, sorted by
+ * timestamp. Each stream also indexes which segments contain events of a given kind and group, so a query only visits the segments
+ * overlapping its range, plus the closest ones before and after it for the events surrounding the range.
+ * <p>
+ * When the events in memory exceed a budget, the least recently used segments are written to disk and read back when a query needs
+ * them again.
+ */
+final class InMemoryEventStore {
+  static final long DEFAULT_SEGMENT_DURATION_NS = TimeUnit.SECONDS.toNanos(10);
+  static final long DEFAULT_MAX_RESIDENT_BYTES = 64 * 1024 * 1024;
+
+  // Rough estimate of the memory used by a parsed event on top of its serialized size.
+  private static final long EVENT_OVERHEAD_BYTES = 64;
+
+  // Same order as the unique index of the UnifiedEventsTable.
+  private static final Comparator<Event> EVENT_ORDER = Comparator.comparingLong(Event::getTimestamp).thenComparing(Event::getIsEnded);
+
+  private final long mySegmentDurationNs;
+  private final long myMaxResidentBytes;
+  @NotNull private final Consumer<Throwable> myErrorHandler;
+
+  @NotNull private final Map<Long, StreamPartition> myStreams = new TreeMap<>();
+  // Segments held in memory, least recently used first.
+  @NotNull private final LinkedHashMap<EventSegment, Boolean> myResidentSegments = new LinkedHashMap<>(16, 0.75f, true);
+  private long myResidentBytes;
+
+  InMemoryEventStore(long segmentDurationNs, long maxResidentBytes, @NotNull Consumer<Throwable> errorHandler) {
+    assert segmentDurationNs > 0;
+    mySegmentDurationNs = segmentDurationNs;
+    myMaxResidentBytes = maxResidentBytes;
+    myErrorHandler = errorHandler;
+  }
+
+  /**
+   * Adds the event to the store, unless the stream already has an event with the same kind, process, group, timestamp and ended state.
+   */
+  synchronized void insert(long streamId, @NotNull Event event) {
+    StreamPartition stream = myStreams.computeIfAbsent(streamId, id -> new StreamPartition());
+    long bucket = getBucket(event.getTimestamp());
+    EventSegment segment = stream.mySegments.computeIfAbsent(bucket, key -> new EventSegment());
+    List<Event> groupEvents = load(segment).computeIfAbsent(event.getKind().getNumber(), kind -> new HashMap<>())
+      .computeIfAbsent(event.getGroupId(), groupId -> new ArrayList<>());
+    if (!insertSorted(groupEvents, event)) {
+      return;
+    }
+    stream.myGroupBuckets.computeIfAbsent(event.getKind().getNumber(), kind -> new HashMap<>())
+      .computeIfAbsent(event.getGroupId(), groupId -> new TreeSet<>())
+      .add(bucket);
+    long eventBytes = getEventBytes(event);
+    segment.myResidentBytes += eventBytes;
+    myResidentBytes += eventBytes;
+    trimResidentSegments(segment);
+  }
+
+  /**
+   * Removes the events of the stream matching the process, group and kind, with a timestamp in [fromTimestamp, toTimestamp].
+   */
+  synchronized void delete(long streamId, int pid, long groupId, @NotNull Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    StreamPartition stream = myStreams.get(streamId);
+    Map<Long, NavigableSet<Long>> kindGroups = stream == null ? null : stream.myGroupBuckets.get(kind.getNumber());
+    NavigableSet<Long> buckets = kindGroups == null ? null : kindGroups.get(groupId);
+    if (buckets == null || fromTimestamp > toTimestamp) {
+      return;
+    }
+    Iterator<Long> bucketIterator = buckets.subSet(getBucket(fromTimestamp), true, getBucket(toTimestamp), true).iterator();
+    while (bucketIterator.hasNext()) {
+      long bucket = bucketIterator.next();
+      EventSegment segment = stream.mySegments.get(bucket);
+      Map<Integer, Map<Long, List<Event>>> segmentEvents = load(segment);
+      Map<Long, List<Event>> segmentGroups = segmentEvents.get(kind.getNumber());
+      List<Event> groupEvents = segmentGroups.get(groupId);
+      Iterator<Event> eventIterator = groupEvents.iterator();
+      while (eventIterator.hasNext()) {
+        Event event = eventIterator.next();
+        if (event.getPid() == pid && event.getTimestamp() >= fromTimestamp && event.getTimestamp() <= toTimestamp) {
+          eventIterator.remove();
+          long eventBytes = getEventBytes(event);
+          segment.myResidentBytes -= eventBytes;
+          myResidentBytes -= eventBytes;
+        }
+      }
+      if (groupEvents.isEmpty()) {
+        segmentGroups.remove(groupId);
+        bucketIterator.remove();
+        if (segmentGroups.isEmpty()) {
+          segmentEvents.remove(kind.getNumber());
+        }
+        if (segmentEvents.isEmpty()) {
+          stream.mySegments.remove(bucket);
+          myResidentSegments.remove(segment);
+        }
+      }
+    }
+    if (buckets.isEmpty()) {
+      kindGroups.remove(groupId);
+    }
+  }
+
+  /**
+   * Same as {@link UnifiedEventsTable#queryUnifiedEventGroups(GetEventGroupsRequest)}, including the latest event before and the first
+   * event after the requested range of each group.
+   */
+  @NotNull
+  synchronized List<EventGroup> queryGroups(@NotNull GetEventGroupsRequest request) {
+    boolean hasFrom = request.getFromTimestamp() > 0;
+    boolean hasTo = request.getToTimestamp() > 0 && request.getToTimestamp() != Long.MAX_VALUE;
+    long fromTimestamp = hasFrom ? request.getFromTimestamp() : Long.MIN_VALUE;
+    long toTimestamp = hasTo ? request.getToTimestamp() : Long.MAX_VALUE;
+    Predicate<Event> filter = event -> (request.getPid() == 0 || event.getPid() == request.getPid()) &&
+                                       (request.getCommandId() == 0 || event.getCommandId() == request.getCommandId());
+
+    Map<Long, Event> beforeRange = new HashMap<>();
+    Map<Long, List<Event>> inRange = new HashMap<>();
+    Map<Long, Event> afterRange = new HashMap<>();
+    for (StreamPartition stream : getStreams(request.getStreamId())) {
+      Map<Long, NavigableSet<Long>> kindGroups = stream.myGroupBuckets.get(request.getKind().getNumber());
+      if (kindGroups == null) {
+        continue;
+      }
+      Map<Long, NavigableSet<Long>> groups = kindGroups;
+      if (request.getGroupId() != 0) {
+        NavigableSet<Long> buckets = kindGroups.get(request.getGroupId());
+        groups = buckets == null ? Collections.emptyMap() : Collections.singletonMap(request.getGroupId(), buckets);
+      }
+      for (Map.Entry<Long, NavigableSet<Long>> group : groups.entrySet()) {
+        long groupId = group.getKey();
+        NavigableSet<Long> buckets = group.getValue();
+        if (fromTimestamp <= toTimestamp) {
+          for (long bucket : buckets.subSet(getBucket(fromTimestamp), true, getBucket(toTimestamp), true)) {
+            List<Event> events = getGroupEvents(stream, bucket, request.getKind(), groupId);
+            for (int i = lowerBound(events, fromTimestamp); i < events.size() && events.get(i).getTimestamp() <= toTimestamp; i++) {
+              if (filter.test(events.get(i))) {
+                inRange.computeIfAbsent(groupId, id -> new ArrayList<>()).add(events.get(i));
+              }
+            }
+          }
+        }
+        if (hasFrom) {
+          Event event = findLastBefore(stream, buckets, request.getKind(), groupId, fromTimestamp, filter);
+          if (event != null) {
+            beforeRange.merge(groupId, event, (a, b) -> EVENT_ORDER.compare(a, b) >= 0 ? a : b);
+          }
+        }
+        if (hasTo) {
+          Event event = findFirstAfter(stream, buckets, request.getKind(), groupId, toTimestamp, filter);
+          if (event != null) {
+            afterRange.merge(groupId, event, (a, b) -> EVENT_ORDER.compare(a, b) <= 0 ? a : b);
+          }
+        }
+      }
+    }
+
+    // Same rules as the SQL queries: a group is returned if it has events in range, or is still ongoing at the start of the range. The
+    // event after the range is only added to groups that are returned.
+    HashMap<Long, EventGroup.Builder> builderGroups = new HashMap<>();
+    beforeRange.forEach((groupId, event) -> {
+      if (!event.getIsEnded()) {
+        builderGroups.computeIfAbsent(groupId, EventGroup.newBuilder()::setGroupId).addEvents(event);
+      }
+    });
+    inRange.forEach((groupId, events) -> builderGroups.computeIfAbsent(groupId, EventGroup.newBuilder()::setGroupId).addAllEvents(events));
+    afterRange.forEach((groupId, event) -> {
+      EventGroup.Builder group = builderGroups.get(groupId);
+      if (group != null) {
+        group.addEvents(event);
+      }
+    });
+
+    List<EventGroup> result = new ArrayList<>(builderGroups.size());
+    builderGroups.values().forEach(group -> result.add(group.build()));
+    return result;
+  }
+
+  @NotNull
+  synchronized List<Event> getAllEvents() {
+    List<Event> events = new ArrayList<>();
+    for (StreamPartition stream : myStreams.values()) {
+      for (EventSegment segment : stream.mySegments.values()) {
+        load(segment).values().forEach(groups -> groups.values().forEach(events::addAll));
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Removes all the events, including the ones written to disk.
+   */
+  synchronized void clear() {
+    for (StreamPartition stream : myStreams.values()) {
+      for (EventSegment segment : stream.mySegments.values()) {
+        if (segment.mySpillFile != null) {
+          deleteSpillFile(segment);
+        }
+      }
+    }
+    myStreams.clear();
+    myResidentSegments.clear();
+    myResidentBytes = 0;
+  }
+
+  @VisibleForTesting
+  synchronized int getSpilledSegmentCount() {
+    int count = 0;
+    for (StreamPartition stream : myStreams.values()) {
+      for (EventSegment segment : stream.mySegments.values()) {
+        if (segment.myEvents == null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @VisibleForTesting
+  synchronized long getResidentBytes() {
+    return myResidentBytes;
+  }
+
+  private long getBucket(long timestamp) {
+    return Math.floorDiv(timestamp, mySegmentDurationNs);
+  }
+
+  @NotNull
+  private Collection<StreamPartition> getStreams(long streamId) {
+    if (streamId == 0) {
+      return myStreams.values();
+    }
+    StreamPartition stream = myStreams.get(streamId);
+    return stream == null ? Collections.emptyList() : Collections.singletonList(stream);
+  }
+
+  @NotNull
+  private List<Event> getGroupEvents(@NotNull StreamPartition stream, long bucket, @NotNull Event.Kind kind, long groupId) {
+    // The bucket index only references segments with events of the group.
+    return load(stream.mySegments.get(bucket)).get(kind.getNumber()).get(groupId);
+  }
+
+  @Nullable
+  private Event findLastBefore(@NotNull StreamPartition stream,
+                               @NotNull NavigableSet<Long> buckets,
+                               @NotNull Event.Kind kind,
+                               long groupId,
+                               long timestamp,
+                               @NotNull Predicate<Event> filter) {
+    for (long bucket : buckets.headSet(getBucket(timestamp), true).descendingSet()) {
+      List<Event> events = getGroupEvents(stream, bucket, kind, groupId);
+      for (int i = lowerBound(events, timestamp) - 1; i >= 0; i--) {
+        if (filter.test(events.get(i))) {
+          return events.get(i);
+        }
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private Event findFirstAfter(@NotNull StreamPartition stream,
+                               @NotNull NavigableSet<Long> buckets,
+                               @NotNull Event.Kind kind,
+                               long groupId,
+                               long timestamp,
+                               @NotNull Predicate<Event> filter) {
+    for (long bucket : buckets.tailSet(getBucket(timestamp), true)) {
+      List<Event> events = getGroupEvents(stream, bucket, kind, groupId);
+      for (int i = upperBound(events, timestamp); i < events.size(); i++) {
+        if (filter.test(events.get(i))) {
+          return events.get(i);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the events of the segment, reading them back from disk if needed, and marks the segment as the most recently used.
+   */
+  @NotNull
+  private Map<Integer, Map<Long, List<Event>>> load(@NotNull EventSegment segment) {
+    if (segment.myEvents == null) {
+      segment.myEvents = new HashMap<>();
+      assert segment.mySpillFile != null;
+      try (InputStream input = new BufferedInputStream(new FileInputStream(segment.mySpillFile))) {
+        Event event;
+        while ((event = Event.parseDelimitedFrom(input)) != null) {
+          // Events were written group by group, in order.
+          segment.myEvents.computeIfAbsent(event.getKind().getNumber(), kind -> new HashMap<>())
+            .computeIfAbsent(event.getGroupId(), groupId -> new ArrayList<>())
+            .add(event);
+        }
+      }
+      catch (IOException ex) {
+        myErrorHandler.accept(ex);
+      }
+      deleteSpillFile(segment);
+      myResidentBytes += segment.myResidentBytes;
+      myResidentSegments.put(segment, Boolean.TRUE);
+      trimResidentSegments(segment);
+    }
+    else {
+      myResidentSegments.put(segment, Boolean.TRUE);
+    }
+    return segment.myEvents;
+  }
+
+  /**
+   * Writes the least recently used segments to disk until the events in memory fit in the budget.
+   *
+   * @param inUse the segment being accessed, which is kept in memory.
+   */
+  private void trimResidentSegments(@NotNull EventSegment inUse) {
+    Iterator<EventSegment> iterator = myResidentSegments.keySet().iterator();
+    while (myResidentBytes > myMaxResidentBytes && iterator.hasNext()) {
+      EventSegment segment = iterator.next();
+      if (segment == inUse) {
+        continue;
+      }
+      try {
+        spill(segment);
+      }
+      catch (IOException ex) {
+        // Keep the events in memory rather than losing them.
+        myErrorHandler.accept(ex);
+        return;
+      }
+      iterator.remove();
+      myResidentBytes -= segment.myResidentBytes;
+    }
+  }
+
+  private static void spill(@NotNull EventSegment segment) throws IOException {
+    assert segment.myEvents != null;
+    File file = File.createTempFile("datastore-events", ".segment");
+    file.deleteOnExit();
+    try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+      for (Map<Long, List<Event>> groups : segment.myEvents.values()) {
+        for (List<Event> events : groups.values()) {
+          for (Event event : events) {
+            event.writeDelimitedTo(output);
+          }
+        }
+      }
+    }
+    catch (IOException ex) {
+      file.delete();
+      throw ex;
+    }
+    segment.mySpillFile = file;
+    segment.myEvents = null;
+  }
+
+  private static void deleteSpillFile(@NotNull EventSegment segment) {
+    assert segment.mySpillFile != null;
+    segment.mySpillFile.delete();
+    segment.mySpillFile = null;
+  }
+
+  /**
+   * Inserts the event in the sorted list.
+   *
+   * @return false if the list already contains an event with the same process, timestamp and ended state, in which case the list is not
+   * modified.
+   */
+  private static boolean insertSorted(@NotNull List<Event> events, @NotNull Event event) {
+    // Events are mostly received in order, so look for the position from the end.
+    int index = events.size();
+    while (index > 0 && EVENT_ORDER.compare(events.get(index - 1), event) > 0) {
+      index--;
+    }
+    for (int i = index - 1; i >= 0 && EVENT_ORDER.compare(events.get(i), event) == 0; i--) {
+      if (events.get(i).getPid() == event.getPid()) {
+        return false;
+      }
+    }
+    events.add(index, event);
+    return true;
+  }
+
+  /**
+   * @return the index of the first event with a timestamp greater than or equal to the given one.
+   */
+  private static int lowerBound(@NotNull List<Event> events, long timestamp) {
+    int low = 0;
+    int high = events.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (events.get(mid).getTimestamp() < timestamp) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the first event with a timestamp strictly greater than the given one.
+   */
+  private static int upperBound(@NotNull List<Event> events, long timestamp) {
+    return timestamp == Long.MAX_VALUE ? events.size() : lowerBound(events, timestamp + 1);
+  }
+
+  private static long getEventBytes(@NotNull Event event) {
+    return event.getSerializedSize() + EVENT_OVERHEAD_BYTES;
+  }
+
+  private static final class StreamPartition {
+    @NotNull private final TreeMap<Long, EventSegment> mySegments = new TreeMap<>();
+    // Kind -> group id -> the buckets of the segments that have events of this kind and group.
+    @NotNull private final Map<Integer, Map<Long, NavigableSet<Long>>> myGroupBuckets = new HashMap<>();
+  }
+
+  private static final class EventSegment {
+    // Kind -> group id -> events sorted by timestamp. Null when the segment is written to disk.
+    @Nullable private Map<Integer, Map<Long, List<Event>>> myEvents = new HashMap<>();
+    @Nullable private File mySpillFile;
+    // Memory used by the events of the segment when they are loaded.
+    private long myResidentBytes;
+  }
+}
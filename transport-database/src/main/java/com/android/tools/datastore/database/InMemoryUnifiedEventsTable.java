@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.android.tools.profiler.proto.Transport.EventGroup;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.Connection;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link UnifiedEventsTable} that keeps the events parsed in memory instead of storing them in the database, so timeline queries
+ * don't go through SQL and protobuf parsing. See {@link InMemoryEventStore}.
+ * <p>
+ * Bytes are still stored in the database, as they are large and rarely queried.
+ */
+public class InMemoryUnifiedEventsTable extends UnifiedEventsTable {
+  @NotNull private final InMemoryEventStore myStore;
+
+  public InMemoryUnifiedEventsTable() {
+    this(InMemoryEventStore.DEFAULT_SEGMENT_DURATION_NS, InMemoryEventStore.DEFAULT_MAX_RESIDENT_BYTES);
+  }
+
+  @VisibleForTesting
+  InMemoryUnifiedEventsTable(long segmentDurationNs, long maxResidentBytes) {
+    myStore = new InMemoryEventStore(segmentDurationNs, maxResidentBytes, DataStoreTable::onError);
+  }
+
+  @Override
+  public void initialize(@NotNull Connection connection) {
+    super.initialize(connection);
+    myStore.clear();
+  }
+
+  @Override
+  public void insertUnifiedEvent(long streamId, @NotNull Event event) {
+    myStore.insert(streamId, event);
+  }
+
+  @Override
+  public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    myStore.delete(streamId, pid, groupId, kind, fromTimestamp, toTimestamp);
+  }
+
+  @Override
+  public List<Event> queryUnifiedEvents() {
+    return myStore.getAllEvents();
+  }
+
+  @Override
+  public List<EventGroup> queryUnifiedEventGroups(@NotNull GetEventGroupsRequest request) {
+    return myStore.queryGroups(request);
+  }
+
+  @VisibleForTesting
+  @NotNull
+  InMemoryEventStore getStore() {
+    return myStore;
+  }
+}
@@ -184,7 +184,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertJniReferenceData(@NotNull Common.Session session, @NotNull Memory.BatchJNIGlobalRefEvent sample) {
-    execute(INSERT_JNI_REF, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
+    executeBuffered(INSERT_JNI_REF, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
   }
 
   public void insertAllocationContexts(Common.Session session, Memory.BatchAllocationContexts sample) {
@@ -197,11 +197,11 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
       .map(klass -> klass.toBuilder().setClassName(jniToJavaName(klass.getClassName())).build())
       .collect(Collectors.toList());
     convertedSampleBuilder.addAllClasses(convertedClasses);
-    execute(INSERT_ALLOC_CONTEXTS, session.getSessionId(), sample.getTimestamp(), convertedSampleBuilder.build().toByteArray());
+    executeBuffered(INSERT_ALLOC_CONTEXTS, session.getSessionId(), sample.getTimestamp(), convertedSampleBuilder.build().toByteArray());
   }
 
   public void insertAllocationEvents(Common.Session session, Memory.BatchAllocationEvents sample) {
-    execute(INSERT_ALLOC_EVENTS, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
+    executeBuffered(INSERT_ALLOC_EVENTS, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
   }
 
   public void insertOrReplaceAllocationSamplingRateEvent(@NotNull Common.Session session, @NotNull AllocationSamplingRateEvent event) {
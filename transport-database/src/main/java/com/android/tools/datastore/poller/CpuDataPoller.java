@@ -58,7 +58,7 @@ public class CpuDataPoller extends PollRunner {
                        @NotNull CpuTable table,
                        @NotNull CpuServiceGrpc.CpuServiceBlockingStub pollingService,
                        @NotNull LogService logService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, logService);
     myCpuTable = table;
     myPollingService = pollingService;
     mySession = session;
@@ -112,6 +112,9 @@ public class CpuDataPoller extends PollRunner {
         Math.max(myTraceInfoRequestStartTimestampNs, Math.max(traceInfo.getFromTimestamp(), traceInfo.getToTimestamp()));
     }
 
+    if (response.getDataCount() > 0 || threadsResponse.getThreadsCount() > 0 || traceInfoResponse.getTraceInfoCount() > 0) {
+      onDataReceived();
+    }
     myDataRequestStartTimestampNs = Math.max(Math.max(myDataRequestStartTimestampNs + 1, getDataStartNs), getThreadsStartNs);
   }
 }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.database.DeviceProcessTable;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Common.AgentData;
@@ -35,6 +36,8 @@ import org.jetbrains.annotations.NotNull;
 
 public class DeviceProcessPoller extends PollRunner {
 
+  private static final long POLL_PERIOD_NS = TimeUnit.SECONDS.toNanos(1);
+
   private static final class DeviceData {
     public final Common.Device device;
     public final Set<Common.Process> processes = new HashSet<>();
@@ -49,8 +52,10 @@ public class DeviceProcessPoller extends PollRunner {
   @NotNull private final Map<Long, DeviceData> myDevices = new HashMap<>();
 
   public DeviceProcessPoller(@NotNull DeviceProcessTable table,
-                             @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService) {
-    super(TimeUnit.SECONDS.toNanos(1));
+                             @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
+                             @NotNull LogService logService) {
+    // Each poll returns the current devices and processes rather than new data, so the period doesn't adapt to the data.
+    super(POLL_PERIOD_NS, POLL_PERIOD_NS, logService);
     myTable = table;
     myPollingService = pollingService;
   }
@@ -32,6 +32,7 @@ import com.android.tools.profiler.proto.NetworkServiceGrpc;
 import com.android.tools.profiler.proto.Transport.TimeRequest;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
 import io.grpc.StatusRuntimeException;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
@@ -71,7 +72,7 @@ public final class EnergyDataPoller extends PollRunner {
                           @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub networkService,
                           @NotNull EnergyServiceGrpc.EnergyServiceBlockingStub energyService,
                           @NotNull LogService logService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, logService);
     myBatteryModel = batteryModel;
     myEnergyTable = eventTable;
     myTransportService = transportService;
@@ -111,14 +112,22 @@ public final class EnergyDataPoller extends PollRunner {
     EnergyProfiler.EnergyRequest request = EnergyProfiler.EnergyRequest
       .newBuilder().setSession(mySession).setStartTimestamp(myDataRequestStartTimestampNs).setEndTimestamp(endTimestampNs).build();
 
-    addLatestEvents(request); // Update events before samples, so any event with an effect on samples will get reflected in the samples.
-    addLatestSamples(request);
+    // Update events before samples, so any event with an effect on samples will get reflected in the samples.
+    boolean dataReceived = addLatestEvents(request);
+    dataReceived |= addLatestSamples(request);
+    if (dataReceived) {
+      onDataReceived();
+    }
 
     myDataRequestStartTimestampNs = endTimestampNs;
   }
 
-  private void addLatestEvents(@NotNull EnergyProfiler.EnergyRequest request) {
-    for (Common.Event event : myEnergyService.getEvents(request).getEventsList()) {
+  /**
+   * Returns true if there were new events.
+   */
+  private boolean addLatestEvents(@NotNull EnergyProfiler.EnergyRequest request) {
+    List<Common.Event> events = myEnergyService.getEvents(request).getEventsList();
+    for (Common.Event event : events) {
       // Location-related events.
       if (event.getEnergyEvent().hasLocationUpdateRequested()) {
         myBatteryModel.handleEvent(
@@ -145,9 +154,14 @@ public final class EnergyDataPoller extends PollRunner {
 
       myEnergyTable.insertOrReplace(mySession, event);
     }
+    return !events.isEmpty();
   }
 
-  private void addLatestSamples(@NotNull EnergyProfiler.EnergyRequest request) {
+  /**
+   * Returns true if there was new network or CPU data. The samples are estimated at every poll, so they are not new data themselves.
+   */
+  private boolean addLatestSamples(@NotNull EnergyProfiler.EnergyRequest request) {
+    boolean dataReceived;
     // Network-related samples
     {
       NetworkProfiler.NetworkDataRequest networkDataRequest =
@@ -156,6 +170,7 @@ public final class EnergyDataPoller extends PollRunner {
           .setEndTimestamp(request.getEndTimestamp()).setType(NetworkProfiler.NetworkDataRequest.Type.ALL).build();
 
       NetworkProfiler.NetworkDataResponse networkDataResponse = myNetworkService.getData(networkDataRequest);
+      dataReceived = networkDataResponse.getDataCount() > 0;
       for (NetworkProfiler.NetworkProfilerData networkData : networkDataResponse.getDataList()) {
         switch (networkData.getDataCase()) {
           case CONNECTIVITY_DATA:
@@ -199,6 +214,7 @@ public final class EnergyDataPoller extends PollRunner {
         CpuProfiler.CpuDataRequest.newBuilder().setSession(request.getSession()).setStartTimestamp(request.getStartTimestamp())
           .setEndTimestamp(request.getEndTimestamp()).build();
       CpuProfiler.CpuDataResponse cpuDataResponse = myCpuService.getData(cpuDataRequest);
+      dataReceived |= cpuDataResponse.getDataCount() > 0;
       Cpu.CpuUsageData prevUsageData = myLastData;
 
       for (Cpu.CpuUsageData currUsageData : cpuDataResponse.getDataList()) {
@@ -216,6 +232,7 @@ public final class EnergyDataPoller extends PollRunner {
     for (EnergyProfiler.EnergySample sample : myBatteryModel.getSamplesBetween(request.getStartTimestamp(), request.getEndTimestamp())) {
       myEnergyTable.insertOrReplace(mySession, sample);
     }
+    return dataReceived;
   }
 
   @NotNull
@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.database.EventsTable;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.EventProfiler.*;
@@ -35,8 +36,9 @@ public class EventDataPoller extends PollRunner {
 
   public EventDataPoller(@NotNull Common.Session session,
                          @NotNull EventsTable eventTable,
-                         @NotNull EventServiceGrpc.EventServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+                         @NotNull EventServiceGrpc.EventServiceBlockingStub pollingService,
+                         @NotNull LogService logService) {
+    super(POLLING_DELAY_NS, logService);
     myEventsTable = eventTable;
     myEventPollingService = pollingService;
     mySession = session;
@@ -83,5 +85,9 @@ public class EventDataPoller extends PollRunner {
       long id = data.getEventId();
       myEventsTable.insertOrReplace(id, mySession, data);
     }
+
+    if (activityResponse.getDataCount() > 0 || systemResponse.getDataCount() > 0) {
+      onDataReceived();
+    }
   }
 }
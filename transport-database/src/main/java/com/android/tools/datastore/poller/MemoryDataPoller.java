@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.database.MemoryStatsTable;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Memory.AllocationsInfo;
@@ -37,8 +38,9 @@ public class MemoryDataPoller extends PollRunner {
   public MemoryDataPoller(@NotNull Common.Session session,
                           @NotNull MemoryStatsTable statsTable,
                           @NotNull MemoryServiceGrpc.MemoryServiceBlockingStub pollingService,
-                          @NotNull Consumer<Runnable> fetchExecutor) {
-    super(POLLING_DELAY_NS);
+                          @NotNull Consumer<Runnable> fetchExecutor,
+                          @NotNull LogService logService) {
+    super(POLLING_DELAY_NS, logService);
     mySession = session;
     myMemoryStatsTable = statsTable;
     myPollingService = pollingService;
@@ -124,6 +126,7 @@ public class MemoryDataPoller extends PollRunner {
 
     if (response.getEndTimestamp() > myDataRequestStartTimestampNs) {
       myDataRequestStartTimestampNs = response.getEndTimestamp();
+      onDataReceived();
     }
   }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.database.MemoryLiveAllocationTable;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Memory;
@@ -34,8 +35,9 @@ public class MemoryJvmtiDataPoller extends PollRunner {
 
   public MemoryJvmtiDataPoller(@NotNull Common.Session session,
                                @NotNull MemoryLiveAllocationTable liveAllocationTable,
-                               @NotNull MemoryServiceGrpc.MemoryServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+                               @NotNull MemoryServiceGrpc.MemoryServiceBlockingStub pollingService,
+                               @NotNull LogService logService) {
+    super(POLLING_DELAY_NS, logService);
     mySession = session;
     myLiveAllocationTable = liveAllocationTable;
     myPollingService = pollingService;
@@ -61,6 +63,7 @@ public class MemoryJvmtiDataPoller extends PollRunner {
     }
     if (response.getEndTimestamp() > myDataRequestStartTimestampNs) {
       myDataRequestStartTimestampNs = response.getEndTimestamp();
+      onDataReceived();
     }
   }
 }
\ No newline at end of file
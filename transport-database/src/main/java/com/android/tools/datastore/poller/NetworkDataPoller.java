@@ -15,6 +15,7 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.database.NetworkTable;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler.*;
@@ -34,8 +35,9 @@ public class NetworkDataPoller extends PollRunner {
 
   public NetworkDataPoller(@NotNull Common.Session session,
                            @NotNull NetworkTable table,
-                           @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+                           @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub pollingService,
+                           @NotNull LogService logService) {
+    super(POLLING_DELAY_NS, logService);
     mySession = session;
     myNetworkTable = table;
     myPollingService = pollingService;
@@ -52,6 +54,9 @@ public class NetworkDataPoller extends PollRunner {
       myDataRequestStartTimestampNs = Math.max(myDataRequestStartTimestampNs, data.getEndTimestamp());
       myNetworkTable.insert(mySession, data);
     }
+    if (response.getDataCount() > 0) {
+      onDataReceived();
+    }
     pollHttpRange();
   }
 
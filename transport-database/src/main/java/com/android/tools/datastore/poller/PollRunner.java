@@ -15,31 +15,76 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.LogService;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.grpc.StatusRuntimeException;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A {@link RunnableFuture} which, while running, triggers a callback at a specified period
  * (which can be used to poll a target service at some frequency).
+ * <p>
+ * All the runners share a single scheduler thread which only times the polls: {@link #run()} only schedules the first poll and returns,
+ * so a runner doesn't hold a thread while waiting for its next poll. The polls themselves are blocking RPCs without deadline, so they
+ * run on a shared cached pool, where a device which stops responding only holds its own thread.
+ * <p>
+ * The period adapts to the data: implementations call {@link #onDataReceived()} when a poll returns data, which halves the period down
+ * to the minimum one, while polls without data double it back up to the maximum one.
  */
 public abstract class PollRunner implements RunnableFuture<Void> {
 
   public static final long POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(250);
 
-  private long myPollPeriodNs;
+  public static final long MIN_POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(50);
 
-  private boolean myIsRunning = false;
+  private static final ScheduledExecutorService POLL_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("DataStore-PollScheduler").build());
+
+  private static final ExecutorService POLL_EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("DataStore-PollRunner-%d").build());
+
+  @NotNull private final LogService myLogService;
+
+  private final long myMinPollPeriodNs;
+
+  private final long myMaxPollPeriodNs;
+
+  // Only modified by the polls, which never run concurrently.
+  private volatile long myPollPeriodNs;
+
+  private volatile boolean myDataReceived = false;
+
+  private volatile boolean myIsRunning = false;
+
+  private final Object myScheduleLock = new Object();
+
+  @Nullable private ScheduledFuture<?> myNextPoll;
 
   private CountDownLatch myRunning = new CountDownLatch(1);
 
   private CountDownLatch myIsDone = new CountDownLatch(1);
 
 
-  public PollRunner(long pollPeriodNs) {
-    myPollPeriodNs = pollPeriodNs;
+  public PollRunner(long pollPeriodNs, @NotNull LogService logService) {
+    this(Math.min(MIN_POLLING_DELAY_NS, pollPeriodNs), pollPeriodNs, logService);
+  }
+
+  public PollRunner(long minPollPeriodNs, long maxPollPeriodNs, @NotNull LogService logService) {
+    assert minPollPeriodNs <= maxPollPeriodNs;
+    myLogService = logService;
+    myMinPollPeriodNs = minPollPeriodNs;
+    myMaxPollPeriodNs = maxPollPeriodNs;
+    myPollPeriodNs = maxPollPeriodNs;
   }
 
   public void stop() {
@@ -52,31 +97,98 @@ public abstract class PollRunner implements RunnableFuture<Void> {
     }
   }
 
+  /**
+   * Starts polling on the shared pool. Returns immediately.
+   */
   @Override
   public void run() {
-    try {
+    synchronized (myScheduleLock) {
+      if (myIsRunning || isCancelled()) {
+        return;
+      }
       myIsRunning = true;
-      while (myRunning.getCount() > 0) {
-        long startTimeNs = System.nanoTime();
-        poll();
-        long sleepTime = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
-        myRunning.await(sleepTime, TimeUnit.NANOSECONDS);
+      schedulePoll(0);
+    }
+  }
+
+  private void pollAndReschedule() {
+    synchronized (myScheduleLock) {
+      myNextPoll = null;
+      if (isCancelled()) {
+        finish();
+        return;
       }
     }
-    catch (InterruptedException | StatusRuntimeException e) {
-      Thread.currentThread().interrupt();
+
+    long startTimeNs = System.nanoTime();
+    try {
+      myDataReceived = false;
+      poll();
+    }
+    catch (StatusRuntimeException e) {
+      finish();
+      return;
+    }
+    catch (RuntimeException | Error e) {
+      getLogger().warn("Stopping " + getClass().getName() + " after a failed poll");
+      getLogger().warn(e);
+      finish();
+      throw e;
     }
-    finally {
-      myIsRunning = false;
-      myIsDone.countDown();
+    myPollPeriodNs = myDataReceived ? Math.max(myMinPollPeriodNs, myPollPeriodNs / 2) : Math.min(myMaxPollPeriodNs, myPollPeriodNs * 2);
+
+    synchronized (myScheduleLock) {
+      if (isCancelled()) {
+        finish();
+        return;
+      }
+      long delayNs = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
+      schedulePoll(delayNs);
     }
   }
 
+  /**
+   * Must be called while holding {@link #myScheduleLock}.
+   */
+  private void schedulePoll(long delayNs) {
+    // If the scheduled task is cancelled after it handed the poll to the pool, the poll notices the cancellation and finishes the runner.
+    myNextPoll = POLL_SCHEDULER.schedule(() -> POLL_EXECUTOR.execute(this::pollAndReschedule), delayNs, TimeUnit.NANOSECONDS);
+  }
+
+  private void finish() {
+    myIsRunning = false;
+    myIsDone.countDown();
+  }
+
   public abstract void poll();
 
+  /**
+   * Called by {@link #poll()} implementations when the poll returned new data, to poll more often.
+   */
+  protected void onDataReceived() {
+    myDataReceived = true;
+  }
+
+  @NotNull
+  private LogService.Logger getLogger() {
+    return myLogService.getLogger(PollRunner.class);
+  }
+
+  @VisibleForTesting
+  long getPollPeriodNs() {
+    return myPollPeriodNs;
+  }
+
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
-    myRunning.countDown();
+    synchronized (myScheduleLock) {
+      myRunning.countDown();
+      // If the next poll is waiting, don't wait for it to notice the cancellation. If it is already running, it finishes the runner.
+      if (myNextPoll != null && myNextPoll.cancel(false)) {
+        myNextPoll = null;
+        finish();
+      }
+    }
     return true;
   }
 
@@ -16,6 +16,7 @@
 package com.android.tools.datastore.service;
 
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.EventsTable;
 import com.android.tools.datastore.poller.EventDataPoller;
@@ -53,11 +54,14 @@ public class EventService extends EventServiceGrpc.EventServiceImplBase implemen
   private final Map<Long, PollRunner> myRunners = new HashMap<>();
   private final Consumer<Runnable> myFetchExecutor;
   private final DataStoreService myService;
+  private final LogService myLogService;
 
   public EventService(@NotNull DataStoreService dataStoreService,
-                      Consumer<Runnable> fetchExecutor) {
+                      Consumer<Runnable> fetchExecutor,
+                      @NotNull LogService logService) {
     myFetchExecutor = fetchExecutor;
     myService = dataStoreService;
+    myLogService = logService;
     myEventsTable = new EventsTable();
   }
 
@@ -121,7 +125,7 @@ public class EventService extends EventServiceGrpc.EventServiceImplBase implemen
       observer.onNext(client.startMonitoringApp(request));
       observer.onCompleted();
       Common.Session session = request.getSession();
-      myRunners.put(session.getSessionId(), new EventDataPoller(session, myEventsTable, client));
+      myRunners.put(session.getSessionId(), new EventDataPoller(session, myEventsTable, client, myLogService));
       myFetchExecutor.accept(myRunners.get(session.getSessionId()));
     }
     else {
@@ -101,8 +101,8 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
       Common.Session session = request.getSession();
       long sessionId = session.getSessionId();
 
-      myJvmtiRunners.put(sessionId, new MemoryJvmtiDataPoller(session, myAllocationsTable, client));
-      myRunners.put(sessionId, new MemoryDataPoller(session, myStatsTable, client, myFetchExecutor));
+      myJvmtiRunners.put(sessionId, new MemoryJvmtiDataPoller(session, myAllocationsTable, client, myLogService));
+      myRunners.put(sessionId, new MemoryDataPoller(session, myStatsTable, client, myFetchExecutor, myLogService));
       myFetchExecutor.accept(myJvmtiRunners.get(sessionId));
       myFetchExecutor.accept(myRunners.get(sessionId));
     }
@@ -16,6 +16,7 @@
 package com.android.tools.datastore.service;
 
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.NetworkTable;
 import com.android.tools.datastore.poller.NetworkDataPoller;
@@ -38,10 +39,12 @@ public class NetworkService extends NetworkServiceGrpc.NetworkServiceImplBase im
   private final Consumer<Runnable> myFetchExecutor;
   private final Map<Long, PollRunner> myRunners = new HashMap<>();
   private final DataStoreService myService;
+  private final LogService myLogService;
 
-  public NetworkService(@NotNull DataStoreService service, Consumer<Runnable> fetchExecutor) {
+  public NetworkService(@NotNull DataStoreService service, Consumer<Runnable> fetchExecutor, @NotNull LogService logService) {
     myFetchExecutor = fetchExecutor;
     myService = service;
+    myLogService = logService;
     myNetworkTable = new NetworkTable();
   }
 
@@ -62,7 +65,7 @@ public class NetworkService extends NetworkServiceGrpc.NetworkServiceImplBase im
       responseObserver.onNext(client.startMonitoringApp(request));
       responseObserver.onCompleted();
       long sessionId = request.getSession().getSessionId();
-      myRunners.put(sessionId, new NetworkDataPoller(request.getSession(), myNetworkTable, client));
+      myRunners.put(sessionId, new NetworkDataPoller(request.getSession(), myNetworkTable, client, myLogService));
       myFetchExecutor.accept(myRunners.get(sessionId));
     }
     else {
@@ -16,6 +16,7 @@
 package com.android.tools.datastore.service;
 
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.LogService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.DataStoreTable;
 import com.android.tools.datastore.database.DeviceProcessTable;
@@ -70,6 +71,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
   @NotNull private final UnifiedEventsTable myTable;
   @NotNull private final DeviceProcessTable myLegacyTable;
   @NotNull private final DataStoreService myService;
+  @NotNull private final LogService myLogService;
   private final boolean myLegacyPipelineForProfilers;
   /**
    * A mapping of active channels to pollers. This mapping allows us to keep track of active pollers for a channel, and clean up pollers
@@ -85,8 +87,10 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
   public TransportService(@NotNull DataStoreService service,
                           @NotNull UnifiedEventsTable unifiedTable,
                           Consumer<Runnable> fetchExecutor,
-                          boolean legacyPipelineForProfilers) {
+                          boolean legacyPipelineForProfilers,
+                          @NotNull LogService logService) {
     myService = service;
+    myLogService = logService;
     myFetchExecutor = fetchExecutor;
     myTable = unifiedTable;
     myLegacyTable = new DeviceProcessTable();
@@ -126,7 +130,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     myFetchExecutor.accept(unifiedPoller);
 
     if (myLegacyPipelineForProfilers && stream.getType() == Stream.Type.DEVICE) {
-      DeviceProcessPoller legacyPoller = new DeviceProcessPoller(myLegacyTable, stub);
+      DeviceProcessPoller legacyPoller = new DeviceProcessPoller(myLegacyTable, stub, myLogService);
       myLegacyPollers.put(channel, legacyPoller);
       myFetchExecutor.accept(legacyPoller);
     }
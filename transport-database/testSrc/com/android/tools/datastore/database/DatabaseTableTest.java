@@ -24,9 +24,11 @@ import org.junit.Test;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertFalse;
@@ -106,6 +108,103 @@ public class DatabaseTableTest {
     }
   }
 
+  @Test
+  public void testBufferedWritesFlushedWhenBatchIsFull() throws Exception {
+    ThreadTestTable table = createTable(8, 4, TimeUnit.HOURS.toNanos(1));
+    table.insertDataBuffered(1, 2, 3);
+    assertThat(table.getWriteQueue().getQueueDepth()).isEqualTo(3);
+    assertThat(countRows()).isEqualTo(0);
+
+    table.insertDataBuffered(4);
+    assertThat(table.getWriteQueue().getQueueDepth()).isEqualTo(0);
+    assertThat(table.getWriteQueue().getFlushCount()).isEqualTo(1);
+    assertThat(table.getWriteQueue().getFlushedWriteCount()).isEqualTo(4);
+    assertThat(countRows()).isEqualTo(4);
+  }
+
+  @Test
+  public void testBufferedWritesFlushedAfterDelay() throws Exception {
+    ThreadTestTable table = createTable(8, 8, TimeUnit.MILLISECONDS.toNanos(10));
+    table.insertDataBuffered(1, 2);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (table.getWriteQueue().getQueueDepth() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(table.getWriteQueue().getQueueDepth()).isEqualTo(0);
+    assertThat(countRows()).isEqualTo(2);
+  }
+
+  @Test
+  public void testBufferedWritesVisibleToQueriesAndOrderedWithOtherWrites() throws Exception {
+    ThreadTestTable table = createTable(8, 8, TimeUnit.HOURS.toNanos(1));
+    table.insertDataBuffered(1, 2);
+    table.insertData(3);
+    table.insertDataBuffered(4);
+
+    ResultSet results = table.readDataRaw();
+    int expected = 1;
+    while (results.next()) {
+      assertThat(results.getInt(1)).isEqualTo(expected++);
+    }
+    assertThat(expected).isEqualTo(5);
+  }
+
+  @Test
+  public void testProducerFlushesWhenQueueIsFull() throws Exception {
+    ThreadTestTable table = createTable(4, 4, TimeUnit.HOURS.toNanos(1));
+    // Fill the queue from multiple threads so producers race to flush it.
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < TEST_DATA_COUNT; j++) {
+          table.insertDataBuffered(j);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    table.flushPendingWrites();
+    assertThat(countRows()).isEqualTo(threads.length * TEST_DATA_COUNT);
+    assertThat(table.getWriteQueue().getFlushedWriteCount()).isEqualTo(threads.length * TEST_DATA_COUNT);
+    assertThat(table.getWriteQueue().getMaxFlushLatencyNs()).isAtLeast(0L);
+  }
+
+  @Test
+  public void testBufferedWritesFlushedOnDisconnect() throws Exception {
+    ThreadTestTable table = createTable(8, 8, TimeUnit.HOURS.toNanos(1));
+    table.insertDataBuffered(1, 2, 3);
+    myDatabase.disconnect();
+
+    // Writes after the connection is closed are ignored instead of being flushed on the closed connection.
+    table.insertDataBuffered(4);
+    table.flushPendingWrites();
+    assertThat(table.getWriteQueue().getFlushedWriteCount()).isEqualTo(3);
+    assertThat(table.getWriteQueue().getQueueDepth()).isEqualTo(0);
+
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + myDbFile.getAbsolutePath());
+         ResultSet results = connection.createStatement().executeQuery("SELECT COUNT(*) FROM Thread_Table")) {
+      assertThat(results.getInt(1)).isEqualTo(3);
+    }
+  }
+
+  @NotNull
+  private ThreadTestTable createTable(int writeQueueCapacity, int writeBatchSize, long maxWriteDelayNs) {
+    ThreadTestTable table = new ThreadTestTable(writeQueueCapacity, writeBatchSize, maxWriteDelayNs);
+    table.initialize(myDatabase.getConnection());
+    return table;
+  }
+
+  /**
+   * Counts the rows of the test table without going through the table, so pending writes aren't flushed.
+   */
+  private int countRows() throws SQLException {
+    try (ResultSet results = myDatabase.getConnection().createStatement().executeQuery("SELECT COUNT(*) FROM Thread_Table")) {
+      return results.getInt(1);
+    }
+  }
+
   /**
    * Runnable class that handles querying the database as fast as possible.
    */
@@ -155,6 +254,12 @@ public class DatabaseTableTest {
    * Setup a simple Datastore table to validate operations on.
    */
   private class ThreadTestTable extends DataStoreTable<ThreadTableStatement> {
+    ThreadTestTable() {
+    }
+
+    ThreadTestTable(int writeQueueCapacity, int writeBatchSize, long maxWriteDelayNs) {
+      super(writeQueueCapacity, writeBatchSize, maxWriteDelayNs);
+    }
 
     @Override
     public void initialize(@NotNull Connection connection) {
@@ -184,6 +289,12 @@ public class DatabaseTableTest {
       }
     }
 
+    public void insertDataBuffered(int... someData) {
+      for (int data : someData) {
+        executeBuffered(ThreadTableStatement.INSERT_DATA, data);
+      }
+    }
+
     public ResultSet readDataRaw() throws SQLException {
       return executeQuery(ThreadTableStatement.READ_DATA);
     }
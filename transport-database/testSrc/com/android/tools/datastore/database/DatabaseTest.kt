@@ -97,6 +97,8 @@ abstract class DatabaseTest<T : DataStoreTable<*>> {
     val methodCalls = getTableQueryMethodsForVerification()
     for (i in methodCalls.indices) {
       methodCalls[i].accept(table)
+      // Buffered writes only hit the database, and the error, when they are flushed.
+      table.flushPendingWrites()
       assertWithMessage("Failed to handle error on call #$i").that(throwsError).isTrue()
       throwsError = false
     }
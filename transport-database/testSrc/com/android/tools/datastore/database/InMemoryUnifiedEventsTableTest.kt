@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.util.Random
+
+class InMemoryUnifiedEventsTableTest {
+  private lateinit var dbFile: File
+  private lateinit var database: DataStoreDatabase
+  private lateinit var sqlTable: UnifiedEventsTable
+
+  @Before
+  fun setUp() {
+    dbFile = File.createTempFile("InMemoryUnifiedEventsTableTest", "sql")
+    dbFile.deleteOnExit()
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    sqlTable = UnifiedEventsTable()
+    sqlTable.initialize(database.connection)
+  }
+
+  @After
+  fun tearDown() {
+    database.disconnect()
+  }
+
+  @Test
+  fun duplicatedEventsAreIgnored() {
+    val table = createTable(10, Long.MAX_VALUE)
+    val event = event(Common.Event.Kind.SESSION, false, 1, 1, 1, 5)
+    table.insertUnifiedEvent(1, event)
+    table.insertUnifiedEvent(1, event.toBuilder().setCommandId(2).build())
+    // Same unique key in another stream.
+    table.insertUnifiedEvent(2, event)
+    assertThat(table.queryUnifiedEvents()).containsExactly(event, event)
+  }
+
+  @Test
+  fun deleteEvents() {
+    val table = createTable(10, Long.MAX_VALUE)
+    for (timestamp in 1L..50L) {
+      table.insertUnifiedEvent(1, event(Common.Event.Kind.SESSION, false, 1, 1, 1, timestamp))
+    }
+    table.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 5, 45)
+    assertThat(table.queryUnifiedEvents().map { it.timestamp }).containsExactly(1L, 2L, 3L, 4L, 46L, 47L, 48L, 49L, 50L)
+  }
+
+  @Test
+  fun queriesMatchDatabaseTable() {
+    validateAgainstDatabase(createTable(7, Long.MAX_VALUE))
+  }
+
+  @Test
+  fun queriesMatchDatabaseTableWhenSegmentsAreSpilled() {
+    val table = createTable(7, 2048)
+    validateAgainstDatabase(table)
+    assertThat(table.store.spilledSegmentCount).isGreaterThan(0)
+    assertThat(table.store.residentBytes).isAtMost(2048L + 1024L)
+  }
+
+  private fun createTable(segmentDurationNs: Long, maxResidentBytes: Long): InMemoryUnifiedEventsTable {
+    val table = InMemoryUnifiedEventsTable(segmentDurationNs, maxResidentBytes)
+    table.initialize(database.connection)
+    return table
+  }
+
+  private fun validateAgainstDatabase(table: InMemoryUnifiedEventsTable) {
+    val random = Random(1)
+    val kinds = listOf(Common.Event.Kind.SESSION, Common.Event.Kind.PROCESS)
+    for (i in 0 until 500) {
+      // Timestamps are unique so the events before and after a range don't depend on how ties are broken.
+      val event = event(kinds[random.nextInt(kinds.size)], random.nextInt(5) == 0, 1 + random.nextInt(3), 1L + random.nextInt(6),
+                        random.nextInt(3), random.nextInt(200) * 1000L + i)
+      val streamId = 1L + random.nextInt(2)
+      table.insertUnifiedEvent(streamId, event)
+      sqlTable.insertUnifiedEvent(streamId, event)
+    }
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(sqlTable.queryUnifiedEvents())
+
+    for (i in 0 until 200) {
+      val from = if (random.nextInt(3) == 0) 0L else random.nextInt(220_000).toLong()
+      val to = when (random.nextInt(4)) {
+        0 -> 0L
+        1 -> Long.MAX_VALUE
+        else -> from + random.nextInt(50_000)
+      }
+      val request = GetEventGroupsRequest.newBuilder()
+        .setKind(kinds[random.nextInt(kinds.size)])
+        .setStreamId(random.nextInt(3).toLong())
+        .setPid(random.nextInt(4))
+        .setGroupId(if (random.nextBoolean()) 0L else random.nextInt(7).toLong())
+        .setCommandId(if (random.nextBoolean()) 0 else random.nextInt(3))
+        .setFromTimestamp(from)
+        .setToTimestamp(to)
+        .build()
+      val expected = sqlTable.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+      val actual = table.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+      assertThat(actual).isEqualTo(expected)
+    }
+  }
+
+  private fun event(kind: Common.Event.Kind, isEnded: Boolean, pid: Int, groupId: Long, commandId: Int, timestamp: Long): Common.Event {
+    return Common.Event.newBuilder()
+      .setKind(kind)
+      .setIsEnded(isEnded)
+      .setPid(pid)
+      .setGroupId(groupId)
+      .setCommandId(commandId)
+      .setTimestamp(timestamp)
+      .build()
+  }
+}
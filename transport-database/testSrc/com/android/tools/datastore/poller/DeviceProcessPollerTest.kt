@@ -67,7 +67,7 @@ class DeviceProcessPollerTest : DataStorePollerTest() {
     myManagedChannel = InProcessChannelBuilder.forName("ProfilerDevicePollerServer").build()
     myServiceStub = TransportServiceGrpc.newBlockingStub(myManagedChannel)
 
-    myProcessPoller = DeviceProcessPoller(myTable, myServiceStub)
+    myProcessPoller = DeviceProcessPoller(myTable, myServiceStub, FakeLogService())
     // Stops the poller as that's dependent on system clock. We need to manually test the poll method.
     myProcessPoller.stop()
   }
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.when;
 
 import com.android.tools.datastore.DataStorePollerTest;
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.FakeLogService;
 import com.android.tools.datastore.TestGrpcService;
 import com.android.tools.datastore.service.EventService;
 import com.android.tools.profiler.proto.Common;
@@ -84,7 +85,7 @@ public class EventDataPollerTest extends DataStorePollerTest {
     .build();
 
   private DataStoreService myDataStoreService = mock(DataStoreService.class);
-  private EventService myEventDataPoller = new EventService(myDataStoreService, getPollTicker()::run);
+  private EventService myEventDataPoller = new EventService(myDataStoreService, getPollTicker()::run, new FakeLogService());
 
   private TestName myTestName = new TestName();
   private TestGrpcService myService = new TestGrpcService(EventDataPollerTest.class, myTestName, myEventDataPoller, new EventServiceMock());
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.when;
 
 import com.android.tools.datastore.DataStorePollerTest;
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.FakeLogService;
 import com.android.tools.datastore.TestGrpcService;
 import com.android.tools.datastore.service.NetworkService;
 import com.android.tools.profiler.proto.Common;
@@ -75,7 +76,7 @@ public class NetworkDataPollerTest extends DataStorePollerTest {
     .build();
 
   private DataStoreService myDataStoreService = mock(DataStoreService.class);
-  private NetworkService myNetworkService = new NetworkService(myDataStoreService, getPollTicker()::run);
+  private NetworkService myNetworkService = new NetworkService(myDataStoreService, getPollTicker()::run, new FakeLogService());
 
   private final FakeNetworkService myFakeNetworkService = new FakeNetworkService();
 
@@ -15,10 +15,14 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.datastore.FakeLogService;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
 
 public class PollRunnerTest {
@@ -42,6 +46,99 @@ public class PollRunnerTest {
     assertEquals(runner.get(1, TimeUnit.SECONDS), null); // For code completion
   }
 
+  @Test
+  public void testPollPeriodAdaptsToData() throws Exception {
+    AdaptivePollRunner runner = new AdaptivePollRunner();
+    runner.myHasData.set(true);
+    runner.run();
+    runner.awaitPolls(5);
+    assertThat(runner.getPollPeriodNs()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+
+    runner.myHasData.set(false);
+    // One of the polls may have started before the data stopped.
+    runner.awaitPolls(6);
+    assertThat(runner.getPollPeriodNs()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(16));
+    runner.stop();
+    assertThat(runner.isDone()).isTrue();
+  }
+
+  @Test
+  public void testStopDoesNotWaitForNextPoll() throws Exception {
+    CountDownLatch polled = new CountDownLatch(1);
+    PollRunner runner = new PollRunner(TimeUnit.HOURS.toNanos(1), new FakeLogService()) {
+      @Override
+      public void poll() {
+        polled.countDown();
+      }
+    };
+    runner.run();
+    polled.await();
+    long startNs = System.nanoTime();
+    runner.stop();
+    assertThat(runner.isDone()).isTrue();
+    assertThat(System.nanoTime() - startNs).isLessThan(TimeUnit.MINUTES.toNanos(1));
+  }
+
+  @Test
+  public void testBlockedPollDoesNotDelayOtherRunners() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PollRunner blockedRunner = new PollRunner(TEST_PERIOD_NS, new FakeLogService()) {
+      @Override
+      public void poll() {
+        blocked.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException ignored) {
+        }
+      }
+    };
+    blockedRunner.run();
+    blocked.await();
+
+    AdaptivePollRunner runner = new AdaptivePollRunner();
+    runner.run();
+    assertThat(runner.awaitPolls(5, 1, TimeUnit.MINUTES)).isTrue();
+    runner.stop();
+
+    release.countDown();
+    blockedRunner.stop();
+    assertThat(blockedRunner.isDone()).isTrue();
+  }
+
+  /**
+   * Runner with a period between 1 and 16 ms, which reports data according to {@link #myHasData}.
+   */
+  private static class AdaptivePollRunner extends PollRunner {
+    private final AtomicBoolean myHasData = new AtomicBoolean();
+    private volatile CountDownLatch myPolls = new CountDownLatch(0);
+
+    AdaptivePollRunner() {
+      super(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(16), new FakeLogService());
+    }
+
+    void awaitPolls(int count) throws InterruptedException {
+      CountDownLatch polls = new CountDownLatch(count);
+      myPolls = polls;
+      polls.await();
+    }
+
+    boolean awaitPolls(int count, long timeout, TimeUnit unit) throws InterruptedException {
+      CountDownLatch polls = new CountDownLatch(count);
+      myPolls = polls;
+      return polls.await(timeout, unit);
+    }
+
+    @Override
+    public void poll() {
+      if (myHasData.get()) {
+        onDataReceived();
+      }
+      myPolls.countDown();
+    }
+  }
+
   private static class PollRunnerMinimalImpl extends PollRunner {
     private long myLastCallbackTime = 0;
     private long myTickCallCount = 0;
@@ -50,7 +147,7 @@ public class PollRunnerTest {
     private boolean myTestPassed = true;
 
     public PollRunnerMinimalImpl(int count, long minimumDelayNs) {
-      super(POLLING_DELAY_NS);
+      super(POLLING_DELAY_NS, new FakeLogService());
       myTickCallCount = count;
       myMinimumDelayNs = minimumDelayNs;
     }
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.when;
 
 import com.android.tools.datastore.DataStorePollerTest;
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.FakeLogService;
 import com.android.tools.datastore.TestGrpcService;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.datastore.service.TransportService;
@@ -57,7 +58,8 @@ public class TransportServiceTest extends DataStorePollerTest {
 
   private DataStoreService myDataStore = mock(DataStoreService.class);
 
-  private TransportService myTransportService = new TransportService(myDataStore, new UnifiedEventsTable(), getPollTicker()::run, true);
+  private TransportService myTransportService =
+    new TransportService(myDataStore, new UnifiedEventsTable(), getPollTicker()::run, true, new FakeLogService());
 
   private static final String BYTES_ID_1 = "0123456789";
   private static final String BYTES_ID_2 = "9876543210";
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.when;
 
 import com.android.tools.datastore.DataStorePollerTest;
 import com.android.tools.datastore.DataStoreService;
+import com.android.tools.datastore.FakeLogService;
 import com.android.tools.datastore.TestGrpcService;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.profiler.proto.Commands.Command;
@@ -59,7 +60,8 @@ import org.mockito.Mockito;
 public class UnifiedPipelineTransportServiceTest extends DataStorePollerTest {
   private DataStoreService myDataStore = mock(DataStoreService.class);
 
-  private TransportService myTransportService = new TransportService(myDataStore, new UnifiedEventsTable(), getPollTicker()::run, false);
+  private TransportService myTransportService =
+    new TransportService(myDataStore, new UnifiedEventsTable(), getPollTicker()::run, false, new FakeLogService());
 
   private FakeTransportService myFakeService = new FakeTransportService();
   private Channel myChannel;